@@ -14,10 +14,12 @@ import java.util.Random;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.MessageIdRegistry;
 import core.MessageListener;
 import core.Settings;
 import core.SimClock;
 import routing.MessageRouter;
+import util.IntHashMap;
 
 public class CacheRouter extends MessageRouter {
 
@@ -28,7 +30,7 @@ public class CacheRouter extends MessageRouter {
 	/** Ҫάʽݽд洢 */
 	protected HashMap<String,HashMap<String,Message>> MessageHashMap = new HashMap<String,HashMap<String,Message>>();
 	/** жļǷõȷϣӶǷҪش  */
-	private HashMap<String, ArrayList<Object>> judgeForRetransfer = new HashMap<String, ArrayList<Object>>();	
+	private IntHashMap<ArrayList<Object>> judgeForRetransfer = new IntHashMap<ArrayList<Object>>();	
 	/** жشʱ䣬趨Ϊ100s */
 	protected double time_out = 10;
 	/** жشʼΪ0趨ش3*/
@@ -147,10 +149,21 @@ public class CacheRouter extends MessageRouter {
 	}
 	
 	/** õǰ·ɵشbuffer*/
-	public HashMap<String,ArrayList<Object>> getJudgeForRetransfer(){
+	public IntHashMap<ArrayList<Object>> getJudgeForRetransfer(){
 		return this.judgeForRetransfer;
 	}
 	
+	/**
+	 * Returns the key of a message ID in the retransfer buffer. The IDs of
+	 * the control and ack messages (e.g. {@link #Control_Msg} + the initial
+	 * message ID) are interned like the IDs of the other messages.
+	 * @param id The message ID
+	 * @return The key of the ID
+	 */
+	private static int retransferKey(String id) {
+		return MessageIdRegistry.intern(id);
+	}
+	
 	/** մϢ뵽жǷҪشbuffer */
 	public void putJudgeForRetransfer(Message m){		
 		switch((int) m.getProperty(SelectLabel)){
@@ -159,7 +172,7 @@ public class CacheRouter extends MessageRouter {
 			arraylist.add(0, m);
 			arraylist.add(1, this.time_out);
 			arraylist.add(2, this.reTransTimes);
-			this.judgeForRetransfer.put(m.getId(), arraylist);
+			this.judgeForRetransfer.put(retransferKey(m.getId()), arraylist);
 			return;
 		}
 //		case 1:{  // ӦԲ
@@ -167,7 +180,7 @@ public class CacheRouter extends MessageRouter {
 //			arraylist.add(0, m);
 //			arraylist.add(1, this.time_free);
 //			arraylist.add(2, -1);
-//			this.judgeForRetransfer.put("Chunk"+m.getInitMsgId(), arraylist);
+//			this.judgeForRetransfer.put(retransferKey("Chunk"+m.getInitMsgId()), arraylist);
 //			return;
 //		}
 		case 2:{
@@ -175,7 +188,7 @@ public class CacheRouter extends MessageRouter {
 			arraylist.add(0, m);
 			arraylist.add(1, this.time_out);
 			arraylist.add(2, this.reTransTimes);
-			this.judgeForRetransfer.put(m.getId(), arraylist);
+			this.judgeForRetransfer.put(retransferKey(m.getId()), arraylist);
 			return;
 		}
 		case 3:{
@@ -183,7 +196,7 @@ public class CacheRouter extends MessageRouter {
 			arraylist.add(0, m);
 			arraylist.add(1, this.time_wait);
 			arraylist.add(2, this.reTransTimes);
-			this.judgeForRetransfer.put(m.getId(), arraylist);
+			this.judgeForRetransfer.put(retransferKey(m.getId()), arraylist);
 			return;
 		}
 		case 4:{	//	شĻ
@@ -191,7 +204,7 @@ public class CacheRouter extends MessageRouter {
 			arraylist.add(0, m);
 			arraylist.add(1, this.time_wait);
 			arraylist.add(2, this.reTransTimes);
-			this.judgeForRetransfer.put(m.getId(), arraylist);
+			this.judgeForRetransfer.put(retransferKey(m.getId()), arraylist);
 			return;
 		}
 		}
@@ -222,17 +235,17 @@ public class CacheRouter extends MessageRouter {
 								reqMessage.setZeroForBitMap();
 								reqMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);	//	Ϣʱ
 								
-								this.judgeForRetransfer.get(m.getInitMsgId()).set(1, this.time_out);
-								int i = (int) this.judgeForRetransfer.get(m.getInitMsgId()).get(2);
-				                this.judgeForRetransfer.get(m.getInitMsgId()).set(2, i-1); 				//	شһ
+								this.judgeForRetransfer.get(retransferKey(m.getInitMsgId())).set(1, this.time_out);
+								int i = (int) this.judgeForRetransfer.get(retransferKey(m.getInitMsgId())).get(2);
+				                this.judgeForRetransfer.get(retransferKey(m.getInitMsgId())).set(2, i-1); 				//	شһ
 				                this.createNewMessage(reqMessage);
 							}
 							else{
-								this.judgeForRetransfer.remove(m.getInitMsgId());
+								this.judgeForRetransfer.remove(retransferKey(m.getInitMsgId()));
 							}
 						}
 						else{
-							this.judgeForRetransfer.remove(m.getInitMsgId());
+							this.judgeForRetransfer.remove(retransferKey(m.getInitMsgId()));
 						}
 						return;
 					}
@@ -245,7 +258,7 @@ public class CacheRouter extends MessageRouter {
 						if(this.getHost().getChunkBuffer().containsKey(n.getFilename())){
 							this.getHost().getChunkBuffer().remove(n.getFilename());
 						}
-						this.judgeForRetransfer.remove("Chunk"+n.getInitMsgId());
+						this.judgeForRetransfer.remove(retransferKey("Chunk"+n.getInitMsgId()));
 					}
 					
 					case 2:{	 
@@ -260,9 +273,9 @@ public class CacheRouter extends MessageRouter {
 							ctrMessage.setZeroForBitMap();
 							ctrMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);	//	Ϣʱ
 							
-							this.judgeForRetransfer.get(Control_Msg+m.getInitMsgId()).set(1, this.time_out);//	ˢشʱ
-			                int j = (int) this.judgeForRetransfer.get(Control_Msg + m.getInitMsgId()).get(2);
-			                this.judgeForRetransfer.get( Control_Msg + m.getInitMsgId()).set(2, j-1); 		//	شһ
+							this.judgeForRetransfer.get(retransferKey(Control_Msg+m.getInitMsgId())).set(1, this.time_out);//	ˢشʱ
+			                int j = (int) this.judgeForRetransfer.get(retransferKey(Control_Msg + m.getInitMsgId())).get(2);
+			                this.judgeForRetransfer.get( retransferKey(Control_Msg + m.getInitMsgId())).set(2, j-1); 		//	شһ
 			                this.createNewMessage(ctrMessage);
 			                System.out.println("طưϢ");
 			        		System.out.println("IBɹļ"+"  "+this.getHost()+"   "+ctrMessage.getProperty(SelectLabel)+ "  "
@@ -273,17 +286,17 @@ public class CacheRouter extends MessageRouter {
 			        				+"  "+"Ϣʱ䣺"+"  "+ ctrMessage.getReceiveTime());
 						}
 						else{
-							this.judgeForRetransfer.remove(Control_Msg + m.getInitMsgId());
+							this.judgeForRetransfer.remove(retransferKey(Control_Msg + m.getInitMsgId()));
 						}
 						return;
 					}
 					
 					case 3:{		// ԿưȷϢ
-						this.judgeForRetransfer.remove(s);
+						this.judgeForRetransfer.remove(retransferKey(s));
 						return;
 					}
 					case 4:{		// ȷϢ
-						this.judgeForRetransfer.remove(s);
+						this.judgeForRetransfer.remove(retransferKey(s));
 						return;
 					}
 				
@@ -354,11 +367,11 @@ public class CacheRouter extends MessageRouter {
 	 */
 	private void RequestMessage_Destination(Message aMessage) {
 		/** Ack2RequestȷϰʧɵطҪtime_wait */
-		if(this.judgeForRetransfer.containsKey(Ack2Request_Msg + aMessage.getInitMsgId())){
+		if(this.judgeForRetransfer.containsKey(retransferKey(Ack2Request_Msg + aMessage.getInitMsgId()))){
 			
 			/** ҲAck2Requestȷϰʧɵطưֱӻظȷϰ*/
 			Message m = (Message)this.judgeForRetransfer
-						.get(Ack2Request_Msg + aMessage.getInitMsgId()).get(0);
+						.get(retransferKey(Ack2Request_Msg + aMessage.getInitMsgId())).get(0);
 
 			Message ackMessage = new Message(m.getFrom(), m.getTo(),
 						Ack2Request_Msg + m.getId(), m.getResponseSize());
@@ -368,7 +381,7 @@ public class CacheRouter extends MessageRouter {
 			ackMessage.setZeroForBitMap();
 			ackMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);	//Ϣʱ
 			
-			this.judgeForRetransfer.get(Ack2Request_Msg + m.getInitMsgId()).set(1, this.time_wait);	//ˢشʱ
+			this.judgeForRetransfer.get(retransferKey(Ack2Request_Msg + m.getInitMsgId())).set(1, this.time_wait);	//ˢشʱ
             createNewMessage(ackMessage);
 
 		} else{
@@ -391,8 +404,8 @@ public class CacheRouter extends MessageRouter {
 	 */
 	private void ResponseMessage_Destination(Message aMessage) {
 		/** ΪӦϼʱ Time_free,жӦļʱڴȷϢǷڣ ڵĻ£ڣһ*/
-		if (this.judgeForRetransfer.containsKey("Chunk" + aMessage.getInitMsgId())) {
-			this.judgeForRetransfer.get("Chunk" + aMessage.getInitMsgId()).set(
+		if (this.judgeForRetransfer.containsKey(retransferKey("Chunk" + aMessage.getInitMsgId()))) {
+			this.judgeForRetransfer.get(retransferKey("Chunk" + aMessage.getInitMsgId())).set(
 					1, this.time_free);
 		} else {
 			this.putJudgeForRetransfer(aMessage);
@@ -501,14 +514,14 @@ public class CacheRouter extends MessageRouter {
 			ctrMessage.setTime(SimClock.getTime()+11*0.01, SimClock.getTime()+11*0.01);	//Ϣʱ
             this.createNewMessage(ctrMessage);
             
-			if(this.judgeForRetransfer.containsKey(Control_Msg+aMessage.getInitMsgId())== true){
-				this.judgeForRetransfer.get(Control_Msg+aMessage.getInitMsgId()).set(1, this.time_out);	//ˢشʱ
-				int m = (int) this.judgeForRetransfer.get(Control_Msg+aMessage.getInitMsgId()).get(2);
-	            this.judgeForRetransfer.get(Control_Msg + aMessage.getInitMsgId()).set(2, m-1); 	//شһ
+			if(this.judgeForRetransfer.containsKey(retransferKey(Control_Msg+aMessage.getInitMsgId()))== true){
+				this.judgeForRetransfer.get(retransferKey(Control_Msg+aMessage.getInitMsgId())).set(1, this.time_out);	//ˢشʱ
+				int m = (int) this.judgeForRetransfer.get(retransferKey(Control_Msg+aMessage.getInitMsgId())).get(2);
+	            this.judgeForRetransfer.get(retransferKey(Control_Msg + aMessage.getInitMsgId())).set(2, m-1); 	//شһ
 			} //򲻹ܣ൱شʧܣڳʱãɾ
 			
         } else{
-			this.judgeForRetransfer.remove(Control_Msg+aMessage.getInitMsgId());
+			this.judgeForRetransfer.remove(retransferKey(Control_Msg+aMessage.getInitMsgId()));
 		}
 	}
 	
@@ -519,7 +532,7 @@ public class CacheRouter extends MessageRouter {
 	 * @param aMessage
 	 */
 	private void Ack2RequestMessage_Destination(Message aMessage) {
-		this.judgeForRetransfer.remove(aMessage.getInitMsgId());	// ɾشϢ
+		this.judgeForRetransfer.remove(retransferKey(aMessage.getInitMsgId()));	// ɾشϢ
 	}
 	
 	/**
@@ -528,9 +541,9 @@ public class CacheRouter extends MessageRouter {
 	 */
 	public void NoChunkInChunkBuffer(Message aMessage){
 		/**	֤һļûУڶԿưȷϰʧɵ*/
-		if(this.judgeForRetransfer.containsKey(Ack2Ctrl_Msg + aMessage.getInitMsgId())){
+		if(this.judgeForRetransfer.containsKey(retransferKey(Ack2Ctrl_Msg + aMessage.getInitMsgId()))){
 			Message m = (Message) this.judgeForRetransfer.get(
-					Ack2Ctrl_Msg + aMessage.getInitMsgId()).get(0);
+					retransferKey(Ack2Ctrl_Msg + aMessage.getInitMsgId())).get(0);
 			
 			Message ackMessage = new Message(m.getFrom(), m.getTo(),
 					Ack2Ctrl_Msg + m.getId(), m.getResponseSize());	
@@ -539,7 +552,7 @@ public class CacheRouter extends MessageRouter {
 			ackMessage.setFilename(m.getFilename());
 			ackMessage.setZeroForBitMap();
 			ackMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);	//Ϣʱ					
-			this.judgeForRetransfer.get(Ack2Ctrl_Msg + m.getInitMsgId()).set(1, this.time_wait);	//ˢشʱ
+			this.judgeForRetransfer.get(retransferKey(Ack2Ctrl_Msg + m.getInitMsgId())).set(1, this.time_wait);	//ˢشʱ
             this.createNewMessage(ackMessage);
 		}else{
 		/** ֤ѡ·ɵ*/
@@ -686,9 +699,9 @@ public class CacheRouter extends MessageRouter {
 	 * @param aMessage
 	 */
 	private void RequestMessage_NotDestination(Message aMessage) { 
-		if(this.judgeForRetransfer.containsKey(Ack2Request_Msg + aMessage.getInitMsgId())){
+		if(this.judgeForRetransfer.containsKey(retransferKey(Ack2Request_Msg + aMessage.getInitMsgId()))){
 			Message m = (Message) this.judgeForRetransfer.get(
-					Ack2Request_Msg + aMessage.getInitMsgId()).get(0);
+					retransferKey(Ack2Request_Msg + aMessage.getInitMsgId())).get(0);
 			Message ackMessage = new Message(m.getFrom(), m.getTo(),
 					Ack2Request_Msg + m.getId(), m.getResponseSize());
 			ackMessage.setInitMsgId(m.getInitMsgId());
@@ -696,7 +709,7 @@ public class CacheRouter extends MessageRouter {
 			ackMessage.setFilename(m.getFilename());
 			ackMessage.setZeroForBitMap();
 			ackMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);	//Ϣʱ				
-			this.judgeForRetransfer.get(Ack2Request_Msg + m.getInitMsgId()).set(1, this.time_wait);	//ˢشʱ
+			this.judgeForRetransfer.get(retransferKey(Ack2Request_Msg + m.getInitMsgId())).set(1, this.time_wait);	//ˢشʱ
             this.createNewMessage(ackMessage);
 
 		} else{
@@ -725,8 +738,8 @@ public class CacheRouter extends MessageRouter {
 		 * ΪӦϼʱ Time_free
 		 * жӦļʱڴȷϢǷڣ ڵĻ£ڣһ
 		 */
-		if(this.judgeForRetransfer.containsKey("Chunk"+aMessage.getInitMsgId())){		
-			this.judgeForRetransfer.get("Chunk"+aMessage.getInitMsgId()).set(1, this.time_free);
+		if(this.judgeForRetransfer.containsKey(retransferKey("Chunk"+aMessage.getInitMsgId()))){		
+			this.judgeForRetransfer.get(retransferKey("Chunk"+aMessage.getInitMsgId())).set(1, this.time_free);
 		} else{
 			this.putJudgeForRetransfer(aMessage);
 		}
@@ -851,9 +864,9 @@ public class CacheRouter extends MessageRouter {
 	 */
 	public void RetransCtrlMsg_notDestination(Message aMessage){
 		/**	֤һļû,һļϢaMessage*/
-		if(this.judgeForRetransfer.containsKey(Ack2Ctrl_Msg + aMessage.getInitMsgId())){			
+		if(this.judgeForRetransfer.containsKey(retransferKey(Ack2Ctrl_Msg + aMessage.getInitMsgId()))){			
 			Message m = (Message) this.judgeForRetransfer.get(
-					Ack2Ctrl_Msg + aMessage.getInitMsgId()).get(0);
+					retransferKey(Ack2Ctrl_Msg + aMessage.getInitMsgId())).get(0);
 			Message ackMessage = new Message(m.getFrom(), m.getTo(),
 					Ack2Ctrl_Msg + m.getId(), m.getResponseSize());
 			
@@ -862,7 +875,7 @@ public class CacheRouter extends MessageRouter {
 			ackMessage.setFilename(m.getFilename());
 			ackMessage.setZeroForBitMap();
 			ackMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);	//Ϣʱ
-			this.judgeForRetransfer.get(Ack2Ctrl_Msg + m.getInitMsgId()).set(1, this.time_wait);
+			this.judgeForRetransfer.get(retransferKey(Ack2Ctrl_Msg + m.getInitMsgId())).set(1, this.time_wait);
             this.createNewMessage(ackMessage);
 		}else{
 			/** ֤ѡ·ɵ*/
@@ -58,10 +58,10 @@ public abstract class Connection {
 		this.linkType = fromInterface.getInterfaceType();
 		
 		// Whether to use the interrupt function
-		Settings s = new Settings("Interface");
-		InterruptEnable = s.getBoolean("enableInterrupt");
+		ScenarioConfig config = ScenarioConfig.getInstance();
+		InterruptEnable = config.isInterruptEnabled();
 		if (InterruptEnable == true) {
-			this.probabilityOfInterrupt = s.getDouble("probabilityOfInterrupt");
+			this.probabilityOfInterrupt = config.getInterruptProbability();
 		}
 	}
 
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import movement.SatelliteMovement;
+
+/**
+ * Finds the times when a link between two satellites rises (their
+ * distance drops to the transmit range) or sets (the distance grows
+ * beyond the range).
+ * <P>
+ * A search first brackets the event with a coarse pass over the orbit
+ * positions (the ephemeris tables of the hosts if they are built). The
+ * length of a coarse step follows the distance to the range boundary: the
+ * distance can't change faster than the sum of the largest orbit speeds of
+ * the two satellites, so no crossing is skipped while the hosts are far
+ * from the boundary. Near the boundary the step is the configured minimum
+ * step. The bracketed crossing is then found with Brent's method to the
+ * configured time tolerance.
+ * <P>
+ * A predictor reuses its coordinate arrays, so one instance must not be
+ * used by several threads at the same time.
+ */
+public class ContactWindowPredictor {
+	/** Value returned when no event is found in the search interval */
+	public static final double NO_EVENT = -1;
+	/** margin for the interpolation and integration errors of positions */
+	private static final double SPEED_MARGIN = 1.1;
+	private static final int MAX_REFINE_ITERATIONS = 100;
+
+	private final double range;
+	private final double minStep;
+	private final double tolerance;
+
+	private final double[] xyzA = new double[3];
+	private final double[] xyzB = new double[3];
+	private SatelliteMovement movementA;
+	private SatelliteMovement movementB;
+	private double maxRelativeSpeed;
+
+	/**
+	 * Creates a predictor
+	 * @param range Transmit range (km)
+	 * @param minStep Shortest coarse step (s); contacts shorter than this
+	 * may be missed if the hosts only graze the range
+	 * @param tolerance Time tolerance of the found events (s)
+	 */
+	public ContactWindowPredictor(double range, double minStep,
+			double tolerance) {
+		if (minStep <= 0 || tolerance <= 0) {
+			throw new IllegalArgumentException("Non-positive step (" +
+					minStep + ") or tolerance (" + tolerance + ")");
+		}
+		this.range = range;
+		this.minStep = minStep;
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Returns the first time in [from, to] when the hosts are within the
+	 * range of each other
+	 * @param a The first host
+	 * @param b The second host
+	 * @param from Start of the search interval
+	 * @param to End of the search interval
+	 * @return The rise time (from, if the hosts are already in range) or
+	 * {@link #NO_EVENT} if the hosts don't get in range
+	 */
+	public double findRise(DTNHost a, DTNHost b, double from, double to) {
+		return findCrossing(a, b, from, to, true);
+	}
+
+	/**
+	 * Returns the first time in [from, to] when the hosts are out of the
+	 * range of each other
+	 * @param a The first host
+	 * @param b The second host
+	 * @param from Start of the search interval
+	 * @param to End of the search interval
+	 * @return The set time (from, if the hosts are already out of range) or
+	 * {@link #NO_EVENT} if the hosts stay in range
+	 */
+	public double findSet(DTNHost a, DTNHost b, double from, double to) {
+		return findCrossing(a, b, from, to, false);
+	}
+
+	/**
+	 * Returns the distance of the hosts minus the range at time t; the
+	 * hosts are in range when the value is not positive
+	 */
+	private double separation(double t) {
+		movementA.getOrbitCoordinate(t, xyzA);
+		movementB.getOrbitCoordinate(t, xyzB);
+		double dx = xyzA[0] - xyzB[0];
+		double dy = xyzA[1] - xyzB[1];
+		double dz = xyzA[2] - xyzB[2];
+		return Math.sqrt(dx*dx + dy*dy + dz*dz) - range;
+	}
+
+	/**
+	 * Searches the first time when the in-range state of the hosts is the
+	 * wanted one
+	 * @param rise True to search for in range, false for out of range
+	 */
+	private double findCrossing(DTNHost a, DTNHost b, double from,
+			double to, boolean rise) {
+		movementA = (SatelliteMovement)a.getMovementModel();
+		movementB = (SatelliteMovement)b.getMovementModel();
+		maxRelativeSpeed = SPEED_MARGIN * (movementA.getMaxOrbitSpeed() +
+				movementB.getMaxOrbitSpeed());
+
+		double t0 = from;
+		double f0 = separation(t0);
+		if (isWanted(f0, rise)) {
+			return t0;
+		}
+		while (t0 < to) {
+			double t1 = Math.min(to, t0 +
+					Math.max(minStep, Math.abs(f0) / maxRelativeSpeed));
+			double f1 = separation(t1);
+			if (isWanted(f1, rise)) {
+				return refine(t0, f0, t1, f1, rise);
+			}
+			t0 = t1;
+			f0 = f1;
+		}
+		return NO_EVENT;
+	}
+
+	/**
+	 * Returns true if the separation value has the wanted in-range state
+	 */
+	private static boolean isWanted(double f, boolean rise) {
+		return rise ? f <= 0 : f > 0;
+	}
+
+	/**
+	 * Finds the crossing inside a bracket with Brent's method. The end of
+	 * the bracket that has the wanted state is returned, so the hosts
+	 * really are in (or out of) range at the returned time.
+	 * @param a Start of the bracket (not in the wanted state)
+	 * @param fa Separation at a
+	 * @param b End of the bracket (in the wanted state)
+	 * @param fb Separation at b
+	 * @param rise True if the wanted state is in range
+	 * @return The crossing time
+	 */
+	private double refine(double a, double fa, double b, double fb,
+			boolean rise) {
+		double c = a;
+		double fc = fa;
+		double d = b - a;
+		double e = d;
+
+		for (int i = 0; i < MAX_REFINE_ITERATIONS; i++) {
+			if ((fb > 0) == (fc > 0)) { // keep the root between b and c
+				c = a;
+				fc = fa;
+				d = b - a;
+				e = d;
+			}
+			if (Math.abs(fc) < Math.abs(fb)) {
+				a = b;
+				b = c;
+				c = a;
+				fa = fb;
+				fb = fc;
+				fc = fa;
+			}
+
+			double tol = tolerance / 2;
+			double m = (c - b) / 2;
+			if (Math.abs(m) <= tol || fb == 0) {
+				break;
+			}
+
+			if (Math.abs(e) >= tol && Math.abs(fa) > Math.abs(fb)) {
+				/* inverse quadratic interpolation or secant step */
+				double p, q, r;
+				double s = fb / fa;
+				if (a == c) {
+					p = 2 * m * s;
+					q = 1 - s;
+				} else {
+					q = fa / fc;
+					r = fb / fc;
+					p = s * (2 * m * q * (q - r) - (b - a) * (r - 1));
+					q = (q - 1) * (r - 1) * (s - 1);
+				}
+				if (p > 0) {
+					q = -q;
+				} else {
+					p = -p;
+				}
+				if (2 * p < Math.min(3 * m * q - Math.abs(tol * q),
+						Math.abs(e * q))) {
+					e = d;
+					d = p / q;
+				} else {
+					d = m;
+					e = d;
+				}
+			} else {
+				d = m;
+				e = d;
+			}
+
+			a = b;
+			fa = fb;
+			b += Math.abs(d) > tol ? d : (m > 0 ? tol : -tol);
+			fb = separation(b);
+		}
+
+		return isWanted(fb, rise) ? b : c;
+	}
+}
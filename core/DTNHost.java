@@ -4,17 +4,10 @@
  */
 package core;
 
-import satellite_orbit.SatelliteOrbit;
-import interfaces.SimpleSatelliteInterface;
-
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import Cache.File;
 import movement.MovementModel;
@@ -29,10 +22,13 @@ import Cache.CacheRouter;
  * A DTN capable host.
  */
 public class DTNHost implements Comparable<DTNHost> {
-	private static int nextAddress = 0;
 	private int address;
 
 	private Coord location; 	// where is the host
+	/** is the location computed only when it is asked */
+	private boolean lazyMovement;
+	/** simulation time of the location (with lazy movement) */
+	private double locationTime;
 	private Coord destination;	// where is it going
 
 	private MessageRouter router;
@@ -93,8 +89,6 @@ public class DTNHost implements Comparable<DTNHost> {
 	private HashMap<String, HashMap<String,File>> ChunkBuffer = new HashMap<String, HashMap<String,File>>();
 	/** 󶨻· */
 	private CacheRouter cacherouter;
-	/** routing parameter */
-	public static boolean multiThread;
 	
 	
 	/**------------------------------     DTNHost ӵı       --------------------------------*/
@@ -158,15 +152,18 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * subsequent calls.
 	 * @return The next address.
 	 */
-	private synchronized static int getNextAddress() {
-		return nextAddress++;	
+	private static int getNextAddress() {
+		SimulationContext ctx = SimulationContext.current();
+		synchronized (ctx) {
+			return ctx.nextAddress++;
+		}
 	}
 
 	/**
 	 * Reset the host and its interfaces
 	 */
 	public static void reset() {
-		nextAddress = 0;
+		SimulationContext.current().nextAddress = 0;
 	}
 
 	/**
@@ -248,9 +245,23 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @return The location
 	 */
 	public Coord getLocation() {
+		if (lazyMovement && locationTime != SimClock.getTime()) {
+			locationTime = SimClock.getTime();
+			move(0);
+		}
 		return this.location;
 	}
 
+	/**
+	 * Makes the host compute its location only when it is asked (see
+	 * {@link #getLocation()}) instead of being moved by the world at every
+	 * update interval
+	 */
+	public void setLazyMovement() {
+		this.lazyMovement = true;
+		this.locationTime = Double.NaN;
+	}
+
 	/**
 	 * Returns the Path this node is currently traveling or null if no
 	 * path is in use at the moment.
@@ -396,8 +407,6 @@ public class DTNHost implements Comparable<DTNHost> {
 		}
 		
 		if (simulateConnections) {
-			if (multiThread)
-				multiThreadInterfaceUpdate();
 			for (NetworkInterface i : net) {
 //				System.out.println("ǰڵΪ" + this.address
 //						+ "  DTNHsot.java ӿĿ" + net.size() + "  ӿͣ"
@@ -408,83 +417,23 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.router.update();
 	}
 	
-	/**
-	 * 
-	 */
-	public void multiThreadInterfaceUpdate(){
-		int nrofCPU = Runtime.getRuntime().availableProcessors();// adjust thread pool size according to the computer platform
-		//Create a thread pool
-		//ExecutorService pool = Executors.newFixedThreadPool(nrofCPU);
-		ExecutorService pool = Executors.newCachedThreadPool();
-		//create a task list contains return value
-		List<Callable> threadList = new ArrayList<Callable>();
-		List<Future<Boolean>> resultList = new ArrayList<Future<Boolean>>();
-		
-		for (NetworkInterface ni : net) {
-			threadList.add(new SingleCallable(ni.toString(), ni));
-		}
-		for (int i = 0; i < threadList.size(); i++) {
-			//execute the task and acquire 'future' object
-			Future<Boolean> future = pool.submit(threadList.get(i));
-			resultList.add(future);
-			
-			//acquire the return value from 'future' object
-
-//			if (resultList.size() >= nrofCPU) {
-//				boolean done = false;
-//				while (!done) {
-//					for (Future<Boolean> f : resultList) {
-//						if (f.isDone()) {
-//							done = true;
-//							resultList.remove(f);
-//						}
-//					}
-//				}
-//			}
-		}
-		boolean done = false;
-		while (!done){
-			if (resultList.get(resultList.size() - 1).isDone())
-				done = true;
-		}
-		pool.shutdown();
-	}
-	
 	/**
 	 * Enable or disable the multiThread method in the simulation according to user's setting 
 	 */
 	public static void setMultiThread(){
 		Settings s = new Settings("userSetting");
-		multiThread = s.getBoolean("multiThread");
+		SimulationContext.current().multiThread = s.getBoolean("multiThread");
 	}
+	
 	/**
-	 * Define the task in the thread pool, i.e., the calculation process of one node
+	 * Returns true if the multiThread method is enabled in the current
+	 * simulation
+	 * @see #setMultiThread()
 	 */
-	class SingleCallable implements Callable<Object> {
-		private String taskNum;
-		private NetworkInterface inf;
-		SingleCallable(String taskNum, NetworkInterface inf) {
-			this.taskNum = taskNum;
-			this.inf = inf;
-		}
-		/**
-		 * Execute the specific task in thread pool.
-		 */
-		public Object call() throws Exception {
-			((SimpleSatelliteInterface)this.inf).multiThreadUpdate();
-			return true;
-		}
-		/**
-		 * Returns a string presentation of the host.
-		 * @return Host's name
-		 */
-		public String toString() {
-			return taskNum;
-		}
+	public static boolean isMultiThread() {
+		return SimulationContext.current().multiThread;
 	}
 	
-	
-	
 	/** 
 	 * Tears down all connections for this host.
 	 */
@@ -723,10 +672,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param timeIncrement How long time the node moves
 	 */
 	public void move(double timeIncrement) {		
-		double possibleMovement;
-		double distance;
-		double dx, dy;
-		this.location.setLocation3D(((SatelliteMovement)this.movement).getSatelliteCoordinate(SimClock.getTime()));
+		((SatelliteMovement)this.movement).getSatelliteCoordinate(SimClock.getTime(), this.location);
 	}	
 	/**
 	 * calculate the Orbit coordinate parameters
@@ -832,22 +778,22 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @return
 	 */
 	public Coord getCoordinate(double time){
-		double[][] coordinate = new double[1][3];
-		//double[] t = new double[]{8000,0.1,15,0.0,0.0,0.0};;
-
-		SatelliteOrbit saot = new SatelliteOrbit(this.parameters);
-		//saot.SatelliteOrbit(t);
-		coordinate = saot.getSatelliteCoordinate(time);
-		Coord c = new Coord(0,0);
-		c.resetLocation((coordinate[0][0])+40000, (coordinate[0][1])+40000, (coordinate[0][2])+40000);
+		return getCoordinate(time, new Coord(0,0));
+	}
+	/**
+	 * Sets a coordinate to the location of getCoordinate(time) without
+	 * allocating
+	 * @param time
+	 * @param c the coordinate to set
+	 * @return c
+	 */
+	public Coord getCoordinate(double time, Coord c){
+		((SatelliteMovement)this.movement).getOrbitCoordinate(time, c);
+		c.resetLocation(c.getX()+40000, c.getY()+40000, c.getZ()+40000);
 		return c;
 	}
 	public double getPeriod(){
-
-		SatelliteOrbit saot = new SatelliteOrbit(this.parameters);
-		//saot.SatelliteOrbit(t);
-		double period = saot.getPeriod();
-		return period;
+		return ((SatelliteMovement)this.movement).getPeriod();
 	}
 	/**
 	 * ھݿ
@@ -918,6 +864,7 @@ public class DTNHost implements Comparable<DTNHost> {
 		HashMap<String, Integer> orbitCalculationWay = new HashMap<String, Integer>();
 		orbitCalculationWay.put("preOrbitCalculation", 1);
 		orbitCalculationWay.put("onlineOrbitCalculation", 2);
+		orbitCalculationWay.put(ScenarioConfig.CONTACT_PLAN_CALCULATION, 3);
 		
 		switch (orbitCalculationWay.get(option)){
 		case 1://ͨǰ洢ڵĹϢӶйвٵù㺯ԤͨԤ
@@ -925,6 +872,8 @@ public class DTNHost implements Comparable<DTNHost> {
 			break;
 		case 2:		
 			break;
+		case 3://the contact plan replaces the precomputed grid tables
+			break;
 		}
 
 	}
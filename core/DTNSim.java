@@ -29,6 +29,10 @@ public class DTNSim {
 	public static final String BATCH_MODE_FLAG = "-b";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/** If this option ({@value}) follows the batch mode run range, the
+	 * runs are executed in parallel child JVMs. The option must be followed
+	 * by the number of parallel runs; 0 uses one run per processor. */
+	public static final String PARALLEL_FLAG = "-j";
 	
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
@@ -50,7 +54,9 @@ public class DTNSim {
 	 * or a with a combination of starting run and the number of runs, 
 	 * delimited with a {@value #RANGE_DELIMETER}. Different settings from run
 	 * arrays are used for different runs (see 
-	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings 
+	 * {@link Settings#setRunIndex(int)}). The range can be followed by 
+	 * {@value #PARALLEL_FLAG} and the number of runs to execute at the same 
+	 * time (see {@link ParallelBatchRunner}). Following arguments are the settings 
 	 * files for the simulation run (if any). For GUI mode, the number before 
 	 * settings files (if given) is the run index to use for that run.
 	 * @param args Command line arguments
@@ -58,6 +64,7 @@ public class DTNSim {
 	public static void main(String[] args) {
 		boolean batchMode = false;
 		int nrofRuns[] = {0,1};
+		int nrofJobs = 1;
 		String confFiles[];
 		int firstConfIndex = 0;
 		int guiIndex = 0;
@@ -74,6 +81,10 @@ public class DTNSim {
                 else {
                     nrofRuns = parseNrofRuns(args[1]);
                     firstConfIndex = 2;
+                    if (args.length > 3 && args[2].equals(PARALLEL_FLAG)) {
+                    	nrofJobs = parseNrofJobs(args[3]);
+                    	firstConfIndex = 4;
+                    }
                 }
 			}
 			else { /* GUI mode */				
@@ -94,14 +105,30 @@ public class DTNSim {
 		
 		if (batchMode) {
 			long startTime = System.currentTimeMillis();
-			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
-				print("Run " + (i+1) + "/" + nrofRuns[1]);
-				Settings.setRunIndex(i);
-				resetForNextRun();
-				new DTNSimTextUI().start();
+			boolean allOk = true;
+			if (nrofJobs > 1 && nrofRuns[1] - nrofRuns[0] > 1) {
+				List<String> runConfFiles = new ArrayList<String>();
+				for (int i=firstConfIndex; i<confFiles.length; i++) {
+					runConfFiles.add(confFiles[i]);
+				}
+				print("Running runs " + (nrofRuns[0]+1) + "-" + nrofRuns[1] + 
+						" in " + nrofJobs + " parallel JVMs");
+				allOk = new ParallelBatchRunner(nrofRuns[0], nrofRuns[1], 
+						nrofJobs, runConfFiles).run();
+			}
+			else {
+				for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+					print("Run " + (i+1) + "/" + nrofRuns[1]);
+					Settings.setRunIndex(i);
+					resetForNextRun();
+					new DTNSimTextUI().start();
+				}
 			}
 			double duration = (System.currentTimeMillis() - startTime)/1000.0;
 			print("---\nAll done in " + String.format("%.2f", duration) + "s");
+			if (!allOk) {
+				System.exit(1);
+			}
 		}
 		else {		
 			Settings.setRunIndex(guiIndex);
@@ -255,6 +282,31 @@ public class DTNSim {
 		return val;
 	}
 	
+	/**
+	 * Parses the number of parallel runs from a command line argument
+	 * @param arg The argument to parse
+	 * @return The number of parallel runs; the number of processors if
+	 * the argument is 0
+	 */
+	private static int parseNrofJobs(String arg) {
+		int val = 1;
+		try {
+			val = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid argument '" + arg + "' for" +
+					" number of parallel runs");
+			System.exit(-1);
+		}
+		if (val < 0) {
+			System.err.println("Number of parallel runs can't be negative");
+			System.exit(-1);
+		}
+		if (val == 0) {
+			val = Runtime.getRuntime().availableProcessors();
+		}
+		return val;
+	}
+	
 	/**
 	 * Prints text to stdout
 	 * @param txt Text to print
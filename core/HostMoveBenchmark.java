@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.List;
+
+import util.AllocationCounter;
+
+/**
+ * Measures the garbage of the per tick location updates of the hosts of a
+ * scenario: moving the hosts ({@link DTNHost#move(double)}), updating the
+ * locations of their interfaces in the connectivity optimizers and
+ * predicting the locations of the hosts with
+ * {@link DTNHost#getCoordinate(double, Coord)}. The time and (if the JVM
+ * can count them) the bytes allocated per host and tick are printed for
+ * each phase; once the hosts are warmed up no bytes should be allocated.
+ * <P>
+ * Usage: <code>java core.HostMoveBenchmark [ticks] [settingsFiles]</code>
+ * where ticks is the number of measured ticks (default 1000). The hosts
+ * and the update interval are read from the settings.
+ */
+public class HostMoveBenchmark {
+	/** number of ticks run before the measurements */
+	public static final int WARMUP_TICKS = 200;
+	/** how far ahead the locations are predicted (s) */
+	public static final double PREDICTION_TIME = 60;
+
+	private static final int DEF_TICKS = 1000;
+	private static final String[] PHASES = {"move", "interface", "predict"};
+
+	public static void main(String[] args) {
+		int ticks = DEF_TICKS;
+		if (args.length > 0) {
+			ticks = Integer.parseInt(args[0]);
+		}
+		try {
+			if (args.length > 1) {
+				Settings.init(args[1]);
+				for (int i = 2; i < args.length; i++) {
+					Settings.addSettings(args[i]);
+				}
+			}
+		} catch (SettingsError er) {
+			System.err.println("Failed to load settings: " + er);
+			System.exit(-1);
+		}
+
+		SimScenario scenario = SimScenario.getInstance();
+		List<DTNHost> hosts = scenario.getHosts();
+		double interval = scenario.getUpdateInterval();
+		SimClock clock = SimClock.getInstance();
+
+		AllocationCounter counter = new AllocationCounter();
+
+		Coord predicted = new Coord(0, 0);
+		double check = 0;
+		long[] time = new long[PHASES.length];
+		long[] bytes = new long[PHASES.length];
+		for (int tick = 0; tick < WARMUP_TICKS + ticks; tick++) {
+			clock.setTime(tick * interval);
+			boolean measured = tick >= WARMUP_TICKS;
+			for (int phase = 0; phase < PHASES.length; phase++) {
+				long startBytes = counter.getAllocatedBytes();
+				long start = System.nanoTime();
+				for (int i = 0, n = hosts.size(); i < n; i++) {
+					DTNHost h = hosts.get(i);
+					switch (phase) {
+					case 0:
+						h.move(interval);
+						break;
+					case 1:
+						List<NetworkInterface> nis = h.getInterfaces();
+						for (int j = 0, m = nis.size(); j < m; j++) {
+							nis.get(j).updateLocation();
+						}
+						break;
+					default:
+						h.getCoordinate(SimClock.getTime() + PREDICTION_TIME,
+								predicted);
+						check += predicted.getX();
+					}
+				}
+				if (measured) {
+					time[phase] += System.nanoTime() - start;
+					bytes[phase] += counter.getAllocatedBytes() - startBytes;
+				}
+			}
+		}
+		if (Double.isNaN(check)) {
+			throw new IllegalStateException("NaN position");
+		}
+
+		long updates = (long)ticks * hosts.size();
+		System.out.println(hosts.size() + " hosts, " + ticks + " ticks");
+		System.out.println("phase\tns/host\tbytes/host");
+		for (int phase = 0; phase < PHASES.length; phase++) {
+			System.out.println(PHASES[phase] + "\t" +
+					String.format("%.1f", (double)time[phase] / updates) +
+					"\t" + (counter.isSupported() ?
+						String.format("%.2f", (double)bytes[phase] / updates) :
+						"n/a"));
+		}
+	}
+}
@@ -6,10 +6,11 @@ package core;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import Cache.File;
 
@@ -21,7 +22,6 @@ public class Message implements Comparable<Message> {
 	 * If set to true, the TTL is interpreted as seconds instead of minutes. 
 	 * Default=false. */
 	public static final String TTL_SECONDS_S = "Scenario.ttlSeconds";
-	private static boolean ttlAsSeconds = false;
 	
 	/** Value for infinite TTL of message */
 	public static final int INFINITE_TTL = -1;
@@ -29,12 +29,12 @@ public class Message implements Comparable<Message> {
 	private DTNHost to;
 	/** Identifier of the message */
 	private String id;
+	/** Key of the message ID in the {@link MessageIdRegistry} */
+	private int key;
 	/** Size of the message (bytes) */
 	private int size;
-	/** List of nodes this message has passed */
-	private List<DTNHost> path; 
-	/** Next unique identifier to be given */
-	private static int nextUniqueId;
+	/** Last node of the path this message has passed (shared by replicas) */
+	private PathNode path;
 	/** Unique ID of this message */
 	private int uniqueId;
 	/** The time this message was received */
@@ -54,6 +54,9 @@ public class Message implements Comparable<Message> {
 	 * stored in the properties should be immutable because only a shallow
 	 * copy of the properties is made when replicating messages */
 	private Map<String, Object> properties;
+	/** true if the properties map may be shared with a replica and must be
+	 * copied before it is modified */
+	private boolean propertiesShared;
 	
 	/** Application ID of the application that created the message */
 	private String	appID;
@@ -86,9 +89,13 @@ public class Message implements Comparable<Message> {
 	/** ϢЯļ */
 	private  File data;	
 	/** bitMapڶchunkIDӳ    */
-	private ArrayList<Integer> bitMap = new ArrayList<Integer>();
+	private ArrayList<Integer> bitMap;
+	/** bitMap븱ã޸ǰҪȸ */
+	private boolean bitMapShared;
 	/** жϰ */
 	public final static String SelectLabel = "PacketType";
+	/** ½ϢbitMapֵ */
+	private static final Integer[] ZERO_BITMAP = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
 
 	/**------------------------------   Messageӵı       --------------------------------*/
 	
@@ -159,6 +166,15 @@ public class Message implements Comparable<Message> {
 		return this.id;
 	}
 	
+	/**
+	 * Returns the key of the message ID in the {@link MessageIdRegistry}.
+	 * All replicates of the message have the same key.
+	 * @return The message key
+	 */
+	public int getKey() {
+		return this.key;
+	}
+	
 	/**
 	 * Returns an ID that is unique per message instance 
 	 * (different for replicates too)
@@ -181,15 +197,18 @@ public class Message implements Comparable<Message> {
 	 * @param node The node to add
 	 */
 	public void addNodeOnPath(DTNHost node) {
-		this.path.add(node);
+		this.path = new PathNode(node, this.path);
 	}
 	
 	/**
 	 * Returns a list of nodes this message has passed so far
-	 * @return The list as vector
+	 * @return The list (read only)
 	 */
 	public List<DTNHost> getHops() {
-		return this.path;
+		if (this.path == null) {
+			return Collections.emptyList();
+		}
+		return this.path.getHops();
 	}
 	
 	/**
@@ -197,7 +216,7 @@ public class Message implements Comparable<Message> {
 	 * @return the amount of hops this message has passed
 	 */
 	public int getHopCount() {
-		return this.path.size() -1;
+		return (this.path == null ? 0 : this.path.length) - 1;
 	}
 	
 	/** 
@@ -212,7 +231,7 @@ public class Message implements Comparable<Message> {
 			return Integer.MAX_VALUE;
 		}
 		else {
-			if (ttlAsSeconds) {
+			if (ScenarioConfig.getInstance().isTtlAsSeconds()) {
 				return (int)(this.initTtl -
 						(SimClock.getTime()-this.timeCreated) );				
 			} else {
@@ -256,6 +275,18 @@ public class Message implements Comparable<Message> {
 		return this.timeCreated;
 	}
 	
+	/**
+	 * Returns the simulation time when the TTL of this message passes
+	 * @return The expiry time or Double.MAX_VALUE if the TTL is infinite
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return this.timeCreated + (ScenarioConfig.getInstance().isTtlAsSeconds() ? this.initTtl : 
+			this.initTtl * 60.0);
+	}
+	
 	/**
 	 * If this message is a response to a request, sets the request message
 	 * @param request The request message
@@ -374,7 +405,9 @@ public class Message implements Comparable<Message> {
 			/* lazy creation to prevent performance overhead for classes
 			   that don't use the property feature  */
 			this.properties = new HashMap<String, Object>();
-		}		
+		} else if (this.propertiesShared) {
+			unshareProperties();
+		}
 
 		this.properties.put(key, value);
 	}
@@ -384,13 +417,21 @@ public class Message implements Comparable<Message> {
 	 * @param key The key which should be removed from properties
 	 */
 	public void removeProperty(String key){
-		if (this.properties == null) {
-			/* lazy creation to prevent performance overhead for classes
-			   that don't use the property feature  */
-			this.properties = new HashMap<String, Object>();
-		}	
+		if (this.properties == null || !this.properties.containsKey(key)) {
+			return;
+		}
+		if (this.propertiesShared) {
+			unshareProperties();
+		}
 		this.properties.remove(key);
-		
+	}
+	
+	/**
+	 * Replaces the shared properties map with a private copy
+	 */
+	private void unshareProperties() {
+		this.properties = new HashMap<String, Object>(this.properties);
+		this.propertiesShared = false;
 	}
 	/**
 	 * Returns a replicate of this message (identical except for the unique id)
@@ -411,12 +452,10 @@ public class Message implements Comparable<Message> {
 	}
 	
 	/**
-	 * Resets all static fields to default values
+	 * Resets the unique identifiers of the current simulation context
 	 */
 	public static void reset() {
-		nextUniqueId = 0;
-		Settings s = new Settings();
-		ttlAsSeconds = s.getBoolean(TTL_SECONDS_S, false);
+		SimulationContext.current().nextMessageId = 0;
 	}
 
 	/**
@@ -437,9 +476,8 @@ public class Message implements Comparable<Message> {
 	
 	/** bitMapԪ */
 	public void setZeroForBitMap(){
-		this.bitMap.clear();
-		for(int i=0;i<10;i++)
-			bitMap.add(0);
+		this.bitMap = new ArrayList<Integer>(Arrays.asList(ZERO_BITMAP));
+		this.bitMapShared = false;
 	}
 	/** ȡϢʼID  */
 	public String getInitMsgId(){
@@ -449,8 +487,12 @@ public class Message implements Comparable<Message> {
 	public void setInitMsgId(String s){
 		this.initMsgID = s;
 	}
-	/** õϢЯbitMap  */
+	/** õϢЯbitMap븱ʱȸһٷ  */
 	public ArrayList<Integer> getBitMap(){
+		if (this.bitMapShared) {
+			this.bitMap = new ArrayList<Integer>(this.bitMap);
+			this.bitMapShared = false;
+		}
 		return this.bitMap;
 	}
 	/** õӦڴļ      */
@@ -476,7 +518,7 @@ public class Message implements Comparable<Message> {
 	/** bitmap   */
 	public void setBitMap(ArrayList<Integer> bm){
 		this.bitMap = bm;
-		
+		this.bitMapShared = false;
 	}
 	/** ϢЯļ   */
 	public void setFile(File f){
@@ -503,9 +545,10 @@ public class Message implements Comparable<Message> {
 		this.from = from;
 		this.to = to;
 		this.id = id;
+		this.key = MessageIdRegistry.intern(id);
 		this.size = size;
-		this.path = new ArrayList<DTNHost>();								
-		this.uniqueId = nextUniqueId;  										//	Ϣidʶ
+		this.path = null;
+		this.uniqueId = SimulationContext.current().nextMessageId++;  										//	Ϣidʶ
 		this.initMsgID = id;
 		
 		this.timeCreated = SimClock.getTime();
@@ -516,7 +559,6 @@ public class Message implements Comparable<Message> {
 		this.properties = null;
 		this.appID = null;			
 		this.setZeroForBitMap();											//	bitMapʼ
-		Message.nextUniqueId++;
 		addNodeOnPath(from);
 	}
 	/**  д캯ΪӦϢݴʱе*/
@@ -524,13 +566,15 @@ public class Message implements Comparable<Message> {
 		this.from = from;
 		this.to = to;
 		this.id = id;
+		this.key = MessageIdRegistry.intern(id);
 		this.size = size;
-		this.path = new ArrayList<DTNHost>();								
-		this.uniqueId = nextUniqueId;  											//Ϣidʶ
+		this.path = null;
+		this.uniqueId = SimulationContext.current().nextMessageId++;  											//Ϣidʶ
 		this.data= new File();
 		this.data= this.data.copyFrom(Data);
 		this.data.copyData(Data);		
 		this.initMsgID = id;
+		this.bitMap = new ArrayList<Integer>();
 		
 		this.timeCreated = SimClock.getTime();
 		this.timeReceived = this.timeCreated;
@@ -539,7 +583,6 @@ public class Message implements Comparable<Message> {
 		this.requestMsg = null;
 		this.properties = null;
 		this.appID = null;
-		Message.nextUniqueId++;
 		addNodeOnPath(from);
 	}
 	/**
@@ -547,31 +590,44 @@ public class Message implements Comparable<Message> {
 	 * @return A replicate of the message
 	 */
 	public Message replicate() {
-		
-		if(this.getProperty(SelectLabel) != (Object)1){									// ϢΪӦϢ
-			Message m = new Message(from, to, id, size);
-			m.copyFrom(this);
-			m.filename=this.filename;
-			m.bitMap=this.bitMap;
-			m.initMsgID = this.initMsgID;			
-			return m;
-		} else{																			// ΪӦϢʱ
-			Message m = new Message(from, to, id, size, data);			
-			m.copyFrom(this);
-			m.filename= this.filename;
-			m.bitMap=this.bitMap;
-			m.initMsgID = this.initMsgID;
-			return m;
+		Message m = new Message(this);
+		if(this.getProperty(SelectLabel) == (Object)1){									// ΪӦϢʱļҪ
+			m.data = new File();
+			m.data = m.data.copyFrom(this.data);
+			m.data.copyData(this.data);
 		}
-	}
-	/**
-	 * Deep copies message data from other message. If new fields are
-	 * introduced to this class, most likely they should be copied here too
-	 * (unless done in constructor).
+		return m;
+	}
+	/**
+	 * Creates a replica of a message. The replica gets a new unique id and
+	 * shares the path, the properties and the bitMap of the original; they
+	 * are copied by the message that modifies them first.
+	 * @param m The original message
+	 */
+	private Message(Message m) {
+		this.from = m.from;
+		this.to = m.to;
+		this.id = m.id;
+		this.key = m.key;
+		this.size = m.size;
+		this.uniqueId = SimulationContext.current().nextMessageId++;
+		this.timeReceived = SimClock.getTime();
+		this.filename = m.filename;
+		this.initMsgID = m.initMsgID;
+		this.bitMap = m.bitMap;
+		this.bitMapShared = true;
+		m.bitMapShared = true;
+		copyFrom(m);
+	}
+	/**
+	 * Copies message data from other message. The path is immutable and the
+	 * properties are copied on write, so both are shared with the other
+	 * message. If new fields are introduced to this class, most likely they
+	 * should be copied here too (unless done in constructor).
 	 * @param m The message where the data is copied
 	 */
 	public void copyFrom(Message m) {
-		this.path = new ArrayList<DTNHost>(m.path);
+		this.path = m.path;
 		this.timeCreated = m.timeCreated;
 		this.responseSize = m.responseSize;
 		this.requestMsg  = m.requestMsg;
@@ -579,13 +635,52 @@ public class Message implements Comparable<Message> {
 		this.initTtl = m.initTtl;						
 		this.chunkID = m.chunkID;						//chunkIи
 
-		if (m.properties != null) {
-			Set<String> keys = m.properties.keySet();
-			for (String key : keys) {
-				updateProperty(key, m.getProperty(key));
+		if (m.properties == null || m.properties.isEmpty()) {
+			return;
+		}
+		if (this.properties == null || this.properties.isEmpty()) {
+			this.properties = m.properties;
+			this.propertiesShared = true;
+			m.propertiesShared = true;
+		} else {
+			for (Map.Entry<String, Object> e : m.properties.entrySet()) {
+				updateProperty(e.getKey(), e.getValue());
 			}
 		}
 	}	
+	
+	/**
+	 * A node of the path a message has passed. Nodes are immutable, so the
+	 * replicas of a message share the common beginning of their paths and
+	 * adding a hop needs only one new node.
+	 */
+	private static final class PathNode {
+		private final DTNHost host;
+		private final PathNode previous;
+		/** number of nodes on the path up to and including this one */
+		private final int length;
+		/** the path as a list, created when first asked */
+		private List<DTNHost> hops;
+		
+		private PathNode(DTNHost host, PathNode previous) {
+			this.host = host;
+			this.previous = previous;
+			this.length = previous == null ? 1 : previous.length + 1;
+		}
+		
+		private List<DTNHost> getHops() {
+			if (this.hops == null) {
+				DTNHost[] array = new DTNHost[this.length];
+				PathNode n = this;
+				for (int i = this.length - 1; i >= 0; i--) {
+					array[i] = n.host;
+					n = n.previous;
+				}
+				this.hops = Collections.unmodifiableList(Arrays.asList(array));
+			}
+			return this.hops;
+		}
+	}
 	/**------------------------------   Messageӵĺ       --------------------------------*/
 	
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Registry of message IDs. Each ID is mapped to a dense integer key
+ * (0, 1, 2, ...) when the first message with that ID is created; the
+ * replicates of a message share the key of the original. Routers use the
+ * keys in their buffers so that finding a message doesn't hash or compare
+ * the ID strings. Each {@link SimulationContext} has its own registry.
+ */
+public class MessageIdRegistry {
+	/** Key value for IDs that have no key */
+	public static final int NO_KEY = -1;
+
+	private final HashMap<String, Integer> keys;
+	private final ArrayList<String> ids;
+
+	static {
+		DTNSim.registerForReset(MessageIdRegistry.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Removes the keys of the current simulation context
+	 */
+	public static void reset() {
+		SimulationContext.current().removeState(MessageIdRegistry.class);
+	}
+
+	/**
+	 * Creates the registry of a simulation context
+	 */
+	private MessageIdRegistry() {
+		keys = new HashMap<String, Integer>();
+		ids = new ArrayList<String>();
+	}
+
+	/**
+	 * Returns the registry of the current simulation context
+	 */
+	private static MessageIdRegistry get() {
+		return SimulationContext.current().getState(MessageIdRegistry.class);
+	}
+
+	/**
+	 * Returns the key of a message ID and gives the ID a new key if it
+	 * doesn't have one yet
+	 * @param id The message ID
+	 * @return The key of the ID
+	 */
+	public static int intern(String id) {
+		MessageIdRegistry r = get();
+		synchronized (r) {
+			Integer key = r.keys.get(id);
+			if (key == null) {
+				key = r.ids.size();
+				r.keys.put(id, key);
+				r.ids.add(id);
+			}
+			return key;
+		}
+	}
+
+	/**
+	 * Returns the key of a message ID
+	 * @param id The message ID
+	 * @return The key of the ID or {@link #NO_KEY} if no message with the
+	 * ID has been created
+	 */
+	public static int getKey(String id) {
+		MessageIdRegistry r = get();
+		synchronized (r) {
+			Integer key = r.keys.get(id);
+			return key == null ? NO_KEY : key;
+		}
+	}
+
+	/**
+	 * Returns the message ID of a key
+	 * @param key The key
+	 * @return The message ID
+	 */
+	public static String getId(int key) {
+		MessageIdRegistry r = get();
+		synchronized (r) {
+			return r.ids.get(key);
+		}
+	}
+
+	/**
+	 * Returns the number of IDs that have a key
+	 * @return the number of IDs
+	 */
+	public static int size() {
+		MessageIdRegistry r = get();
+		synchronized (r) {
+			return r.ids.size();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import movement.MovementModel;
+import movement.Path;
+import routing.MessageRouter;
+import routing.PassiveRouter;
+import util.AllocationCounter;
+
+/**
+ * Measures the cost of forwarding a message over a chain of hosts the way
+ * the routers do it: every hop replicates the message and adds the
+ * receiving host on its path. The time and (if the JVM can count them)
+ * the bytes allocated per hop are printed for different numbers of
+ * message properties; both should stay about constant however long the
+ * path gets.
+ * <P>
+ * Usage: <code>java core.MessageReplicateBenchmark [hops] [rounds]</code>
+ * where hops is the length of the chain (default 64) and rounds the number
+ * of measured forwardings over the whole chain (default 20000). The
+ * settings are read from the default settings file.
+ */
+public class MessageReplicateBenchmark {
+	/** numbers of properties of the measured messages */
+	public static final int[] NROF_PROPERTIES = {0, 2, 8};
+	/** number of rounds run before the measurements */
+	public static final int WARMUP_ROUNDS = 5000;
+
+	private static final int DEF_HOPS = 64;
+	private static final int DEF_ROUNDS = 20000;
+
+	public static void main(String[] args) {
+		int hops = DEF_HOPS;
+		int rounds = DEF_ROUNDS;
+		if (args.length > 0) {
+			hops = Integer.parseInt(args[0]);
+		}
+		if (args.length > 1) {
+			rounds = Integer.parseInt(args[1]);
+		}
+
+		DTNHost.reset();
+		MessageRouter router = new PassiveRouter(
+				new Settings(SimScenario.GROUP_NS));
+		MovementModel movement = new StaticMovement();
+		List<DTNHost> chain = new ArrayList<DTNHost>();
+		for (int i = 0; i <= hops; i++) {
+			chain.add(new DTNHost(null, null, "n",
+					new ArrayList<NetworkInterface>(),
+					new ModuleCommunicationBus(), movement, router));
+		}
+
+		System.out.println("props\thops\tns/hop\tbytes/hop");
+		for (int p : NROF_PROPERTIES) {
+			run(chain, p, rounds);
+		}
+	}
+
+	/**
+	 * Forwards messages over the chain and prints the results
+	 * @param chain The hosts of the chain; the first one creates the
+	 * messages
+	 * @param nrofProperties Number of properties of the messages
+	 * @param rounds Number of measured rounds
+	 */
+	private static void run(List<DTNHost> chain, int nrofProperties,
+			int rounds) {
+		AllocationCounter counter = new AllocationCounter();
+
+		Message original = new Message(chain.get(0),
+				chain.get(chain.size() - 1), "M" + nrofProperties, 1000);
+		for (int i = 0; i < nrofProperties; i++) {
+			original.addProperty("prop" + i, i);
+		}
+
+		long time = 0;
+		long bytes = 0;
+		for (int r = 0; r < WARMUP_ROUNDS + rounds; r++) {
+			long startBytes = counter.getAllocatedBytes();
+			long start = System.nanoTime();
+			Message m = original;
+			for (int i = 1; i < chain.size(); i++) {
+				m = m.replicate();
+				m.addNodeOnPath(chain.get(i));
+			}
+			if (m.getHopCount() != chain.size() - 1) {
+				throw new SimError("Wrong hop count " + m.getHopCount());
+			}
+			if (r >= WARMUP_ROUNDS) {
+				time += System.nanoTime() - start;
+				bytes += counter.getAllocatedBytes() - startBytes;
+			}
+		}
+
+		long nrofHops = (long)rounds * (chain.size() - 1);
+		System.out.println(nrofProperties + "\t" + (chain.size() - 1) + "\t" +
+				String.format("%.1f", (double)time / nrofHops) + "\t" +
+				(counter.isSupported() ?
+					String.format("%.0f", (double)bytes / nrofHops) : "n/a"));
+	}
+
+	/**
+	 * Movement model of the hosts of the chain, which don't move
+	 */
+	private static class StaticMovement extends MovementModel {
+		@Override
+		public Path getPath() {
+			return null;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return new Coord(0, 0, 0);
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return Double.MAX_VALUE;
+		}
+
+		@Override
+		public MovementModel replicate() {
+			return this;
+		}
+	}
+}
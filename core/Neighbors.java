@@ -17,14 +17,21 @@ public class Neighbors {
 	public static final String SCENARIONAME_S = "Scenario";
 	/** simulation end time -setting id ({@value})*/
 	public static final String SIMULATION_END_TIME = "endTime";
+	/** shortest step of the contact prediction -setting id ({@value}).
+	 * Seconds, default 1. */
+	public static final String PREDICTION_STEP_S = "contactPredictionStep";
+	/** time tolerance of the predicted contact times -setting id
+	 * ({@value}). Seconds, default 0.01. */
+	public static final String PREDICTION_TOLERANCE_S =
+		"contactPredictionTolerance";
 	
-	private static final double INTERVAL = 1;
 	private static final double MIN_PREDICT_TIME = 100;
 	private double PREDICT_TIME = 600;
 	
 	private DTNHost host;
 	private double simEndTime;
 	private double msgTtl;
+	private ContactWindowPredictor predictor;
 	private double	transmitRange;//õĿͨоֵ
 	private HashMap<DTNHost, double[]> neighborsLiveTime= new HashMap<DTNHost, double[]>();
 	private HashMap<DTNHost, double[]> potentialNeighborsStartTime= new HashMap<DTNHost, double[]>();
@@ -36,6 +43,8 @@ public class Neighbors {
 	HashMap<DTNHost, List<Double>> leaveTime = new HashMap<DTNHost, List<Double>>();
 	HashMap<DTNHost, List<Double>> startTime = new HashMap<DTNHost, List<Double>>();
 	private double updateInterval = 1;
+	/** predicted locations of the hosts (reused between the calls) */
+	private HashMap<DTNHost, Coord> loc = new HashMap<DTNHost, Coord>();
 	
 	public List<DTNHost> getNeighbors(DTNHost host, double time){
 		int num = (int)((time-SimClock.getTime())/updateInterval);
@@ -43,28 +52,11 @@ public class Neighbors {
 		
 		List<DTNHost> neiHost = new ArrayList<DTNHost>();//ھб
 		
-		HashMap<DTNHost, Coord> loc = new HashMap<DTNHost, Coord>();
-		loc.clear();
-		Coord location = new Coord(0,0); 	// where is the host
-		if (!(time == SimClock.getTime())){
-			for (DTNHost h : hosts){//ָʱȫֽڵ
-				//location.my_Test(time, 0, h.getParameters());
-				//Coord xyz = new Coord(location.getX(), location.getY(), location.getZ());
-				Coord xyz = h.getCoordinate(time);
-				loc.put(h, xyz);//¼ָʱȫֽڵ
-			}
-		}
-		else{
-			for (DTNHost h : hosts){//ָʱȫֽڵ
-				loc.put(h, h.getLocation());//¼ָʱȫֽڵ
-			}
-		}
-		
-		Coord myLocation = loc.get(host);
+		Coord myLocation = getLocation(host, time);
 		for (DTNHost h : hosts){//ٷֱ𼰼
 			if (h == host)
 				continue;
-			if (JudgeNeighbors(myLocation, loc.get(h)) == true){
+			if (JudgeNeighbors(myLocation, getLocation(h, time)) == true){
 				//System.out.println(host+"  locate  "+myLocation+"  "+loc.get(host));
 				neiHost.add(h);
 			}
@@ -140,6 +132,9 @@ public class Neighbors {
 		this.host = host;
 		Settings s = new Settings(INTERFACENAME_S);
 		transmitRange = s.getDouble(TRANSMIT_RANGE_S);//ļжȡ
+		predictor = new ContactWindowPredictor(transmitRange, 
+				s.getDouble(PREDICTION_STEP_S, 1), 
+				s.getDouble(PREDICTION_TOLERANCE_S, 0.01));
 		Settings set = new Settings(SCENARIONAME_S);
 		simEndTime = set.getDouble(SIMULATION_END_TIME);
 		Settings se = new Settings("Group");
@@ -267,16 +262,11 @@ public class Neighbors {
 			}
 		}
 		
-		double timeNow = SimClock.getTime();
-		for (double time = timeNow; time < SimClock.getTime()+msgTtl*60; time += INTERVAL){//
-			if (JudgeNeighbors(this.host.getCoordinate(time), host.getCoordinate(time)) == false){//ȻھӷΧھͼʱ䣬
-				for (double var = time - INTERVAL; var <= time; var += 0.1){//ҵ˴ŷΧ֮ΪϸϵͳupdateIntervalΪ
-					if (JudgeNeighbors(this.host.getCoordinate(var), host.getCoordinate(var)) == false){
-						changeNeighborsLiveTime(host, var);
-						return true;//ѭ
-					}
-				}
-			}
+		double leaveTime = predictor.findSet(this.host, host, 
+				SimClock.getTime(), SimClock.getTime()+msgTtl*60);
+		if (leaveTime != ContactWindowPredictor.NO_EVENT){
+			changeNeighborsLiveTime(host, leaveTime);
+			return true;
 		}
 		return false;
 	}
@@ -351,38 +341,18 @@ public class Neighbors {
 		
 		removeExistNeighbors();//ȥѳΪھӵԤڵ!!!
 		
-		boolean findLabel = false;
 		for (DTNHost host : this.hosts){
-			findLabel = false;
 			if (this.neighbors.contains(host) || host.getAddress() == this.host.getAddress()){//ѾھӽڵԤ
 				continue;
 			}
 			else{
 				if (this.potentialNeighborsStartTime.containsKey(host) == false){//ѾԤľͲ	
-					for (double time = SimClock.getTime(); time < SimClock.getTime()+msgTtl*60; time += INTERVAL){
-						if (JudgeNeighbors(this.host.getCoordinate(time) , 
-								host.getCoordinate(time)) == true){//жʲôʱŻΪھ
-							for (double var = time - INTERVAL; var < time; var += 0.1){
-								if (JudgeNeighbors(this.host.getCoordinate(time) , 
-										host.getCoordinate(time)) == true){//жʲôʱŻΪھ
-									if (var > 0){
-										findLabel = true;
-										changePotentialNeighborsTime(host, time, time);
-										//System.out.print(this.host+"   "+host+"  "+SimClock.getTime()+"  allNeighborsStartTime is ");
-										//System.out.println(time+"  "+this.neighbors + "  "+this.potentialNeighborsStartTime+"  "+this.neighborsLiveTime);
-										break;
-									}
-								}
-							}
-							break;
-						}
-					}
-					if (findLabel == true)
-						continue;
-					else {
+					double time = predictor.findRise(this.host, host, 
+							SimClock.getTime(), SimClock.getTime()+msgTtl*60);
+					if (time != ContactWindowPredictor.NO_EVENT)
+						changePotentialNeighborsTime(host, time, time);
+					else
 						changePotentialNeighborsTime(host, -1, -1);//ȫҲûҵ˲ܳΪھӽڵ
-						//System.out.println(this.host+"   "+host+"  NeighborsStartTime is -1  "+this.potentialNeighborsStartTime);
-					}
 				}
 			}
 		}
@@ -392,36 +362,19 @@ public class Neighbors {
 	 * ԤܳΪھӵĽڵ뿪ʱ
 	 */
 	public void predictAllEndTime(){
-		boolean findLabel = false;
 		for (DTNHost host : this.potentialNeighborsStartTime.keySet()){
-			findLabel = false;
 			assert !this.neighbors.contains(host) : "Ԥڵ㱻ھӽڵ";
 			if (this.potentialNeighborsStartTime.get(host)[0] == 
 					this.potentialNeighborsStartTime.get(host)[1] && 
 					this.potentialNeighborsStartTime.get(host)[0] > 0){//֤δܳΪھӵĽڵ㲻ظԤ⣬ͬʱҲҪųܳΪھӵĽڵ
-				for (double time = this.potentialNeighborsStartTime.get(host)[0]; time < SimClock.getTime()+msgTtl*60; time += INTERVAL){
-					if (JudgeNeighbors(this.host.getCoordinate(time), 
-							host.getCoordinate(time)) == false){//жʲôʱŻ뿪
-						for (double var = time - INTERVAL; var < time; var += 0.1){
-							if (JudgeNeighbors(this.host.getCoordinate(time), 
-									host.getCoordinate(time)) == false){//жʲôʱŻ뿪
-								if (var > 0){
-									findLabel = true;
-									changePotentialNeighborsTime(host, 
-											this.potentialNeighborsStartTime.get(host)[0], var);
-									//System.out.print(this.host+"   "+host+"  allNeighborsEndTime is ");
-									//System.out.println("  "+this.potentialNeighborsStartTime.get(host)[0]+"  "+this.potentialNeighborsStartTime.get(host)[1]);
-									break;
-								}
-							}
-						}break;
-					}
-				}
-				if (findLabel == true)
-					continue;
+				double startTime = this.potentialNeighborsStartTime.get(host)[0];
+				double endTime = predictor.findSet(this.host, host, 
+						startTime, SimClock.getTime()+msgTtl*60);
+				if (endTime != ContactWindowPredictor.NO_EVENT)
+					changePotentialNeighborsTime(host, startTime, endTime);
 				else 			
 					changePotentialNeighborsTime(host, 
-							this.potentialNeighborsStartTime.get(host)[0], simEndTime);//˵ȫʱδĳʱΪھӺ󲻻뿪				
+							startTime, simEndTime);//˵ȫʱδĳʱΪھӺ󲻻뿪				
 			}
 		}
 	}
@@ -443,23 +396,15 @@ public class Neighbors {
 		for (NetworkInterface ni : potentialNeighbors){
 			if (!this.potentialNeighborsStartTime.containsKey(ni.getHost()) && 
 					!this.neighborsLiveTime.containsKey(ni.getHost())){//֤ÿڵֻԤһԤ⣬ѾھӵĽڵ㲻Ԥ
-				for (double time = SimClock.getTime(); time < endTime; time += INTERVAL){
-					if (JudgeNeighbors(this.host.getCoordinate(time) , 
-							ni.getHost().getCoordinate(time))){//жʲôʱŻΪھ
-						for (double var = time - INTERVAL; var < time; var += 0.1){
-							if (JudgeNeighbors(this.host.getCoordinate(var) , 
-									ni.getHost().getCoordinate(var))){
-								double[] liveTime = new double[2];
-								liveTime[0] = var;
-								liveTime[1] = var;
-								this.potentialNeighborsStartTime.put(ni.getHost(), liveTime);
-								System.out.print(this.host+"   "+ni.getHost()+"  potentialNeighborsStartTime is ");
-								System.out.println(liveTime[0]);
-								break;//ѭ
-							}
-						}
-					}
-					break;//ڶѭ
+				double time = predictor.findRise(this.host, ni.getHost(), 
+						SimClock.getTime(), endTime);
+				if (time != ContactWindowPredictor.NO_EVENT){
+					double[] liveTime = new double[2];
+					liveTime[0] = time;
+					liveTime[1] = time;
+					this.potentialNeighborsStartTime.put(ni.getHost(), liveTime);
+					System.out.print(this.host+"   "+ni.getHost()+"  potentialNeighborsStartTime is ");
+					System.out.println(liveTime[0]);
 				}
 			}	
 		}	
@@ -491,6 +436,24 @@ public class Neighbors {
 		//System.out.print(hosts.get(index));//ϵͳӡھӵĽڵ
 		//System.out.println(neighbors);
 	}
+	/**
+	 * Returns the location of a host at the given time. The current
+	 * locations are the hosts' own, the predicted ones are written to
+	 * coordinates that are reused by the next calls.
+	 * @param h The host
+	 * @param time The time
+	 * @return The location
+	 */
+	private Coord getLocation(DTNHost h, double time){
+		if (time == SimClock.getTime())
+			return h.getLocation();
+		Coord c = loc.get(h);
+		if (c == null){
+			c = new Coord(0,0);
+			loc.put(h, c);
+		}
+		return h.getCoordinate(time, c);
+	}
 	/**
 	 * ббDTNHostŵ̬ĩβȥֻڵ֮ľ
 	 * @param index
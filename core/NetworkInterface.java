@@ -8,6 +8,7 @@ import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
@@ -52,7 +53,6 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private static final int CON_UP = 1;
 	private static final int CON_DOWN = 2;
 
-	private static Random rng;
 	protected DTNHost host = null;
 
 	protected String interfacetype;
@@ -63,6 +63,11 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected double oldTransmitRange;
 	protected int transmitSpeed;
 	protected ConnectivityOptimizer optimizer = null;
+	/** interfaces found by {@link #findNearInterfaces()} (multi-thread mode) */
+	protected Collection<NetworkInterface> nearInterfaces;
+	/** reused result list of the near interface lookups */
+	protected List<NetworkInterface> nearBuffer = 
+		new ArrayList<NetworkInterface>();
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
@@ -102,10 +107,23 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	}
 	
 	/**
-	 * Resets the static fields of the class
+	 * Resets the random number stream of the interfaces in the current
+	 * context
 	 */
 	public static void reset() {
-		rng = new Random(0);
+		SimulationContext.current().interfaceRng = new Random(0);
+	}
+	
+	/**
+	 * Returns the random number stream of the interfaces in the current
+	 * context
+	 */
+	private static Random getRng() {
+		SimulationContext ctx = SimulationContext.current();
+		if (ctx.interfaceRng == null) {
+			ctx.interfaceRng = new Random(0);
+		}
+		return ctx.interfaceRng;
 	}
 	
 	/**
@@ -156,14 +174,14 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.linkDelay = ni.linkDelay;
 		
 		if (ni.activenessJitterMax > 0) {
-			this.activenessJitterValue = rng.nextInt(ni.activenessJitterMax);
+			this.activenessJitterValue = getRng().nextInt(ni.activenessJitterMax);
 		} else {
 			this.activenessJitterValue = 0;
 		}
 		
 		this.scanInterval = ni.scanInterval;
 		/* draw lastScanTime of [0 -- scanInterval] */
-		this.lastScanTime = rng.nextDouble() * this.scanInterval;
+		this.lastScanTime = getRng().nextDouble() * this.scanInterval;
 	}
 
 	/**
@@ -427,6 +445,28 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	abstract public void update();
 
+	/**
+	 * Updates the location of this interface in the connectivity optimizer
+	 * (if one is used).
+	 */
+	public void updateLocation() {
+		if (optimizer != null) {
+			optimizer.updateLocation(this);
+		}
+	}
+
+	/**
+	 * Looks up the interfaces that are near this interface and stores them
+	 * for the next {@link #update()}. Only reads the connectivity optimizer
+	 * and host locations, so once the locations of all interfaces are
+	 * updated, it can be called for different interfaces concurrently.
+	 */
+	public void findNearInterfaces() {
+		if (optimizer != null) {
+			this.nearInterfaces = optimizer.getNearInterfaces(this, nearBuffer);
+		}
+	}
+
 	/**
 	 * Notifies all the connection listeners about a change in connections.
 	 * @param type Type of the change (e.g. {@link #CON_DOWN} )
@@ -557,7 +597,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	protected double randomLinkDelay() {
 		double sizeDiff = linkDelayRange[0] == linkDelayRange[1] ? 0 : 
-			rng.nextDouble()*(linkDelayRange[1] - linkDelayRange[0]);
+			getRng().nextDouble()*(linkDelayRange[1] - linkDelayRange[0]);
 		return linkDelayRange[0] + sizeDiff;
 	}
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import report.Report;
+
+/**
+ * Runs the runs of a batch in parallel, each run in its own JVM. A child
+ * JVM runs one run index with the same class path, JVM options and
+ * settings files as this JVM, so the run has exactly the state of the
+ * first run of a new batch: no static state is shared with the other runs
+ * and a run gives the same results whatever runs are executed next to it.
+ * <P>
+ * The reports of the runs are written to their report directories as in
+ * a sequential batch. The console output of each run goes to the file
+ * <code>run&lt;index&gt;.log</code> in the report directory of the run, and
+ * the results of the runs are printed in run order.
+ */
+public class ParallelBatchRunner {
+	/** Main class of the child JVMs */
+	public static final String MAIN_CLASS = DTNSim.class.getName();
+	/** Prefix of the run log files */
+	public static final String LOG_PREFIX = "run";
+	/** Suffix of the run log files */
+	public static final String LOG_SUFFIX = ".log";
+
+	private final int firstRun;
+	private final int endRun;
+	private final int nrofJobs;
+	private final List<String> confFiles;
+
+	/**
+	 * Creates a runner
+	 * @param firstRun Index of the first run
+	 * @param endRun Index after the last run
+	 * @param nrofJobs Number of runs executed at the same time
+	 * @param confFiles Settings files of the runs
+	 */
+	public ParallelBatchRunner(int firstRun, int endRun, int nrofJobs,
+			List<String> confFiles) {
+		this.firstRun = firstRun;
+		this.endRun = endRun;
+		this.nrofJobs = nrofJobs;
+		this.confFiles = confFiles;
+	}
+
+	/**
+	 * Runs the batch and waits for all the runs to finish
+	 * @return True if all the runs succeeded
+	 */
+	public boolean run() {
+		int nrofRuns = endRun - firstRun;
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(nrofJobs, nrofRuns));
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		List<File> logs = new ArrayList<File>();
+
+		for (int i = firstRun; i < endRun; i++) {
+			File log = getLogFile(i);
+			logs.add(log);
+			results.add(executor.submit(new ChildRun(i, log)));
+		}
+		executor.shutdown();
+
+		boolean allOk = true;
+		for (int i = firstRun; i < endRun; i++) {
+			String run = "Run " + (i + 1) + "/" + endRun;
+			File log = logs.get(i - firstRun);
+			try {
+				int exitValue = results.get(i - firstRun).get();
+				if (exitValue == 0) {
+					System.out.println(run + " done, output in " + log);
+				} else {
+					System.out.println(run + " FAILED with exit value " +
+							exitValue + ", see " + log);
+					allOk = false;
+				}
+			} catch (InterruptedException e) {
+				throw new SimError(e);
+			} catch (ExecutionException e) {
+				System.out.println(run + " FAILED: " + e.getCause());
+				allOk = false;
+			}
+		}
+		return allOk;
+	}
+
+	/**
+	 * Returns the log file of a run; the file is put in the report
+	 * directory of the run
+	 */
+	private File getLogFile(int runIndex) {
+		Settings.setRunIndex(runIndex);
+		String dir = new Settings().getSetting(Report.REPORTDIR_SETTING);
+		File dirFile = new File(dir);
+		if (!dirFile.exists() && !dirFile.mkdirs()) {
+			throw new SimError("Couldn't create report directory '" +
+					dirFile.getAbsolutePath() + "'");
+		}
+		return new File(dirFile, LOG_PREFIX + (runIndex + 1) + LOG_SUFFIX);
+	}
+
+	/**
+	 * Returns the command line of the child JVM of a run
+	 */
+	private List<String> getCommand(int runIndex) {
+		List<String> cmd = new ArrayList<String>();
+		cmd.add(System.getProperty("java.home") + File.separator + "bin" +
+				File.separator + "java");
+		for (String arg :
+				ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			/* a debugger can only be attached to one of the JVMs */
+			if (!arg.contains("jdwp") && !arg.equals("-Xdebug")) {
+				cmd.add(arg);
+			}
+		}
+		cmd.add("-cp");
+		cmd.add(System.getProperty("java.class.path"));
+		cmd.add(MAIN_CLASS);
+		cmd.add(DTNSim.BATCH_MODE_FLAG);
+		cmd.add((runIndex + 1) + DTNSim.RANGE_DELIMETER + (runIndex + 1));
+		cmd.addAll(confFiles);
+		return cmd;
+	}
+
+	/**
+	 * One run in a child JVM
+	 */
+	private class ChildRun implements Callable<Integer> {
+		private final int runIndex;
+		private final File log;
+
+		public ChildRun(int runIndex, File log) {
+			this.runIndex = runIndex;
+			this.log = log;
+		}
+
+		public Integer call() throws IOException, InterruptedException {
+			ProcessBuilder pb = new ProcessBuilder(getCommand(runIndex));
+			pb.redirectErrorStream(true);
+			pb.redirectOutput(log);
+			Process p = pb.start();
+			try {
+				return p.waitFor();
+			} finally {
+				p.destroy();
+			}
+		}
+	}
+}
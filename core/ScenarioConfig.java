@@ -0,0 +1,253 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import movement.MovementModel;
+
+/**
+ * Immutable snapshot of the scenario wide settings that are needed while
+ * the simulation is running. The snapshot is resolved once when the
+ * {@link SimScenario} is created, so that movement models, interfaces and
+ * routers can read the values in their update paths without creating
+ * {@link Settings} objects (every new Settings object makes the next
+ * lookup re-read the settings files).
+ */
+public class ScenarioConfig {
+	/** Interface name space ({@value}) */
+	public static final String INTERFACE_NS = "Interface";
+	/** Group name space ({@value}) */
+	public static final String GROUP_NS = "Group";
+
+	/** Link interruption -setting id ({@value}). Boolean, default false. */
+	public static final String INTERRUPT_ENABLE_S = "enableInterrupt";
+	/** Link interruption probability -setting id ({@value}) */
+	public static final String INTERRUPT_PROBABILITY_S =
+		"probabilityOfInterrupt";
+	/** Retransmission time of messages -setting id ({@value}) */
+	public static final String RETRANSMIT_TIME_S = "reTransmitTime";
+	/** Message path label -setting id ({@value}). Boolean, default false. */
+	public static final String MSG_PATHLABEL_S = "msgPathLabel";
+	/** Online/precomputed orbit calculation -setting id ({@value}) */
+	public static final String ORBIT_CALCULATION_S =
+		"Pre_or_onlineOrbitCalculation";
+	/** Contact plan file of the grid routers -setting id ({@value}). Used
+	 * when the orbit calculation is {@link #CONTACT_PLAN_CALCULATION}. */
+	public static final String CONTACT_PLAN_S = "contactPlanFile";
+	/** Send queue mode -setting id ({@value}) */
+	public static final String SEND_QUEUE_MODE_S = "sendQueue";
+	/** Number of hosts -setting id ({@value}) */
+	public static final String NROF_HOSTS_S = "nrofHosts";
+	/** Number of LEO orbit planes -setting id ({@value}) */
+	public static final String NROF_LEO_PLANES_S = "nrofLEOPlanes";
+	/** CGR router type -setting id ({@value}) */
+	public static final String CGR_TYPE_S = "router.CGR.type";
+
+	/** orbit calculation option of the grid routers that reads the
+	 * neighbors from a contact plan file ({@value}) */
+	public static final String CONTACT_PLAN_CALCULATION =
+		"contactPlanCalculation";
+
+	/** random send queue mode (the default) */
+	public static final int Q_MODE_RANDOM = 1;
+	/** FIFO send queue mode */
+	public static final int Q_MODE_FIFO = 2;
+
+	private final int worldSizeX;
+	private final int worldSizeY;
+	private final int worldSizeZ;
+	private final double updateInterval;
+	private final double endTime;
+	private final boolean ttlAsSeconds;
+
+	private final boolean interruptEnabled;
+	private final double interruptProbability;
+	private final int reTransmitTime;
+
+	private final boolean msgPathLabel;
+	private final String orbitCalculation;
+	private final String contactPlanFile;
+	private final int sendQueueMode;
+	private final int nrofHosts;
+	private final int nrofLEOPlanes;
+	private final String cgrType;
+
+	static {
+		DTNSim.registerForReset(ScenarioConfig.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		SimulationContext.current().config = null;
+	}
+
+	/**
+	 * Returns the configuration snapshot of the current context and resolves
+	 * it from the settings if it doesn't exist yet.
+	 */
+	public static ScenarioConfig getInstance() {
+		SimulationContext ctx = SimulationContext.current();
+		if (ctx.config == null) {
+			ctx.config = new ScenarioConfig();
+		}
+		return ctx.config;
+	}
+
+	/**
+	 * Reads all the values of the snapshot. All settings are read here
+	 * with one Settings object per name space.
+	 */
+	private ScenarioConfig() {
+		Settings s = new Settings(SimScenario.SCENARIO_NS);
+		this.updateInterval = s.getDouble(SimScenario.UP_INT_S);
+		this.endTime = s.getDouble(SimScenario.END_TIME_S);
+		s.setNameSpace(null);
+		this.ttlAsSeconds = s.getBoolean(Message.TTL_SECONDS_S, false);
+
+		s.setNameSpace(MovementModel.MOVEMENT_MODEL_NS);
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE, 3);
+		this.worldSizeX = worldSize[0];
+		this.worldSizeY = worldSize[1];
+		this.worldSizeZ = worldSize[2];
+
+		s.setNameSpace(INTERFACE_NS);
+		this.interruptEnabled = s.getBoolean(INTERRUPT_ENABLE_S, false);
+		this.interruptProbability = interruptEnabled ?
+				s.getDouble(INTERRUPT_PROBABILITY_S) : 0;
+		this.reTransmitTime = s.getInt(RETRANSMIT_TIME_S, 0);
+
+		s.setNameSpace(GROUP_NS);
+		this.msgPathLabel = s.getBoolean(MSG_PATHLABEL_S, false);
+		this.orbitCalculation = s.contains(ORBIT_CALCULATION_S) ?
+				s.getSetting(ORBIT_CALCULATION_S) : null;
+		if (CONTACT_PLAN_CALCULATION.equals(orbitCalculation)) {
+			this.contactPlanFile = s.getSetting(CONTACT_PLAN_S);
+		} else {
+			this.contactPlanFile = null;
+		}
+		this.sendQueueMode = s.getInt(SEND_QUEUE_MODE_S, Q_MODE_RANDOM);
+		if (sendQueueMode < Q_MODE_RANDOM || sendQueueMode > Q_MODE_FIFO) {
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(SEND_QUEUE_MODE_S));
+		}
+		this.nrofHosts = s.getInt(NROF_HOSTS_S, 0);
+		this.nrofLEOPlanes = s.getInt(NROF_LEO_PLANES_S, 1);
+		this.cgrType = s.contains(CGR_TYPE_S) ? s.getSetting(CGR_TYPE_S) : "";
+	}
+
+	/**
+	 * @return size of the world in X direction
+	 */
+	public int getWorldSizeX() {
+		return this.worldSizeX;
+	}
+
+	/**
+	 * @return size of the world in Y direction
+	 */
+	public int getWorldSizeY() {
+		return this.worldSizeY;
+	}
+
+	/**
+	 * @return size of the world in Z direction
+	 */
+	public int getWorldSizeZ() {
+		return this.worldSizeZ;
+	}
+
+	/**
+	 * @return the update interval of the simulation
+	 */
+	public double getUpdateInterval() {
+		return this.updateInterval;
+	}
+
+	/**
+	 * @return the end time of the simulation
+	 */
+	public double getEndTime() {
+		return this.endTime;
+	}
+
+	/**
+	 * @return true if message TTLs are given in seconds instead of minutes
+	 */
+	public boolean isTtlAsSeconds() {
+		return this.ttlAsSeconds;
+	}
+
+	/**
+	 * @return true if links may be interrupted randomly
+	 */
+	public boolean isInterruptEnabled() {
+		return this.interruptEnabled;
+	}
+
+	/**
+	 * @return the probability of a link interruption (0 if disabled)
+	 */
+	public double getInterruptProbability() {
+		return this.interruptProbability;
+	}
+
+	/**
+	 * @return the retransmission time of new messages
+	 */
+	public int getReTransmitTime() {
+		return this.reTransmitTime;
+	}
+
+	/**
+	 * @return true if the routers label the messages with their paths
+	 */
+	public boolean isMsgPathLabel() {
+		return this.msgPathLabel;
+	}
+
+	/**
+	 * @return the orbit calculation option of the grid routers, or null
+	 * if it is not defined
+	 */
+	public String getOrbitCalculation() {
+		return this.orbitCalculation;
+	}
+
+	/**
+	 * @return the contact plan file of the grid routers, or null if the
+	 * orbit calculation isn't {@link #CONTACT_PLAN_CALCULATION}
+	 */
+	public String getContactPlanFile() {
+		return this.contactPlanFile;
+	}
+
+	/**
+	 * @return the send queue mode ({@link #Q_MODE_RANDOM} or
+	 * {@link #Q_MODE_FIFO})
+	 */
+	public int getSendQueueMode() {
+		return this.sendQueueMode;
+	}
+
+	/**
+	 * @return the number of hosts in a group
+	 */
+	public int getNrofHosts() {
+		return this.nrofHosts;
+	}
+
+	/**
+	 * @return the number of LEO orbit planes
+	 */
+	public int getNrofLEOPlanes() {
+		return this.nrofLEOPlanes;
+	}
+
+	/**
+	 * @return the CGR router type, or an empty string if it is not defined
+	 */
+	public String getCGRType() {
+		return this.cgrType;
+	}
+}
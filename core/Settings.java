@@ -24,13 +24,11 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
-import java.util.Set;
 import java.util.Stack;
 
 import util.Range;
@@ -52,8 +50,6 @@ import util.Range;
  * </P> 
  */
 public class Settings {
-	/** properties object where the setting files are read into */
-	protected static Properties props;
 	/** file name of the default settings file ({@value}) */
 	public static final String DEF_SETTINGS_FILE ="default_settings.txt";
 	
@@ -68,12 +64,9 @@ public class Settings {
 	 * @see #valueFillString(String) */
 	public static final String FILL_DELIMITER = "%%";
 	
-	/** Stream where all read settings are written to */
-	private static PrintStream out = null;
-	private static Set<String> writtenSettings = new HashSet<String>();
-	
-	/** run index for run-specific settings */
-	private static int runIndex = 0;
+	/* The properties object where the setting files are read into, the
+	 * stream where all read settings are written to, the run index and the
+	 * lookup count are kept in the current SimulationContext */
 	private String namespace = null; // namespace to look the settings from
 	private String secondaryNamespace = null;
 	private Stack<String> oldNamespaces;
@@ -85,7 +78,7 @@ public class Settings {
 	 * @param namespace Namespace to use
 	 */
 	public Settings(String namespace) {
-		props = null;//ÿζȫȫֲpropsգӶóÿڵnew Settings()ʱ¶ȡһļ
+		SimulationContext.current().props = null;//ÿζȫȫֲpropsգӶóÿڵnew Settings()ʱ¶ȡһļ
 		this.oldNamespaces = new Stack<String>();
 		this.secondaryNamespaces = new Stack<String>();
 		setNameSpace(namespace);
@@ -115,8 +108,20 @@ public class Settings {
 	 * -1 to disable run indexing
 	 */
 	public static void setRunIndex(int index) {
-		runIndex = index;
-		writtenSettings.clear();
+		SimulationContext ctx = SimulationContext.current();
+		ctx.runIndex = index;
+		ctx.writtenSettings.clear();
+	}
+	
+	/**
+	 * Returns the number of setting lookups (calls to
+	 * {@link #getSetting(String)}, directly or through the typed getters)
+	 * done so far in the current context. Used to check that no settings are read once the
+	 * simulation is running.
+	 * @return The number of setting lookups
+	 */
+	public static long getLookupCount() {
+		return SimulationContext.current().lookupCount;
 	}
 	
 	/**
@@ -212,7 +217,8 @@ public class Settings {
 			return null;
 		}
 		
-		if (props.getProperty(getFullPropertyName(setting, false)) != null) {
+		if (SimulationContext.current().props.getProperty(
+				getFullPropertyName(setting, false)) != null) {
 			return getFullPropertyName(setting, false);
 		}
 		
@@ -286,12 +292,15 @@ public class Settings {
 	 * @throws SettingsError If loading the settings file(s) didn't succeed
 	 */
 	public static void init(String propFile) throws SettingsError {
+		SimulationContext ctx = SimulationContext.current();
+		Properties props;
 		String outFile;
 		try {
 			if (new File(DEF_SETTINGS_FILE).exists()) {
 				Properties defProperties = new Properties();
 				InputStream in = Settings.class.getClass().getResourceAsStream("/default_settings.txt");
 				defProperties.load(in);
+				in.close();
 				//defProperties.load(new FileInputStream(DEF_SETTINGS_FILE));
 				props = new Properties(defProperties);
 			}
@@ -304,14 +313,15 @@ public class Settings {
 		} catch (IOException e) {
 			throw new SettingsError(e);
 		}
+		ctx.props = props;
 
 		outFile = props.getProperty(SETTING_OUTPUT_S);
 		if (outFile != null) {
 			if (outFile.trim().length() == 0) {
-				out = System.out;
+				ctx.settingsOut = System.out;
 			} else {
 				try {
-					out = new PrintStream(new File(outFile));
+					ctx.settingsOut = new PrintStream(new File(outFile));
 				} catch (FileNotFoundException e) {
 					throw new SettingsError("Can't open Settings output file:" +
 							e);
@@ -329,7 +339,8 @@ public class Settings {
 	 */
 	public static void addSettings(String propFile) throws SettingsError {
 		try {
-			props.load(new FileInputStream(propFile));
+			SimulationContext.current().props.load(
+					new FileInputStream(propFile));
 		} catch (IOException e) {
 			throw new SettingsError(e);
 		}
@@ -339,13 +350,14 @@ public class Settings {
 	 * Writes the given setting string to the settings output (if any)
 	 * @param setting The string to write
 	 */
-	private static void outputSetting(String setting) {
-		if (out != null && !writtenSettings.contains(setting)) {
-			if (writtenSettings.size() == 0) {
-				out.println("# Settings for run " + (runIndex + 1));
+	private static void outputSetting(SimulationContext ctx, String setting) {
+		PrintStream out = ctx.settingsOut;
+		if (out != null && !ctx.writtenSettings.contains(setting)) {
+			if (ctx.writtenSettings.size() == 0) {
+				out.println("# Settings for run " + (ctx.runIndex + 1));
 			}
 			out.println(setting);
-			writtenSettings.add(setting);
+			ctx.writtenSettings.add(setting);
 		}
 	}
 	
@@ -398,25 +410,27 @@ public class Settings {
 	 * the namespaces
 	 */
 	public String getSetting(String name) {
+		SimulationContext ctx = SimulationContext.current();
 		String fullPropName;
-		if (props == null) {
+		ctx.lookupCount++;
+		if (ctx.props == null) {
 			init(null);
 		}
 		fullPropName = getFullPropertyName(name, false);
-		String value = props.getProperty(fullPropName);
+		String value = ctx.props.getProperty(fullPropName);
 		
 		if (value != null) { // found value, check if run setting can be parsed
-			value = parseRunSetting(value.trim());
+			value = parseRunSetting(value.trim(), ctx.runIndex);
 		}
 			
 		if ((value == null || value.length() == 0) && 
 				this.secondaryNamespace != null) {
 			// try secondary namespace if the value wasn't found from primary
 			fullPropName = getFullPropertyName(name, true);
-			value = props.getProperty(fullPropName);
+			value = ctx.props.getProperty(fullPropName);
 			
 			if (value != null) {
-				value = parseRunSetting(value.trim());
+				value = parseRunSetting(value.trim(), ctx.runIndex);
 			}
 		}
 		
@@ -425,7 +439,7 @@ public class Settings {
 					getPropertyNamesString(name));
 		}
 		
-		outputSetting(fullPropName + " = " + value);
+		outputSetting(ctx, fullPropName + " = " + value);
 		return value;
 	}
 	
@@ -448,9 +462,10 @@ public class Settings {
 	/**
 	 * Parses run-specific settings from a String value
 	 * @param value The String to parse
+	 * @param runIndex The run index
 	 * @return The runIndex % arrayLength'th value of the run array
 	 */
-	private static String parseRunSetting(String value) {
+	private static String parseRunSetting(String value, int runIndex) {
 		final String RUN_ARRAY_START = "[";
 		final String RUN_ARRAY_END = "]";
 		final String RUN_ARRAY_DELIM = ";";
@@ -919,7 +934,7 @@ public class Settings {
 	 * @return a String representation of the stored settings 
 	 */
 	public String toString() {
-		return props.toString();
+		return SimulationContext.current().props.toString();
 	}
 	
 	/**
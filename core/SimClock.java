@@ -5,13 +5,17 @@
 package core;
 
 /**
- * Wall clock for checking the simulation time.
+ * Wall clock for checking the simulation time. Each
+ * {@link SimulationContext} has its own clock; the static methods return
+ * the time of the current context.
  */
 public class SimClock {
-	private static double clockTime = 0.0;
-	private static SimClock clock = null;
+	/** context whose time this clock changes */
+	private final SimulationContext context;
 	
-	private SimClock() {}
+	private SimClock(SimulationContext context) {
+		this.context = context;
+	}
 	
 	static {
 		DTNSim.registerForReset(SimClock.class.getCanonicalName());
@@ -23,10 +27,11 @@ public class SimClock {
 	 * @return The instance of this clock
 	 */
 	public static SimClock getInstance() {
-		if (clock == null) {
-			clock = new SimClock();
+		SimulationContext ctx = SimulationContext.current();
+		if (ctx.clock == null) {
+			ctx.clock = new SimClock(ctx);
 		}
-		return clock;
+		return ctx.clock;
 	}
 	
 	/**
@@ -34,7 +39,7 @@ public class SimClock {
 	 * @return Time as a double
 	 */
 	public static double getTime() {
-		return clockTime;
+		return SimulationContext.current().clockTime;
 	}
 	
 	/**
@@ -42,7 +47,7 @@ public class SimClock {
 	 * @return Time as integer
 	 */
 	public static int getIntTime() {
-		return (int)Math.round(clockTime);
+		return (int)Math.round(getTime());
 	}
 	
 	/**
@@ -52,7 +57,7 @@ public class SimClock {
 	 * @return The sim time
 	 */
 	public static String getFormattedTime(int decimals) {
-		return String.format("%." + decimals + "f", clockTime);
+		return String.format("%." + decimals + "f", getTime());
 	}
 	
 	/**
@@ -60,7 +65,7 @@ public class SimClock {
 	 * @param time Nrof seconds to increase the time
 	 */
 	public void advance(double time) {
-		clockTime += time;
+		context.clockTime += time;
 	}
 	
 	/**
@@ -68,7 +73,7 @@ public class SimClock {
 	 * @param time the time to set
 	 */
 	public void setTime(double time) {
-		clockTime = time;
+		context.clockTime = time;
 	}
 	
 	/**
@@ -76,13 +81,13 @@ public class SimClock {
 	 * @return the current simulation time in a string 
 	 */
 	public String toString() {
-		return "SimTime: " + clockTime;
+		return "SimTime: " + context.clockTime;
 	}
 	
 	/**
-	 * Resets the static fields of the class
+	 * Resets the time of the current context
 	 */
 	public static void reset() {
-		clockTime = 0;
+		SimulationContext.current().clockTime = 0;
 	}
 }
@@ -21,6 +21,7 @@ import movement.MovementModel;
 import movement.SatelliteMovement;
 import movement.map.SimMap;
 import routing.MessageRouter;
+import satellite_orbit.OrbitEphemeris;
 
 /**
  * A simulation scenario used for getting and storing the settings of a
@@ -28,9 +29,6 @@ import routing.MessageRouter;
  */
 public class SimScenario implements Serializable {
 	
-	/** a way to get a hold of this... */	
-	private static SimScenario myinstance=null;
-
 	/** namespace of scenario settings ({@value})*/
 	public static final String SCENARIO_NS = "Scenario";
 	/** number of host groups -setting id ({@value})*/
@@ -119,6 +117,8 @@ public class SimScenario implements Serializable {
 	private List<UpdateListener> updateListeners;
 	/** Global application event listeners */
 	private List<ApplicationListener> appListeners;
+	/** Settings snapshot used while the simulation is running */
+	private ScenarioConfig config;
 
 	/****/
 	/** user setting in the sim -setting id ({@value})*/
@@ -159,13 +159,15 @@ public class SimScenario implements Serializable {
 	}
 	
 	public static void reset() {
-		myinstance = null;
+		SimulationContext.current().scenario = null;
 	}
 
 	/**
 	 * Creates a scenario based on Settings object.
 	 */
 	public SimScenario() {
+		ScenarioConfig.reset();
+		this.config = ScenarioConfig.getInstance();
 		Settings s = new Settings(SCENARIO_NS);
 		nrofGroups = s.getInt(NROF_GROUPS_S);
 		
@@ -206,14 +208,16 @@ public class SimScenario implements Serializable {
 	}
 	
 	/**
-	 * Returns the SimScenario instance and creates one if it doesn't exist yet
+	 * Returns the SimScenario instance of the current context and creates one
+	 * if it doesn't exist yet
 	 */
 	public static SimScenario getInstance() {
 		reset();//ԭȳʼķ滷
-		if (myinstance == null) {
-			myinstance = new SimScenario();
+		SimulationContext ctx = SimulationContext.current();
+		if (ctx.scenario == null) {
+			ctx.scenario = new SimScenario();
 		}
-		return myinstance;
+		return ctx.scenario;
 	}
 
 
@@ -364,6 +368,14 @@ public class SimScenario implements Serializable {
 		return this.world;
 	}
 	
+	/**
+	 * Returns the settings snapshot of this scenario
+	 * @return the ScenarioConfig object
+	 */
+	public ScenarioConfig getConfig() {
+		return this.config;
+	}
+	
 	/**
 	 * ÷ʱ
 	 */
@@ -676,12 +688,20 @@ public class SimScenario implements Serializable {
      * @param s
      */
     public void setOrbitInfo(Settings s) {      
+        double maxEphemerisError = -1;
         for (DTNHost host : hosts) {
             if (s.getSetting(MOVEMENT_MODEL_S).contains("SatelliteMovement")) {
                 MovementModel mmProto = host.getMovementModel();
                 ((SatelliteMovement) mmProto).setOrbitInfo(orbitInfo, hosts);
+                
+                OrbitEphemeris ephemeris = ((SatelliteMovement) mmProto).getEphemeris();
+                if (ephemeris != null)
+                	maxEphemerisError = Math.max(maxEphemerisError, ephemeris.getMaxError());
             }
         }
+        if (maxEphemerisError >= 0)
+        	System.out.println("Ephemeris tables built for " + hosts.size() + 
+        			" hosts, max interpolation error " + maxEphemerisError + " km");
     }
 
     public double[] generateOrbitParameters(Settings s, String type, 
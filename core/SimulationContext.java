@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.PrintStream;
+import java.lang.reflect.Constructor;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * The state of one simulation: the clock, the scenario, the settings, the
+ * random number streams, the worker threads and the per run state of the
+ * optimizers and routers. The static accessors of the simulator (e.g.,
+ * {@link SimClock#getTime()}, {@link SimScenario#getInstance()} and
+ * {@link Settings}) use the context of the calling thread, so several
+ * simulations can run in the same JVM at the same time, each in its own
+ * thread and with its own context:
+ * <PRE>
+ * SimulationContext ctx = new SimulationContext(runIndex);
+ * ctx.run(new Runnable() {
+ *     public void run() { new DTNSimTextUI().start(); }
+ * });
+ * </PRE>
+ * Threads that are not running a context use the default context, so a
+ * single simulation doesn't need to know about contexts at all. The reset
+ * methods of the classes (see {@link DTNSim#registerForReset(String)})
+ * reset the state of the current context.
+ * <P>
+ * Classes outside the core package keep their per run state in a state
+ * object of the context ({@link #getState(Class)}) instead of in static
+ * fields.
+ */
+public class SimulationContext {
+	/** context of the threads that haven't bound a context */
+	private static final SimulationContext DEFAULT = new SimulationContext(0);
+	private static final ThreadLocal<SimulationContext> current =
+		new ThreadLocal<SimulationContext>();
+
+	/** current simulation time */
+	double clockTime;
+	SimClock clock;
+	SimScenario scenario;
+	ScenarioConfig config;
+
+	/** settings of the context; null until the first lookup */
+	Properties props;
+	PrintStream settingsOut;
+	Set<String> writtenSettings = new HashSet<String>();
+	int runIndex;
+	long lookupCount;
+
+	int nextAddress;
+	/** next unique identifier of the messages */
+	int nextMessageId;
+	boolean multiThread;
+	/** random number stream of the network interfaces */
+	Random interfaceRng;
+
+	private ForkJoinPool workers;
+	private final ConcurrentHashMap<Class<?>, Object> states =
+		new ConcurrentHashMap<Class<?>, Object>();
+
+	/**
+	 * Creates a context. The settings are read from the default settings
+	 * file on the first lookup unless {@link Settings#init(String)} is
+	 * called in the context before that.
+	 * @param runIndex The run index of the settings of the context
+	 * (see {@link Settings#setRunIndex(int)})
+	 */
+	public SimulationContext(int runIndex) {
+		this.runIndex = runIndex;
+	}
+
+	/**
+	 * Returns the context of the calling thread
+	 * @return The context the thread is running, or the default context
+	 */
+	public static SimulationContext current() {
+		SimulationContext ctx = current.get();
+		return ctx != null ? ctx : DEFAULT;
+	}
+
+	/**
+	 * Returns the context that is used by the threads that haven't bound
+	 * a context
+	 * @return The default context
+	 */
+	public static SimulationContext getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Runs a task in this context in the calling thread. The previous
+	 * context of the thread is restored when the task returns.
+	 * @param task The task to run
+	 */
+	public void run(Runnable task) {
+		SimulationContext old = current.get();
+		current.set(this);
+		try {
+			task.run();
+		} finally {
+			current.set(old);
+		}
+	}
+
+	/**
+	 * Runs a task in this context in the calling thread and returns the
+	 * result of the task
+	 * @param task The task to run
+	 * @return The result of the task
+	 * @throws Exception if the task throws an exception
+	 */
+	public <V> V call(Callable<V> task) throws Exception {
+		SimulationContext old = current.get();
+		current.set(this);
+		try {
+			return task.call();
+		} finally {
+			current.set(old);
+		}
+	}
+
+	/**
+	 * Returns the state object of a class in this context. The object is
+	 * created with the no-argument constructor of the class the first time
+	 * it is requested.
+	 * @param type Class of the state object
+	 * @return The state object
+	 */
+	public <T> T getState(Class<T> type) {
+		Object state = states.get(type);
+		if (state == null) {
+			state = newState(type);
+			Object old = states.putIfAbsent(type, state);
+			if (old != null) {
+				state = old;
+			}
+		}
+		return type.cast(state);
+	}
+
+	/**
+	 * Removes the state object of a class; the next
+	 * {@link #getState(Class)} creates a new object
+	 * @param type Class of the state object
+	 */
+	public void removeState(Class<?> type) {
+		states.remove(type);
+	}
+
+	private static Object newState(Class<?> type) {
+		try {
+			Constructor<?> c = type.getDeclaredConstructor();
+			c.setAccessible(true);
+			return c.newInstance();
+		} catch (Exception e) {
+			throw new SimError("Can't create state object of " + type, e);
+		}
+	}
+
+	/**
+	 * Returns the worker pool of the parallel update phases of this
+	 * context. The worker threads run in this context.
+	 * @param nrofThreads Number of threads in the pool
+	 * @return The pool
+	 */
+	synchronized ForkJoinPool getWorkers(int nrofThreads) {
+		if (workers == null || workers.getParallelism() != nrofThreads) {
+			if (workers != null) {
+				workers.shutdown();
+			}
+			workers = new ForkJoinPool(nrofThreads, new WorkerFactory(),
+					null, false);
+		}
+		return workers;
+	}
+
+	/**
+	 * Releases the resources of the context (the worker threads). The
+	 * context can still be used after this.
+	 */
+	public synchronized void close() {
+		if (workers != null) {
+			workers.shutdown();
+			workers = null;
+		}
+	}
+
+	/**
+	 * Creates the worker threads of the context
+	 */
+	private class WorkerFactory
+			implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+		public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			return new Worker(pool);
+		}
+	}
+
+	/**
+	 * Worker thread that runs in the context
+	 */
+	private class Worker extends ForkJoinWorkerThread {
+		Worker(ForkJoinPool pool) {
+			super(pool);
+		}
+
+		protected void onStart() {
+			super.onStart();
+			current.set(SimulationContext.this);
+		}
+	}
+}
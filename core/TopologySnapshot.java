@@ -0,0 +1,358 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import util.SparseGrid;
+
+/**
+ * Distance based topology of a set of hosts at one simulation time.
+ * Two hosts are neighbors if their distance is at most the range of the
+ * snapshot. The adjacency is stored in compressed sparse row form indexed
+ * by host address: the neighbors of the host with address a are
+ * {@link #getNeighbor(int)} for the indexes from
+ * {@link #getNeighborStart(int)} (inclusive) to
+ * {@link #getNeighborEnd(int)} (exclusive), in address order.
+ * <P>
+ * The snapshot is rebuilt at most once per simulation time (or when its
+ * hosts change). Its version is increased only when the adjacency is
+ * different from the previous build, so users can keep results computed
+ * from the topology as long as the version stays the same. Snapshots are
+ * shared by all routers through {@link #getTopology(Collection, double)}
+ * and must not be modified by them.
+ */
+public class TopologySnapshot {
+	private static final int INITIAL_NEIGHBORS = 16;
+
+	static {
+		DTNSim.registerForReset(TopologySnapshot.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Removes the snapshots of the current simulation context
+	 */
+	public static void reset() {
+		SimulationContext.current().removeState(Snapshots.class);
+	}
+
+	/**
+	 * Returns the topology of the hosts at the current simulation time. The
+	 * snapshot is built once per update interval and shared by all callers
+	 * that use the same hosts and range in the current simulation context.
+	 * @param hosts The hosts of the topology
+	 * @param range Largest distance of neighbors
+	 * @return The topology snapshot (read only)
+	 */
+	public static TopologySnapshot getTopology(
+			Collection<DTNHost> hosts, double range) {
+		Snapshots snapshots = 
+			SimulationContext.current().getState(Snapshots.class);
+		synchronized (snapshots) {
+			TopologySnapshot topology = snapshots.get(range);
+			if (topology == null) {
+				topology = new TopologySnapshot(range);
+				snapshots.put(range, topology);
+			}
+			topology.update(SimClock.getTime(), hosts);
+			return topology;
+		}
+	}
+
+	/**
+	 * The snapshots of one simulation context by range
+	 */
+	static class Snapshots extends HashMap<Double, TopologySnapshot> {
+		private static final long serialVersionUID = 1L;
+	}
+
+	private final double range;
+	private Collection<DTNHost> hosts;
+	private int nrofHosts;
+	private double buildTime;
+	private int version;
+	private int rebuildCount;
+
+	private DTNHost[] hostsByAddress;
+	private int[] offsets;
+	private int[] neighbors;
+	/** neighbor array of the previous build, reused by the next one */
+	private int[] spareNeighbors;
+
+	/**
+	 * Creates a snapshot that is built when it is first updated
+	 * @param range Largest distance of neighbors
+	 */
+	public TopologySnapshot(double range) {
+		this.range = range;
+		this.hosts = null;
+		this.nrofHosts = 0;
+		this.buildTime = -1;
+		this.version = 0;
+		this.rebuildCount = 0;
+		this.hostsByAddress = new DTNHost[0];
+		this.offsets = new int[1];
+		this.neighbors = new int[0];
+		this.spareNeighbors = new int[0];
+	}
+
+	/**
+	 * Rebuilds the snapshot if it was built at another time or for other
+	 * hosts than the given ones
+	 * @param time The current simulation time
+	 * @param hosts The hosts of the topology
+	 */
+	public synchronized void update(double time, Collection<DTNHost> hosts) {
+		boolean hostsChanged = hosts != this.hosts ||
+			hosts.size() != this.nrofHosts;
+		if (time == this.buildTime && !hostsChanged) {
+			return;
+		}
+		this.hosts = hosts;
+		this.nrofHosts = hosts.size();
+		if (rebuild() || hostsChanged) {
+			this.version++;
+		}
+		this.buildTime = time;
+		this.rebuildCount++;
+	}
+
+	/**
+	 * Computes the adjacency from the current locations of the hosts. The
+	 * hosts are put in a grid whose cell size is the range, so only the
+	 * hosts of the 27 surrounding cells are checked for each host.
+	 * @return True if the adjacency differs from the previous one
+	 */
+	private boolean rebuild() {
+		int maxAddress = -1;
+		for (DTNHost h : hosts) {
+			maxAddress = Math.max(maxAddress, h.getAddress());
+		}
+		DTNHost[] byAddress = new DTNHost[maxAddress + 1];
+		Coord[] locations = new Coord[maxAddress + 1];
+		int[][] cellOf = new int[maxAddress + 1][];
+
+		SparseGrid<AddressList> grid = new SparseGrid<AddressList>() {
+			protected AddressList createCell(int row, int col, int z) {
+				return new AddressList();
+			}
+		};
+		for (DTNHost h : hosts) {
+			int a = h.getAddress();
+			Coord c = h.getLocation();
+			byAddress[a] = h;
+			locations[a] = c;
+			cellOf[a] = new int[] {cellIndex(c.getY()), cellIndex(c.getX()),
+					cellIndex(c.getZ())};
+			grid.getCell(cellOf[a][0], cellOf[a][1], cellOf[a][2]).add(a);
+		}
+
+		int[] offs = new int[maxAddress + 2];
+		int[] nbrs = this.spareNeighbors.length > 0 ? this.spareNeighbors :
+			new int[INITIAL_NEIGHBORS];
+		int count = 0;
+		for (int a = 0; a <= maxAddress; a++) {
+			offs[a] = count;
+			if (byAddress[a] == null) {
+				continue;
+			}
+			int[] cell = cellOf[a];
+			for (int i = cell[0] - 1; i <= cell[0] + 1; i++) {
+				for (int j = cell[1] - 1; j <= cell[1] + 1; j++) {
+					for (int k = cell[2] - 1; k <= cell[2] + 1; k++) {
+						AddressList list = grid.getExistingCell(i, j, k);
+						if (list == null) {
+							continue;
+						}
+						for (int n = 0; n < list.size; n++) {
+							int b = list.addresses[n];
+							if (b == a ||
+								locations[a].distance(locations[b]) > range) {
+								continue;
+							}
+							if (count == nbrs.length) {
+								nbrs = Arrays.copyOf(nbrs, 2 * count);
+							}
+							nbrs[count++] = b;
+						}
+					}
+				}
+			}
+			Arrays.sort(nbrs, offs[a], count);
+		}
+		offs[maxAddress + 1] = count;
+
+		boolean changed = !Arrays.equals(offs, this.offsets);
+		for (int i = 0; !changed && i < count; i++) {
+			changed = nbrs[i] != this.neighbors[i];
+		}
+		this.spareNeighbors = this.neighbors;
+		this.hostsByAddress = byAddress;
+		this.offsets = offs;
+		this.neighbors = nbrs;
+		return changed;
+	}
+
+	/**
+	 * Returns the grid cell index of a coordinate component
+	 */
+	private int cellIndex(double c) {
+		return (int)Math.floor(c / range);
+	}
+
+	/**
+	 * Returns the simulation time when the snapshot was last built
+	 * @return the build time (-1 if never built)
+	 */
+	public double getBuildTime() {
+		return this.buildTime;
+	}
+
+	/**
+	 * Returns the version of the adjacency. The version is increased by
+	 * the builds that change the adjacency or the hosts.
+	 * @return the version of the snapshot (0 if never built)
+	 */
+	public int getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Returns how many times the snapshot has been built
+	 * @return the number of rebuilds
+	 */
+	public int getRebuildCount() {
+		return this.rebuildCount;
+	}
+
+	/**
+	 * @return the range of the snapshot
+	 */
+	public double getRange() {
+		return this.range;
+	}
+
+	/**
+	 * Returns the largest host address in the snapshot
+	 * @return the largest address or -1 if there are no hosts
+	 */
+	public int getMaxAddress() {
+		return this.hostsByAddress.length - 1;
+	}
+
+	/**
+	 * Returns the host with the given address
+	 * @param address Address of the host
+	 * @return The host or null if there is no such host in the snapshot
+	 */
+	public DTNHost getHost(int address) {
+		if (address < 0 || address >= hostsByAddress.length) {
+			return null;
+		}
+		return hostsByAddress[address];
+	}
+
+	/**
+	 * Returns the index of the first neighbor of a host
+	 * @param address Address of the host
+	 * @return Index for {@link #getNeighbor(int)}
+	 */
+	public int getNeighborStart(int address) {
+		return this.offsets[address];
+	}
+
+	/**
+	 * Returns the index after the last neighbor of a host
+	 * @param address Address of the host
+	 * @return Index for {@link #getNeighbor(int)}
+	 */
+	public int getNeighborEnd(int address) {
+		return this.offsets[address + 1];
+	}
+
+	/**
+	 * Returns a neighbor address
+	 * @param index Index of the neighbor in the neighbor array
+	 * @return The address of the neighbor
+	 */
+	public int getNeighbor(int index) {
+		return this.neighbors[index];
+	}
+
+	/**
+	 * Returns the topology as neighbor lists of all the hosts. The map and the
+	 * lists are new objects that the caller may modify.
+	 * @return Neighbors of all the hosts that have neighbors
+	 */
+	public HashMap<DTNHost, List<DTNHost>> getAdjacency() {
+		return getAdjacency(null);
+	}
+
+	/**
+	 * Returns the topology among the given hosts as neighbor lists. Only
+	 * the neighbors that are also in the given collection are included.
+	 * The map and the lists are new objects that the caller may modify.
+	 * @param subset The hosts whose topology is returned or null for all
+	 * hosts
+	 * @return Neighbors of the hosts that have neighbors in the subset
+	 */
+	public HashMap<DTNHost, List<DTNHost>> getAdjacency(
+			Collection<DTNHost> subset) {
+		HashMap<DTNHost, List<DTNHost>> topology =
+			new HashMap<DTNHost, List<DTNHost>>();
+		boolean[] member = null;
+		Collection<DTNHost> keys = subset;
+		if (subset == null) {
+			keys = this.hosts;
+		} else {
+			member = new boolean[hostsByAddress.length];
+			for (DTNHost h : subset) {
+				if (getHost(h.getAddress()) == h) {
+					member[h.getAddress()] = true;
+				}
+			}
+		}
+
+		for (DTNHost h : keys) {
+			int a = h.getAddress();
+			if (getHost(a) != h) {
+				continue;
+			}
+			List<DTNHost> list = null;
+			for (int i = offsets[a], end = offsets[a + 1]; i < end; i++) {
+				int b = neighbors[i];
+				if (member != null && !member[b]) {
+					continue;
+				}
+				if (list == null) {
+					list = new ArrayList<DTNHost>();
+					topology.put(h, list);
+				}
+				list.add(hostsByAddress[b]);
+			}
+		}
+		return topology;
+	}
+
+	/**
+	 * Growable list of host addresses of one grid cell
+	 */
+	private static class AddressList {
+		private int[] addresses = new int[4];
+		private int size = 0;
+
+		private void add(int address) {
+			if (size == addresses.length) {
+				addresses = Arrays.copyOf(addresses, 2 * size);
+			}
+			addresses[size++] = address;
+		}
+	}
+}
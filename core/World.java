@@ -7,10 +7,16 @@ package core;
 import input.EventQueue;
 import input.ExternalEvent;
 import input.ScheduledUpdatesQueue;
+import movement.SatellitePositions;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * World contains all the nodes and is responsible for updating their
@@ -36,6 +42,49 @@ public class World {
 	 */
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
 
+	/**
+	 * Number of worker threads in the parallel update phases -setting id
+	 * ({@value}). Integer, default is the number of available processors.
+	 * The parallel phases are used only in the multi-thread mode 
+	 * (see {@link DTNHost#setMultiThread()}).
+	 */
+	public static final String NROF_THREADS_S = "nrofThreads";
+	/**
+	 * Should the hosts be moved in parallel -setting id ({@value}). Boolean
+	 * (true/false) variable, default is false. The host list is split
+	 * between the worker threads ({@link #NROF_THREADS_S}) and all moves
+	 * are done before the hosts are updated. Requires movement models whose
+	 * moves don't share mutable state (e.g., SatelliteMovement).
+	 */
+	public static final String PARALLEL_MOVEMENT_S = "parallelMovement";
+	/**
+	 * Should the satellites be moved as one batch -setting id ({@value}).
+	 * Boolean (true/false) variable, default is false. The positions of
+	 * all satellites are computed together with a
+	 * {@link SatellitePositions}, which propagates the satellites that use
+	 * the analytic orbit propagation in one loop. The locations are the
+	 * same as without the batch. Works also with
+	 * {@link #PARALLEL_MOVEMENT_S}.
+	 */
+	public static final String BATCH_PROPAGATION_S = "batchPropagation";
+	/**
+	 * Should the world jump from event to event -setting id ({@value}).
+	 * Boolean (true/false) variable, default is false. While no message is
+	 * being transferred, the clock is advanced directly to the next event
+	 * (e.g., a link event of an {@link input.ContactEventQueue} or a
+	 * message event) instead of the next update interval. While messages
+	 * are being transferred, the hosts are updated at every update
+	 * interval. The hosts compute their locations only when they are asked
+	 * (see {@link DTNHost#setLazyMovement()}). The links must come from the
+	 * events, so the connections can't be simulated
+	 * (<code>Scenario.simulateConnections = false</code>). Routers that
+	 * start transfers on timers instead of on link and message changes
+	 * don't get the update intervals between the events.
+	 */
+	public static final String EVENT_DRIVEN_S = "eventDriven";
+	/** how many tasks each worker thread gets in a parallel phase */
+	private static final int TASKS_PER_THREAD = 4;
+
 	private int sizeX;
 	private int sizeY;
 	private int sizeZ;
@@ -57,6 +106,22 @@ public class World {
 	private ScheduledUpdatesQueue scheduledUpdates;
 	private boolean simulateConOnce;
 	private boolean isConSimulated;
+	/** number of worker threads in the parallel update phases */
+	private int nrofThreads;
+	/** are the hosts moved in parallel */
+	private boolean parallelMovement;
+	/** are the satellites moved as one batch */
+	private boolean batchPropagation;
+	/** positions of the satellites (if moved as one batch) */
+	private SatellitePositions satellitePositions;
+	/** hosts that are not in {@link #satellitePositions} */
+	private List<DTNHost> otherHosts;
+	/** network interfaces of all hosts */
+	private List<NetworkInterface> interfaces;
+	/** does the world jump from event to event */
+	private boolean eventDriven;
+	/** end time of the simulation (the last jump) */
+	private double endTime;
 
 	/**
 	 * Constructor.
@@ -92,6 +157,32 @@ public class World {
 			randomizeUpdates = s.getBoolean(RANDOMIZE_UPDATES_S);
 		}
 		simulateConOnce = s.getBoolean(SIMULATE_CON_ONCE_S, false);
+		nrofThreads = s.getInt(NROF_THREADS_S, 
+				Runtime.getRuntime().availableProcessors());
+		if (nrofThreads < 1) {
+			throw new SettingsError("Too small value (" + nrofThreads +
+					") for " + OPTIMIZATION_SETTINGS_NS + "." + NROF_THREADS_S);
+		}
+		parallelMovement = s.getBoolean(PARALLEL_MOVEMENT_S, false);
+		batchPropagation = s.getBoolean(BATCH_PROPAGATION_S, false);
+		eventDriven = s.getBoolean(EVENT_DRIVEN_S, false);
+		if (eventDriven) {
+			if (simulateConnections) {
+				throw new SettingsError(OPTIMIZATION_SETTINGS_NS + "." +
+						EVENT_DRIVEN_S + " requires " + SimScenario.SCENARIO_NS +
+						"." + SimScenario.SIM_CON_S + " = false");
+			}
+			endTime = new Settings(SimScenario.SCENARIO_NS).getDouble(
+					SimScenario.END_TIME_S);
+			for (DTNHost h : this.hosts) {
+				h.setLazyMovement();
+			}
+		}
+		
+		this.interfaces = new ArrayList<NetworkInterface>();
+		for (DTNHost h : this.hosts) {
+			this.interfaces.addAll(h.getInterfaces());
+		}
 		
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
@@ -147,23 +238,38 @@ public class World {
 	/** 
 	 * Update (move, connect, disconnect etc.) all hosts in the world.
 	 * Runs all external events that are due between the time when
-	 * this method is called and after one update interval.
+	 * this method is called and after one update interval. In the event
+	 * driven mode (see {@link #EVENT_DRIVEN_S}) the update lasts until the
+	 * next event if no message is being transferred.
 	 */
 	public void update() {
 		double runUntil = SimClock.getTime() + this.updateInterval;
 		
 		setNextEventQueue();
+		if (eventDriven && this.nextQueueEventTime > runUntil &&
+				!isTransferring()) {
+			/* nothing can change before the next event: jump to it */
+			runUntil = Math.min(this.nextQueueEventTime, endTime);
+		}
 
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
 			simClock.setTime(this.nextQueueEventTime);
 			ExternalEvent ee = this.nextEventQueue.nextEvent();
 			ee.processEvent(this);
-			updateHosts(); 										// update all hosts after every event
+			DTNHost[] toUpdate = ee.getHostsToUpdate(this);
+			if (toUpdate == null) {
+				updateHosts(); 									// update all hosts after every event
+			}
+			else {
+				updateHosts(toUpdate);
+			}
 			setNextEventQueue();
 		}
 
-		moveHosts(this.updateInterval);
+		if (!eventDriven) { // the hosts move lazily in the event driven mode
+			moveHosts(this.updateInterval);
+		}
 		simClock.setTime(runUntil);
 
 		updateHosts();
@@ -174,12 +280,41 @@ public class World {
 		}
 	}
 
+	/**
+	 * Returns true if a message is being transferred over any connection
+	 */
+	private boolean isTransferring() {
+		for (int i=0, n = interfaces.size(); i < n; i++) {
+			List<Connection> conns = interfaces.get(i).getConnections();
+			for (int j=0, m = conns.size(); j < m; j++) {
+				if (conns.get(j).isTransferring()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
 	 * order randomizing is on (updateOrder array is defined), the calls
-	 * are made in random order.
+	 * are made in random order. Before that, the locations of all 
+	 * interfaces are updated in the connectivity optimizers and, in the
+	 * multi-thread mode, the near interfaces of every interface are looked
+	 * up in parallel. Connections are then created and removed by the 
+	 * (sequential) host updates, so the results don't depend on the number
+	 * of threads.
 	 */
 	private void updateHosts() {
+		if (simulateConnections) {
+			for (int i=0, n = interfaces.size(); i < n; i++) {
+				interfaces.get(i).updateLocation();
+			}
+			if (DTNHost.isMultiThread()) {
+				findNearInterfaces();
+			}
+		}
+		
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
@@ -206,17 +341,212 @@ public class World {
 		}
 	}
 
+	/**
+	 * Updates only the given hosts, e.g. the end points of a connection
+	 * event
+	 * @param toUpdate The hosts to update
+	 */
+	private void updateHosts(DTNHost[] toUpdate) {
+		for (DTNHost host : toUpdate) {
+			if (this.isCancelled) {
+				break;
+			}
+			host.update(simulateConnections);
+		}
+	}
+
 	/**
 	 * Moves all hosts in the world for a given amount of time
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
+		if (batchPropagation) {
+			moveSatellites(timeIncrement);
+			return;
+		}
+		if (parallelMovement) {
+			moveHostsInParallel(timeIncrement);
+			return;
+		}
 		for (int i=0,n = hosts.size(); i<n; i++) {
 			DTNHost host = hosts.get(i);
 			host.move(timeIncrement);			
 		}		
 	}
 
+	/**
+	 * Moves the satellites as one batch (in parallel slices if parallel
+	 * movement is on) and the other hosts one by one
+	 * @param timeIncrement The time how long all nodes should move
+	 */
+	private void moveSatellites(double timeIncrement) {
+		if (satellitePositions == null) {
+			satellitePositions = new SatellitePositions(hosts);
+			otherHosts = new ArrayList<DTNHost>();
+			for (DTNHost h : hosts) {
+				if (!satellitePositions.contains(h)) {
+					otherHosts.add(h);
+				}
+			}
+		}
+
+		double time = SimClock.getTime();
+		int n = satellitePositions.size();
+		if (parallelMovement && n > 0) {
+			int nrofTasks = Math.min(n, nrofThreads * TASKS_PER_THREAD);
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for (int t = 0; t < nrofTasks; t++) {
+				tasks.add(new BatchMoveTask(t * n / nrofTasks,
+						(t + 1) * n / nrofTasks, time));
+			}
+			runTasks(tasks);
+		} else {
+			satellitePositions.update(time);
+			satellitePositions.setHostLocations(0, n);
+		}
+
+		for (int i=0, m = otherHosts.size(); i<m; i++) {
+			otherHosts.get(i).move(timeIncrement);
+		}
+	}
+
+	/**
+	 * Moves all hosts using the worker pool. Returns when all the hosts
+	 * have been moved.
+	 * @param timeIncrement The time how long all nodes should move
+	 */
+	private void moveHostsInParallel(double timeIncrement) {
+		int n = hosts.size();
+		int nrofTasks = Math.min(n, nrofThreads * TASKS_PER_THREAD);
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+
+		for (int t = 0; t < nrofTasks; t++) {
+			tasks.add(new MoveTask(t * n / nrofTasks, (t + 1) * n / nrofTasks,
+					timeIncrement));
+		}
+		runTasks(tasks);
+	}
+
+	/**
+	 * Looks up the near interfaces of all interfaces using the worker pool.
+	 * The interface list is split to consecutive slices, one for each task.
+	 */
+	private void findNearInterfaces() {
+		int n = interfaces.size();
+		int nrofTasks = Math.min(n, nrofThreads * TASKS_PER_THREAD);
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+
+		for (int t = 0; t < nrofTasks; t++) {
+			tasks.add(new NearInterfacesTask(t * n / nrofTasks, 
+					(t + 1) * n / nrofTasks));
+		}
+		runTasks(tasks);
+	}
+
+	/**
+	 * Runs the tasks in the worker pool and waits until all of them are 
+	 * done. Errors thrown by the tasks are re-thrown in the calling thread.
+	 * @param tasks The tasks to run
+	 */
+	private void runTasks(List<Callable<Object>> tasks) {
+		ForkJoinPool workers = 
+			SimulationContext.current().getWorkers(nrofThreads);
+
+		try {
+			for (Future<Object> f : workers.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new SimError(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Task that looks up the near interfaces of a slice of the interfaces
+	 */
+	private class NearInterfacesTask implements Callable<Object> {
+		private int from;
+		private int to;
+
+		/**
+		 * @param from Index of the first interface of the slice
+		 * @param to Index after the last interface of the slice
+		 */
+		NearInterfacesTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		public Object call() {
+			for (int i = from; i < to; i++) {
+				interfaces.get(i).findNearInterfaces();
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Task that moves a slice of the hosts
+	 */
+	private class MoveTask implements Callable<Object> {
+		private int from;
+		private int to;
+		private double timeIncrement;
+
+		/**
+		 * @param from Index of the first host of the slice
+		 * @param to Index after the last host of the slice
+		 * @param timeIncrement The time how long the hosts should move
+		 */
+		MoveTask(int from, int to, double timeIncrement) {
+			this.from = from;
+			this.to = to;
+			this.timeIncrement = timeIncrement;
+		}
+
+		public Object call() {
+			for (int i = from; i < to; i++) {
+				hosts.get(i).move(timeIncrement);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Task that moves a slice of the satellites of the batch
+	 */
+	private class BatchMoveTask implements Callable<Object> {
+		private int from;
+		private int to;
+		private double time;
+
+		/**
+		 * @param from Position index of the first satellite of the slice
+		 * @param to Position index after the last satellite of the slice
+		 * @param time The time of the new positions
+		 */
+		BatchMoveTask(int from, int to, double time) {
+			this.from = from;
+			this.to = to;
+			this.time = time;
+		}
+
+		public Object call() {
+			satellitePositions.update(time, from, to);
+			satellitePositions.setHostLocations(from, to);
+			return null;
+		}
+	}
+
 	/**
 	 * Asynchronously cancels the currently running simulation
 	 */
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import movement.SatelliteMovement;
+import routing.util.ContactPlan;
+import core.ContactWindowPredictor;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.ScenarioConfig;
+import core.Neighbors;
+import core.Settings;
+import core.SettingsError;
+import core.SimClock;
+import core.SimScenario;
+import core.World;
+import interfaces.SimpleSatelliteInterface;
+
+/**
+ * Connection up/down events of the satellites, predicted from the orbits
+ * instead of detected by polling the interfaces at every update interval.
+ * The events are used with <code>Scenario.simulateConnections = false</code>
+ * so that the interfaces don't search for connections themselves:
+ * <PRE>
+ * Events.nrof = 1
+ * Events1.class = ContactEventQueue
+ * </PRE>
+ * The rise and set times of each pair of satellites are found with a
+ * {@link ContactWindowPredictor}. Only the next event of each pair is kept
+ * in the queue: when a link rises, its set time is searched, and when it
+ * sets, the next rise. Pairs whose orbits never get closer than the range
+ * (e.g., LEO and GEO satellites) are skipped. Alternatively the contacts
+ * are read from a {@link ContactPlan} file.
+ * <P>
+ * After a contact event only the two satellites of the link are updated,
+ * not all the hosts. By default World still moves and updates all the
+ * hosts at every update interval and the events only replace the
+ * connection search of the interfaces. With
+ * <code>Optimization.eventDriven = true</code> (see
+ * {@link World#EVENT_DRIVEN_S}) World jumps from event to event while no
+ * message is being transferred, and the hosts are moved only when their
+ * locations are asked. Each prediction propagates the orbits of a pair
+ * many times, so with the default <code>Stepwise</code> orbit propagation
+ * and links that rise and set every few seconds the predictions can cost
+ * more than the skipped updates save; the <code>Analytic</code>
+ * propagation or the ephemeris tables make them cheap.
+ * <P>
+ * The events connect every pair that is in range, as the interfaces do in
+ * the <code>AllConnected</code> router mode. The <code>Cluster</code> mode
+ * allows only the links of the current cluster members, which change while
+ * the simulation runs, so it can't be predicted and the queue refuses to
+ * run in it.
+ */
+public class ContactEventQueue implements EventQueue {
+	/** Interface type of the links -setting id ({@value}). Default is the
+	 * first interface of the hosts. */
+	public static final String INTERFACE_S = "interface";
+	/** Transmit range of the links -setting id ({@value}). Default is the
+	 * transmit range of the interface. */
+	public static final String TRANSMIT_RANGE_S = "transmitRange";
+	/** Contact plan file -setting id ({@value}). If set, the contacts are
+	 * read from the plan (see {@link routing.util.ContactPlanGenerator})
+	 * instead of predicted. */
+	public static final String CONTACT_PLAN_S = "contactPlanFile";
+	/** the only router mode whose links the events can predict */
+	private static final String ALL_CONNECTED = "AllConnected";
+
+	/** interface type of the links, null for the first interface */
+	private final String linkInterface;
+	private final double range;
+	private final double minStep;
+	private final double tolerance;
+	private final String planFile;
+	/** end of the predictions */
+	private final double endTime;
+
+	private boolean initialized;
+	private ContactWindowPredictor predictor;
+	/** the next event of each pair that has one */
+	private PriorityQueue<ContactEvent> events;
+	private ContactPlan plan;
+	/** index of the next contact of the plan whose up event is due */
+	private int nextContact;
+
+	/**
+	 * Creates a queue from the settings
+	 * @param s Settings of the queue
+	 */
+	public ContactEventQueue(Settings s) {
+		this.linkInterface = s.contains(INTERFACE_S) ?
+				s.getSetting(INTERFACE_S) : null;
+		this.range = s.getDouble(TRANSMIT_RANGE_S, -1);
+		this.minStep = s.getDouble(Neighbors.PREDICTION_STEP_S, 1);
+		this.tolerance = s.getDouble(Neighbors.PREDICTION_TOLERANCE_S, 0.01);
+		this.planFile = s.contains(CONTACT_PLAN_S) ?
+				s.getSetting(CONTACT_PLAN_S) : null;
+		this.endTime = new Settings(SimScenario.SCENARIO_NS).getDouble(
+				SimScenario.END_TIME_S);
+		if (s.contains(TRANSMIT_RANGE_S)) {
+			s.ensurePositiveValue(range, TRANSMIT_RANGE_S);
+		}
+		String mode = new Settings(SimpleSatelliteInterface.USERSETTINGNAME_S)
+				.getSetting(SimpleSatelliteInterface.ROUTERMODENAME_S);
+		if (!mode.equals(ALL_CONNECTED)) {
+			throw new SettingsError("Contact events work only in the " +
+					ALL_CONNECTED + " router mode, not in " + mode);
+		}
+	}
+
+	/**
+	 * Returns the next event. The first event initializes the queue when
+	 * it is processed, because the hosts don't exist yet when the queue is
+	 * created.
+	 */
+	public ExternalEvent nextEvent() {
+		if (!initialized) {
+			initialized = true;
+			return new InitEvent(this);
+		}
+		if (events == null) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		if (plan != null && nextContact < plan.size() &&
+				(events.isEmpty() ||
+				 plan.getStart(nextContact) <= events.peek().getTime())) {
+			int c = nextContact++;
+			events.add(new ContactEvent(this, plan.getFrom(c), plan.getTo(c),
+					plan.getEnd(c), false));
+			return new ContactEvent(this, plan.getFrom(c), plan.getTo(c),
+					plan.getStart(c), true);
+		}
+		if (events.isEmpty()) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		return events.poll();
+	}
+
+	public double nextEventsTime() {
+		if (!initialized) {
+			return 0;
+		}
+		double next = Double.MAX_VALUE;
+		if (events != null && !events.isEmpty()) {
+			next = events.peek().getTime();
+		}
+		if (plan != null && nextContact < plan.size()) {
+			next = Math.min(next, plan.getStart(nextContact));
+		}
+		return next;
+	}
+
+	/**
+	 * Creates the first events of the satellite pairs
+	 * @param world The world of the hosts
+	 */
+	private void init(World world) {
+		events = new PriorityQueue<ContactEvent>();
+		if (planFile != null) {
+			plan = ContactPlan.getPlan(planFile);
+			plan.checkScenario(getRange(world.getHosts().get(0)),
+					ScenarioConfig.getInstance().getNrofHosts());
+			nextContact = 0;
+			return;
+		}
+
+		List<DTNHost> satellites = new ArrayList<DTNHost>();
+		for (DTNHost h : world.getHosts()) {
+			if (h.getMovementModel() instanceof SatelliteMovement) {
+				satellites.add(h);
+			}
+		}
+		if (satellites.isEmpty()) {
+			return;
+		}
+
+		double r = getRange(satellites.get(0));
+		predictor = new ContactWindowPredictor(r, minStep, tolerance);
+
+		double now = SimClock.getTime();
+		for (int i = 0; i < satellites.size(); i++) {
+			DTNHost a = satellites.get(i);
+			for (int j = i + 1; j < satellites.size(); j++) {
+				DTNHost b = satellites.get(j);
+				if (canMeet(a, b, r)) {
+					scheduleRise(a, b, now);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the transmit range of the links: the range setting or the
+	 * range of the link interface
+	 * @param host A host that has the link interface
+	 * @return The range
+	 * @throws SettingsError if the host doesn't have the interface
+	 */
+	private double getRange(DTNHost host) {
+		if (range >= 0) {
+			return range;
+		}
+		NetworkInterface ni = getLinkInterface(host);
+		if (ni == null) {
+			throw new SettingsError("No interface " + linkInterface +
+					" for the contact events");
+		}
+		return ni.getTransmitRange();
+	}
+
+	/**
+	 * Returns the interface of a host that the links use
+	 * @param host The host
+	 * @return The interface or null if the host doesn't have one
+	 */
+	private NetworkInterface getLinkInterface(DTNHost host) {
+		if (linkInterface == null) {
+			return host.getInterface(1);
+		}
+		for (NetworkInterface ni : host.getInterfaces()) {
+			if (ni.getInterfaceType().equals(linkInterface)) {
+				return ni;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns false if the orbits of the satellites never get within the
+	 * range of each other: the distance of the satellites is at least the
+	 * gap between the perigee of one and the apogee of the other
+	 */
+	private static boolean canMeet(DTNHost a, DTNHost b, double range) {
+		double[] pa = ((SatelliteMovement)a.getMovementModel())
+				.getOrbitParameters();
+		double[] pb = ((SatelliteMovement)b.getMovementModel())
+				.getOrbitParameters();
+		double gap = Math.max(pa[0] * (1 - pa[1]) - pb[0] * (1 + pb[1]),
+				pb[0] * (1 - pb[1]) - pa[0] * (1 + pa[1]));
+		return gap <= range;
+	}
+
+	/**
+	 * Queues the next rise of a pair at or after the given time
+	 */
+	private void scheduleRise(DTNHost a, DTNHost b, double from) {
+		double t = predictor.findRise(a, b, from, endTime);
+		if (t != ContactWindowPredictor.NO_EVENT) {
+			events.add(new ContactEvent(this, a, b, t, true));
+		}
+	}
+
+	/**
+	 * Queues the set of a pair after the given time
+	 */
+	private void scheduleSet(DTNHost a, DTNHost b, double from) {
+		double t = predictor.findSet(a, b, from, endTime);
+		if (t != ContactWindowPredictor.NO_EVENT) {
+			events.add(new ContactEvent(this, a, b, t, false));
+		}
+	}
+
+	/**
+	 * Event that initializes the queue. No hosts are updated after it.
+	 */
+	private static class InitEvent extends ExternalEvent {
+		private static final long serialVersionUID = 1L;
+		private final transient ContactEventQueue queue;
+
+		public InitEvent(ContactEventQueue queue) {
+			super(0);
+			this.queue = queue;
+		}
+
+		@Override
+		public void processEvent(World world) {
+			queue.init(world);
+		}
+
+		@Override
+		public DTNHost[] getHostsToUpdate(World world) {
+			return new DTNHost[0];
+		}
+
+		@Override
+		public String toString() {
+			return "CONTACTS init";
+		}
+	}
+
+	/**
+	 * Predicted link up or down event of a pair of satellites. Processing
+	 * the event queues the next event of the pair.
+	 */
+	private static class ContactEvent extends ConnectionEvent {
+		private static final long serialVersionUID = 1L;
+		private final transient ContactEventQueue queue;
+		private transient DTNHost a;
+		private transient DTNHost b;
+
+		/**
+		 * Creates an event of a predicted pair
+		 */
+		public ContactEvent(ContactEventQueue queue, DTNHost a, DTNHost b,
+				double time, boolean up) {
+			super(a.getAddress(), b.getAddress(), queue.linkInterface, up,
+					time);
+			this.queue = queue;
+			this.a = a;
+			this.b = b;
+		}
+
+		/**
+		 * Creates an event of a contact of the plan
+		 */
+		public ContactEvent(ContactEventQueue queue, int from, int to,
+				double time, boolean up) {
+			super(from, to, queue.linkInterface, up, time);
+			this.queue = queue;
+		}
+
+		@Override
+		public void processEvent(World world) {
+			super.processEvent(world);
+			if (a == null) {
+				return; // contact of the plan
+			}
+			if (isUp) {
+				queue.scheduleSet(a, b, time);
+			} else {
+				queue.scheduleRise(a, b, time);
+			}
+		}
+
+		@Override
+		public DTNHost[] getHostsToUpdate(World world) {
+			return new DTNHost[] {world.getNodeByAddress(fromAddr),
+					world.getNodeByAddress(toAddr)};
+		}
+
+		@Override
+		public int compareTo(ExternalEvent other) {
+			int c = super.compareTo(other);
+			if (c != 0 || !(other instanceof ContactEvent)) {
+				return c;
+			}
+			ContactEvent o = (ContactEvent)other;
+			if (this.fromAddr != o.fromAddr) {
+				return this.fromAddr - o.fromAddr;
+			}
+			return this.toAddr - o.toAddr;
+		}
+	}
+}
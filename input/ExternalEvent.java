@@ -6,6 +6,7 @@ package input;
 
 import java.io.Serializable;
 
+import core.DTNHost;
 import core.World;
 
 /**
@@ -29,6 +30,17 @@ public class ExternalEvent implements Comparable<ExternalEvent>, Serializable {
 		// this is just a dummy event
 	}
 
+	/**
+	 * Returns the hosts that should be updated after this event has been
+	 * processed. Events that concern only a few hosts can return them so
+	 * that the other hosts are not updated.
+	 * @param world World where the actors of the event are
+	 * @return The hosts to update, or null if all hosts should be updated
+	 */
+	public DTNHost[] getHostsToUpdate(World world) {
+		return null;
+	}
+
 	/**
 	 * Returns the time when this event should happen.
 	 * @return Event's time
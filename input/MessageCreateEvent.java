@@ -8,6 +8,7 @@ import java.util.Random;
 
 import core.DTNHost;
 import core.Message;
+import core.ScenarioConfig;
 import core.Settings;
 import core.SimClock;
 import core.World;
@@ -72,9 +73,6 @@ public class MessageCreateEvent extends MessageEvent {
 	 */
 	@Override
 	public void processEvent(World world) {
-		Settings setting = new Settings(USERSETTINGNAME_S);		//ȡãжǷҪִ
-		String cacheEnable = setting.getSetting(EnableCache_s); // decide whether to enable the cache function
-		
 //		if (cacheEnable.indexOf("true") >= 0) {
 //	        this.fileID = RandomGetFileID();
 //	        
@@ -104,8 +102,7 @@ public class MessageCreateEvent extends MessageEvent {
 			Message m = new Message(from, to, this.id, this.size);
 			
 			// set the retransmission time 
-		    Settings s = new Settings("Interface");
-		    int time = s.getInt("reTransmitTime"); 
+		    int time = ScenarioConfig.getInstance().getReTransmitTime();
 			m.updateProperty(RETRANS_TIME, time);
 			
 			m.setResponseSize(this.responseSize);
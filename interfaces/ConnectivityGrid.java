@@ -8,6 +8,7 @@ import java.util.*;
 
 import core.*;
 import movement.MovementModel;
+import util.SparseGrid;
 
 /**
  * <P>
@@ -28,8 +29,8 @@ import movement.MovementModel;
  * </P>
  * <P>
  * <strong>Note:</strong> this class does NOT support negative
- * coordinates. Also, it makes sense to normalize the coordinates to start
- * from zero to conserve memory. 
+ * coordinates. Only the cells where interfaces have been are allocated, so
+ * the memory use doesn't depend on the size of the world.
  */
 public class ConnectivityGrid extends ConnectivityOptimizer {
 
@@ -52,48 +53,88 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
 	/** judge near interface mode -setting id ({@value})*/
 	public static final String JUDGE_NEARINTERFACE_S = "judgeNearInterfaceMode";
+	/** near interfaces are looked up from the neighboring grid cells ({@value}) */
+	public static final String FAST_GRID_MODE = "Fast-Grid";
+	/** all interfaces are checked for every lookup ({@value}) */
+	public static final String ERGODIC_MODE = "Ergodic";
 	
-	private GridCell[][][] cells;//GridCell࣬һʵһworldһά洢ÿִ洢˵ǰеhostnetworkinterface
+	private SparseGrid<GridCell> cells;//cells store the interfaces that are currently in them
 	private HashMap<NetworkInterface, GridCell> ginterfaces;
 	private int cellSize;
 	private int rows;
 	private int cols;
 	private int zs;
-	private static int worldSizeX;
-	private static int worldSizeY;
-	private static int worldSizeZ;
-	private static int cellSizeMultiplier;
-	private static String judgeNearInterfaceMode;
-	
-	static HashMap<Integer,ConnectivityGrid> gridobjects;
+	/** state of the grids of the simulation the grid belongs to */
+	private final GridState state;
 
 	static {
 		DTNSim.registerForReset(ConnectivityGrid.class.getCanonicalName());
 		reset();
 	}
 	
+	/**
+	 * Removes the grids of the current simulation context; the settings
+	 * are read again when the next grid is created
+	 */
 	public static void reset() {
-		gridobjects = new HashMap<Integer, ConnectivityGrid>();
+		SimulationContext.current().removeState(GridState.class);
+	}
 
-		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
-		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,3);//2ά޸Ϊ3ά
-		worldSizeX = worldSize[0];
-		worldSizeY = worldSize[1];
-		worldSizeZ = worldSize[1];//ά飡
-		
-		judgeNearInterfaceMode = s.getSetting(JUDGE_NEARINTERFACE_S);
-		
-		s.setNameSpace(World.OPTIMIZATION_SETTINGS_NS);		
-		if (s.contains(CELL_SIZE_MULT_S)) {
-			cellSizeMultiplier = s.getInt(CELL_SIZE_MULT_S);
-		}
-		else {
-			cellSizeMultiplier = DEF_CON_CELL_SIZE_MULT;
+	/**
+	 * Sets how the near interfaces are looked up by all grids of the
+	 * current simulation context
+	 * @param mode {@link #FAST_GRID_MODE} or {@link #ERGODIC_MODE}
+	 * @throws SettingsError if the mode is unknown
+	 */
+	public static void setJudgeNearInterfaceMode(String mode) {
+		SimulationContext.current().getState(GridState.class).setMode(mode);
+	}
+
+	/**
+	 * The world size, cell size and lookup mode settings and the grid
+	 * objects of one simulation context
+	 */
+	static class GridState {
+		private int worldSizeX;
+		private int worldSizeY;
+		private int worldSizeZ;
+		private int cellSizeMultiplier;
+		private String judgeNearInterfaceMode;
+		private HashMap<Integer,ConnectivityGrid> gridobjects;
+
+		GridState() {
+			gridobjects = new HashMap<Integer, ConnectivityGrid>();
+
+			Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+			int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,3);//2ά޸Ϊ3ά
+			worldSizeX = worldSize[0];
+			worldSizeY = worldSize[1];
+			worldSizeZ = worldSize[2];
+			
+			setMode(s.getSetting(JUDGE_NEARINTERFACE_S));
+			
+			s.setNameSpace(World.OPTIMIZATION_SETTINGS_NS);		
+			if (s.contains(CELL_SIZE_MULT_S)) {
+				cellSizeMultiplier = s.getInt(CELL_SIZE_MULT_S);
+			}
+			else {
+				cellSizeMultiplier = DEF_CON_CELL_SIZE_MULT;
+			}
+			if (cellSizeMultiplier < 1) {
+				throw new SettingsError("Too small value (" + 
+						cellSizeMultiplier + ") for " + 
+						World.OPTIMIZATION_SETTINGS_NS + "." + 
+						CELL_SIZE_MULT_S);
+			}
 		}
-		if (cellSizeMultiplier < 1) {
-			throw new SettingsError("Too small value (" + cellSizeMultiplier +
-					") for " + World.OPTIMIZATION_SETTINGS_NS + 
-					"." + CELL_SIZE_MULT_S);
+
+		private void setMode(String mode) {
+			if (!mode.equals(FAST_GRID_MODE) && !mode.equals(ERGODIC_MODE)) {
+				throw new SettingsError("Unknown " + 
+						MovementModel.MOVEMENT_MODEL_NS + "." + 
+						JUDGE_NEARINTERFACE_S + " value: " + mode);
+			}
+			judgeNearInterfaceMode = mode;
 		}
 	}
 
@@ -102,21 +143,19 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param cellSize Cell's edge's length (must be larger than the largest
 	 * 	radio coverage's diameter)
 	 */
-	private ConnectivityGrid(int cellSize) {
-		this.rows = worldSizeY/cellSize + 1;
-		this.cols = worldSizeX/cellSize + 1;
-		this.zs = worldSizeZ/cellSize + 1;
+	private ConnectivityGrid(GridState state, int cellSize) {
+		this.state = state;
+		this.rows = state.worldSizeY/cellSize + 1;
+		this.cols = state.worldSizeX/cellSize + 1;
+		this.zs = state.worldSizeZ/cellSize + 1;
 		System.out.println(cellSize+"  "+this.rows+"  "+this.cols+"  "+this.zs);
-		// leave empty cells on both sides to make neighbor search easier 
-		this.cells = new GridCell[rows+2][cols+2][zs+2];
-		this.cellSize = cellSize;
-
-		for (int i=0; i<rows+2; i++) {
-			for (int j=0; j<cols+2; j++) {
-				for (int n=0;n<zs+2; n++)
-					this.cells[i][j][n] = new GridCell();
+		// the cells are created when the first interface enters them
+		this.cells = new SparseGrid<GridCell>() {
+			protected GridCell createCell(int row, int col, int z) {
+				return new GridCell();
 			}
-		}
+		};
+		this.cellSize = cellSize;
 		ginterfaces = new HashMap<NetworkInterface,GridCell>();
 	}
 
@@ -129,12 +168,15 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 */
 	public static ConnectivityGrid ConnectivityGridFactory(int key, 
 			double maxRange) {
+		GridState state = 
+			SimulationContext.current().getState(GridState.class);
+		HashMap<Integer,ConnectivityGrid> gridobjects = state.gridobjects;
 		if (gridobjects.containsKey((Integer)key)) {
 			return (ConnectivityGrid)gridobjects.get((Integer)key);
 		} else {
 			ConnectivityGrid newgrid = 
-				new ConnectivityGrid((int)Math.ceil(maxRange * 
-						cellSizeMultiplier));//ÿһµConnectivityGridÿһڵӿ
+				new ConnectivityGrid(state, (int)Math.ceil(maxRange * 
+						state.cellSizeMultiplier));//ÿһµConnectivityGridÿһڵӿ
 			gridobjects.put((Integer)key,newgrid);
 			return newgrid;
 		}
@@ -187,43 +229,6 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		}
 	}
 
-	/**
-	 * Finds all neighboring cells and the cell itself based on the coordinates
-	 * @param c The coordinates
-	 * @return Array of neighboring cells 
-	 */
-	private GridCell[] getNeighborCellsByCoord(Coord c) {
-		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1;
-		int col = (int)(c.getX()/cellSize) + 1;
-		int z = (int)(c.getZ()/cellSize) + 1;
-		return getNeighborCells(row,col,z);
-	}
-
-	/**
-	 * Returns an array of Cells that contains the neighbors of a certain
-	 * cell and the cell itself.
-	 * @param row Row index of the cell
-	 * @param col Column index of the cell
-	 * @return Array of neighboring Cells
-	 */
-	private GridCell[] getNeighborCells(int row, int col ,int z) {
-		return new GridCell[] {
-			cells[row-1][col-1][z-1],cells[row-1][col-1][z],cells[row-1][col-1][z+1],//1st row,1st col
-			cells[row-1][col][z-1],cells[row-1][col][z],cells[row-1][col][z+1],//1st row,2nd col
-			cells[row-1][col+1][z-1],cells[row-1][col+1][z],cells[row-1][col+1][z+1],//1st row,3rd col
-			
-			cells[row][col-1][z-1],cells[row][col-1][z],cells[row][col-1][z+1],//2nd row,1st col
-			cells[row][col][z-1],cells[row][col][z],cells[row][col][z+1],//2nd row,2nd col
-			cells[row][col+1][z-1],cells[row][col+1][z],cells[row][col+1][z+1],//2nd row,3rd col
-			
-			cells[row+1][col-1][z-1],cells[row+1][col-1][z],cells[row+1][col-1][z+1],//3rd row,1st col
-			cells[row+1][col][z-1],cells[row+1][col][z],cells[row+1][col][z+1],//3rd row,2nd col
-			cells[row+1][col+1][z-1],cells[row+1][col+1][z],cells[row+1][col+1][z+1]//3rd row,3rd col
-					
-		};
-	}
-
 	/**
 	 * Get the cell having the specific coordinates
 	 * @param c Coordinates
@@ -237,7 +242,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " + 
 		c + " is out of world's bounds";
 		
-		return this.cells[row][col][z];
+		return this.cells.getCell(row, col, z);
 	}
 
 	/**
@@ -255,27 +260,62 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 */
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni) {
-		List<NetworkInterface> niList = new ArrayList<NetworkInterface>();
+		return getNearInterfaces(ni, new ArrayList<NetworkInterface>());
+	}
+
+	/**
+	 * Returns all interfaces that are within range of the given interface.
+	 * In the Fast-Grid mode only the interfaces in the 3x3x3 cells around
+	 * the interface's cell are checked (the cells are at least as large as
+	 * the largest range, so no interface in range is missed). In the
+	 * Ergodic mode all interfaces are checked. Each interface is in exactly
+	 * one cell, so the result has no duplicates.
+	 * @param ni The interface whose neighboring interfaces are returned
+	 * @param niList The list where the interfaces are stored; any old
+	 * contents are removed
+	 * @return The niList
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni, List<NetworkInterface> niList) {
+		niList.clear();
 		Coord c = ni.getLocation();//ڵ㵱ǰλ
 		
-		switch (judgeNearInterfaceMode){
-			case "Fast-Grid" :{
-				GridCell loc = (GridCell)ginterfaces.get(ni);//ginterfacesHashMap<NetworkInterface, GridCell>ӳ			
-				if (loc != null) {
-					GridCell[] neighbors =
-						getNeighborCellsByCoord(c);//õ뱾ڵΪھӵ9*9*9飬μЩڵ
-					for (int i=0; i < neighbors.length; i++) {								
-						niList.addAll(neighbors[i].getInterfaces());//ȷھӽڵб
-
+		switch (state.judgeNearInterfaceMode){
+			case FAST_GRID_MODE :{
+				if (ginterfaces.get(ni) == null) {
+					break;
+				}
+				// +1 due empty cells on both sides of the matrix
+				int row = (int)(c.getY()/cellSize) + 1;
+				int col = (int)(c.getX()/cellSize) + 1;
+				int z = (int)(c.getZ()/cellSize) + 1;
+				for (int i = row - 1; i <= row + 1; i++) {
+					for (int j = col - 1; j <= col + 1; j++) {
+						for (int k = z - 1; k <= z + 1; k++) {
+							GridCell cell = cells.getExistingCell(i, j, k);
+							if (cell == null) {
+								continue;
+							}
+							ArrayList<NetworkInterface> cellInterfaces = 
+								cell.interfaces;
+							for (int n = 0, size = cellInterfaces.size(); 
+									n < size; n++) {
+								NetworkInterface interf = cellInterfaces.get(n);
+								if (JudgeNeighbors(interf, c))//жǷΪھ
+									niList.add(interf);
+							}
+						}
 					}
 				}
+				break;
 			}			
-			case "Ergodic" :{				
+			case ERGODIC_MODE :{				
 				for (NetworkInterface interf : getAllInterfaces()){//ڽڵӿڣμǲھ뷶Χ֮
 					if (JudgeNeighbors(interf, c))//жǷΪھ
 					niList.add(interf);//ȷھӽڵб
 					
 				}
+				break;
 			}
 		}	
 //		System.out.print("for test"+SimClock.getTime());
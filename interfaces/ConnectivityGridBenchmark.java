@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import movement.MovementModel;
+import movement.Path;
+import routing.MessageRouter;
+import routing.PassiveRouter;
+import satellite_orbit.SatelliteOrbit;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Measures the cost of the near interface lookups of
+ * {@link ConnectivityGrid} in the Fast-Grid and Ergodic modes for Walker
+ * delta constellations of different sizes. The transmit range is scaled
+ * with the mean distance of the satellites so that every satellite has
+ * about the same number of neighbors in all constellations; the Fast-Grid
+ * cost should then grow linearly with the number of satellites and the
+ * Ergodic cost quadratically.
+ * <P>
+ * Usage: <code>java interfaces.ConnectivityGridBenchmark [sizes] [steps]
+ * </code> where sizes is a comma separated list of constellation sizes
+ * (multiples of {@value #NROF_PLANES}, default 1000,2000,5000,10000) and
+ * steps the number of measured time steps (default 10). The world size
+ * and the cell size multiplier are read from the default settings.
+ */
+public class ConnectivityGridBenchmark {
+	/** number of orbit planes of the constellations */
+	public static final int NROF_PLANES = 50;
+	/** semi-major axis of the orbits (km) */
+	public static final double SEMI_MAJOR_AXIS = 6921;
+	/** inclination of the orbits (degrees) */
+	public static final double INCLINATION = 53;
+	/** transmit range as multiple of the mean distance of the satellites */
+	public static final double RANGE_FACTOR = 2.0;
+	/** time between the steps (s) */
+	public static final double STEP = 60;
+	/** number of steps run before the measurements */
+	public static final int WARMUP_STEPS = 3;
+
+	private static final int[] DEF_SIZES = {1000, 2000, 5000, 10000};
+	private static final int DEF_STEPS = 10;
+
+	public static void main(String[] args) {
+		int[] sizes = DEF_SIZES;
+		int steps = DEF_STEPS;
+		if (args.length > 0) {
+			String[] parts = args[0].split(",");
+			sizes = new int[parts.length];
+			for (int i = 0; i < parts.length; i++) {
+				sizes[i] = Integer.parseInt(parts[i].trim());
+			}
+		}
+		if (args.length > 1) {
+			steps = Integer.parseInt(args[1]);
+		}
+
+		System.out.println("hosts\tmode\trange\tus/step\tus/host\tneighbors");
+		for (int n : sizes) {
+			for (String mode : new String[] {ConnectivityGrid.FAST_GRID_MODE,
+					ConnectivityGrid.ERGODIC_MODE}) {
+				run(n, mode, steps);
+			}
+		}
+	}
+
+	/**
+	 * Runs the lookups of one constellation in one mode and prints the
+	 * results
+	 * @param n Number of satellites
+	 * @param mode The near interface mode
+	 * @param steps Number of measured steps
+	 */
+	private static void run(int n, String mode, int steps) {
+		ConnectivityGrid.reset();
+		ConnectivityGrid.setJudgeNearInterfaceMode(mode);
+		DTNHost.reset();
+
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		int offset = s.getCsvInts(MovementModel.WORLD_SIZE, 3)[0] / 2;
+		s.setNameSpace(World.OPTIMIZATION_SETTINGS_NS);
+		int cellSizeMult = s.getInt(ConnectivityGrid.CELL_SIZE_MULT_S,
+				ConnectivityGrid.DEF_CON_CELL_SIZE_MULT);
+
+		double range = RANGE_FACTOR * Math.sqrt(4 * Math.PI *
+				SEMI_MAJOR_AXIS * SEMI_MAJOR_AXIS / n);
+		/* the grid is created before the interfaces register to it so that
+		 * the cells are as small as the range (the smallest size that
+		 * still gives exact results) */
+		ConnectivityGrid grid = ConnectivityGrid.ConnectivityGridFactory(
+				BenchmarkInterface.TYPE.hashCode(), range / cellSizeMult);
+
+		List<NetworkInterface> prototypes = new ArrayList<NetworkInterface>();
+		prototypes.add(new BenchmarkInterface(range));
+		MessageRouter router = new PassiveRouter(
+				new Settings(SimScenario.GROUP_NS));
+		MovementModel movement = new StaticMovement();
+
+		int perPlane = n / NROF_PLANES;
+		SatelliteOrbit[] orbits = new SatelliteOrbit[n];
+		Coord[] locations = new Coord[n];
+		List<NetworkInterface> interfaces = new ArrayList<NetworkInterface>();
+		for (int i = 0; i < n; i++) {
+			int plane = i / perPlane;
+			int slot = i % perPlane;
+			/* Walker delta with phasing factor 1 */
+			double raan = 360.0 * plane / NROF_PLANES;
+			double ta = 360.0 * slot / perPlane + 360.0 * plane / n;
+			orbits[i] = new SatelliteOrbit(new double[] {SEMI_MAJOR_AXIS, 0,
+					INCLINATION, raan, 0, ta});
+
+			DTNHost host = new DTNHost(null, null, "sat", prototypes,
+					new ModuleCommunicationBus(), movement, router);
+			locations[i] = host.getLocation();
+			interfaces.add(host.getInterfaces().get(0));
+		}
+
+		List<NetworkInterface> buffer = new ArrayList<NetworkInterface>();
+		double[] xyz = new double[3];
+		long lookupTime = 0;
+		long neighbors = 0;
+		for (int step = 0; step < WARMUP_STEPS + steps; step++) {
+			for (int i = 0; i < n; i++) {
+				orbits[i].getAnalyticCoordinate(step * STEP, xyz);
+				xyz[0] += offset;
+				xyz[1] += offset;
+				xyz[2] += offset;
+				locations[i].setLocation3D(xyz);
+			}
+
+			long start = System.nanoTime();
+			long found = 0;
+			for (NetworkInterface ni : interfaces) {
+				ni.updateLocation();
+			}
+			for (NetworkInterface ni : interfaces) {
+				/* the interface itself is always in the result */
+				found += grid.getNearInterfaces(ni, buffer).size() - 1;
+			}
+			if (step >= WARMUP_STEPS) {
+				lookupTime += System.nanoTime() - start;
+				neighbors += found;
+			}
+		}
+
+		double usPerStep = lookupTime / 1000.0 / steps;
+		System.out.println(n + "\t" + mode + "\t" + (int)range +
+				"\t" + String.format("%.0f", usPerStep) + "\t" +
+				String.format("%.2f", usPerStep / n) + "\t" +
+				String.format("%.1f", (double)neighbors / steps / n));
+	}
+
+	/**
+	 * Network interface that only registers to the connectivity grid
+	 */
+	private static class BenchmarkInterface extends NetworkInterface {
+		private static final String TYPE = "Default";
+
+		public BenchmarkInterface(double range) {
+			super();
+			this.transmitRange = range;
+		}
+
+		public BenchmarkInterface(BenchmarkInterface ni) {
+			super(ni);
+		}
+
+		@Override
+		public NetworkInterface replicate() {
+			return new BenchmarkInterface(this);
+		}
+
+		@Override
+		public void connect(NetworkInterface anotherInterface) {
+		}
+
+		@Override
+		public void update() {
+		}
+
+		@Override
+		public void createConnection(NetworkInterface anotherInterface) {
+		}
+	}
+
+	/**
+	 * Movement model of hosts whose location is set by the benchmark
+	 */
+	private static class StaticMovement extends MovementModel {
+		@Override
+		public Path getPath() {
+			return null;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return new Coord(0, 0, 0);
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return Double.MAX_VALUE;
+		}
+
+		@Override
+		public MovementModel replicate() {
+			return this;
+		}
+	}
+}
@@ -5,6 +5,7 @@
 package interfaces;
 
 import java.util.Collection;
+import java.util.List;
 
 import core.NetworkInterface;
 
@@ -40,6 +41,23 @@ abstract public class ConnectivityOptimizer {
 	abstract public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni);
 
+	/**
+	 * Finds all network interfaces that might be located so that they can be
+	 * connected with the network interface and stores them to the given
+	 * list instead of a new collection
+	 * 
+	 * @param ni network interface that needs to be connected
+	 * @param niList list where the interfaces are stored; any old contents
+	 * are removed
+	 * @return The niList
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni, List<NetworkInterface> niList) {
+		niList.clear();
+		niList.addAll(getNearInterfaces(ni));
+		return niList;
+	}
+
 	/**
 	 * Finds all other interfaces that are registered to the
 	 * ConnectivityOptimizer
@@ -14,6 +14,7 @@ import core.DTNHost;
 import core.Message;
 import core.Neighbors;
 import core.NetworkInterface;
+import core.ScenarioConfig;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -133,7 +134,7 @@ public class ContactGraphInterface  extends NetworkInterface {
 //			}
 //		}
 		/**ûǰ·CGR滮**/
-		if (new Settings("Group").getSetting("router.CGR.type").contains("NoPreContactPlanDesign")){			
+		if (ScenarioConfig.getInstance().getCGRType().contains("NoPreContactPlanDesign")){			
 			// First break the old ones
 			optimizer.updateLocation(this);
 			for (int i=0; i<this.connections.size(); ) {
@@ -31,9 +31,9 @@ public class SatelliteLaserInterface  extends NetworkInterface {
 	/** indicates the interface type, i.e., radio or laser*/
 	public static final String interfaceType = "LaserInterface";
 	/** dynamic clustering by MEO or static clustering by MEO */
-	private static boolean dynamicClustering;
+	private boolean dynamicClustering;
 	/** allConnected or clustering */
-	private static String mode;
+	private String mode;
 	
 	/**
 	 * Reads the interface settings from the Settings file
@@ -52,6 +52,8 @@ public class SatelliteLaserInterface  extends NetworkInterface {
 	 */
 	public SatelliteLaserInterface(SatelliteLaserInterface ni) {
 		super(ni);
+		this.dynamicClustering = ni.dynamicClustering;
+		this.mode = ni.mode;
 	}
 
 	public NetworkInterface replicate()	{
@@ -92,15 +94,13 @@ public class SatelliteLaserInterface  extends NetworkInterface {
 		List<DTNHost> allowConnectedList = 
 				((SatelliteMovement)this.getHost().getMovementModel()).updateSatelliteLinkInfo();
 		
-		if (!this.getHost().multiThread){
-			if (optimizer == null) {
-				return; /* nothing to do */
-			}
-			
-			// First break the old ones
-			optimizer.updateLocation(this);
+		if (optimizer == null) {
+			return; /* nothing to do */
 		}
 		
+		// First break the old ones (no-op if World already did it)
+		optimizer.updateLocation(this);
+		
 		for (int i=0; i<this.connections.size(); ) {
 			Connection con = this.connections.get(i);
 			NetworkInterface anotherInterface = con.getOtherInterface(this);
@@ -122,20 +122,20 @@ public class SatelliteLaserInterface  extends NetworkInterface {
 		// Then find new possible connections
 		switch (mode) { 
 		case "AllConnected":{
-			if (!this.getHost().multiThread) {
-				// Then find new possible connections
-				interfaces = optimizer.getNearInterfaces(this);
-			}
+			// Then find new possible connections (looked up in parallel
+			// by World in the multi-thread mode)
+			interfaces = DTNHost.isMultiThread() ? nearInterfaces :
+				optimizer.getNearInterfaces(this, nearBuffer);
 			for (NetworkInterface i : interfaces) {
 				connect(i);
 			}
 			break;
 		}
 		case "Cluster":{
-			if (!this.getHost().multiThread) {
-				// Then find new possible connections
-				interfaces = optimizer.getNearInterfaces(this);
-			}				
+			// Then find new possible connections (looked up in parallel
+			// by World in the multi-thread mode)
+			interfaces = DTNHost.isMultiThread() ? nearInterfaces :
+				optimizer.getNearInterfaces(this, nearBuffer);
 
 			for (NetworkInterface i : interfaces) {	
 				/*ǷбУ·*/
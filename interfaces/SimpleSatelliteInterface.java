@@ -35,9 +35,9 @@ public class SimpleSatelliteInterface extends NetworkInterface {
 	/** indicates the interface type, i.e., radio or laser*/
 	public static final String interfaceType = "RadioInterface";
 	/** dynamic clustering by MEO or static clustering by MEO */
-	private static boolean dynamicClustering;
+	private boolean dynamicClustering;
 	/** allConnected or clustering */
-	private static String mode;
+	private String mode;
 	
 	/**
 	 * Reads the interface settings from the Settings file
@@ -56,6 +56,7 @@ public class SimpleSatelliteInterface extends NetworkInterface {
 	 */
 	public SimpleSatelliteInterface(SimpleSatelliteInterface ni) {
 		super(ni);
+		this.dynamicClustering = ni.dynamicClustering;
 		this.mode = ni.mode;
 	}
 
@@ -88,21 +89,6 @@ public class SimpleSatelliteInterface extends NetworkInterface {
 		}
 	}
 
-	/**
-	 * Independent calculation process in each node, which is used in multi-thread method.
-	 */
-	public Collection<NetworkInterface> multiThreadUpdate(){
-		if (optimizer == null) {
-			return null; /* nothing to do */
-		}
-
-		// First break the old ones
-		optimizer.updateLocation(this);
-
-		this.interfaces =
-				optimizer.getNearInterfaces(this);
-		return interfaces;
-	}
 	/**
 	 * Updates the state of current connections (i.e. tears down connections
 	 * that are out of range and creates new ones).
@@ -112,14 +98,12 @@ public class SimpleSatelliteInterface extends NetworkInterface {
 		List<DTNHost> allowConnectedList = 
 				((SatelliteMovement)this.getHost().getMovementModel()).updateSatelliteLinkInfo();
 		
-		if (!this.getHost().multiThread){
-			if (optimizer == null) {
-				return; /* nothing to do */
-			}
-			
-			// First break the old ones
-			optimizer.updateLocation(this);
+		if (optimizer == null) {
+			return; /* nothing to do */
 		}
+		
+		// First break the old ones (no-op if World already did it)
+		optimizer.updateLocation(this);
 
 		for (int i=0; i<this.connections.size(); ) {
 			Connection con = this.connections.get(i);
@@ -139,20 +123,20 @@ public class SimpleSatelliteInterface extends NetworkInterface {
 
 		switch (mode) { 
 		case "AllConnected":{
-			if (!this.getHost().multiThread) {
-				// Then find new possible connections
-				interfaces = optimizer.getNearInterfaces(this);
-			}
+			// Then find new possible connections (looked up in parallel
+			// by World in the multi-thread mode)
+			interfaces = DTNHost.isMultiThread() ? nearInterfaces :
+				optimizer.getNearInterfaces(this, nearBuffer);
 			for (NetworkInterface i : interfaces) {
 				connect(i);
 			}
 			break;
 		}
 		case "Cluster":{
-			if (!this.getHost().multiThread) {
-				// Then find new possible connections
-				interfaces = optimizer.getNearInterfaces(this);
-			}		
+			// Then find new possible connections (looked up in parallel
+			// by World in the multi-thread mode)
+			interfaces = DTNHost.isMultiThread() ? nearInterfaces :
+				optimizer.getNearInterfaces(this, nearBuffer);
 			
 			for (NetworkInterface i : interfaces) {	
 				/*ǷбУ·*/
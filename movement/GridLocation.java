@@ -63,11 +63,11 @@ public class GridLocation extends MovementModel {
 		
 		x = proto.startCoords[0] + 
 			((proto.nodeCount) % proto.cols) * proto.spacing;
-		x += rng.nextDouble() * proto.offset;
+		x += getRng().nextDouble() * proto.offset;
 		
 		y = proto.startCoords[1] + 
 			((proto.nodeCount) / proto.cols) * proto.spacing;
-		y += rng.nextDouble() * proto.offset;
+		y += getRng().nextDouble() * proto.offset;
 		
 		this.loc = new Coord(x,y);
 		
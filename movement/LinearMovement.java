@@ -108,8 +108,8 @@ public class LinearMovement extends MovementModel {
 			dx = placementFraction * xDiff;
 			dy = placementFraction * yDiff;
 		} else { /* random */
-			dx = rng.nextDouble() * xDiff;
-			dy = rng.nextDouble() * yDiff;			
+			dx = getRng().nextDouble() * xDiff;
+			dy = getRng().nextDouble() * yDiff;			
 		}
 		
 		c.translate(dx, dy);
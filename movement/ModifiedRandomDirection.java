@@ -33,7 +33,7 @@ extends RandomDirection {
     protected double getTravelFraction() {
         // Move a random fraction in the picked direction instead of all the
         // way to the edge.
-        return MovementModel.rng.nextDouble();
+        return MovementModel.getRng().nextDouble();
     }
 
     @Override
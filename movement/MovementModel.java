@@ -15,6 +15,7 @@ import core.ModuleCommunicationBus;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
+import core.SimulationContext;
 
 /**
  * <P>Superclass for all movement models. All subclasses must contain at least a 
@@ -45,9 +46,6 @@ public abstract class MovementModel {
 	/** movement models' rng seed -setting id ({@value})*/
 	public static final String RNG_SEED = "rngSeed";
 	
-	/** common rng for all movement models in the simulation */
-	protected static Random rng; 
-	
 	/** DTNHost to which this movement model is attached */
 	protected DTNHost host;
 	
@@ -184,10 +182,7 @@ public abstract class MovementModel {
 	 * @return A new speed between min and max values 
 	 */
 	protected double generateSpeed() {
-		if (rng == null) {
-			return 1;
-		}
-		return (maxSpeed - minSpeed) * rng.nextDouble() + minSpeed;
+		return (maxSpeed - minSpeed) * getRng().nextDouble() + minSpeed;
 	}
 	
 	/**
@@ -197,10 +192,7 @@ public abstract class MovementModel {
 	 * @return The time as a double
 	 */
 	protected double generateWaitTime() {
-		if (rng == null) {
-			return 0;
-		}
-		return (maxWaitTime - minWaitTime) * rng.nextDouble() + 
+		return (maxWaitTime - minWaitTime) * getRng().nextDouble() + 
 			minWaitTime;
 	}
 
@@ -282,16 +274,36 @@ public abstract class MovementModel {
 	public abstract MovementModel replicate();
 	
 	/**
-	 * Resets all static fields to default values
+	 * Resets the common rng of the movement models in the current
+	 * simulation context
 	 */
 	public static void reset() {
-		Settings s = new Settings(MOVEMENT_MODEL_NS);
-		if (s.contains(RNG_SEED)) {
-			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
-		}
-		else {
-			rng = new Random(0);
+		SimulationContext.current().removeState(MovementRng.class);
+	}
+	
+	/**
+	 * Returns the common rng for all movement models in the simulation
+	 * @return The random number generator of the current context
+	 */
+	protected static Random getRng() {
+		return SimulationContext.current().getState(MovementRng.class).rng;
+	}
+	
+	/**
+	 * Random number generator of the movement models of one simulation
+	 * context, seeded with the {@link #RNG_SEED} setting (default 0)
+	 */
+	static class MovementRng {
+		private final Random rng;
+		
+		private MovementRng() {
+			Settings s = new Settings(MOVEMENT_MODEL_NS);
+			if (s.contains(RNG_SEED)) {
+				rng = new Random(s.getInt(RNG_SEED));
+			}
+			else {
+				rng = new Random(0);
+			}
 		}
 	}
 	
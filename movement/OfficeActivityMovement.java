@@ -101,7 +101,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 		if (officeLocationsFile == null) {
 			MapNode[] mapNodes = (MapNode[])getMap().getNodes().
 				toArray(new MapNode[0]);
-			int officeIndex = rng.nextInt(mapNodes.length - 1) /
+			int officeIndex = getRng().nextInt(mapNodes.length - 1) /
 				(mapNodes.length/nrOfOffices);
 			officeLocation = mapNodes[officeIndex].getLocation().clone();
 		} else {
@@ -120,14 +120,14 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 					allOffices.add(coord);
 				}
 				officeLocation = allOffices.get(
-						rng.nextInt(allOffices.size())).clone();
+						getRng().nextInt(allOffices.size())).clone();
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
 		}
 		
 		deskLocation = getRandomCoorinateInsideOffice();
-		paretoRNG = new ParetoRNG(rng, officeWaitTimeParetoCoeff, 
+		paretoRNG = new ParetoRNG(getRng(), officeWaitTimeParetoCoeff, 
 				officeMinWaitTime, officeMaxWaitTime);
 	}
 	
@@ -146,13 +146,13 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 		if (proto.allOffices == null) {
 			MapNode[] mapNodes = (MapNode[])getMap().getNodes().
 				toArray(new MapNode[0]);
-			int officeIndex = rng.nextInt(mapNodes.length - 1) / 
+			int officeIndex = getRng().nextInt(mapNodes.length - 1) / 
 				(mapNodes.length/nrOfOffices);
 			officeLocation = mapNodes[officeIndex].getLocation().clone();
 		} else {
 			this.allOffices = proto.allOffices;
 			officeLocation = allOffices.get(
-					rng.nextInt(allOffices.size())).clone();
+					getRng().nextInt(allOffices.size())).clone();
 		}
 		
 		officeWaitTimeParetoCoeff = proto.officeWaitTimeParetoCoeff;
@@ -165,14 +165,14 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 	
 	public Coord getRandomCoorinateInsideOffice() {
 		double x_coord = officeLocation.getX() + 
-			(0.5 - rng.nextDouble()) * distance;
+			(0.5 - getRng().nextDouble()) * distance;
 		if (x_coord > getMaxX()) {
 			x_coord = getMaxX();
 		} else if (x_coord < 0) {
 			x_coord = 0;
 		}
 		double y_coord = officeLocation.getY() + 
-			(0.5 - rng.nextDouble()) * distance;
+			(0.5 - getRng().nextDouble()) * distance;
 		if (y_coord > getMaxY()) {
 			y_coord = getMaxY();
 		} else if (y_coord < 0) {
@@ -183,8 +183,8 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 	
 	@Override
 	public Coord getInitialLocation() {
-		double x = rng.nextDouble() * getMaxX();
-		double y = rng.nextDouble() * getMaxY();
+		double x = getRng().nextDouble() * getMaxX();
+		double y = getRng().nextDouble() * getMaxY();
 		Coord c = new Coord(x,y);
 
 		this.lastWaypoint = c;
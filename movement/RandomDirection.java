@@ -51,8 +51,8 @@ extends MovementModel {
     @Override
     public Coord getInitialLocation() {
         Coord c
-            = new Coord( MovementModel.rng.nextDouble() * super.getMaxX(),
-                         MovementModel.rng.nextDouble() * super.getMaxY() );
+            = new Coord( MovementModel.getRng().nextDouble() * super.getMaxX(),
+                         MovementModel.getRng().nextDouble() * super.getMaxY() );
         this.lastWaypoint = c;
 
         return c;
@@ -108,7 +108,7 @@ extends MovementModel {
         do {
             done = true;
 
-            angle = MovementModel.rng.nextDouble() * 2 * Math.PI - Math.PI;
+            angle = MovementModel.getRng().nextDouble() * 2 * Math.PI - Math.PI;
 
             double[] bottomParams
                     = this.getBottomParams( x0, y0, angle );
@@ -36,9 +36,8 @@ public class RandomWalk extends MovementModel implements SwitchableMovement {
 	 */
 	@Override
 	public Coord getInitialLocation() {
-		assert rng != null : "MovementModel not initialized!";
-		double x = rng.nextDouble() * getMaxX();
-		double y = rng.nextDouble() * getMaxY();
+		double x = getRng().nextDouble() * getMaxX();
+		double y = getRng().nextDouble() * getMaxY();
 		Coord c = new Coord(x,y);
 
 		this.lastWaypoint = c;
@@ -56,8 +55,8 @@ public class RandomWalk extends MovementModel implements SwitchableMovement {
 		Coord c = null;
 		while (true) {
 			
-			double angle = rng.nextDouble() * 2 * Math.PI;
-			double distance = minDistance + rng.nextDouble() * 
+			double angle = getRng().nextDouble() * 2 * Math.PI;
+			double distance = minDistance + getRng().nextDouble() * 
 				(maxDistance - minDistance);
 			
 			double x = lastWaypoint.getX() + distance * Math.cos(angle);
@@ -30,7 +30,6 @@ public class RandomWaypoint extends MovementModel {
 	 */
 	@Override
 	public Coord getInitialLocation() {
-		assert rng != null : "MovementModel not initialized!";
 		Coord c = randomCoord();
 
 		this.lastWaypoint = c;
@@ -59,7 +58,7 @@ public class RandomWaypoint extends MovementModel {
 	}
 	
 	protected Coord randomCoord() {
-		return new Coord(rng.nextDouble() * getMaxX(),
-				rng.nextDouble() * getMaxY());
+		return new Coord(getRng().nextDouble() * getMaxX(),
+				getRng().nextDouble() * getMaxY());
 	}
 }
@@ -11,10 +11,14 @@ import java.util.Map;
 import java.util.Set;
 
 import routing.SatelliteInterLinkInfo;
+import satellite_orbit.OrbitEphemeris;
 import satellite_orbit.SatelliteOrbit;
 import core.Coord;
 import core.DTNHost;
+import core.ScenarioConfig;
 import core.Settings;
+import core.SettingsError;
+import core.SimClock;
 import core.SimError;
 
 public class SatelliteMovement extends MovementModel {
@@ -54,23 +58,82 @@ public class SatelliteMovement extends MovementModel {
 	private SatelliteInterLinkInfo satelliteLinkInfo;
 
 	/** dynamic clustering by MEO or static clustering by MEO */
-	private static boolean dynamicClustering;
+	private final boolean dynamicClustering;
+	/** links allowed at {@link #linkInfoUpdateTime} (reused between updates) */
+	private List<DTNHost> allowConnectedListInSameLayer = new ArrayList<DTNHost>();
+	private double linkInfoUpdateTime = Double.NaN;
+
+	/**
+	 * Orbit propagation mode -setting id ({@value}). Used in the
+	 * {@link MovementModel#MOVEMENT_MODEL_NS} name space. Valid values are
+	 * {@link #STEPWISE_PROPAGATION} (default) and {@link #ANALYTIC_PROPAGATION}.
+	 */
+	public static final String ORBIT_PROPAGATION_S = "orbitPropagationMode";
+	/** propagate from t=0 in fixed steps, the original JAT way ({@value}) */
+	public static final String STEPWISE_PROPAGATION = "Stepwise";
+	/** solve Kepler's equation directly for the queried time ({@value}) */
+	public static final String ANALYTIC_PROPAGATION = "Analytic";
+	/**
+	 * Number of ephemeris samples per orbit period -setting id ({@value}).
+	 * Used in the {@link MovementModel#MOVEMENT_MODEL_NS} name space. If
+	 * positive, each satellite's orbit is tabulated at scenario build time
+	 * and positions are interpolated from the table. Default is 0 (off).
+	 */
+	public static final String EPHEMERIS_SAMPLES_S = "ephemerisSamples";
+
+	/** use the closed-form Kepler solution for the orbits */
+	private final boolean analyticPropagation;
+	/** number of ephemeris samples per period, 0 if tables are not used */
+	private final int ephemerisSamples;
+	/** precomputed positions of this satellite over one period (or null) */
+	private OrbitEphemeris ephemeris;
+	/** offset that moves the orbit origin to the middle of the world */
+	private final int worldOffset;
+	/** buffer of the coordinate queries that write to a Coord */
+	private final double[] xyz = new double[3];
 	
     public SatelliteMovement(Settings settings) {
         super(settings);
         Settings s0 = new Settings("Interface");
 		dynamicClustering = s0.getBoolean("DynamicClustering");
+		
+		Settings s1 = new Settings(MOVEMENT_MODEL_NS);
+		String mode = s1.getSetting(ORBIT_PROPAGATION_S, STEPWISE_PROPAGATION);
+		if (!mode.equals(STEPWISE_PROPAGATION) && 
+				!mode.equals(ANALYTIC_PROPAGATION)) {
+			throw new SettingsError("Unknown " + MOVEMENT_MODEL_NS + "." + 
+					ORBIT_PROPAGATION_S + " value: " + mode);
+		}
+		this.analyticPropagation = mode.equals(ANALYTIC_PROPAGATION);
+		this.worldOffset = ScenarioConfig.getInstance().getWorldSizeX() / 2;
+		ephemerisSamples = s1.getInt(EPHEMERIS_SAMPLES_S, 0);
+		if (ephemerisSamples != 0 && 
+				ephemerisSamples < OrbitEphemeris.MIN_SAMPLES) {
+			throw new SettingsError("Too small value (" + ephemerisSamples + 
+					") for " + MOVEMENT_MODEL_NS + "." + EPHEMERIS_SAMPLES_S);
+		}
     }
 
     protected SatelliteMovement(SatelliteMovement rwp) {
         super(rwp);
+        this.worldOffset = rwp.worldOffset;
+        this.dynamicClustering = rwp.dynamicClustering;
+        this.analyticPropagation = rwp.analyticPropagation;
+        this.ephemerisSamples = rwp.ephemerisSamples;
     }
     /**
      * ڽӿڽӵʱãȷÿڵӽ
+     * The list is computed once per simulation time and reused, so the
+     * caller must not modify it.
      */
     public List<DTNHost> updateSatelliteLinkInfo(){
+    	double now = SimClock.getTime();
+    	if (now == linkInfoUpdateTime) {
+    		return allowConnectedListInSameLayer;
+    	}
+    	linkInfoUpdateTime = now;
     	//֮ͬ·(4·)
-    	List<DTNHost> allowConnectedListInSameLayer = new ArrayList<DTNHost>();
+    	allowConnectedListInSameLayer.clear();
     	switch(this.getSatelliteType()){
     	case "LEO":{
     		if (this.satelliteLinkInfo.getLEOci() == null)
@@ -79,16 +142,13 @@ public class SatelliteMovement extends MovementModel {
     		//allowConnectedListInSameLayer.addAll(this.satelliteLinkInfo.getLEOci().updateAllowConnectLEOHostsInNeighborPlane());
     		//ֻͨŽڵܺMEOڵͨ
     		if (this.getHost().getRouter().CommunicationSatellitesLabel){
-    			List<DTNHost> MEOLists = new ArrayList<DTNHost>();
     			if (getDynamicClustering())
-    				MEOLists.addAll(this.satelliteLinkInfo.findAllMEOHosts());
+    				allowConnectedListInSameLayer.addAll(this.satelliteLinkInfo.findAllMEOHosts());
     			else{
     				//Ӿִָ̬Ĺڵ㣬initStaticClustering()ʼSimScenario.javaе
-    				MEOLists.addAll(this.getSatelliteLinkInfo().getLEOci().getManageHosts());
+    				allowConnectedListInSameLayer.addAll(this.getSatelliteLinkInfo().getLEOci().getManageHosts());
     				//System.out.println(this.getHost()+" mh: "+this.getSatelliteLinkInfo().getLEOci().getManageHosts());
     			}
-    			if (!MEOLists.isEmpty())
-    				allowConnectedListInSameLayer.addAll(MEOLists);
     		}
     		break;
     	}
@@ -203,6 +263,7 @@ public class SatelliteMovement extends MovementModel {
         }
         
         this.satelliteOrbit = new SatelliteOrbit(orbitParameters);      
+        this.satelliteOrbit.setAnalyticPropagation(analyticPropagation);
     }
     /**
      * get six orbit parameters
@@ -222,29 +283,91 @@ public class SatelliteMovement extends MovementModel {
     	this.satelliteLinkInfo = new SatelliteInterLinkInfo(this.getHost(), satelliteType);
     }
     /**
-     * get satellite coordinate in specific time
+     * get satellite coordinate in specific time. Allocates the returned
+     * array, see {@link #getSatelliteCoordinate(double, Coord)}.
      *
      * @param time
      * @return
      */
     public double[] getSatelliteCoordinate(double time) {
-        double[][] coordinate = new double[1][3];
-        double[] xyz = new double[3];
-
-        Settings s = new Settings("MovementModel");
-        int worldSize[] = s.getCsvInts("worldSize");
+        Coord location = getSatelliteCoordinate(time, new Coord(0, 0));
+        return new double[] {location.getX(), location.getY(),
+        		location.getZ()};
+    }
 
-        coordinate = satelliteOrbit.getSatelliteCoordinate(time);
-        /**ONEеľ뵥λΪmeterJATеĹ뾶λΪkmڵõӦ*1000ת**/
-//		xyz[0] = (coordinate[0][0]*1000 + worldSize/2);//Sƽ
-//		xyz[1] = (coordinate[0][1]*1000 + worldSize/2);
-//		xyz[2] = (coordinate[0][2]*1000 + worldSize/2);
+    /**
+     * get satellite coordinate in specific time without allocating, i.e.,
+     * the coordinate is written to the given location
+     *
+     * @param time
+     * @param location the coordinate to set
+     * @return the location
+     */
+    public Coord getSatelliteCoordinate(double time, Coord location) {
+        getOrbitCoordinate(time, xyz);
         /**ONEеľ뵥λΪmeterJATеĹ뾶λΪkm˴ͳһţONEеľ뵥λҲkmͬʱƽΪworldСһ**/
-        xyz[0] = (coordinate[0][0] + worldSize[0] / 2);// move the coordinate axis
-        xyz[1] = (coordinate[0][1] + worldSize[0] / 2);
-        xyz[2] = (coordinate[0][2] + worldSize[0] / 2);
+        location.resetLocation(xyz[0] + worldOffset, xyz[1] + worldOffset,
+        		xyz[2] + worldOffset);
+        return location;
+    }
 
-        return xyz;
+    /**
+     * get satellite coordinate in specific time in the orbit (ECI, km) frame
+     * without allocating
+     *
+     * @param time
+     * @param location the coordinate to set
+     * @return the location
+     */
+    public Coord getOrbitCoordinate(double time, Coord location) {
+        getOrbitCoordinate(time, xyz);
+        location.resetLocation(xyz[0], xyz[1], xyz[2]);
+        return location;
+    }
+
+    /**
+     * get satellite coordinate in specific time in the orbit (ECI, km) frame,
+     * i.e., without moving the axis to the middle of the world. Uses the
+     * ephemeris table if one was built.
+     *
+     * @param time
+     * @param xyz array where the coordinate is written
+     * @return the xyz array
+     */
+    public double[] getOrbitCoordinate(double time, double[] xyz) {
+    	if (ephemeris != null)
+    		return ephemeris.getCoordinate(time, xyz);
+    	return satelliteOrbit.getSatelliteCoordinate(time, xyz);
+    }
+
+    /**
+     * @return largest speed of this satellite on its orbit in km/s
+     */
+    public double getMaxOrbitSpeed() {
+    	return satelliteOrbit.getMaxSpeed();
+    }
+
+    /**
+     * @return precomputed ephemeris of this satellite, or null if the
+     * ephemeris tables are not enabled
+     */
+    public OrbitEphemeris getEphemeris() {
+    	return this.ephemeris;
+    }
+
+    /**
+     * @return orbit of this satellite
+     */
+    public SatelliteOrbit getSatelliteOrbit() {
+    	return this.satelliteOrbit;
+    }
+
+    /**
+     * @return offset that is added to the orbit (ECI) coordinates to move
+     * them to the middle of the world
+     */
+    public int getWorldOffset() {
+    	return this.worldOffset;
     }
 
     /**
@@ -258,14 +381,13 @@ public class SatelliteMovement extends MovementModel {
         double[][] coordinate = new double[1][3];
         double[] xyz = new double[3];
         SatelliteOrbit so = new SatelliteOrbit(parameters);
+        so.setAnalyticPropagation(analyticPropagation);
         coordinate = so.getSatelliteCoordinate(time);
         
-        Settings s = new Settings("MovementModel");
-        int worldSize[] = s.getCsvInts("worldSize");
         /**ONEеľ뵥λΪmeterJATеĹ뾶λΪkm˴ͳһţONEеľ뵥λҲkmͬʱƽΪworldСһ**/
-        xyz[0] = (coordinate[0][0] + worldSize[0] / 2);// move the coordinate axis
-        xyz[1] = (coordinate[0][1] + worldSize[0] / 2);
-        xyz[2] = (coordinate[0][2] + worldSize[0] / 2);
+        xyz[0] = (coordinate[0][0] + worldOffset);// move the coordinate axis
+        xyz[1] = (coordinate[0][1] + worldOffset);
+        xyz[2] = (coordinate[0][2] + worldOffset);
 
         return xyz;
     }
@@ -298,7 +420,6 @@ public class SatelliteMovement extends MovementModel {
      */
     @Override
     public Coord getInitialLocation() {
-        assert rng != null : "MovementModel not initialized!";
         Coord c = randomCoord();
 
         return c;
@@ -318,8 +439,8 @@ public class SatelliteMovement extends MovementModel {
     }
 
     protected Coord randomCoord() {
-        return new Coord(rng.nextDouble() * getMaxX(),
-                rng.nextDouble() * getMaxY());
+        return new Coord(getRng().nextDouble() * getMaxX(),
+                getRng().nextDouble() * getMaxY());
     }
     /**
      * Initialization entrance, set orbit-info during the initialization
@@ -332,6 +453,8 @@ public class SatelliteMovement extends MovementModel {
         this.hosts = hosts;
         //Initialize orbit parameters of this satellite host
         setOrbitParameters(orbitInfo.get(this.getHost()));
+        if (ephemerisSamples > 0)
+        	this.ephemeris = new OrbitEphemeris(satelliteOrbit, ephemerisSamples);
         //set all satellite hosts list
         setHostsList(new ArrayList<DTNHost>(orbitInfo.keySet()));
     }
@@ -356,10 +479,9 @@ public class SatelliteMovement extends MovementModel {
      * @return a satellite's location in specific time
      */
     public Coord getCoordinate(DTNHost host, double time) {
-        double[] p = orbitInfo.get(host);
-        double[] location = calculateOrbitCoordinate(p, time);
-
-        return new Coord(location[0], location[1], location[2]);
+        // the host's own movement model holds the (tabulated) orbit
+        return ((SatelliteMovement)host.getMovementModel())
+        		.getSatelliteCoordinate(time, new Coord(0, 0));
     }
     /**
      * @return satellite type
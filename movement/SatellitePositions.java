@@ -0,0 +1,263 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import satellite_orbit.ConstellationPropagator;
+import satellite_orbit.SatelliteOrbit;
+import core.Coord;
+import core.DTNHost;
+import core.DTNSim;
+import core.SimClock;
+import core.SimError;
+import core.SimulationContext;
+
+/**
+ * Positions of all the satellites of a host list at one time, computed in
+ * one batch. The satellites that use the analytic orbit propagation without
+ * an ephemeris table are propagated together by a
+ * {@link ConstellationPropagator}; the positions of the other satellites
+ * are asked from their movement models one by one. The positions are the
+ * same as the ones of {@link SatelliteMovement#getSatelliteCoordinate(double)},
+ * i.e., moved to the middle of the world.
+ * <P>
+ * A router that predicts the locations of all the hosts at future times
+ * calls {@link #update(double)} once per time and then
+ * {@link #getLocation(DTNHost, Coord)} for each host. Routers of the same
+ * simulation that predict the same times use the shared positions of
+ * {@link #getShared(List, double)} instead, so that the positions of a
+ * time are computed only once.
+ */
+public class SatellitePositions {
+	static {
+		DTNSim.registerForReset(SatellitePositions.class.getCanonicalName());
+		reset();
+	}
+
+	private final ConstellationPropagator propagator;
+	/** the satellites in position order, the propagated ones first */
+	private final DTNHost[] hosts;
+	private final SatelliteMovement[] movements;
+	/** position of each host address, -1 if the host isn't a satellite */
+	private final int[] index;
+	private final double[] offset;
+	private final double[] x;
+	private final double[] y;
+	private final double[] z;
+	/** time of the positions of the last {@link #update(double)} */
+	private double time = Double.NaN;
+
+	/**
+	 * Creates the positions of the satellites of a host list. Hosts that
+	 * don't have a satellite movement are ignored.
+	 * @param hosts The hosts
+	 */
+	public SatellitePositions(List<DTNHost> hosts) {
+		List<DTNHost> propagated = new ArrayList<DTNHost>();
+		List<DTNHost> others = new ArrayList<DTNHost>();
+		int maxAddress = -1;
+		for (DTNHost h : hosts) {
+			maxAddress = Math.max(maxAddress, h.getAddress());
+			if (!(h.getMovementModel() instanceof SatelliteMovement)) {
+				continue;
+			}
+			SatelliteMovement m = (SatelliteMovement)h.getMovementModel();
+			SatelliteOrbit orbit = m.getSatelliteOrbit();
+			if (m.getEphemeris() == null && orbit != null &&
+					orbit.isAnalyticPropagation()) {
+				propagated.add(h);
+			} else {
+				others.add(h);
+			}
+		}
+
+		this.propagator = new ConstellationPropagator(propagated.size());
+		int n = propagated.size() + others.size();
+		this.hosts = new DTNHost[n];
+		this.movements = new SatelliteMovement[n];
+		this.offset = new double[n];
+		this.x = new double[n];
+		this.y = new double[n];
+		this.z = new double[n];
+		this.index = new int[maxAddress + 1];
+		Arrays.fill(index, -1);
+
+		int nrofPropagated = propagated.size();
+		propagated.addAll(others);
+		for (int k = 0; k < n; k++) {
+			DTNHost h = propagated.get(k);
+			SatelliteMovement m = (SatelliteMovement)h.getMovementModel();
+			if (k < nrofPropagated) {
+				propagator.add(m.getSatelliteOrbit());
+			}
+			this.hosts[k] = h;
+			movements[k] = m;
+			offset[k] = m.getWorldOffset();
+			index[h.getAddress()] = k;
+		}
+	}
+
+	/**
+	 * Creates empty positions of the same satellites as another positions
+	 * object. The objects share the propagator, so they must not be
+	 * updated concurrently.
+	 * @param other The positions whose satellites are used
+	 */
+	private SatellitePositions(SatellitePositions other) {
+		this.propagator = other.propagator;
+		this.hosts = other.hosts;
+		this.movements = other.movements;
+		this.index = other.index;
+		this.offset = other.offset;
+		int n = hosts.length;
+		this.x = new double[n];
+		this.y = new double[n];
+		this.z = new double[n];
+	}
+
+	public static void reset() {
+		SimulationContext.current().removeState(Shared.class);
+	}
+
+	/**
+	 * Returns the positions of the satellites at the given time, shared by
+	 * all the callers of the current simulation context. The positions of
+	 * each time are computed once by the first caller; the positions of
+	 * the times before the current simulation time are dropped. The
+	 * returned positions must not be updated.
+	 * @param hosts All the hosts of the simulation
+	 * @param time The time
+	 * @return The positions at the time
+	 */
+	public static SatellitePositions getShared(List<DTNHost> hosts,
+			double time) {
+		Shared shared = SimulationContext.current().getState(Shared.class);
+		synchronized (shared) {
+			SatellitePositions positions = shared.get(time);
+			if (positions == null) {
+				if (shared.batch == null) {
+					shared.batch = new SatellitePositions(hosts);
+				}
+				shared.headMap(SimClock.getTime()).clear();
+				positions = new SatellitePositions(shared.batch);
+				positions.update(time);
+				shared.put(time, positions);
+			}
+			return positions;
+		}
+	}
+
+	/**
+	 * @return Number of satellites
+	 */
+	public int size() {
+		return this.hosts.length;
+	}
+
+	/**
+	 * Returns a satellite
+	 * @param k Position index of the satellite
+	 * @return The host
+	 */
+	public DTNHost getHost(int k) {
+		return this.hosts[k];
+	}
+
+	/**
+	 * Computes the positions of all the satellites at the given time. Does
+	 * nothing if the positions of that time were computed by the previous
+	 * call.
+	 * @param time The time
+	 */
+	public void update(double time) {
+		if (time == this.time) {
+			return;
+		}
+		update(time, 0, hosts.length);
+		this.time = time;
+	}
+
+	/**
+	 * Computes the positions of the satellites from..to-1 at the given
+	 * time. Concurrent calls with disjoint ranges are safe.
+	 * @param time The time
+	 * @param from Position index of the first satellite
+	 * @param to Position index after the last satellite
+	 */
+	public void update(double time, int from, int to) {
+		this.time = Double.NaN;
+		int nrofPropagated = propagator.size();
+		if (from < nrofPropagated) {
+			propagator.propagate(time, from, Math.min(to, nrofPropagated),
+					x, y, z);
+		}
+
+		double[] xyz = null;
+		for (int k = from; k < to; k++) {
+			if (k >= nrofPropagated) {
+				if (xyz == null) {
+					xyz = new double[3];
+				}
+				movements[k].getOrbitCoordinate(time, xyz);
+				x[k] = xyz[0];
+				y[k] = xyz[1];
+				z[k] = xyz[2];
+			}
+			x[k] = x[k] + offset[k];
+			y[k] = y[k] + offset[k];
+			z[k] = z[k] + offset[k];
+		}
+	}
+
+	/**
+	 * Moves the satellites from..to-1 to their computed positions
+	 * @param from Position index of the first satellite
+	 * @param to Position index after the last satellite
+	 */
+	public void setHostLocations(int from, int to) {
+		for (int k = from; k < to; k++) {
+			hosts[k].getLocation().resetLocation(x[k], y[k], z[k]);
+		}
+	}
+
+	/**
+	 * Returns true if the host is one of the satellites
+	 * @param host The host
+	 * @return True if the positions include the host
+	 */
+	public boolean contains(DTNHost host) {
+		int a = host.getAddress();
+		return a < index.length && index[a] >= 0;
+	}
+
+	/**
+	 * Sets a coordinate to the computed position of a satellite
+	 * @param host The satellite
+	 * @param location The coordinate to set
+	 * @return The location
+	 * @throws SimError if the host isn't one of the satellites
+	 */
+	public Coord getLocation(DTNHost host, Coord location) {
+		if (!contains(host)) {
+			throw new SimError(host + " is not a satellite of the batch");
+		}
+		int k = index[host.getAddress()];
+		location.resetLocation(x[k], y[k], z[k]);
+		return location;
+	}
+
+	/**
+	 * Shared positions of a simulation context by time
+	 */
+	static class Shared extends TreeMap<Double, SatellitePositions> {
+		private static final long serialVersionUID = 1L;
+		/** satellites of the shared positions */
+		private SatellitePositions batch;
+	}
+}
@@ -17,6 +17,7 @@ import util.Tuple;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.MessageIdRegistry;
 import core.MessageListener;
 import core.NetworkInterface;
 import core.Settings;
@@ -241,8 +242,8 @@ public abstract class ActiveRouter extends MessageRouter {
 			return TRY_LATER_BUSY; // only one connection at a time
 		}
 	
-		if ( hasMessage(m.getId()) || isDeliveredMessage(m) ||
-				super.isBlacklistedMessage(m.getId())) {
+		if ( hasMessage(m.getKey()) || isDeliveredMessage(m) ||
+				super.isBlacklistedMessage(m.getKey())) {
 			return DENIED_OLD; // already seen this message -> reject it
 		}
 		
@@ -268,7 +269,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 	
 	/** 
-	 * Removes messages from the buffer (oldest first) until
+	 * Removes messages from the buffer (oldest first by default, see
+	 * {@link MessageRouter#EVICTION_POLICY_S}) until
 	 * there's enough space for the new message.
 	 * @param size Size of the new message 
 	 * transferred, the transfer is aborted before message is removed
@@ -300,12 +302,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * Drops messages whose TTL is less than zero.
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl(); 
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
-			}
+		for (Message m : getExpiredMessages()) {
+			deleteMessage(m.getId(), true);
 		}
 	}
 	
@@ -322,33 +320,25 @@ public abstract class ActiveRouter extends MessageRouter {
 
 	
 	/**
-	 * Returns the oldest (by receive time) message in the message buffer 
+	 * Returns the first message of the eviction order (by default the 
+	 * oldest by receive time) in the message buffer 
 	 * (that is not being sent if excludeMsgBeingSent is true).
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
-	 * being sent from the oldest message check (i.e. if oldest message is
-	 * being sent, the second oldest message is returned)
-	 * @return The oldest message or null if no message could be returned
+	 * being sent from the check (i.e. if the first message is
+	 * being sent, the second one is returned)
+	 * @return The message to remove or null if no message could be returned
 	 * (no messages in buffer or all messages in buffer are being sent and
 	 * exludeMsgBeingSent is true)
 	 */
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		for (Message m : messages) {
-			
-			if (excludeMsgBeingSent && isSending(m.getId())) {
+		for (Message m : getEvictionOrder()) {
+			if (excludeMsgBeingSent && isSending(m.getKey())) {
 				continue; // skip the message(s) that router is sending
 			}
-			
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
-			}
+			return m;
 		}
 		
-		return oldest;
+		return null;
 	}
 	
 	/**
@@ -561,11 +551,21 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return True if the message is being sent false if not
 	 */
 	public boolean isSending(String msgId) {
+		return isSending(MessageIdRegistry.getKey(msgId));
+	}
+	
+	/**
+	 * Returns true if this router is currently sending a message with 
+	 * the given key.
+	 * @param key Key of the message ID (see {@link Message#getKey()})
+	 * @return True if the message is being sent false if not
+	 */
+	public boolean isSending(int key) {
 		for (Connection con : this.sendingConnections) {
 			if (con.getMessage() == null) {
 				continue; // transmission is finalized
 			}
-			if (con.getMessage().getId().equals(msgId)) {
+			if (con.getMessage().getKey() == key) {
 				return true;
 			}
 		}
@@ -603,15 +603,16 @@ public abstract class ActiveRouter extends MessageRouter {
 			Connection con = sendingConnections.get(i);
 
 			/* probability of interrupt */
-			String Id = con.getMessage().getId();
+			Message msg = con.getMessage();
 			boolean Interrupt = con.RandomInterrupt();  
 			if(Interrupt){
 				/** Ȼشش1·жϲϢ */
-				int time = (int)this.messages.get(Id).getProperty(RETRANS_TIME);
+				Message buffered = this.messages.get(msg.getKey());
+				int time = (int)buffered.getProperty(RETRANS_TIME);
 				if (time <= 0) {
-					this.deleteMessage(Id, false);
+					this.deleteMessage(msg.getId(), false);
 				} else {		
-					this.messages.get(Id).updateProperty(RETRANS_TIME, time-1);
+					buffered.updateProperty(RETRANS_TIME, time-1);
 				}
 			}
 			
@@ -20,12 +20,18 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 
+import routing.util.ContactPlan;
+import routing.util.ContactRouteEngine;
+import routing.util.RoutingInfo;
+import routing.util.ShortestPathEngine;
+import util.IntHashMap;
 import util.Tuple;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.Neighbors;
 import core.NetworkInterface;
+import core.ScenarioConfig;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -54,6 +60,13 @@ public class CGR extends ActiveRouter{
 	public static final String INTERFACENAME_S = "Interface";
 	/** transmit range -setting id ({@value})*/
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
+	/** contact plan file -setting id ({@value}); optional, the plan is
+	 * created with {@link routing.util.ContactPlanGenerator} */
+	public static final String CONTACT_PLAN_S = "router.CGR.contactPlanFile";
+	/** number of routes cached per destination -setting id ({@value});
+	 * used with a contact plan, default
+	 * {@link ContactRouteEngine#DEF_NROF_ROUTES} */
+	public static final String NROF_ROUTES_S = "router.CGR.nrofRoutes";
 
 	private static final double SPEEDOFLIGHT = 299792458;//٣3*10^8m/s
 	private static final double MESSAGESIZE = 1024000;//1MB
@@ -69,8 +82,10 @@ public class CGR extends ActiveRouter{
 	private List<DTNHost> hosts;//ȫֽڵб
 	
 	HashMap<DTNHost, Double> arrivalTime = new HashMap<DTNHost, Double>();
+	/** ·PathSearch */
+	private ShortestPathEngine search = new ShortestPathEngine();
 	private HashMap<DTNHost, List<Tuple<Integer, Boolean>>> routerTable = new HashMap<DTNHost, List<Tuple<Integer, Boolean>>>();//ڵ·ɱ
-	private HashMap<String, Double> busyLabel = new HashMap<String, Double>();//ָʾһڵ㴦æ״̬Ҫȴ
+	private IntHashMap<Double> busyLabel = new IntHashMap<Double>();//ָʾһڵ㴦æ״̬Ҫȴ
 	protected HashMap<DTNHost, HashMap<DTNHost, double[]>> neighborsList = new HashMap<DTNHost, HashMap<DTNHost, double[]>>();//ȫڵھ·ʱϢ
 	protected HashMap<DTNHost, HashMap<DTNHost, double[]>> predictList = new HashMap<DTNHost, HashMap<DTNHost, double[]>>();
 	
@@ -84,6 +99,13 @@ public class CGR extends ActiveRouter{
 	
 	/**ڼ¼ÿ½·connectionʲôʱԶϿ**/
 	private HashMap<Connection, Double> connectionDisconnectTime = new HashMap<Connection, Double>();
+	/**ԤȼĽӴƻûʱΪnullʱֻõǰھѰ·**/
+	private ContactPlan contactPlan;
+	/**ɽӴƻѰ·ÿĿĽڵK·һѰ·ʱ**/
+	private ContactRouteEngine routeEngine;
+	private int nrofRoutes;
+	/**һrouteEngineõ·Ϣʼͺ·ĽӴԤ**/
+	private ContactRouteEngine.Route selectedRoute;
 	/**
 	 * ȶõĽӴͼ
 	 * @param contactGraph
@@ -116,6 +138,12 @@ public class CGR extends ActiveRouter{
 		this.transmitRange = setting.getDouble("transmitRange");
 		Settings s = new Settings("Group");
 		linkDuration =  s.getDouble("router.CGR.linkDuration");
+		if (s.contains(CONTACT_PLAN_S)) {
+			this.contactPlan = ContactPlan.getPlan(s.getSetting(CONTACT_PLAN_S));
+			this.contactPlan.checkScenario(this.transmitRange,
+					ScenarioConfig.getInstance().getNrofHosts());
+		}
+		this.nrofRoutes = s.getInt(NROF_ROUTES_S, ContactRouteEngine.DEF_NROF_ROUTES);
 		this.msgPathLabel = s.getBoolean(MSG_PATHLABEL);//ļжȡ
 		Settings settings = new Settings("Scenario");
 		this.simEndTime = settings.getDouble("endTime");
@@ -232,8 +260,6 @@ public class CGR extends ActiveRouter{
 	}
 	
 	/***********************************************CPUCycleô*************************************************************/
-	private static HashMap<DTNHost, List<Tuple<Double, Double>>> contactTime = new HashMap<DTNHost, List<Tuple<Double, Double>>>();//ÿcontactӦ·뿪ʱ
-	private static HashMap<DTNHost, List<Tuple<DTNHost, DTNHost>>> contactPlan = new HashMap<DTNHost, List<Tuple<DTNHost, DTNHost>>>();
 	
 	//private boolean connectionSetupLabel = false;//ʾʱ̴˽ڵǷ·
 	
@@ -261,8 +287,7 @@ public class CGR extends ActiveRouter{
 //	}
 	
 	public void testCPUCycleProcess(){
-		Settings s = new Settings("Scenario");
-		double endTime = s.getDouble("endTime");
+		double endTime = ScenarioConfig.getInstance().getEndTime();
 		if(SimClock.getTime() >= endTime - 12){//9990s֮
 			List<Message> messages = new ArrayList<Message>(this.getMessageCollection());
 			if (!messages.isEmpty()){
@@ -272,47 +297,6 @@ public class CGR extends ActiveRouter{
 			}
 		}
 	}
-	public void recordContactGraph(Connection con, double disconnectTime){	
-//		if (connectionSetupLabel == true){
-//			DTNHost otherHost = con.getOtherNode(this.getHost());
-//			addContactGraph(new Tuple<DTNHost, DTNHost>(this.getHost(), otherHost), SimClock.getTime(), (int)(disconnectTime * 10));
-//		}
-		DTNHost otherHost = con.getOtherNode(this.getHost());
-		
-		if (this.contactPlan.get(this.getHost()) == null){
-			List<Tuple<DTNHost, DTNHost>> contactP = new ArrayList<Tuple<DTNHost, DTNHost>>();
-			List<Tuple<Double, Double>> contactT = new ArrayList<Tuple<Double, Double>>();
-			contactP.add(new Tuple<DTNHost,DTNHost>(this.getHost(),otherHost));
-			contactT.add(new Tuple<Double,Double>(SimClock.getTime(), disconnectTime));
-			this.contactPlan.put(this.getHost(), contactP);
-			this.contactTime.put(this.getHost(), contactT);
-		}
-		else{
-			List<Tuple<DTNHost, DTNHost>> contactP = this.contactPlan.get(this.getHost());
-			List<Tuple<Double, Double>> contactT = this.contactTime.get(this.getHost());
-			contactP.add(new Tuple<DTNHost,DTNHost>(this.getHost(),otherHost));
-			contactT.add(new Tuple<Double,Double>(SimClock.getTime(), disconnectTime));
-			this.contactPlan.put(this.getHost(), contactP);
-			this.contactTime.put(this.getHost(), contactT);
-		}
-		
-		if (this.contactPlan.get(otherHost) == null){
-			List<Tuple<DTNHost, DTNHost>> contactP = new ArrayList<Tuple<DTNHost, DTNHost>>();
-			List<Tuple<Double, Double>> contactT = new ArrayList<Tuple<Double, Double>>();
-			contactP.add(new Tuple<DTNHost,DTNHost>(otherHost, this.getHost()));
-			contactT.add(new Tuple<Double,Double>(SimClock.getTime(), disconnectTime));
-			this.contactPlan.put(otherHost, contactP);
-			this.contactTime.put(otherHost, contactT);
-		}
-		else{
-			List<Tuple<DTNHost, DTNHost>> contactP = this.contactPlan.get(otherHost);
-			List<Tuple<Double, Double>> contactT = this.contactTime.get(otherHost);
-			contactP.add(new Tuple<DTNHost,DTNHost>(otherHost, this.getHost()));
-			contactT.add(new Tuple<Double,Double>(SimClock.getTime(), disconnectTime));
-			this.contactPlan.put(otherHost, contactP);
-			this.contactTime.put(otherHost, contactT);
-		}
-	}
 	
 
 //	public void addContactGraph(Tuple<DTNHost, DTNHost> connection, double time, int duration){
@@ -420,8 +404,12 @@ public class CGR extends ActiveRouter{
 //				((ContactGraphInterface)from.getInterface(1)).CGRConstruct(msg, this.routerTable);
 //			}
 			/**CGRContactGraphInterfaceеĴ**/
-			if (findPathToSend(msg, connections, this.msgPathLabel) == true)
+			this.selectedRoute = null;
+			if (findPathToSend(msg, connections, this.msgPathLabel) == true){
+				if (this.selectedRoute != null)
+					this.routeEngine.consume(this.selectedRoute, msg.getSize());
 				return;
+			}
 		}
 
 	}
@@ -431,11 +419,11 @@ public class CGR extends ActiveRouter{
 	 * @return ǷҪȴ
 	 */
 	public boolean checkBusyLabelForNextHop(Message msg){
-		if (this.busyLabel.containsKey(msg.getId())){
+		if (this.busyLabel.containsKey(msg.getKey())){
 			System.out.println(this.getHost()+"  "+SimClock.getTime()+
-					"  "+msg+"  is busy until  " + this.busyLabel.get(msg.getId()));
-			if (this.busyLabel.get(msg.getId()) < SimClock.getTime()){
-				this.busyLabel.remove(msg.getId());
+					"  "+msg+"  is busy until  " + this.busyLabel.get(msg.getKey()));
+			if (this.busyLabel.get(msg.getKey()) < SimClock.getTime()){
+				this.busyLabel.remove(msg.getKey());
 				return false;
 			}else
 				return true;
@@ -684,8 +672,7 @@ public class CGR extends ActiveRouter{
 		boolean predictLable = false;
 		
 		
-		Settings s = new Settings("Scenario");
-		double updateInterval = s.getDouble("updateInterval");
+		double updateInterval = ScenarioConfig.getInstance().getUpdateInterval();
 		
 		arrivalTime.put(this.getHost(), this.RoutingTimeNow);//ʼʱ
 		
@@ -853,9 +840,9 @@ public class CGR extends ActiveRouter{
 	 * EASR(earliest arrival space routing algorithm)ִ··㷨
 	 * @param msg
 	 */
-	public List<Tuple<Integer, Boolean>> PathSearch(Message msg, List<DTNHost> busyHosts){
-//		double t0 = System.nanoTime();
-//		System.out.println(t0);//ͳ·㷨ʱ
+	public List<Tuple<Integer, Boolean>> PathSearch(final Message msg, final List<DTNHost> busyHosts){
+		if (this.contactPlan != null)
+			return contactPlanSearch(msg, busyHosts);
 		
 		if (routerTableUpdateLabel == true && busyHosts == null)
 			return routerTable.get(msg.getTo());
@@ -864,157 +851,52 @@ public class CGR extends ActiveRouter{
 		this.arrivalTime.clear();
 		
 		/**ȫĴʼٶΪһ**/
-		double transmitSpeed = this.getHost().getInterface(1).getTransmitSpeed();
-		/**ʾ·ɿʼʱ**/
-		//double RoutingTimeNow = SimClock.getTime();
+		final double transmitSpeed = this.getHost().getInterface(1).getTransmitSpeed();
+		final Neighbors nei = this.getHost().getNeighbors();
 		
-		/**·̽⵽һھ񣬲·ɱ**/
-		List<DTNHost> searchedSet = new ArrayList<DTNHost>();
-		List<DTNHost> sourceSet = new ArrayList<DTNHost>();
-		sourceSet.add(this.getHost());//ʼʱֻԴڵ
-		searchedSet.add(this.getHost());//ʼʱֻԴڵ
-		Neighbors nei = this.getHost().getNeighbors();
+		/**ַнڵ㣬ɵַҵڵ**/
+		int maxAddress = this.getHost().getAddress();
+		for (DTNHost h : this.hosts)
+			maxAddress = Math.max(maxAddress, h.getAddress());
+		final DTNHost[] hostsByAddress = new DTNHost[maxAddress + 1];
+		for (DTNHost h : this.hosts)
+			hostsByAddress[h.getAddress()] = h;
+		
+		search.setTieBreaking(random);//ʱȣѡ
+		search.init(maxAddress, this.getHost().getAddress(), this.RoutingTimeNow);//ʼʱ
 		
+		/**·̽⵽һھӣ·ɱ**/
 		List<DTNHost> oneHopNeighbors = nei.getNeighbors(this.getHost(), SimClock.getTime());
 		if (busyHosts != null)
 			oneHopNeighbors.removeAll(busyHosts);
-		
-		for (DTNHost neiHost : oneHopNeighbors){//·̽⵽һھӣ·ɱ
-			sourceSet.add(neiHost);//ʼʱֻбڵ·ھ		
-			Double time = SimClock.getTime() + msg.getSize()/this.getHost().getInterface(1).getTransmitSpeed();
-			List<Tuple<Integer, Boolean>> path = new ArrayList<Tuple<Integer, Boolean>>();
-			Tuple<Integer, Boolean> hop = new Tuple<Integer, Boolean>(neiHost.getAddress(), false);
-			path.add(hop);//ע˳
-			arrivalTime.put(neiHost, time);
-			routerTable.put(neiHost, path);
+		for (DTNHost neiHost : oneHopNeighbors){
+			double time = SimClock.getTime() + msg.getSize()/this.getHost().getInterface(1).getTransmitSpeed();
+			search.relax(neiHost.getAddress(), time, false);
 		}
-		//System.out.println(this.getHost()+" :  "+routerTable);
-		/**·̽⵽һھ񣬲·ɱ**/
+		/**·̽⵽һھӣ·ɱ**/
 		
-		int iteratorTimes = 0;
-		int size = this.hosts.size();
-		boolean updateLabel = true;
-		boolean predictLable = false;
-		
-		
-		arrivalTime.put(this.getHost(), this.RoutingTimeNow);//ʼʱ
-		
-		/**ȼУ**/
-		List<Tuple<DTNHost, Double>> PriorityQueue = new ArrayList<Tuple<DTNHost, Double>>();
-		//List<GridCell> GridCellListinPriorityQueue = new ArrayList<GridCell>();
-		//List<Double> correspondingTimeinQueue = new ArrayList<Double>();
-		/**ȼУ**/
-		
-//		double TGMCostTime = 0;//㷨ʱ
-//		int executeCount1 = 0;
-//		int executeCount2 = 0;
-		
-		while(true){//Dijsktra㷨˼룬ÿȫ֣ʱСļ·ɱ֤·ɱԶʱС·
-			if (iteratorTimes >= size )//|| updateLabel == false)
-				break; 
-			updateLabel = false;
-
-			for (DTNHost c : sourceSet){
-//				executeCount1++;
-
-				//List<DTNHost> neiList = GN.getNeighborsNetgrids(c, netgridArrivalTime.get(c));//ȡԴhostڵھӽڵ(ǰδھ)
-				
-//				/**ӶȲԴ,ɾ**/
-//				double t00 = System.currentTimeMillis();
-//				System.out.println("TGM start: "+t00 + "  "+this.hosts.size());
-//				for (DTNHost h : this.hosts){
-//					List<DTNHost> neiList = nei.getNeighbors(h, SimClock.getTime());
-//				}
-//				double t01 = System.currentTimeMillis();
-//				System.out.println("TGM total cost: "+(t01-t00));
-//				/**ӶȲԴ룬ɾ**/
-
-//				double t00 = System.nanoTime();//ӶȲԴ
-
-				List<DTNHost> neiList = nei.getNeighbors(c, SimClock.getTime());
+		//Dijsktra㷨ÿȡʱСĽڵ·ɱ֤·ɱԶʱС·
+		search.run(new ShortestPathEngine.Graph() {
+			public void expand(ShortestPathEngine engine, int node, double arrival) {
+				if (node >= hostsByAddress.length || hostsByAddress[node] == null)
+					return;
+				List<DTNHost> neiList = nei.getNeighbors(hostsByAddress[node], SimClock.getTime());
 				if (busyHosts != null)
 					neiList.removeAll(busyHosts);
-				
-//				double t01 = System.nanoTime();//ӶȲԴ
-//				TGMCostTime += (t01-t00);				//ӶȲԴ
-				
-				/**жǷѾԴ񼯺е**/
-				if (searchedSet.contains(c))
-					continue;
-				
-				searchedSet.add(c);
-				for (DTNHost eachNeighborNetgrid : neiList){//startTime.keySet()еھӽڵ㣬δھӽڵ
-					if (sourceSet.contains(eachNeighborNetgrid))//ȷͷ
-						continue;
-					
-//					executeCount2++;
-					
-					double time = arrivalTime.get(c) + msg.getSize()/transmitSpeed;
-					/**·Ϣ**/
-					List<Tuple<Integer, Boolean>> path = new ArrayList<Tuple<Integer, Boolean>>();
-					if (this.routerTable.containsKey(c))
-						path.addAll(this.routerTable.get(c));
-					Tuple<Integer, Boolean> thisHop = new Tuple<Integer, Boolean>(eachNeighborNetgrid.getAddress(), predictLable);
-					path.add(thisHop);//ע˳
-					/**·Ϣ**/
-					/**άСʱĶ**/
-					if (arrivalTime.containsKey(eachNeighborNetgrid)){
-						/**Ƿͨ·Уĸʱ**/
-						if (time <= arrivalTime.get(eachNeighborNetgrid)){
-							if (random.nextBoolean() == true && time - arrivalTime.get(eachNeighborNetgrid) < 0.1){//ʱȣѡ
-								
-								/**ע⣬ڶԶнеʱ򣬲ܹforѭԴ˶н޸Ĳᱨ**/
-								int index = -1;
-								for (Tuple<DTNHost, Double> t : PriorityQueue){
-									if (t.getKey() == eachNeighborNetgrid){
-										index = PriorityQueue.indexOf(t);
-									}
-								}
-								/**ע⣬PriorityQueueнеʱ򣬲ܹforѭԴ˶н޸Ĳᱨ**/
-								if (index > -1){
-									PriorityQueue.remove(index);
-									PriorityQueue.add(new Tuple<DTNHost, Double>(eachNeighborNetgrid, time));
-									arrivalTime.put(eachNeighborNetgrid, time);
-									routerTable.put(eachNeighborNetgrid, path);
-								}
-							}
-						}
-						/**Ƿͨ·Уĸʱ**/
-					}
-					else{						
-						PriorityQueue.add(new Tuple<DTNHost, Double>(eachNeighborNetgrid, time));
-						arrivalTime.put(eachNeighborNetgrid, time);
-						routerTable.put(eachNeighborNetgrid, path);
-					}
-					/**Զн**/
-					sort(PriorityQueue);	
-					updateLabel = true;
+				for (DTNHost eachNeighbor : neiList){
+					engine.relax(eachNeighbor.getAddress(), arrival + msg.getSize()/transmitSpeed, false);
 				}
 			}
-			iteratorTimes++;
-			for (int i = 0; i < PriorityQueue.size(); i++){
-				if (!sourceSet.contains(PriorityQueue.get(i).getKey())){
-					sourceSet.add(PriorityQueue.get(i).getKey());//µ
-					break;
-				}
-			}
-				
-//			if (routerTable.containsKey(msg.getTo()))//;ҵҪ·ֱ˳
-//				break;
+		}, ShortestPathEngine.NO_NODE);
+		
+		/**·ɱ**/
+		for (DTNHost h : hostsByAddress){
+			if (h == null || h == this.getHost() || !search.isReached(h.getAddress()))
+				continue;
+			arrivalTime.put(h, search.getCost(h.getAddress()));
+			routerTable.put(h, search.getPath(h.getAddress()));
 		}
 		routerTableUpdateLabel = true;
-			
-//		this.getHost().increaseRoutingRunningCount();//·㷨ô
-		
-//		double t1 = System.nanoTime();//ͳ·㷨ʱ
-//		System.out.println("cost: "+ (t1-t0)+" TGMCostTime: "+TGMCostTime+"  "+count+ "  AlgorithmCost: "+(t1-t0-TGMCostTime)+" Count1: "+executeCount1+" Count2: "+executeCount2);
-//		CostArray[0]+=(t1-t0-TGMCostTime);
-//		CostArray[1]+=executeCount1;
-//		CostArray[2]+=executeCount2;
-//		if (this.count++ >= RunningTimes){
-//			System.out.println("AverageCost: "+CostArray[0]/RunningTimes+" AverageExecuteCount1: "+CostArray[1]/RunningTimes+" AverageExecuteCount1: "+CostArray[2]/RunningTimes);
-//			throw new SimError("Pause");
-//		}
 		
 		if (routerTable.containsKey(msg.getTo())){
 			return routerTable.get(msg.getTo());//·
@@ -1022,10 +904,38 @@ public class CGR extends ActiveRouter{
 		else{
 			return null;
 		}
-
-		
 	}
 	
+	/**
+	 * ɽӴƻѰ·ʹ·滺K·ֻ·ϵĽӴʣʱ¼
+	 * @param msg
+	 * @param busyHosts ΪһĽڵ㣬Ϊnull
+	 * @return ĿĽڵ·ҲʱΪnull
+	 */
+	private List<Tuple<Integer, Boolean>> contactPlanSearch(Message msg, List<DTNHost> busyHosts){
+		if (this.routeEngine == null)
+			this.routeEngine = new ContactRouteEngine(this.contactPlan, this.nrofRoutes, 
+					this.getHost().getInterface(1).getTransmitSpeed(), this.simEndTime);
+		boolean[] busy = null;
+		if (busyHosts != null){
+			busy = new boolean[this.contactPlan.getNrofHosts()];
+			for (DTNHost h : busyHosts){
+				if (h != null && h.getAddress() < busy.length)
+					busy[h.getAddress()] = true;
+			}
+		}
+		
+		this.routerTable.remove(msg.getTo());
+		this.selectedRoute = this.routeEngine.findRoute(this.getHost().getAddress(), 
+				msg.getTo().getAddress(), SimClock.getTime(), msg.getSize(), busy);
+		if (this.selectedRoute == null)
+			return null;
+		List<Tuple<Integer, Boolean>> path = 
+				this.routeEngine.getPath(this.selectedRoute, SimClock.getTime(), msg.getSize());
+		this.routerTable.put(msg.getTo(), path);
+		return path;
+	}
+
 
 	public int transmitFeasible(DTNHost destination){//,жǲеĿĽڵ·ͬʱҪ֤·Ĵʱڴʱ
 		if (this.routerTable.containsKey(destination)){
@@ -1276,6 +1186,13 @@ public class CGR extends ActiveRouter{
 		}		
 		return false;		
 	}
+	@Override
+	public RoutingInfo getRoutingInfo() {
+		RoutingInfo top = super.getRoutingInfo();
+		if (this.routeEngine != null)
+			top.addMoreInfo(this.routeEngine.getRoutingInfo());
+		return top;
+	}
 	/**
 	 * д֤ڴ֮ԴڵϢmessagesɾ
 	 */
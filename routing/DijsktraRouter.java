@@ -10,10 +10,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 
+import routing.util.ShortestPathEngine;
+import util.IntHashMap;
 import util.Tuple;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.ScenarioConfig;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -48,11 +51,13 @@ public class DijsktraRouter extends ActiveRouter{
 	private HashMap<DTNHost, List<Integer>> routerTable = new HashMap<DTNHost, List<Integer>>();//ڵ·ɱ
 	private HashMap<DTNHost, Double> helloInterval =new HashMap<DTNHost, Double>();
 	private HashMap<Integer, Double> waitLabel = new HashMap<Integer, Double>();//ԤھӵĵȴʱIntegerʾڵַDoubleʾȴʱ
-	private HashMap<String, Double> busyLabel = new HashMap<String, Double>();//ָʾһڵ㴦æ״̬Ҫȴ
+	private IntHashMap<Double> busyLabel = new IntHashMap<Double>();//ָʾһڵ㴦æ״̬Ҫȴ
 	protected HashMap<DTNHost, HashMap<DTNHost, double[]>> neighborsList = new HashMap<DTNHost, HashMap<DTNHost, double[]>>();//ȫڵھ·ʱϢ
 	protected HashMap<DTNHost, HashMap<DTNHost, double[]>> predictList = new HashMap<DTNHost, HashMap<DTNHost, double[]>>();
 	
 	Random random = new Random();
+	/** ·dijsktraSearch */
+	private ShortestPathEngine search = new ShortestPathEngine();
 	/**
 	 * ʼ
 	 * @param s
@@ -98,8 +103,7 @@ public class DijsktraRouter extends ActiveRouter{
 		List<Connection> connections = this.getConnections();  //ȡھӽڵ
 		List<Message> messages = new ArrayList<Message>(this.getMessageCollection());
 		
-		Settings s = new Settings(GROUPNAME_S);
-		this.msgPathLabel = s.getBoolean(MSG_PATHLABEL);//ļжȡ
+		this.msgPathLabel = ScenarioConfig.getInstance().isMsgPathLabel();//ļжȡ
 		
 		if (isTransferring()) {//ж·Ƿռ
 			return; // can't start a new transfer
@@ -132,11 +136,11 @@ public class DijsktraRouter extends ActiveRouter{
 	 * @return ǷҪȴ
 	 */
 	public boolean checkBusyLabelForNextHop(Message msg){
-		if (this.busyLabel.containsKey(msg.getId())){
+		if (this.busyLabel.containsKey(msg.getKey())){
 			System.out.println(this.getHost()+"  "+SimClock.getTime()+
-					"  "+msg+"  is busy until  " + this.busyLabel.get(msg.getId()));
-			if (this.busyLabel.get(msg.getId()) < SimClock.getTime()){
-				this.busyLabel.remove(msg.getId());
+					"  "+msg+"  is busy until  " + this.busyLabel.get(msg.getKey()));
+			if (this.busyLabel.get(msg.getKey()) < SimClock.getTime()){
+				this.busyLabel.remove(msg.getKey());
 				return false;
 			}else
 				return true;
@@ -209,9 +213,9 @@ public class DijsktraRouter extends ActiveRouter{
 						if (this.getHost().getNeighbors().getPotentialNeighborsStartTime().containsKey(t.getKey())){
 							if (t.getValue() - this.getHost().getNeighbors().getPotentialNeighborsStartTime().get(t.getKey())[1] 
 									< 10 && t.getValue() > SimClock.getTime()){//֤ԤЧ
-								this.busyLabel.put(msg.getId(), t.getValue());//õȴ
+								this.busyLabel.put(msg.getKey(), t.getValue());//õȴ
 								System.out.print(this.getHost()+"  "
-										+msg+" Ԥ· "+this.busyLabel.get(msg.getId())+" "+waitList);
+										+msg+" Ԥ· "+this.busyLabel.get(msg.getKey())+" "+waitList);
 								return null;
 							}else{
 								msg.removeProperty(MSG_WAITLABEL);//ԤⲻȷֱӰɾ·
@@ -275,8 +279,8 @@ public class DijsktraRouter extends ActiveRouter{
 			if (this.predictionLabel[routerPath.get(0)] == 1){
 				DTNHost nextHop = this.getHostFromAddress(routerPath.get(0));
 				double startTime = this.getHost().getNeighbors().getPotentialNeighborsStartTime().get(nextHop)[0];
-				this.busyLabel.put(message.getId(), startTime);//һȴ
-				System.out.println(busyLabel.get(message.getId())+"  Prediction!");
+				this.busyLabel.put(message.getKey(), startTime);//һȴ
+				System.out.println(busyLabel.get(message.getKey())+"  Prediction!");
 			}
 			//this.routerTable.remove(message.getTo());
 			
@@ -447,7 +451,7 @@ public class DijsktraRouter extends ActiveRouter{
 							addWaitLabelInMessage(this.getHost(), host, msg, startTime[0]);//ϢӵȴԤھӵϢ
 							System.out.println(this.getHost()+"  "+msg+"  "+msg.getProperty(MSG_WAITLABEL));
 							//this.waitLabel.put(host.getAddress(), startTime[0]);
-							this.busyLabel.put(msg.getId(), startTime[0]);//һڵԤ⣬ֱbusylabelômessageȣϵԤ⣬ͨmessageдµwaitlabelʵ
+							this.busyLabel.put(msg.getKey(), startTime[0]);//һڵԤ⣬ֱbusylabelômessageȣϵԤ⣬ͨmessageдµwaitlabelʵ
 						}
 					}
 				}
@@ -471,7 +475,7 @@ public class DijsktraRouter extends ActiveRouter{
 						
 						addRouterTable(host, path, waitTime, startTime[1], true);//·ɱ,ͬʱԤλΪ1
 						//this.waitLabel.put(host.getAddress(), startTime[0]);
-						this.busyLabel.put(msg.getId(), startTime[0]);
+						this.busyLabel.put(msg.getKey(), startTime[0]);
 					}else{
 						assert false : "Ԥʱϣ";
 					}
@@ -504,142 +508,88 @@ public class DijsktraRouter extends ActiveRouter{
 	 * ֮ǰһھӽڵӽ·ɱ֮󣬽лdijsktra㷨·ɱ㣬ÿȫ飬֤ÿӽ·ɱһ·
 	 * @param msg
 	 */
-	public void dijsktraSearch(Message msg){
-		int msgSize = msg.getSize();
-		HashMap<DTNHost,HashMap<DTNHost, double[]>> totalNeighborsList = this.neighborsList;//ӵĽڵ
-	
-		List<DTNHost> restHosts = new ArrayList<DTNHost>();
-		//restHosts.addAll(totalNeighborsList.keySet());//ԼеĽڵ
-		restHosts.addAll(this.routerTable.keySet());
-		//HashMap<DTNHost, double[]> potentialNeighbors = this.getHost().getNeighbors().getPotentialNeighborsStartTime();
-		//if (!this.getHost().getNeighbors().getPotentialNeighborsStartTime().isEmpty())
-		//	restHosts.addAll(potentialNeighbors.keySet());//ԼԤھҲ
-		if (restHosts.contains(this.getHost()))
-			restHosts.remove(this.getHost());
+	public void dijsktraSearch(final Message msg){
+		final int msgSize = msg.getSize();
+		final HashMap<DTNHost,HashMap<DTNHost, double[]>> totalNeighborsList = this.neighborsList;//ӵĽڵ
+		if (transmitFeasible(msg.getTo()) == 1)
+			return;//Ѿܹ·дȥ
+		
+		/*ַнڵ㣬ɵַҵڵ*/
+		int maxAddress = this.getHost().getAddress();
+		for (DTNHost h : this.hosts)
+			maxAddress = Math.max(maxAddress, h.getAddress());
+		final DTNHost[] hostsByAddress = new DTNHost[maxAddress + 1];
+		for (DTNHost h : this.hosts)
+			hostsByAddress[h.getAddress()] = h;
+		final double[] waitUntilTime = new double[maxAddress + 1];//Ԥ·ĵʱ
+		final boolean[] found = new boolean[1];//ǷѾҵ˿е·
 		
-		List<Integer> minPath = new ArrayList<Integer>();
-		DTNHost minFromHost = null, minHost = null;
-		double transmitTime, minLiveTime = -2, minTransmitTime = 100000000;
-		int size = restHosts.size();
-		int minWaitLabel = -1;//Ԥڵĵȴ־͵ȴʱ
-		double minWaitUntilTime = -1;
+		search.setTieBreaking(random);//ͬʱѡ
+		search.init(maxAddress, this.getHost().getAddress(), 0);
+		for (DTNHost host : this.routerTable.keySet()){//·ɱеһھӺԤھΪ
+			search.relax(host.getAddress(), this.transmitDelay[host.getAddress()], this.predictionLabel[host.getAddress()] == 1);
+		}
+		
+		//Dijsktra㷨ÿȡʱСĽڵ·ɱ֤·ɱԶʱС·
+		search.run(new ShortestPathEngine.Graph() {
+			public void expand(ShortestPathEngine engine, int node, double delay) {
+				if (found[0] || node >= hostsByAddress.length || hostsByAddress[node] == null)
+					return;
+				DTNHost host = hostsByAddress[node];
+				if (!routerTable.containsKey(host)){
+					boolean predicted = engine.isPredicted(node);
+					addRouterTable(host, engine.getAddressPath(node), delay, endTime[node], predicted);//·ɱ
+					if (predicted && transmitFeasible(msg.getTo()) == 1){
+						addWaitLabelInMessage(hostsByAddress[engine.getPredecessor(node)], host, msg, waitUntilTime[node]);//ϢӵȴԤھӵϢ
+						System.out.println(msg+"  "+msg.getProperty(MSG_WAITLABEL)+"  "+getHost()+"  "+routerTable);
+					}
+					if (transmitFeasible(msg.getTo()) == 1){
+						found[0] = true;//;Ѿҵ·ֱӷزüѰ
+						return;
+					}
+				}
+				HashMap<DTNHost, double[]> neighbors = totalNeighborsList.get(host);
+				HashMap<DTNHost, double[]> potentialNeighbors = predictList.get(host);
 				
-		int iteratorTimes = 0;
-		boolean hasNeighborsLabel = true;
-		boolean updateLabel = true;
-		boolean minPredictionLabel = false;
-			
-		while(true){//Dijsktra㷨˼룬ÿȫ֣ʱСļ·ɱ֤·ɱԶʱС·
-			if (iteratorTimes >= size || hasNeighborsLabel == false || updateLabel == false)
-				break;
-			hasNeighborsLabel = false;//ָʾĳһڵĩ˽ڵ(ֻһ·)
-			updateLabel = false;
-			minPredictionLabel = false;
-			
-			restHosts.clear();
-			restHosts.addAll(this.routerTable.keySet());
-			for (DTNHost host : restHosts){
-				if (this.routerTable.containsKey(host)){
-					List<DTNHost> itsNeighbors = new ArrayList<DTNHost>();
-					itsNeighbors.addAll(totalNeighborsList.get(host).keySet());
-					Collection<DTNHost> nextPotentialNeighbors = this.predictList.get(host).keySet();
-					itsNeighbors.addAll(nextPotentialNeighbors);//ԤδΪھӵĽڵ
-					if (!itsNeighbors.isEmpty()){
-						for (DTNHost nei : itsNeighbors){//hostڵھӽڵ
-							if (!this.routerTable.containsKey(nei) //·
-									&& nei.getAddress() != this.getHost().getAddress() ){//֤Ԥڵھ·Ч
-								hasNeighborsLabel = true;//нڵھӣûµھӽڵɹ·ɱҪѭȥ
-								if (nextPotentialNeighbors.contains(nei)){//˵ԤھӣҪԤλλ	
-									double[] startTime = this.predictList.get(host).get(nei);
-									double waitTime = calculatePredictionDelay(msgSize, startTime[0], host, nei);//ȴ˽ڵ㵽Ҫ೤ʱ
-									if (waitTime > 0){
-										if (startTime[1] != startTime[0] && //Ⱦ˵˽ڵпܳΪδھ
-												startTime[1] - startTime[0] > msg.getSize()/         //ñ֤Ԥ·Ĵʱ贫ʱ
-												(nei.getInterface(1).getTransmitSpeed() > host.getInterface(1).getTransmitSpeed() ? 
-												host.getInterface(1).getTransmitSpeed() : nei.getInterface(1).getTransmitSpeed())){
-											
-											List<Integer> path = new ArrayList<Integer>();
-											path.addAll(this.routerTable.get(host));
-											path.add(nei.getAddress());//ע˳
-											double existTime = this.predictList.get(host).get(nei)[1];//Ԥھӵ뿪ʱ
-											if (this.predictList.get(host).get(nei)[0] 
-																	< endTime[host.getAddress()]){													
-												existTime = (endTime[host.getAddress()] > existTime) 
-																	? existTime : endTime[host.getAddress()];//·ڵЧʱ
-											}else{
-												existTime = endTime[host.getAddress()];
-											}
-											transmitTime = this.transmitDelay[host.getAddress()] + waitTime;//ǰĴʱϱĵȴʱ
-											if (transmitTime <= minTransmitTime && existTime >= transmitTime){//飬·ʱʹʱ֮жϣ
-												
-												if (random.nextBoolean() == true && transmitTime - minTransmitTime < 1){
-													updateLabel = true;
-													minTransmitTime = transmitTime;
-													minPath = path;
-													minHost = nei;
-													minFromHost = host;
-													minLiveTime = existTime;
-													minPredictionLabel = true;//neiԤڵĻ
-													minWaitLabel = nei.getAddress();
-													minWaitUntilTime = startTime[0];	
-												}										
-											}
-										}			
-									}
-								}
-								else{//ھneiԤھӽڵ
-									transmitTime = calculateDelay(msgSize, nei , host);//ڵ֮Ĵʱ˳ܷhostΪ·ɱڵ·ڵ㣬neihostھ
-									
-									List<Integer> path = new ArrayList<Integer>();
-									path.addAll(this.routerTable.get(host));
-									path.add(nei.getAddress());//ע˳
-								
-									double existTime = totalNeighborsList.get(host).get(nei)[1];
-									existTime = (endTime[host.getAddress()] > existTime) ?
-															existTime : endTime[host.getAddress()];
-									
-									//double existTime = calculateExistTime(liveTime[host.getAddress()], host, path);
-									if (transmitTime <= minTransmitTime && existTime >= transmitTime){//飬·ʱʹʱ֮жϣ
-										if (random.nextBoolean() == true && transmitTime - minTransmitTime < 1){
-											updateLabel = true;
-											minTransmitTime = transmitTime;
-											minPath = path;
-											minHost = nei;
-											minFromHost = host;
-											minLiveTime = existTime;
-											minPredictionLabel = false;
-										}
-									}
-								}
-							}
+				List<DTNHost> itsNeighbors = new ArrayList<DTNHost>();
+				if (neighbors != null)
+					itsNeighbors.addAll(neighbors.keySet());
+				if (potentialNeighbors != null)
+					itsNeighbors.addAll(potentialNeighbors.keySet());//ԤδΪھӵĽڵ
+				for (DTNHost nei : itsNeighbors){//hostڵھӽڵ
+					if (routerTable.containsKey(nei) //·
+							|| nei.getAddress() == getHost().getAddress())
+						continue;
+					if (potentialNeighbors != null && potentialNeighbors.containsKey(nei)){//˵ԤھӣҪԤλλ
+						double[] startTime = potentialNeighbors.get(nei);
+						double waitTime = calculatePredictionDelay(msgSize, startTime[0], host, nei);//ȴ˽ڵ㵽Ҫ೤ʱ
+						if (waitTime <= 0 || startTime[1] == startTime[0])//Ⱦ˵˽ڵпܳΪδھ
+							continue;
+						if (startTime[1] - startTime[0] <= msgSize/         //ñ֤Ԥ·Ĵʱ贫ʱ
+								(nei.getInterface(1).getTransmitSpeed() > host.getInterface(1).getTransmitSpeed() ? 
+								host.getInterface(1).getTransmitSpeed() : nei.getInterface(1).getTransmitSpeed()))
+							continue;
+						double existTime = startTime[1];//Ԥھӵ뿪ʱ
+						if (startTime[0] < endTime[node])
+							existTime = (endTime[node] > existTime) ? existTime : endTime[node];//·ڵЧʱ
+						else
+							existTime = endTime[node];
+						double transmitTime = delay + waitTime;//ǰĴʱϱĵȴʱ
+						if (existTime >= transmitTime && engine.relax(nei.getAddress(), transmitTime, true)){
+							endTime[nei.getAddress()] = existTime;
+							waitUntilTime[nei.getAddress()] = startTime[0];
 						}
 					}
+					else{//ھneiԤھӽڵ
+						double transmitTime = calculateDelay(msgSize, nei , host);//ڵ֮Ĵʱ˳ܷhostΪ·ɱڵ·ڵ㣬neihostھ
+						double existTime = neighbors.get(nei)[1];
+						existTime = (endTime[node] > existTime) ? existTime : endTime[node];
+						if (existTime >= transmitTime && engine.relax(nei.getAddress(), transmitTime, false))
+							endTime[nei.getAddress()] = existTime;
+					}
 				}
 			}
-			if (minHost == null){
-				assert false : "minHost is empty!!! in "+this.getHost();
-				break;
-			}else{
-				addRouterTable(minHost, minPath, minTransmitTime, minLiveTime, minPredictionLabel);//·ɱ,falseԤ⵽ھӽڵ
-				if (minPredictionLabel && transmitFeasible(msg.getTo()) == 1){
-					addWaitLabelInMessage(minFromHost, minHost, msg, minWaitUntilTime);//ϢӵȴԤھӵϢ
-					System.out.println(msg+"  "+msg.getProperty(MSG_WAITLABEL)+"  "+this.getHost()+"  "+this.routerTable);
-					//this.waitLabel.put(minHost.getAddress(), minWaitUntilTime);
-					return;
-				}
-
-				if (transmitFeasible(msg.getTo()) == 1)//жǷܹ·дȥ
-					return;//;Ѿҵ·ֱӷزüѰ
-				//if (transmitFeasible(msg.getTo()) == 0)//жǷܹ·дȥ
-				//	return;//;Ѿҵ·ֱӷزüѰ
-				minWaitLabel = -1;
-				minWaitUntilTime = -1;
-				minTransmitTime = 100000000;
-				minFromHost = null;
-				minHost = null;
-			}
-			iteratorTimes++;
-		}	
+		}, ShortestPathEngine.NO_NODE);
 	}
 	/**
 	 * ͨϢͷڵ·Ϣ(ڵַ)ҵӦĽڵ㣬DTNHost
@@ -803,10 +753,9 @@ public class DijsktraRouter extends ActiveRouter{
 		List<Connection> connections = t.getValue().getOtherNode(this.getHost()).getConnections();
 		for (Connection con : connections){
 			if (con.isTransferring()){
-				assert this.busyLabel.get(con) == null : "error! ";
-				this.busyLabel.put(t.getKey().getId(), con.getRemainingByteCount()/con.getSpeed() + SimClock.getTime());
+				this.busyLabel.put(t.getKey().getKey(), con.getRemainingByteCount()/con.getSpeed() + SimClock.getTime());
 				System.out.println(this.getHost()+"  "+t.getKey()+"  "+
-						t.getValue().getOtherNode(this.getHost())+" "+con+"  "+this.busyLabel.get(t.getKey().getId()));			
+						t.getValue().getOtherNode(this.getHost())+" "+con+"  "+this.busyLabel.get(t.getKey().getKey()));			
 				return true;//˵ĿĽڵæ
 			}
 		}
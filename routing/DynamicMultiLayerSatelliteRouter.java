@@ -834,37 +834,10 @@ public class DynamicMultiLayerSatelliteRouter extends ActiveRouter {
      * Return current network topology in forms of temporal graph
      */
     public HashMap<DTNHost, List<DTNHost>> localTopologyCalculation(List<DTNHost> allHosts) {
-        HashMap<DTNHost, Coord> locationRecord = new HashMap<DTNHost, Coord>();
-        HashMap<DTNHost, List<DTNHost>> topologyInfo = new HashMap<DTNHost, List<DTNHost>>();
-
-        double radius = transmitRange;//Represent communication Radius
-
-        //Calculate the current coordinate of all satellite nodes in the network
-        for (DTNHost h : allHosts) {
-            //locationRecord.put(h, movementModel.getCoordinate(h, SimClock.getTime()));
-            locationRecord.put(h, h.getLocation());
-        }
-
-        //Calculate links between each two satellite nodes
-        for (DTNHost h : allHosts) {
-            for (DTNHost otherNode : allHosts) {
-                if (otherNode == h)
-                    continue;
-                Coord otherNodeLocation = locationRecord.get(otherNode);
-                if (locationRecord.get(h).distance(otherNodeLocation) <= radius) {
-                    if (topologyInfo.get(h) == null)
-                        topologyInfo.put(h, new ArrayList<DTNHost>());
-                    List<DTNHost> neighborList = topologyInfo.get(h);
-                    if (neighborList == null) {
-                        neighborList = new ArrayList<DTNHost>();
-                        neighborList.add(otherNode);
-                    } else {
-                        neighborList.add(otherNode);
-                    }
-                }
-            }
-        }
-        return topologyInfo;
+        //the links of all the satellites are calculated once per update interval for all routers
+        SatelliteMovement movementModel = ((SatelliteMovement) this.getHost().getMovementModel());
+        TopologySnapshot topology = TopologySnapshot.getTopology(movementModel.getHosts(), transmitRange);
+        return topology.getAdjacency(allHosts);
     }
  
     /**
@@ -11,6 +11,8 @@ import java.util.List;
 import java.util.Random;
 
 import movement.MovementModel;
+import routing.util.ShortestPathEngine;
+import util.IntHashMap;
 import util.Tuple;
 import core.Connection;
 import core.Coord;
@@ -18,6 +20,7 @@ import core.DTNHost;
 import core.Message;
 import core.Neighbors;
 import core.NetworkInterface;
+import core.ScenarioConfig;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -49,9 +52,10 @@ public class EASRRouter extends ActiveRouter{
 	private double	transmitRange;//õĿͨоֵ
 	private List<DTNHost> hosts;//ȫֽڵб
 	
-	HashMap<DTNHost, Double> arrivalTime = new HashMap<DTNHost, Double>();
+	/** ··ɱе· */
+	private ShortestPathEngine search = new ShortestPathEngine();
 	private HashMap<DTNHost, List<Tuple<Integer, Boolean>>> routerTable = new HashMap<DTNHost, List<Tuple<Integer, Boolean>>>();//ڵ·ɱ
-	private HashMap<String, Double> busyLabel = new HashMap<String, Double>();//ָʾһڵ㴦æ״̬Ҫȴ
+	private IntHashMap<Double> busyLabel = new IntHashMap<Double>();//ָʾһڵ㴦æ״̬Ҫȴ
 	protected HashMap<DTNHost, HashMap<DTNHost, double[]>> neighborsList = new HashMap<DTNHost, HashMap<DTNHost, double[]>>();//ȫڵھ·ʱϢ
 	protected HashMap<DTNHost, HashMap<DTNHost, double[]>> predictList = new HashMap<DTNHost, HashMap<DTNHost, double[]>>();
 	
@@ -101,8 +105,7 @@ public class EASRRouter extends ActiveRouter{
 		List<Connection> connections = this.getConnections();  //ȡھӽڵ
 		List<Message> messages = new ArrayList<Message>(this.getMessageCollection());
 		
-		Settings s = new Settings(GROUPNAME_S);
-		this.msgPathLabel = s.getBoolean(MSG_PATHLABEL);//ļжȡ
+		this.msgPathLabel = ScenarioConfig.getInstance().isMsgPathLabel();//ļжȡ
 		
 		if (isTransferring()) {//ж·Ƿռ
 			return; // can't start a new transfer
@@ -134,11 +137,11 @@ public class EASRRouter extends ActiveRouter{
 	 * @return ǷҪȴ
 	 */
 	public boolean checkBusyLabelForNextHop(Message msg){
-		if (this.busyLabel.containsKey(msg.getId())){
+		if (this.busyLabel.containsKey(msg.getKey())){
 			System.out.println(this.getHost()+"  "+SimClock.getTime()+
-					"  "+msg+"  is busy until  " + this.busyLabel.get(msg.getId()));
-			if (this.busyLabel.get(msg.getId()) < SimClock.getTime()){
-				this.busyLabel.remove(msg.getId());
+					"  "+msg+"  is busy until  " + this.busyLabel.get(msg.getKey()));
+			if (this.busyLabel.get(msg.getKey()) < SimClock.getTime()){
+				this.busyLabel.remove(msg.getKey());
 				return false;
 			}else
 				return true;
@@ -242,7 +245,7 @@ public class EASRRouter extends ActiveRouter{
 				System.out.println("һԤ");
 				return null;
 				//DTNHost nextHop = this.getHostFromAddress(routerPath.get(0).getKey()); 
-				//this.busyLabel.put(message.getId(), startTime);//һȴ
+				//this.busyLabel.put(message.getKey(), startTime);//һȴ
 			}
 			else{
 				System.out.println(message+"  "+message.getProperty(MSG_ROUTERPATH));
@@ -309,104 +312,63 @@ public class EASRRouter extends ActiveRouter{
 	 * EASR(earliest arrival space routing algorithm)ִ··㷨
 	 * @param msg
 	 */
-	public void PathSearch(Message msg){
-		Neighbors nei = this.getHost().getNeighbors();
-		/*nei.updateNeighbors(this.getHost(), connections);//ھб
+	public void PathSearch(final Message msg){
+		final Neighbors nei = this.getHost().getNeighbors();
 		
-		/*·̽⵽һھӣ·ɱ*/
-		List<DTNHost> sourceSet = new ArrayList<DTNHost>();
-		sourceSet.add(this.getHost());//ʼʱֻбڵ
+		/*ַнڵ㣬ɵַҵڵ*/
+		int maxAddress = this.getHost().getAddress();
+		for (DTNHost h : this.hosts)
+			maxAddress = Math.max(maxAddress, h.getAddress());
+		final DTNHost[] hostsByAddress = new DTNHost[maxAddress + 1];
+		for (DTNHost h : this.hosts)
+			hostsByAddress[h.getAddress()] = h;
+		
+		search.setTieBreaking(random);//ͬr_NMSCx
+		search.init(maxAddress, this.getHost().getAddress(), SimClock.getTime());//ʼʱ
 		
-		for (Connection con : this.getHost().getConnections()){//·̽⵽һھӣ·ɱ
+		/*·̽⵽һھӣ·ɱ*/
+		for (Connection con : this.getHost().getConnections()){
 			DTNHost neiHost = con.getOtherNode(this.getHost());
-			sourceSet.add(neiHost);//ʼʱֻбڵ·ھ		
-			Double time = SimClock.getTime() + msg.getSize()/this.getHost().getInterface(1).getTransmitSpeed();
+			double time = SimClock.getTime() + msg.getSize()/this.getHost().getInterface(1).getTransmitSpeed();
 			List<Tuple<Integer, Boolean>> path = new ArrayList<Tuple<Integer, Boolean>>();
-			Tuple<Integer, Boolean> hop = new Tuple<Integer, Boolean>(neiHost.getAddress(), false);
-			path.add(hop);//ע˳
-			arrivalTime.put(neiHost, time);
+			path.add(new Tuple<Integer, Boolean>(neiHost.getAddress(), false));
 			routerTable.put(neiHost, path);
+			search.relax(neiHost.getAddress(), time, false);
 		}
 		System.out.println(this.getHost()+" :  "+routerTable);
 		/*·̽⵽һھӣ·ɱ*/
 		
-		int iteratorTimes = 0;
-		int size = this.hosts.size();
-		double minTime = 100000;
-		DTNHost minHost =null;
-		boolean updateLabel = true;
-		boolean predictLable = false;
-		List<Tuple<Integer, Boolean>> minPath = new ArrayList<Tuple<Integer, Boolean>>();
-
-		
-		arrivalTime.put(this.getHost(), SimClock.getTime());//ʼʱ
-		
-		while(true){//Dijsktra㷨˼룬ÿȫ֣ʱСļ·ɱ֤·ɱԶʱС·
-			if (iteratorTimes >= size || updateLabel == false)
-				break; 
-			updateLabel = false;
-			minTime = 100000;
-			HashMap<DTNHost, Tuple<HashMap<DTNHost, List<Double>>, HashMap<DTNHost, List<Double>>>> 
-						predictionList = new HashMap<DTNHost, Tuple<HashMap<DTNHost, List<Double>>, 
-						HashMap<DTNHost, List<Double>>>>();//洢ƣ֮ǰѾͲظ
-			
-			for (DTNHost host : sourceSet){
-				Tuple<HashMap<DTNHost, List<Double>>, HashMap<DTNHost, List<Double>>> predictTime;//ھӽڵ㵽ʱ뿪ʱĶԪ
-				HashMap<DTNHost, List<Double>> startTime;
-				HashMap<DTNHost, List<Double>> leaveTime;
-				
-				if (predictionList.containsKey(host) && false){//洢ƣ֮ǰѾͲظ
-					predictTime = predictionList.get(host);
-				}
-				else{
-					List<DTNHost> neiList = nei.getNeighbors(host, arrivalTime.get(host));//ȡԴhostڵھӽڵ(ǰδھ)
-					assert neiList==null:"ûܳɹȡָʱھ";
-					predictTime = nei.getFutureNeighbors(neiList, host, arrivalTime.get(host));
-				}
-				startTime = predictTime.getKey();
-				leaveTime = predictTime.getValue();
-				if (startTime.keySet().isEmpty())
-					continue;
+		final double deadline = SimClock.getTime() + msgTtl;
+		//Dijsktra㷨ÿȡʱĽڵ·ɱ֤·ɱԶʱС·
+		ShortestPathEngine.Graph graph = new ShortestPathEngine.Graph() {
+			public void expand(ShortestPathEngine engine, int node, double arrival) {
+				if (node >= hostsByAddress.length || hostsByAddress[node] == null)
+					return;
+				DTNHost host = hostsByAddress[node];
+				if (node != engine.getSource() && !routerTable.containsKey(host))
+					routerTable.put(host, engine.getPath(node));//µ̽ڵ
+				if (arrival >= deadline)//ʱѾTTLԤʱĻֱų
+					return;
+				List<DTNHost> neiList = nei.getNeighbors(host, arrival);//ȡhostڵھӽڵ(ǰδھ)
+				HashMap<DTNHost, List<Double>> startTime = nei.getFutureNeighbors(neiList, host, arrival).getKey();
 				for (DTNHost neiHost : startTime.keySet()){//startTime.keySet()еھӽڵ㣬δھӽڵ
-					if (sourceSet.contains(neiHost))
-						continue;
-					if (arrivalTime.get(host) >= SimClock.getTime() + msgTtl)//ʱѾTTLԤʱĻֱų
-						continue;
-					double waitTime = startTime.get(neiHost).get(0) - arrivalTime.get(host);
-					if (waitTime <= 0){
-						predictLable = false;
-						//System.out.println("waitTime = "+ waitTime);
+					double waitTime = startTime.get(neiHost).get(0) - arrival;
+					boolean predictLable = waitTime > 0;
+					if (!predictLable)
 						waitTime = 0;
-					}
-					if (waitTime > 0)
-						predictLable = true;
-					double time = arrivalTime.get(host) + msg.getSize()/host.getInterface(1).getTransmitSpeed() + waitTime;
-					List<Tuple<Integer, Boolean>> path = new ArrayList<Tuple<Integer, Boolean>>();
-					if (this.routerTable.containsKey(host))
-						path.addAll(this.routerTable.get(host));
-					Tuple<Integer, Boolean> hop = new Tuple<Integer, Boolean>(neiHost.getAddress(), predictLable);
-					path.add(hop);//ע˳
-					if (time > SimClock.getTime() + msgTtl)
+					double time = arrival + msg.getSize()/host.getInterface(1).getTransmitSpeed() + waitTime;
+					if (time > deadline)
 						continue;
-					if (time <= minTime){
-						if (random.nextBoolean() == true && time - minTime < 1){
-							minTime = time;
-							minHost = neiHost;
-							minPath = path;
-							updateLabel = true;	
-						}
-					}					
+					engine.relax(neiHost.getAddress(), time, predictLable);
 				}
 			}
-			if (updateLabel == true){
-				arrivalTime.put(minHost, minTime);
-				routerTable.put(minHost, minPath);
-			}
-			iteratorTimes++;
-			sourceSet.add(minHost);//µ̽ڵ
-			if (routerTable.containsKey(msg.getTo()))//;ҵҪ·ֱ˳
-				break;
-		}
+		};
+		search.expandSource(graph);//ڵĵǰδھ
+		search.run(graph, msg.getTo().getAddress());//;ҵҪ·ֱ˳
+		
+		int to = msg.getTo().getAddress();
+		if (search.isSettled(to) && msg.getTo() != this.getHost() && !routerTable.containsKey(msg.getTo()))
+			routerTable.put(msg.getTo(), search.getPath(to));
 		System.out.println(this.getHost()+" table: "+routerTable+" time : "+SimClock.getTime());
 	}
 	
@@ -606,10 +568,9 @@ public class EASRRouter extends ActiveRouter{
 		List<Connection> connections = t.getValue().getOtherNode(this.getHost()).getConnections();
 		for (Connection con : connections){
 			if (con.isTransferring()){
-				assert this.busyLabel.get(con) == null : "error! ";
-				this.busyLabel.put(t.getKey().getId(), con.getRemainingByteCount()/con.getSpeed() + SimClock.getTime());
+				this.busyLabel.put(t.getKey().getKey(), con.getRemainingByteCount()/con.getSpeed() + SimClock.getTime());
 				System.out.println(this.getHost()+"  "+t.getKey()+"  "+
-						t.getValue().getOtherNode(this.getHost())+" "+con+"  "+this.busyLabel.get(t.getKey().getId()));			
+						t.getValue().getOtherNode(this.getHost())+" "+con+"  "+this.busyLabel.get(t.getKey().getKey()));			
 				return true;//˵ĿĽڵæ
 			}
 		}
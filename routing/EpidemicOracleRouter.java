@@ -125,8 +125,8 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	}
 	
 	protected int checkReceiving(Message m) {
-		if ( isIncomingMessage(m.getId()) || hasMessage(m.getId()) || 
-				isDeliveredMessage(m) ){
+		/* copies that are still incoming from other hosts are accepted */
+		if ( hasMessage(m.getId()) || isDeliveredMessage(m) ){
 			return DENIED_OLD; // already seen this message -> reject it
 		}
 		
@@ -14,12 +14,15 @@ import java.util.List;
 import java.util.Queue;
 import java.util.Random;
 
+import routing.util.EvictionQueue;
 import routing.util.RoutingInfo;
+import util.IntHashMap;
 import util.Tuple;
 import core.Application;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.MessageIdRegistry;
 import core.MessageListener;
 import core.Settings;
 import core.SettingsError;
@@ -57,6 +60,19 @@ public abstract class MessageRouter {
 	/** Setting value for FIFO queue mode */
 	public static final int Q_MODE_FIFO = 2;
 	
+	/**
+	 * Buffer eviction policy -setting id ({@value}). Selects the messages
+	 * that are dropped first when there is no room for a new message.
+	 * Valid values are<BR>
+	 * <UL>
+	 * <LI/> 1 : oldest (the message received first; default option)
+	 * <LI/> 2 : largest (the largest message)
+	 * <LI/> 3 : shortest TTL (the message that expires first)
+	 * </UL>
+	 * Routers that define their own drop order ignore this setting.
+	 */ 
+	public static final String EVICTION_POLICY_S = "evictionPolicy";
+	
     /** indicates that if this node is communication satellites*/
     public boolean CommunicationSatellitesLabel;
     /** record all communication nodes and their orbit plane number*/
@@ -88,13 +104,13 @@ public abstract class MessageRouter {
 	public static final int DENIED_UNSPECIFIED = -99;
 	
 	private List<MessageListener> mListeners;
-	/** The messages being transferred with msgID_hostName keys */
-	private HashMap<String, Message> incomingMessages;
+	/** The messages being transferred by message key and sender address */
+	private IntHashMap<IntHashMap<Message>> incomingMessages;
 
 	/** The messages this router has received as the final recipient */
-	private HashMap<String, Message> deliveredMessages;
+	private IntHashMap<Message> deliveredMessages;
 	/** The messages that Applications on this router have blacklisted */
-	private HashMap<String, Object> blacklistedMessages;
+	private IntHashMap<Boolean> blacklistedMessages;
 	/** Host where this router belongs to */
 	private DTNHost host;
 	/** size of the buffer */
@@ -105,8 +121,14 @@ public abstract class MessageRouter {
 	protected int sendQueueMode;
 	/** applications attached to the host */
 	private HashMap<String, Collection<Application>> applications = null;	
-	/** The messages this router is carrying */
-	protected HashMap<String, Message> messages; 
+	/** The messages this router is carrying by message key */
+	protected IntHashMap<Message> messages; 
+	/** Eviction order and total size of the messages this router is carrying */
+	private EvictionQueue evictionQueue;
+	/** Eviction policy of the message buffer */
+	private int evictionPolicy;
+	/** The messages this router is carrying in the order of their expiry */
+	private EvictionQueue expiryQueue;
 	
 	/**------------------------------   MessageRouterӵı       --------------------------------*/
 	/** жϰ */
@@ -132,10 +154,16 @@ public abstract class MessageRouter {
 	 * @param mListeners The message listeners
 	 */
 	public void init(DTNHost host, List<MessageListener> mListeners) {
-		this.incomingMessages = new HashMap<String, Message>();
-		this.messages = new HashMap<String, Message>();
-		this.deliveredMessages = new HashMap<String, Message>();
-		this.blacklistedMessages = new HashMap<String, Object>();
+		this.incomingMessages = new IntHashMap<IntHashMap<Message>>();
+		this.messages = new IntHashMap<Message>();
+		this.evictionQueue = new EvictionQueue(this.evictionPolicy);
+		if (this.evictionPolicy == EvictionQueue.SHORTEST_TTL) {
+			this.expiryQueue = this.evictionQueue;
+		} else {
+			this.expiryQueue = new EvictionQueue(EvictionQueue.SHORTEST_TTL);
+		}
+		this.deliveredMessages = new IntHashMap<Message>();
+		this.blacklistedMessages = new IntHashMap<Boolean>();
 		this.mListeners = mListeners;
 		this.host = host;
 		
@@ -177,7 +205,7 @@ public abstract class MessageRouter {
 	 * @return The message
 	 */
 	public Message getMessage(String id) {
-		return this.messages.get(id);
+		return this.messages.get(MessageIdRegistry.getKey(id));
 	}
 	
 	/**
@@ -186,7 +214,16 @@ public abstract class MessageRouter {
 	 * @return True if the router has message with this id, false if not
 	 */
 	public boolean hasMessage(String id) {
-		return this.messages.containsKey(id);
+		return hasMessage(MessageIdRegistry.getKey(id));
+	}
+	
+	/**
+	 * Checks if this router has a message with certain key buffered.
+	 * @param key Key of the message ID (see {@link Message#getKey()})
+	 * @return True if the router has message with this key, false if not
+	 */
+	public boolean hasMessage(int key) {
+		return this.messages.containsKey(key);
 	}
 	
 	/**
@@ -198,7 +235,7 @@ public abstract class MessageRouter {
 	 * this host as the final recipient.
 	 */
 	protected boolean isDeliveredMessage(Message m) {
-		return (this.deliveredMessages.containsKey(m.getId()));
+		return (this.deliveredMessages.containsKey(m.getKey()));
 	}
 	
 	/** 
@@ -211,7 +248,16 @@ public abstract class MessageRouter {
 	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
 	 */
 	protected boolean isBlacklistedMessage(String id) {
-		return this.blacklistedMessages.containsKey(id);
+		return isBlacklistedMessage(MessageIdRegistry.getKey(id));
+	}
+	
+	/** 
+	 * Returns <code>true</code> if the message has been blacklisted.
+	 * @param key Key of the message ID (see {@link Message#getKey()})
+	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
+	 */
+	protected boolean isBlacklistedMessage(int key) {
+		return this.blacklistedMessages.containsKey(key);
 	}
 	
 	/**
@@ -250,17 +296,38 @@ public abstract class MessageRouter {
 	 * size isn't defined)
 	 */
 	public int getFreeBufferSize() {
-		int occupancy = 0;
-		
 		if (this.getBufferSize() == Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
 		}
 		
-		for (Message m : getMessageCollection()) {
-			occupancy += m.getSize();
+		return this.getBufferSize() - this.evictionQueue.getOccupancy();
+	}
+	
+	/**
+	 * Returns the messages of the buffer in the order they should be
+	 * dropped, as defined by the {@link #EVICTION_POLICY_S} setting. The
+	 * buffer must not be modified while iterating the messages.
+	 * @return The messages in eviction order
+	 */
+	protected Iterable<Message> getEvictionOrder() {
+		return this.evictionQueue;
+	}
+	
+	/**
+	 * Returns the messages of the buffer whose TTL has passed. The messages
+	 * are indexed by their expiry times, so only the expired ones are
+	 * checked.
+	 * @return The expired messages, the one that expired first comes first
+	 */
+	protected List<Message> getExpiredMessages() {
+		List<Message> expired = new ArrayList<Message>();
+		for (Message m : this.expiryQueue) {
+			if (m.getTtl() > 0) {
+				break; // the rest of the messages expire later
+			}
+			expired.add(m);
 		}
-		
-		return this.getBufferSize() - occupancy;
+		return expired;
 	}
 	
 	/**
@@ -365,7 +432,7 @@ public abstract class MessageRouter {
 			}
 		}	
 		else if (isFirstDelivery) {							// ĿĽڵǵһε
-			this.deliveredMessages.put(id, aMessage);	
+			this.deliveredMessages.put(incoming.getKey(), aMessage);	
 			if(incoming.getProperty(SelectLabel)!=null){	// Ƿʹû湦
 				this.getHost().getCacheRouter().DestinationCache(aMessage);
 			}
@@ -373,7 +440,7 @@ public abstract class MessageRouter {
 		else if (outgoing == null) {			
 			// Blacklist messages that an app wants to drop.
 			// Otherwise the peer will just try to send it back again.
-			this.blacklistedMessages.put(id, null);											
+			this.blacklistedMessages.put(incoming.getKey(), Boolean.TRUE);
 		}		
 		for (MessageListener ml : this.mListeners) {
 			ml.messageTransferred(aMessage, from, this.host,isFirstDelivery);
@@ -388,7 +455,12 @@ public abstract class MessageRouter {
 	 * @param from Who the message was from (previous hop).
 	 */
 	protected void putToIncomingBuffer(Message m, DTNHost from) {
-		this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+		IntHashMap<Message> senders = this.incomingMessages.get(m.getKey());
+		if (senders == null) {
+			senders = new IntHashMap<Message>(1);
+			this.incomingMessages.put(m.getKey(), senders);
+		}
+		senders.put(from.getAddress(), m);
 	}
 	
 	/**
@@ -399,7 +471,16 @@ public abstract class MessageRouter {
 	 * @return The found message or null if such message wasn't found
 	 */
 	protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-		return this.incomingMessages.remove(id + "_" + from.toString());
+		int key = MessageIdRegistry.getKey(id);
+		IntHashMap<Message> senders = this.incomingMessages.get(key);
+		if (senders == null) {
+			return null;
+		}
+		Message m = senders.remove(from.getAddress());
+		if (senders.isEmpty()) {
+			this.incomingMessages.remove(key);
+		}
+		return m;
 	}
 	
 	/**
@@ -409,7 +490,7 @@ public abstract class MessageRouter {
 	 * @return True if such message is incoming right now
 	 */
 	protected boolean isIncomingMessage(String id) {
-		return this.incomingMessages.containsKey(id);
+		return this.incomingMessages.containsKey(MessageIdRegistry.getKey(id));
 	}
 	
 	/**
@@ -420,7 +501,11 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	public void addToMessages(Message m, boolean newMessage) {		
-		this.messages.put(m.getId(), m);
+		this.messages.put(m.getKey(), m);
+		this.evictionQueue.add(m);
+		if (this.expiryQueue != this.evictionQueue) {
+			this.expiryQueue.add(m);
+		}
 		
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -561,7 +646,11 @@ public abstract class MessageRouter {
 	 */
 	public RoutingInfo getRoutingInfo() {
 		RoutingInfo ri = new RoutingInfo(this);
-		RoutingInfo incoming = new RoutingInfo(this.incomingMessages.size() + 
+		List<Message> incomingList = new ArrayList<Message>();
+		for (IntHashMap<Message> senders : this.incomingMessages.values()) {
+			incomingList.addAll(senders.values());
+		}
+		RoutingInfo incoming = new RoutingInfo(incomingList.size() + 
 				" incoming message(s)");
 		RoutingInfo delivered = new RoutingInfo(this.deliveredMessages.size() +
 				" delivered message(s)");
@@ -573,7 +662,7 @@ public abstract class MessageRouter {
 		ri.addMoreInfo(delivered);
 		ri.addMoreInfo(cons);
 		
-		for (Message m : this.incomingMessages.values()) {
+		for (Message m : incomingList) {
 			incoming.addMoreInfo(new RoutingInfo(m));
 		}
 		
@@ -674,6 +763,17 @@ public abstract class MessageRouter {
 		else {
 			sendQueueMode = Q_MODE_RANDOM;
 		}
+		if (s.contains(EVICTION_POLICY_S)) {
+			this.evictionPolicy = s.getInt(EVICTION_POLICY_S);
+			if (evictionPolicy < EvictionQueue.OLDEST || 
+					evictionPolicy > EvictionQueue.SHORTEST_TTL) {
+				throw new SettingsError("Invalid value for " + 
+						s.getFullPropertyName(EVICTION_POLICY_S));
+			}
+		}
+		else {
+			evictionPolicy = EvictionQueue.OLDEST;
+		}
 		
 	}
 
@@ -686,6 +786,7 @@ public abstract class MessageRouter {
 		this.bufferSize = r.bufferSize;
 		this.msgTtl = r.msgTtl;
 		this.sendQueueMode = r.sendQueueMode;
+		this.evictionPolicy = r.evictionPolicy;
 
 		this.applications = new HashMap<String, Collection<Application>>();
 		for (Collection<Application> apps : r.applications.values()) {
@@ -701,7 +802,12 @@ public abstract class MessageRouter {
 	 * @return The removed message or null if message for the ID wasn't found
 	 */
 	public Message removeFromMessages(String id) {
-		Message m = this.messages.remove(id);
+		int key = MessageIdRegistry.getKey(id);
+		Message m = this.messages.remove(key);
+		if (m != null) {
+			this.evictionQueue.remove(key);
+			this.expiryQueue.remove(key);
+		}
 		return m;
 	}
 }
@@ -10,20 +10,24 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 
-import routing.NetGridRouter.GridNeighbors.GridCell;
+import routing.util.RouterGrid;
+import routing.util.RouterGrid.GridCell;
 import movement.MovementModel;
 import movement.SatelliteMovement;
 import util.Tuple;
 import core.Connection;
 import core.Coord;
 import core.DTNHost;
+import core.DTNSim;
 import core.Message;
 import core.MessageListener;
 import core.NetworkInterface;
+import core.ScenarioConfig;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
+import core.SimulationContext;
 
 public class NetGridRouter extends ActiveRouter{
 	
@@ -53,6 +57,18 @@ public class NetGridRouter extends ActiveRouter{
     private static String gridUpdateOption;
     /** to make the random choice */
     private static Random random;	
+
+    static {
+        DTNSim.registerForReset(NetGridRouter.class.getCanonicalName());
+        reset();
+    }
+
+    /**
+     * Removes the grid topology of the current simulation context
+     */
+    public static void reset() {
+        SimulationContext.current().removeState(NetGridTopology.class);
+    }
     
 	/**ݻ·洢ĵĿĽڵ·ѡ·ʱֱʹ**/
     /** the netgrid router table comes from routing algorithm */
@@ -159,17 +175,7 @@ public class NetGridRouter extends ActiveRouter{
 			return;
 		
 		//жΪȽȳģʽ
-		Settings s = new Settings("Group");
-		if (s.contains(SEND_QUEUE_MODE_S)) {
-			this.sendQueueMode = s.getInt(SEND_QUEUE_MODE_S);
-			if (sendQueueMode < 1 || sendQueueMode > 2) {
-				throw new SettingsError("Invalid value for " + 
-						s.getFullPropertyName(SEND_QUEUE_MODE_S));
-			}
-		}
-		else {
-			sendQueueMode = Q_MODE_RANDOM;
-		}
+		this.sendQueueMode = ScenarioConfig.getInstance().getSendQueueMode();
 		// FIFO, sort the messages
 		if(sendQueueMode == 2){
 	        /** sort the messages to transmit */
@@ -210,7 +216,7 @@ public class NetGridRouter extends ActiveRouter{
 	 * @return all neighbors of specific host
 	 */
 	public List<DTNHost> getNeighbors(DTNHost host, double time){
-		double updateInterval = (new Settings("Scenario")).getDouble("updateInterval");
+		double updateInterval = ScenarioConfig.getInstance().getUpdateInterval();
 		int num = (int)((time-SimClock.getTime())/updateInterval);
 		time = SimClock.getTime()+num*updateInterval;
 		
@@ -555,6 +561,22 @@ public class NetGridRouter extends ActiveRouter{
      * Return current network topology in forms of temporal graph
      */
     public HashMap<DTNHost, List<DTNHost>> globalNetGridCaluculation() {
+        //the grid topology is the same for all hosts, so it is calculated
+        //only once per update interval and the routers read it
+        NetGridTopology cache = SimulationContext.current().getState(NetGridTopology.class);
+        synchronized (cache) {
+            if (cache.topology == null || cache.time != SimClock.getTime()) {
+                cache.topology = calculateNetGridTopology();
+                cache.time = SimClock.getTime();
+            }
+            return cache.topology;
+        }
+    }
+
+    /**
+     * Calculates the grid topology of all hosts at the current time
+     */
+    private HashMap<DTNHost, List<DTNHost>> calculateNetGridTopology() {
         HashMap<DTNHost, GridCell> locationRecord = new HashMap<DTNHost, GridCell>();
         HashMap<GridCell, List<DTNHost>> inclusionRelation = new HashMap<GridCell, List<DTNHost>>();
         HashMap<DTNHost, List<DTNHost>> topologyInfo = new HashMap<DTNHost, List<DTNHost>>();
@@ -1117,7 +1139,7 @@ public class NetGridRouter extends ActiveRouter{
 		
 		private double updateInterval = 1;
 		
-		private GridCell[][][] cells;//GridCell࣬һʵһworldһά洢ÿִ洢˵ǰеhostnetworkinterface
+		private RouterGrid cells;//all hosts share the grid of the same cell size, cells are created when first used
 		
 		private double cellSize;
 		private int rows;
@@ -1194,18 +1216,9 @@ public class NetGridRouter extends ActiveRouter{
 			this.cols = (int)Math.floor(worldSizeX/cellSize) + 1;
 			this.zs = (int)Math.floor(worldSizeZ/cellSize) + 1;//
 			System.out.println(cellSize+"  "+this.rows+"  "+this.cols+"  "+this.zs);
-			// leave empty cells on both sides to make neighbor search easier 
-			this.cells = new GridCell[rows+2][cols+2][zs+2];
+			// the cells are created when they are first used
+			this.cells = RouterGrid.getGrid(cellSize);
 			this.cellSize = cellSize;
-
-			for (int i=0; i<rows+2; i++) {
-				for (int j=0; j<cols+2; j++) {
-					for (int n=0;n<zs+2; n++){//ά
-						this.cells[i][j][n] = new GridCell();
-						cells[i][j][n].setNumber(i, j, n);
-					}
-				}
-			}
 		}
 		/**
 		 * vйcÿcvһLڣӛһLڃȱv^ľW񣬲ҵMx_rg
@@ -1221,8 +1234,9 @@ public class NetGridRouter extends ActiveRouter{
 				List<Double> intoTime = new ArrayList<Double>();
 				List<Double> outTime = new ArrayList<Double>();
 				GridCell startCell = cellFromCoord(h.getCoordinate(0));//¼ʼ
+				Coord c = new Coord(0,0);
 				for (double time = 0; time < period; time += updateInterval){
-					Coord c = h.getCoordinate(time);
+					h.getCoordinate(time, c);
 					GridCell gc = cellFromCoord(c);//ҵľW
 					if (!gridList.contains(gc)){
 						if (gridList.isEmpty()){
@@ -1288,7 +1302,7 @@ public class NetGridRouter extends ActiveRouter{
 					GridCell gc = relationship.get(h).getValue();
 					List<GridCell> neighbors = new ArrayList<GridCell>();
 				//	for (int i = 0; i < 132; i++){
-						for (GridCell c : getLayer1(gc.number[0], gc.number[1], gc.number[2])){
+						for (GridCell c : getLayer1(gc.getNumber()[0], gc.getNumber()[1], gc.getNumber()[2])){
 							if (gridMap.containsKey(c)){
 								neighbors.add(c);
 							}
@@ -1310,17 +1324,17 @@ public class NetGridRouter extends ActiveRouter{
 		public GridCell[] getLayer1(int row, int col, int z){
 			List<GridCell> GC = new ArrayList<GridCell>();
 			return new GridCell[] {
-					cells[row-1][col-1][z],cells[row-1][col][z],cells[row-1][col+1][z],//1st row
-					cells[row][col-1][z],cells[row][col][z],cells[row][col+1][z],//2nd row
-					cells[row+1][col-1][z],cells[row+1][col][z],cells[row+1][col+1][z],//3rd row
+					cells.getCell(row-1, col-1, z),cells.getCell(row-1, col, z),cells.getCell(row-1, col+1, z),//1st row
+					cells.getCell(row, col-1, z),cells.getCell(row, col, z),cells.getCell(row, col+1, z),//2nd row
+					cells.getCell(row+1, col-1, z),cells.getCell(row+1, col, z),cells.getCell(row+1, col+1, z),//3rd row
 							
-					cells[row-1][col-1][z],cells[row-1][col][z],cells[row-1][col+1][z],//1st row
-					cells[row][col-1][z],cells[row][col][z],cells[row][col+1][z],//2nd row
-					cells[row+1][col-1][z],cells[row+1][col][z],cells[row+1][col+1][z],//3rd row	
+					cells.getCell(row-1, col-1, z),cells.getCell(row-1, col, z),cells.getCell(row-1, col+1, z),//1st row
+					cells.getCell(row, col-1, z),cells.getCell(row, col, z),cells.getCell(row, col+1, z),//2nd row
+					cells.getCell(row+1, col-1, z),cells.getCell(row+1, col, z),cells.getCell(row+1, col+1, z),//3rd row	
 							
-					cells[row-1][col-1][z],cells[row-1][col][z],cells[row-1][col+1][z],//1st row
-					cells[row][col-1][z],cells[row][col][z],cells[row][col+1][z],//2nd row
-					cells[row+1][col-1][z],cells[row+1][col][z],cells[row+1][col+1][z]//3rd row
+					cells.getCell(row-1, col-1, z),cells.getCell(row-1, col, z),cells.getCell(row-1, col+1, z),//1st row
+					cells.getCell(row, col-1, z),cells.getCell(row, col, z),cells.getCell(row, col+1, z),//2nd row
+					cells.getCell(row+1, col-1, z),cells.getCell(row+1, col, z),cells.getCell(row+1, col+1, z)//3rd row
 				};
 //			for (int i = -1; i < 2; i += 1){
 //				for (int j = -1; j < 2; j += 1){
@@ -1573,7 +1587,7 @@ public class NetGridRouter extends ActiveRouter{
 				for (int i = -1; i < 2; i += 1){
 					for (int j = -1; j < 2; j += 1){
 						for (int k = -1; k < 2; k += 1){
-							GC.add(cells[row+i][col+j][z+k]);
+							GC.add(cells.getCell(row+i, col+j, z+k));
 						}
 					}
 				}
@@ -1584,7 +1598,7 @@ public class NetGridRouter extends ActiveRouter{
 					for (int j = -3; j <= 3; j += 1){
 						for (int k = -3; k <= 3; k += 1){
 							if (boundaryCheck(row+i,col+j,z+k))
-								GC.add(cells[row+i][col+j][z+k]);
+								GC.add(cells.getCell(row+i, col+j, z+k));
 						}
 					}
 				}
@@ -1592,38 +1606,38 @@ public class NetGridRouter extends ActiveRouter{
 				for (int j = -m; j <= m; j += 1){
 					for (int k = -m; k <= m; k += 1){
 						if (boundaryCheck(row+4,col+j,z+k)){
-							GC.add(cells[row+4][col+j][z+k]);
+							GC.add(cells.getCell(row+4, col+j, z+k));
 						}
 					}
 				}
 				for (int j = -m; j <= m; j += 1){
 					for (int k = -m; k <= m; k += 1){
 						if (boundaryCheck(row-4,col+j,z+k))
-							GC.add(cells[row-4][col+j][z+k]);
+							GC.add(cells.getCell(row-4, col+j, z+k));
 					}
 				}
 				for (int j = -m; j <= m; j += 1){
 					for (int k = -m; k <= m; k += 1){
 						if (boundaryCheck(row+j,col+4,z+k))
-							GC.add(cells[row+j][col+4][z+k]);
+							GC.add(cells.getCell(row+j, col+4, z+k));
 					}
 				}
 				for (int j = -m; j <= m; j += 1){
 					for (int k = -m; k <= m; k += 1){
 						if (boundaryCheck(row+j,col-4,z+k))
-							GC.add(cells[row+j][col-4][z+k]);
+							GC.add(cells.getCell(row+j, col-4, z+k));
 					}
 				}
 				for (int j = -m; j <= m; j += 1){
 					for (int k = -m; k <= m; k += 1){
 						if (boundaryCheck(row+j,col+k,z+4))
-							GC.add(cells[row+j][col+k][z+4]);
+							GC.add(cells.getCell(row+j, col+k, z+4));
 					}
 				}
 				for (int j = -m; j <= m; j += 1){
 					for (int k = -m; k <= m; k += 1){
 						if (boundaryCheck(row+j,col+k,z-4))
-							GC.add(cells[row+j][col+k][z-4]);
+							GC.add(cells.getCell(row+j, col+k, z-4));
 					}
 				}	
 			}
@@ -1632,7 +1646,7 @@ public class NetGridRouter extends ActiveRouter{
 				for (int i = -1; i < 2; i += 1){
 					for (int j = -1; j < 2; j += 1){
 						for (int k = -1; k < 2; k += 1){
-							GC.add(cells[row+i][col+j][z+k]);	
+							GC.add(cells.getCell(row+i, col+j, z+k));	
 						}
 					}
 				}
@@ -1644,7 +1658,7 @@ public class NetGridRouter extends ActiveRouter{
 					for (int j = -7; j <= 7; j += 1){
 						for (int k = -7; k <= 7; k += 1){
 							if (boundaryCheck(row+i,col+j,z+k))
-								GC.add(cells[row+i][col+j][z+k]);
+								GC.add(cells.getCell(row+i, col+j, z+k));
 
 						}
 					}
@@ -1653,7 +1667,7 @@ public class NetGridRouter extends ActiveRouter{
 				for (int j = -n1; j <= n1; j += 1){
 					for (int k = -n1; k <= n1; k += 1){
 						if (boundaryCheck(row+8,col+j,z+k)){
-							GC.add(cells[row+8][col+j][z+k]);
+							GC.add(cells.getCell(row+8, col+j, z+k));
 
 						}
 					}
@@ -1661,35 +1675,35 @@ public class NetGridRouter extends ActiveRouter{
 				for (int j = -n1; j <= n1; j += 1){
 					for (int k = -n1; k <= n1; k += 1){
 						if (boundaryCheck(row-8,col+j,z+k))
-							GC.add(cells[row-8][col+j][z+k]);
+							GC.add(cells.getCell(row-8, col+j, z+k));
 
 					}
 				}
 				for (int j = -n1; j <= n1; j += 1){
 					for (int k = -n1; k <= n1; k += 1){
 						if (boundaryCheck(row+j,col+8,z+k))
-							GC.add(cells[row+j][col+8][z+k]);
+							GC.add(cells.getCell(row+j, col+8, z+k));
 
 					}
 				}
 				for (int j = -n1; j <= n1; j += 1){
 					for (int k = -n1; k <= n1; k += 1){
 						if (boundaryCheck(row+j,col-8,z+k))
-							GC.add(cells[row+j][col-8][z+k]);
+							GC.add(cells.getCell(row+j, col-8, z+k));
 
 					}
 				}
 				for (int j = -n1; j <= n1; j += 1){
 					for (int k = -n1; k <= n1; k += 1){
 						if (boundaryCheck(row+j,col+k,z+8))
-							GC.add(cells[row+j][col+k][z+8]);
+							GC.add(cells.getCell(row+j, col+k, z+8));
 
 					}
 				}
 				for (int j = -n1; j <= n1; j += 1){
 					for (int k = -n1; k <= n1; k += 1){
 						if (boundaryCheck(row+j,col+k,z-8))
-							GC.add(cells[row+j][col+k][z-8]);
+							GC.add(cells.getCell(row+j, col+k, z-8));
 
 					}
 				}
@@ -1698,7 +1712,7 @@ public class NetGridRouter extends ActiveRouter{
 				for (int j = -n2; j <= n2; j += 1){
 					for (int k = -n2; k <= n2; k += 1){
 						if (boundaryCheck(row+9,col+j,z+k)){
-							GC.add(cells[row+9][col+j][z+k]);
+							GC.add(cells.getCell(row+9, col+j, z+k));
 
 						}
 					}
@@ -1706,35 +1720,35 @@ public class NetGridRouter extends ActiveRouter{
 				for (int j = -n2; j <= n2; j += 1){
 					for (int k = -n2; k <= n2; k += 1){
 						if (boundaryCheck(row-9,col+j,z+k))
-							GC.add(cells[row-9][col+j][z+k]);
+							GC.add(cells.getCell(row-9, col+j, z+k));
 
 					}
 				}
 				for (int j = -n2; j <= n2; j += 1){
 					for (int k = -n2; k <= n2; k += 1){
 						if (boundaryCheck(row+j,col+9,z+k))
-							GC.add(cells[row+j][col+9][z+k]);
+							GC.add(cells.getCell(row+j, col+9, z+k));
 
 					}
 				}
 				for (int j = -n2; j <= n2; j += 1){
 					for (int k = -n2; k <= n2; k += 1){
 						if (boundaryCheck(row+j,col-9,z+k))
-							GC.add(cells[row+j][col-9][z+k]);
+							GC.add(cells.getCell(row+j, col-9, z+k));
 
 					}
 				}
 				for (int j = -n2; j <= n2; j += 1){
 					for (int k = -n2; k <= n2; k += 1){
 						if (boundaryCheck(row+j,col+k,z+9))
-							GC.add(cells[row+j][col+k][z+9]);
+							GC.add(cells.getCell(row+j, col+k, z+9));
 
 					}
 				}
 				for (int j = -n2; j <= n2; j += 1){
 					for (int k = -n2; k <= n2; k += 1){
 						if (boundaryCheck(row+j,col+k,z-9))
-							GC.add(cells[row+j][col+k][z-9]);
+							GC.add(cells.getCell(row+j, col+k, z-9));
 
 					}
 				}
@@ -1832,7 +1846,7 @@ public class NetGridRouter extends ActiveRouter{
 						if (timeList.get(iterator) > t0){
 							/**ע⣬iterator - 1ûдģΪiterator˵һʱ䣬if㣬ôʱ̽ڵӦôǰһλõ**/
 							int[] coordOfNetgrid = gridCellList.get(iterator - 1).getNumber();
-							cell = this.cells[coordOfNetgrid[0]][coordOfNetgrid[1]][coordOfNetgrid[2]];
+							cell = this.cells.getCell(coordOfNetgrid[0], coordOfNetgrid[1], coordOfNetgrid[2]);
 							//cell = gridCellList.get(iterator - 1);
 							label = true;
 							break;
@@ -1841,13 +1855,13 @@ public class NetGridRouter extends ActiveRouter{
 					/**жǲǴڹڵĩβʱ̣߽λ**/
 					if (t0 >= timeList.get(0) & cell == null){
 						int[] coordOfNetgrid = gridCellList.get(0).getNumber();
-						cell = this.cells[coordOfNetgrid[0]][coordOfNetgrid[1]][coordOfNetgrid[2]];
+						cell = this.cells.getCell(coordOfNetgrid[0], coordOfNetgrid[1], coordOfNetgrid[2]);
 						label = true;
 					}
 					
 					if (t0 >= timeList.get(timeList.size() - 1) & t0 < timeList.get(0) & cell == null){
 						int[] coordOfNetgrid = gridCellList.get(timeList.size() - 1).getNumber();
-						cell = this.cells[coordOfNetgrid[0]][coordOfNetgrid[1]][coordOfNetgrid[2]];
+						cell = this.cells.getCell(coordOfNetgrid[0], coordOfNetgrid[1], coordOfNetgrid[2]);
 						label = true;
 					}	
 				}
@@ -1856,7 +1870,7 @@ public class NetGridRouter extends ActiveRouter{
 						if (timeList.get(iterator) > t0){
 							/**ע⣬iterator - 1ûдģΪiterator˵һʱ䣬if㣬ôʱ̽ڵӦôǰһλõ**/
 							int[] coordOfNetgrid = gridCellList.get(iterator - 1).getNumber();
-							cell = this.cells[coordOfNetgrid[0]][coordOfNetgrid[1]][coordOfNetgrid[2]];
+							cell = this.cells.getCell(coordOfNetgrid[0], coordOfNetgrid[1], coordOfNetgrid[2]);
 							//cell = gridCellList.get(iterator - 1);
 							label = true;
 							break;
@@ -1865,7 +1879,7 @@ public class NetGridRouter extends ActiveRouter{
 					/**жǲǴڹڵĩβʱ̣߽λ**/
 					if (t0 >= timeList.get(timeList.size() - 1) & cell == null){
 						int[] coordOfNetgrid = gridCellList.get(timeList.size() - 1).getNumber();
-						cell = this.cells[coordOfNetgrid[0]][coordOfNetgrid[1]][coordOfNetgrid[2]];
+						cell = this.cells.getCell(coordOfNetgrid[0], coordOfNetgrid[1], coordOfNetgrid[2]);
 						//cell = gridCellList.get(0);
 						label = true;
 					}	
@@ -1939,7 +1953,7 @@ public class NetGridRouter extends ActiveRouter{
 			//assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " + 
 			//c + " is out of world's bounds";
 		
-			return this.cells[row][col][z];
+			return this.cells.getCell(row, col, z);
 		}
 		
 		public void setHostsList(List<DTNHost> hosts){
@@ -1949,31 +1963,15 @@ public class NetGridRouter extends ActiveRouter{
 		/**
 		 * ½ڲ࣬ʵ񻮷֣洢ɢ
 		 */
-		public class GridCell {
-			// how large array is initially chosen
-			private static final int EXPECTED_INTERFACE_COUNT = 18;
-			//private ArrayList<NetworkInterface> interfaces;//GridCellάӿб¼ڴڵĽڵ㣬ȫ˵Ҫ֤ͬһӿڲͬʱGridCell
-			private int[] number;
-			
-			private GridCell() {
-			//	this.interfaces = new ArrayList<NetworkInterface>(
-			//			EXPECTED_INTERFACE_COUNT);
-				number = new int[3];
-			}
-			
-			public void setNumber(int row, int col, int z){
-				number[0] = row;
-				number[1] = col;
-				number[2] = z;
-			}
-			public int[] getNumber(){
-				return number;
-			}
-			
-			public String toString() {
-				return getClass().getSimpleName() + " with " + 
-					"cell number: "+ number[0]+" "+number[1]+" "+number[2];
-			}
-		}
 	}
+
+    /**
+     * Grid topology of all hosts in one simulation context, shared by the
+     * routers within one update
+     */
+    static class NetGridTopology {
+        private HashMap<DTNHost, List<DTNHost>> topology;
+        /** simulation time when the topology was calculated */
+        private double time = -1;
+    }
 }
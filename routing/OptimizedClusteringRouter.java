@@ -507,39 +507,10 @@ public class OptimizedClusteringRouter extends ActiveRouter {
      * Return current network topology in forms of temporal graph
      */
     public HashMap<DTNHost, List<DTNHost>> localTopologyCalculation(List<DTNHost> allHosts) {
-        HashMap<DTNHost, Coord> locationRecord = new HashMap<DTNHost, Coord>();
-        HashMap<DTNHost, List<DTNHost>> topologyInfo = new HashMap<DTNHost, List<DTNHost>>();
-
-        double radius = transmitRange;//Represent communication Radius
-        //Get satellite movement model which store orbit-info of all satellites in the network
+        //the links of all the satellites are calculated once per update interval for all routers
         SatelliteMovement movementModel = ((SatelliteMovement) this.getHost().getMovementModel());
-
-        //Calculate the current coordinate of all satellite nodes in the network
-        for (DTNHost h : allHosts) {
-            //locationRecord.put(h, movementModel.getCoordinate(h, SimClock.getTime()));
-            locationRecord.put(h, h.getLocation());
-        }
-
-        //Calculate links between each two satellite nodes
-        for (DTNHost h : allHosts) {
-            for (DTNHost otherNode : allHosts) {
-                if (otherNode == h)
-                    continue;
-                Coord otherNodeLocation = locationRecord.get(otherNode);
-                if (locationRecord.get(h).distance(otherNodeLocation) <= radius) {
-                    if (topologyInfo.get(h) == null)
-                        topologyInfo.put(h, new ArrayList<DTNHost>());
-                    List<DTNHost> neighborList = topologyInfo.get(h);
-                    if (neighborList == null) {
-                        neighborList = new ArrayList<DTNHost>();
-                        neighborList.add(otherNode);
-                    } else {
-                        neighborList.add(otherNode);
-                    }
-                }
-            }
-        }
-        return topologyInfo;
+        TopologySnapshot topology = TopologySnapshot.getTopology(movementModel.getHosts(), transmitRange);
+        return topology.getAdjacency(allHosts);
     }
     /**
      * 改造的最短路径算法，用于特殊场景，需要指定出发源节点，并给定网络拓扑
@@ -28,9 +28,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 
-import routing.SPNRmodify.GridNeighbors.GridCell;
+import routing.util.RouterGrid;
+import routing.util.RouterGrid.GridCell;
 import movement.MovementModel;
 import movement.SatelliteMovement;
+import util.IntHashMap;
 import util.Tuple;
 import core.Connection;
 import core.Coord;
@@ -38,6 +40,7 @@ import core.DTNHost;
 import core.Message;
 import core.Neighbors;
 import core.NetworkInterface;
+import core.ScenarioConfig;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -73,7 +76,7 @@ public class SPNRmodify extends ActiveRouter{
 	
 	HashMap<DTNHost, Double> arrivalTime = new HashMap<DTNHost, Double>();
 	private HashMap<DTNHost, List<Tuple<Integer, Boolean>>> routerTable = new HashMap<DTNHost, List<Tuple<Integer, Boolean>>>();//ڵ·ɱ
-	private HashMap<String, Double> busyLabel = new HashMap<String, Double>();//ָʾһڵ㴦æ״̬Ҫȴ
+	private IntHashMap<Double> busyLabel = new IntHashMap<Double>();//ָʾһڵ㴦æ״̬Ҫȴ
 	protected HashMap<DTNHost, HashMap<DTNHost, double[]>> neighborsList = new HashMap<DTNHost, HashMap<DTNHost, double[]>>();//ȫڵھ·ʱϢ
 	protected HashMap<DTNHost, HashMap<DTNHost, double[]>> predictList = new HashMap<DTNHost, HashMap<DTNHost, double[]>>();
 	
@@ -195,10 +198,9 @@ public class SPNRmodify extends ActiveRouter{
 	 * ʼ趨ڵڹھӽڵ(ΪڱԵƽʱļ򵥶ӦϵһЩ⣬Ҫ̬)
 	 */
 	public void updateInterSatelliteNeighbors(List<DTNHost> conNeighbors){
-		Settings setting = new Settings("userSetting");
-		Settings sat = new Settings("Group");
-		int TOTAL_SATELLITES = sat.getInt("nrofHosts");//ܽڵ
-		int TOTAL_PLANE = sat.getInt("nrofLEOPlanes");//ܹƽ nrofLEOPlanes
+		ScenarioConfig config = ScenarioConfig.getInstance();
+		int TOTAL_SATELLITES = config.getNrofHosts();//ܽڵ
+		int TOTAL_PLANE = config.getNrofLEOPlanes();//ܹƽ nrofLEOPlanes
 		int NROF_S_EACHPLANE = TOTAL_SATELLITES/TOTAL_PLANE;//ÿƽϵĽڵ
 		
 		int thisHostAddress = this.getHost().getAddress();
@@ -315,8 +317,7 @@ public class SPNRmodify extends ActiveRouter{
 		List<Connection> connections = this.getConnections();  //ȡھӽڵ
 		List<Message> messages = new ArrayList<Message>(this.getMessageCollection());
 		
-		Settings s = new Settings(GROUPNAME_S);
-		this.msgPathLabel = s.getBoolean(MSG_PATHLABEL);//ļжȡ
+		this.msgPathLabel = ScenarioConfig.getInstance().isMsgPathLabel();//ļжȡ
 		
 		if (isTransferring()) {//ж·Ƿռ
 			return; // can't start a new transfer
@@ -415,11 +416,11 @@ public class SPNRmodify extends ActiveRouter{
 	 * @return ǷҪȴ
 	 */
 	public boolean checkBusyLabelForNextHop(Message msg){
-		if (this.busyLabel.containsKey(msg.getId())){
+		if (this.busyLabel.containsKey(msg.getKey())){
 			System.out.println(this.getHost()+"  "+SimClock.getTime()+
-					"  "+msg+"  is busy until  " + this.busyLabel.get(msg.getId()));
-			if (this.busyLabel.get(msg.getId()) < SimClock.getTime()){
-				this.busyLabel.remove(msg.getId());
+					"  "+msg+"  is busy until  " + this.busyLabel.get(msg.getKey()));
+			if (this.busyLabel.get(msg.getKey()) < SimClock.getTime()){
+				this.busyLabel.remove(msg.getKey());
 				return false;
 			}else
 				return true;
@@ -582,7 +583,7 @@ public class SPNRmodify extends ActiveRouter{
 				System.out.println("һԤ");
 				return null;
 				//DTNHost nextHop = this.getHostFromAddress(routerPath.get(0).getKey()); 
-				//this.busyLabel.put(message.getId(), startTime);//һȴ
+				//this.busyLabel.put(message.getKey(), startTime);//һȴ
 			}
 			else{
 				System.out.println(message+"  "+message.getProperty(MSG_ROUTERPATH));
@@ -737,8 +738,7 @@ public class SPNRmodify extends ActiveRouter{
 			GN.setHostsList(getHosts());
 		}
 		//GridNeighbors GN = this.getHost().getGridNeighbors();
-		Settings s = new Settings(GROUPNAME_S);
-		String option = s.getSetting("Pre_or_onlineOrbitCalculation");//ļжȡãǲйвϼķʽͨǰ洢ڵĹϢ
+		String option = ScenarioConfig.getInstance().getOrbitCalculation();//ļжȡãǲйвϼķʽͨǰ洢ڵĹϢ
 		
 		HashMap<String, Integer> orbitCalculationWay = new HashMap<String, Integer>();
 		orbitCalculationWay.put("preOrbitCalculation", 1);
@@ -1260,7 +1260,7 @@ public class SPNRmodify extends ActiveRouter{
 		
 		private double updateInterval = 1;
 		
-		private GridCell[][][] cells;//GridCell࣬һʵһworldһά洢ÿִ洢˵ǰеhostnetworkinterface
+		private RouterGrid cells;//all hosts share the grid of the same cell size, cells are created when first used
 		
 		private double cellSize;
 		private int rows;
@@ -1337,19 +1337,9 @@ public class SPNRmodify extends ActiveRouter{
 			this.cols = (int)Math.floor(worldSizeX/cellSize) + 1;
 			this.zs = (int)Math.floor(worldSizeZ/cellSize) + 1;//
 			System.out.println(cellSize+"  "+this.rows+"  "+this.cols+"  "+this.zs);
-			// leave empty cells on both sides to make neighbor search easier 
-			this.cells = new GridCell[rows+2][cols+2][zs+2];
+			// the cells are created when they are first used
+			this.cells = RouterGrid.getGrid(cellSize);
 			this.cellSize = cellSize;
-
-			for (int i=0; i<rows+2; i++) {
-				for (int j=0; j<cols+2; j++) {
-					for (int n=0;n<zs+2; n++){//ά
-						System.out.println("ǰʱΪ"+SimClock.getTime());
-						this.cells[i][j][n] = new GridCell();
-						cells[i][j][n].setNumber(i, j, n);
-					}
-				}
-			}
 		}
 		/**
 		 * vйcÿcvһLڣӛһLڃȱv^ľW񣬲ҵMx_rg
@@ -1365,8 +1355,9 @@ public class SPNRmodify extends ActiveRouter{
 				List<Double> intoTime = new ArrayList<Double>();
 				List<Double> outTime = new ArrayList<Double>();
 				GridCell startCell = cellFromCoord(h.getCoordinate(0));//¼ʼ
+				Coord c = new Coord(0,0);
 				for (double time = 0; time < period; time += updateInterval){
-					Coord c = h.getCoordinate(time);
+					h.getCoordinate(time, c);
 					GridCell gc = cellFromCoord(c);//ҵľW
 					if (!gridList.contains(gc)){
 						if (gridList.isEmpty()){
@@ -1432,7 +1423,7 @@ public class SPNRmodify extends ActiveRouter{
 					GridCell gc = relationship.get(h).getValue();
 					List<GridCell> neighbors = new ArrayList<GridCell>();
 				//	for (int i = 0; i < 132; i++){
-						for (GridCell c : getLayer1(gc.number[0], gc.number[1], gc.number[2])){
+						for (GridCell c : getLayer1(gc.getNumber()[0], gc.getNumber()[1], gc.getNumber()[2])){
 							if (gridMap.containsKey(c)){
 								neighbors.add(c);
 							}
@@ -1454,17 +1445,17 @@ public class SPNRmodify extends ActiveRouter{
 		public GridCell[] getLayer1(int row, int col, int z){
 			List<GridCell> GC = new ArrayList<GridCell>();
 			return new GridCell[] {
-					cells[row-1][col-1][z],cells[row-1][col][z],cells[row-1][col+1][z],//1st row
-					cells[row][col-1][z],cells[row][col][z],cells[row][col+1][z],//2nd row
-					cells[row+1][col-1][z],cells[row+1][col][z],cells[row+1][col+1][z],//3rd row
+					cells.getCell(row-1, col-1, z),cells.getCell(row-1, col, z),cells.getCell(row-1, col+1, z),//1st row
+					cells.getCell(row, col-1, z),cells.getCell(row, col, z),cells.getCell(row, col+1, z),//2nd row
+					cells.getCell(row+1, col-1, z),cells.getCell(row+1, col, z),cells.getCell(row+1, col+1, z),//3rd row
 							
-					cells[row-1][col-1][z],cells[row-1][col][z],cells[row-1][col+1][z],//1st row
-					cells[row][col-1][z],cells[row][col][z],cells[row][col+1][z],//2nd row
-					cells[row+1][col-1][z],cells[row+1][col][z],cells[row+1][col+1][z],//3rd row	
+					cells.getCell(row-1, col-1, z),cells.getCell(row-1, col, z),cells.getCell(row-1, col+1, z),//1st row
+					cells.getCell(row, col-1, z),cells.getCell(row, col, z),cells.getCell(row, col+1, z),//2nd row
+					cells.getCell(row+1, col-1, z),cells.getCell(row+1, col, z),cells.getCell(row+1, col+1, z),//3rd row	
 							
-					cells[row-1][col-1][z],cells[row-1][col][z],cells[row-1][col+1][z],//1st row
-					cells[row][col-1][z],cells[row][col][z],cells[row][col+1][z],//2nd row
-					cells[row+1][col-1][z],cells[row+1][col][z],cells[row+1][col+1][z]//3rd row
+					cells.getCell(row-1, col-1, z),cells.getCell(row-1, col, z),cells.getCell(row-1, col+1, z),//1st row
+					cells.getCell(row, col-1, z),cells.getCell(row, col, z),cells.getCell(row, col+1, z),//2nd row
+					cells.getCell(row+1, col-1, z),cells.getCell(row+1, col, z),cells.getCell(row+1, col+1, z)//3rd row
 				};
 //			for (int i = -1; i < 2; i += 1){
 //				for (int j = -1; j < 2; j += 1){
@@ -1717,7 +1708,7 @@ public class SPNRmodify extends ActiveRouter{
 				for (int i = -1; i < 2; i += 1){
 					for (int j = -1; j < 2; j += 1){
 						for (int k = -1; k < 2; k += 1){
-							GC.add(cells[row+i][col+j][z+k]);
+							GC.add(cells.getCell(row+i, col+j, z+k));
 						}
 					}
 				}
@@ -1728,7 +1719,7 @@ public class SPNRmodify extends ActiveRouter{
 					for (int j = -3; j <= 3; j += 1){
 						for (int k = -3; k <= 3; k += 1){
 							if (boundaryCheck(row+i,col+j,z+k))
-								GC.add(cells[row+i][col+j][z+k]);
+								GC.add(cells.getCell(row+i, col+j, z+k));
 						}
 					}
 				}
@@ -1736,38 +1727,38 @@ public class SPNRmodify extends ActiveRouter{
 				for (int j = -m; j <= m; j += 1){
 					for (int k = -m; k <= m; k += 1){
 						if (boundaryCheck(row+4,col+j,z+k)){
-							GC.add(cells[row+4][col+j][z+k]);
+							GC.add(cells.getCell(row+4, col+j, z+k));
 						}
 					}
 				}
 				for (int j = -m; j <= m; j += 1){
 					for (int k = -m; k <= m; k += 1){
 						if (boundaryCheck(row-4,col+j,z+k))
-							GC.add(cells[row-4][col+j][z+k]);
+							GC.add(cells.getCell(row-4, col+j, z+k));
 					}
 				}
 				for (int j = -m; j <= m; j += 1){
 					for (int k = -m; k <= m; k += 1){
 						if (boundaryCheck(row+j,col+4,z+k))
-							GC.add(cells[row+j][col+4][z+k]);
+							GC.add(cells.getCell(row+j, col+4, z+k));
 					}
 				}
 				for (int j = -m; j <= m; j += 1){
 					for (int k = -m; k <= m; k += 1){
 						if (boundaryCheck(row+j,col-4,z+k))
-							GC.add(cells[row+j][col-4][z+k]);
+							GC.add(cells.getCell(row+j, col-4, z+k));
 					}
 				}
 				for (int j = -m; j <= m; j += 1){
 					for (int k = -m; k <= m; k += 1){
 						if (boundaryCheck(row+j,col+k,z+4))
-							GC.add(cells[row+j][col+k][z+4]);
+							GC.add(cells.getCell(row+j, col+k, z+4));
 					}
 				}
 				for (int j = -m; j <= m; j += 1){
 					for (int k = -m; k <= m; k += 1){
 						if (boundaryCheck(row+j,col+k,z-4))
-							GC.add(cells[row+j][col+k][z-4]);
+							GC.add(cells.getCell(row+j, col+k, z-4));
 					}
 				}	
 			}
@@ -1776,7 +1767,7 @@ public class SPNRmodify extends ActiveRouter{
 				for (int i = -1; i < 2; i += 1){
 					for (int j = -1; j < 2; j += 1){
 						for (int k = -1; k < 2; k += 1){
-							GC.add(cells[row+i][col+j][z+k]);	
+							GC.add(cells.getCell(row+i, col+j, z+k));	
 						}
 					}
 				}
@@ -1788,7 +1779,7 @@ public class SPNRmodify extends ActiveRouter{
 					for (int j = -7; j <= 7; j += 1){
 						for (int k = -7; k <= 7; k += 1){
 							if (boundaryCheck(row+i,col+j,z+k))
-								GC.add(cells[row+i][col+j][z+k]);
+								GC.add(cells.getCell(row+i, col+j, z+k));
 
 						}
 					}
@@ -1797,7 +1788,7 @@ public class SPNRmodify extends ActiveRouter{
 				for (int j = -n1; j <= n1; j += 1){
 					for (int k = -n1; k <= n1; k += 1){
 						if (boundaryCheck(row+8,col+j,z+k)){
-							GC.add(cells[row+8][col+j][z+k]);
+							GC.add(cells.getCell(row+8, col+j, z+k));
 
 						}
 					}
@@ -1805,35 +1796,35 @@ public class SPNRmodify extends ActiveRouter{
 				for (int j = -n1; j <= n1; j += 1){
 					for (int k = -n1; k <= n1; k += 1){
 						if (boundaryCheck(row-8,col+j,z+k))
-							GC.add(cells[row-8][col+j][z+k]);
+							GC.add(cells.getCell(row-8, col+j, z+k));
 
 					}
 				}
 				for (int j = -n1; j <= n1; j += 1){
 					for (int k = -n1; k <= n1; k += 1){
 						if (boundaryCheck(row+j,col+8,z+k))
-							GC.add(cells[row+j][col+8][z+k]);
+							GC.add(cells.getCell(row+j, col+8, z+k));
 
 					}
 				}
 				for (int j = -n1; j <= n1; j += 1){
 					for (int k = -n1; k <= n1; k += 1){
 						if (boundaryCheck(row+j,col-8,z+k))
-							GC.add(cells[row+j][col-8][z+k]);
+							GC.add(cells.getCell(row+j, col-8, z+k));
 
 					}
 				}
 				for (int j = -n1; j <= n1; j += 1){
 					for (int k = -n1; k <= n1; k += 1){
 						if (boundaryCheck(row+j,col+k,z+8))
-							GC.add(cells[row+j][col+k][z+8]);
+							GC.add(cells.getCell(row+j, col+k, z+8));
 
 					}
 				}
 				for (int j = -n1; j <= n1; j += 1){
 					for (int k = -n1; k <= n1; k += 1){
 						if (boundaryCheck(row+j,col+k,z-8))
-							GC.add(cells[row+j][col+k][z-8]);
+							GC.add(cells.getCell(row+j, col+k, z-8));
 
 					}
 				}
@@ -1842,7 +1833,7 @@ public class SPNRmodify extends ActiveRouter{
 				for (int j = -n2; j <= n2; j += 1){
 					for (int k = -n2; k <= n2; k += 1){
 						if (boundaryCheck(row+9,col+j,z+k)){
-							GC.add(cells[row+9][col+j][z+k]);
+							GC.add(cells.getCell(row+9, col+j, z+k));
 
 						}
 					}
@@ -1850,35 +1841,35 @@ public class SPNRmodify extends ActiveRouter{
 				for (int j = -n2; j <= n2; j += 1){
 					for (int k = -n2; k <= n2; k += 1){
 						if (boundaryCheck(row-9,col+j,z+k))
-							GC.add(cells[row-9][col+j][z+k]);
+							GC.add(cells.getCell(row-9, col+j, z+k));
 
 					}
 				}
 				for (int j = -n2; j <= n2; j += 1){
 					for (int k = -n2; k <= n2; k += 1){
 						if (boundaryCheck(row+j,col+9,z+k))
-							GC.add(cells[row+j][col+9][z+k]);
+							GC.add(cells.getCell(row+j, col+9, z+k));
 
 					}
 				}
 				for (int j = -n2; j <= n2; j += 1){
 					for (int k = -n2; k <= n2; k += 1){
 						if (boundaryCheck(row+j,col-9,z+k))
-							GC.add(cells[row+j][col-9][z+k]);
+							GC.add(cells.getCell(row+j, col-9, z+k));
 
 					}
 				}
 				for (int j = -n2; j <= n2; j += 1){
 					for (int k = -n2; k <= n2; k += 1){
 						if (boundaryCheck(row+j,col+k,z+9))
-							GC.add(cells[row+j][col+k][z+9]);
+							GC.add(cells.getCell(row+j, col+k, z+9));
 
 					}
 				}
 				for (int j = -n2; j <= n2; j += 1){
 					for (int k = -n2; k <= n2; k += 1){
 						if (boundaryCheck(row+j,col+k,z-9))
-							GC.add(cells[row+j][col+k][z-9]);
+							GC.add(cells.getCell(row+j, col+k, z-9));
 
 					}
 				}
@@ -1974,7 +1965,7 @@ public class SPNRmodify extends ActiveRouter{
 						if (timeList.get(iterator) > t0){
 							/**ע⣬iterator - 1ûдģΪiterator˵һʱ䣬if㣬ôʱ̽ڵӦôǰһλõ**/
 							int[] coordOfNetgrid = gridCellList.get(iterator - 1).getNumber();
-							cell = this.cells[coordOfNetgrid[0]][coordOfNetgrid[1]][coordOfNetgrid[2]];
+							cell = this.cells.getCell(coordOfNetgrid[0], coordOfNetgrid[1], coordOfNetgrid[2]);
 							//cell = gridCellList.get(iterator - 1);
 							label = true;
 							break;
@@ -1983,13 +1974,13 @@ public class SPNRmodify extends ActiveRouter{
 					/**жǲǴڹڵĩβʱ̣߽λ**/
 					if (t0 >= timeList.get(0) & cell == null){
 						int[] coordOfNetgrid = gridCellList.get(0).getNumber();
-						cell = this.cells[coordOfNetgrid[0]][coordOfNetgrid[1]][coordOfNetgrid[2]];
+						cell = this.cells.getCell(coordOfNetgrid[0], coordOfNetgrid[1], coordOfNetgrid[2]);
 						label = true;
 					}
 					
 					if (t0 >= timeList.get(timeList.size() - 1) & t0 < timeList.get(0) & cell == null){
 						int[] coordOfNetgrid = gridCellList.get(timeList.size() - 1).getNumber();
-						cell = this.cells[coordOfNetgrid[0]][coordOfNetgrid[1]][coordOfNetgrid[2]];
+						cell = this.cells.getCell(coordOfNetgrid[0], coordOfNetgrid[1], coordOfNetgrid[2]);
 						label = true;
 					}	
 				}
@@ -1998,7 +1989,7 @@ public class SPNRmodify extends ActiveRouter{
 						if (timeList.get(iterator) > t0){
 							/**ע⣬iterator - 1ûдģΪiterator˵һʱ䣬if㣬ôʱ̽ڵӦôǰһλõ**/
 							int[] coordOfNetgrid = gridCellList.get(iterator - 1).getNumber();
-							cell = this.cells[coordOfNetgrid[0]][coordOfNetgrid[1]][coordOfNetgrid[2]];
+							cell = this.cells.getCell(coordOfNetgrid[0], coordOfNetgrid[1], coordOfNetgrid[2]);
 							//cell = gridCellList.get(iterator - 1);
 							label = true;
 							break;
@@ -2007,7 +1998,7 @@ public class SPNRmodify extends ActiveRouter{
 					/**жǲǴڹڵĩβʱ̣߽λ**/
 					if (t0 >= timeList.get(timeList.size() - 1) & cell == null){
 						int[] coordOfNetgrid = gridCellList.get(timeList.size() - 1).getNumber();
-						cell = this.cells[coordOfNetgrid[0]][coordOfNetgrid[1]][coordOfNetgrid[2]];
+						cell = this.cells.getCell(coordOfNetgrid[0], coordOfNetgrid[1], coordOfNetgrid[2]);
 						//cell = gridCellList.get(0);
 						label = true;
 					}	
@@ -2188,7 +2179,7 @@ public class SPNRmodify extends ActiveRouter{
 			//assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " + 
 			//c + " is out of world's bounds";
 			
-			return this.cells[row][col][z];
+			return this.cells.getCell(row, col, z);
 		}
 		
 		public void setHostsList(List<DTNHost> hosts){
@@ -2198,31 +2189,5 @@ public class SPNRmodify extends ActiveRouter{
 		/**
 		 * ½ڲ࣬ʵ񻮷֣洢ɢ
 		 */
-		public class GridCell {
-			// how large array is initially chosen
-			private static final int EXPECTED_INTERFACE_COUNT = 18;
-			//private ArrayList<NetworkInterface> interfaces;//GridCellάӿб¼ڴڵĽڵ㣬ȫ˵Ҫ֤ͬһӿڲͬʱGridCell
-			private int[] number;
-			
-			private GridCell() {
-			//	this.interfaces = new ArrayList<NetworkInterface>(
-			//			EXPECTED_INTERFACE_COUNT);
-				number = new int[3];
-			}
-			
-			public void setNumber(int row, int col, int z){
-				number[0] = row;
-				number[1] = col;
-				number[2] = z;
-			}
-			public int[] getNumber(){
-				return number;
-			}
-			
-			public String toString() {
-				return getClass().getSimpleName() + " with " + 
-					"cell number: "+ number[0]+" "+number[1]+" "+number[2];
-			}
-		}
 	}
 }
@@ -3,15 +3,20 @@ package routing;
 import static java.lang.Math.abs;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import movement.SatelliteMovement;
 import core.Connection;
+import core.Coord;
 import core.DTNHost;
 import core.Message;
 import core.Settings;
+import core.SimClock;
 import core.SimError;
+import core.SimulationContext;
 import util.Tuple;
 
 public class SatelliteInterLinkInfo {
@@ -39,25 +44,25 @@ public class SatelliteInterLinkInfo {
 	private SatelliteMovement sMovement;
 
     /** total number of LEO satellites*/
-    private static int LEO_TOTAL_SATELLITES;//ܽڵ
+    private int LEO_TOTAL_SATELLITES;//ܽڵ
     /** total number of LEO plane*/
-    private static int LEO_TOTAL_PLANE;//ܹƽ
+    private int LEO_TOTAL_PLANE;//ܹƽ
     /** number of hosts in each LEO plane*/
-    private static int LEO_NROF_S_EACHPLANE;//ÿƽϵ
+    private int LEO_NROF_S_EACHPLANE;//ÿƽϵ
     
     /** total number of MEO satellites*/
-    private static int MEO_TOTAL_SATELLITES;//ܽڵ
+    private int MEO_TOTAL_SATELLITES;//ܽڵ
     /** total number of MEO plane*/
-    private static int MEO_TOTAL_PLANE;//ܹƽ
+    private int MEO_TOTAL_PLANE;//ܹƽ
     /** number of hosts in each MEO plane*/
-    private static int MEO_NROF_S_EACHPLANE;//ÿƽϵ
+    private int MEO_NROF_S_EACHPLANE;//ÿƽϵ
     
     /** total number of GEO satellites*/
-    private static int GEO_TOTAL_SATELLITES;//ܽڵ
+    private int GEO_TOTAL_SATELLITES;//ܽڵ
     /** total number of GEO plane*/
-    private static int GEO_TOTAL_PLANE;//ܹƽ
+    private int GEO_TOTAL_PLANE;//ܹƽ
     /** number of hosts in each GEO plane*/
-    private static int GEO_NROF_S_EACHPLANE;//ÿƽϵ
+    private int GEO_NROF_S_EACHPLANE;//ÿƽϵ
     
     /** store LEO cluster information */
     private LEOclusterInfo LEOci;
@@ -70,9 +75,13 @@ public class SatelliteInterLinkInfo {
     private boolean initLable = false;
     /** the message size threshold, decides the message transmitted 
      *  through radio link or laser link -setting id ({@value}*/
-    private static int msgThreshold;
+    private int msgThreshold;
 	/** maximum connection betweent this node and node in the neighbor plane*/
 	public int nrofAllowConnectedHostInNeighborPlane = 2;//趨ھӹƽ
+	/** index of the satellites of the simulation (shared by all infos) */
+	private HostIndex index;
+	/** squared distances of the neighbor plane candidates (reused) */
+	private double[] candidateDistances = new double[0];
 
     public SatelliteInterLinkInfo(DTNHost host, String satelliteType){
     	this.host = host;
@@ -172,16 +181,118 @@ public class SatelliteInterLinkInfo {
      * @return all satellite nodes in the network
      */
     public List<DTNHost> getHosts() {
-        return new ArrayList<DTNHost>(((SatelliteMovement) this.getHost().getMovementModel()).getHosts());
+        return getIndex().hosts;
     }
+    /**
+     * @return all MEO satellite nodes in the network (read only)
+     */
 	public List<DTNHost> findAllMEOHosts(){
-		List<DTNHost> MEOLists = new ArrayList<DTNHost>();
-		for (DTNHost h : this.getHosts()){
-			if (h.getSatelliteType().contains("MEO")){
-				MEOLists.add(h);
-			}			
+		return getIndex().MEOs;
+	}
+	
+	/**
+	 * Returns the index of the satellites that the movement model of this
+	 * node knows. The index is shared by all the nodes of the simulation and
+	 * is rebuilt only if the satellites change.
+	 */
+	private HostIndex getIndex() {
+		Map<DTNHost, double[]> orbitInfo = sMovement.getOrbitInfo();
+		if (index == null || !index.isIndexOf(orbitInfo)) {
+			index = SimulationContext.current().getState(HostIndex.class);
+			synchronized (index) {
+				if (!index.isIndexOf(orbitInfo)) {
+					index.build(orbitInfo);
+				}
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Adds the hosts whose addresses are in a range to a list, in address
+	 * order
+	 * @param list The list where the hosts are added
+	 * @param start The first address of the range
+	 * @param end The last address of the range
+	 */
+	private void addHostsInRange(List<DTNHost> list, int start, int end) {
+		for (int address = start; address <= end; address++) {
+			DTNHost h = findHostByAddress(address);
+			if (h != null) {
+				list.add(h);
+			}
+		}
+	}
+	
+	/**
+	 * Selects the nodes of the neighbor planes this node connects to: the
+	 * nearest candidate and then the nearest candidates that are not the
+	 * in-plane neighbors of the first one, until
+	 * {@link #nrofAllowConnectedHostInNeighborPlane} nodes are selected.
+	 * The candidates are picked in distance order (ties in list order)
+	 * without sorting the whole list.
+	 * @param candidates The nodes of the neighbor planes
+	 * @param communicationOnly If true, only the communication nodes of
+	 * this node's router are selected
+	 * @param result The list where the selected nodes are stored; any old
+	 * contents are removed
+	 */
+	private void selectNeighborPlaneHosts(List<DTNHost> candidates, 
+			boolean communicationOnly, List<DTNHost> result) {
+		result.clear();
+		int n = candidates.size();
+		if (candidateDistances.length < n) {
+			candidateDistances = new double[n];
+		}
+		double[] d = candidateDistances;
+		Coord loc = host.getLocation();
+		for (int i = 0; i < n; i++) {
+			DTNHost h = candidates.get(i);
+			if (communicationOnly && 
+					!host.getRouter().CommunicationNodesList.containsKey(h)) {
+				d[i] = Double.NaN;
+			} else {
+				d[i] = loc.distance2(h.getLocation());
+			}
+		}
+		
+		List<DTNHost> firstsNeighbors = null;
+		while (result.size() < nrofAllowConnectedHostInNeighborPlane) {
+			int best = -1;
+			for (int i = 0; i < n; i++) {
+				if (!Double.isNaN(d[i]) && (best < 0 || d[i] < d[best])) {
+					best = i;
+				}
+			}
+			if (best < 0) {
+				break;
+			}
+			d[best] = Double.NaN;
+			DTNHost h = candidates.get(best);
+			if (firstsNeighbors == null) {
+				result.add(h);
+				firstsNeighbors = getAllowConnectHostsInSamePlane(h);
+			} else if (!firstsNeighbors.contains(h)) {
+				result.add(h);// not in the same orbit plane as the first one
+			}
+		}
+	}
+	
+	/**
+	 * Returns the in-plane neighbors of a node of the same layer as this
+	 * node
+	 */
+	private List<DTNHost> getAllowConnectHostsInSamePlane(DTNHost h) {
+		SatelliteInterLinkInfo info = 
+			((SatelliteMovement)h.getMovementModel()).getSatelliteLinkInfo();
+		switch (getSatelliteType()) {
+			case "LEO":
+				return info.getLEOci().getAllowConnectLEOHostsInLEOSamePlane();
+			case "MEO":
+				return info.getMEOci().getAllowConnectMEOHostsInSamePlane();
+			default:
+				return info.getGEOci().getAllowConnectGEOHostsInSamePlane();
 		}
-		return MEOLists;
 	}
 	
     /**
@@ -191,11 +302,10 @@ public class SatelliteInterLinkInfo {
      * @return
      */
     public DTNHost findHostByAddress(int address) {
-        for (DTNHost host : getHosts()) {
-            if (host.getAddress() == address)
-                return host;
-        }
-        return null;
+    	DTNHost[] byAddress = getIndex().byAddress;
+    	if (address < 0 || address >= byAddress.length)
+    		return null;
+        return byAddress[address];
     }
     
     /**
@@ -209,9 +319,9 @@ public class SatelliteInterLinkInfo {
         double ax = a.getLocation().getX();
         double ay = a.getLocation().getY();
         double az = a.getLocation().getZ();
-        double bx = a.getLocation().getX();
-        double by = a.getLocation().getY();
-        double bz = a.getLocation().getZ();
+        double bx = b.getLocation().getX();
+        double by = b.getLocation().getY();
+        double bz = b.getLocation().getZ();
 
         double distance = (ax - bx) * (ax - bx) + (ay - by) * (ay - by) + (az - bz) * (az - bz);
         distance = Math.sqrt(distance);
@@ -385,6 +495,10 @@ public class SatelliteInterLinkInfo {
         private List<DTNHost> allowConnectLEOHostsInSamePlane = new ArrayList<DTNHost>();
         /** neighbor hosts in two neighbor orbit plane, and they can be forwarded directly*/
         private List<DTNHost> allowConnectLEOHostsInNeighborPlane = new ArrayList<DTNHost>();
+        /** neighbor plane hosts selected for the current simulation time */
+        private List<DTNHost> allowConnectInNeighborPlane = new ArrayList<DTNHost>();
+        /** simulation time of the neighbor plane host selection */
+        private double neighborPlaneUpdateTime = Double.NaN;
         /** neighbor hosts in the neighbor orbit plane*/
         public List<DTNHost> neighborPlaneHosts = new ArrayList<DTNHost>();//ڹƽڵھӽڵ
         /** hosts list in the same orbit plane, and they can be forwarded directly without MEO */
@@ -463,21 +577,13 @@ public class SatelliteInterLinkInfo {
             int endNumber1 = LEO_NROF_S_EACHPLANE * a - 1;//˹ƽڵĽڵ㣬β
             
             //ĿĽڵھӹƽϣҳĿĽڵƽеĽڵ
-            for (DTNHost host : getHosts()){
-                if (host.getAddress() >= startNumber1 && host.getAddress() <= endNumber1){
-                	allowConnectLEOHostsInNeighborPlane.add(host);
-                }
-            }
+            addHostsInRange(allowConnectLEOHostsInNeighborPlane, startNumber1, endNumber1);
             //ھMEOƽ
             int startNumber2 = LEO_NROF_S_EACHPLANE * (b - 1);//˹ƽڵĽڵ㣬ʼ
             int endNumber2 = LEO_NROF_S_EACHPLANE * b - 1;//˹ƽڵĽڵ㣬β
             
             //ĿĽڵھӹƽϣҳĿĽڵƽеĽڵ
-            for (DTNHost host : getHosts()){
-                if (host.getAddress() >= startNumber2 && host.getAddress() <= endNumber2){
-                	allowConnectLEOHostsInNeighborPlane.add(host);
-                }
-            }
+            addHostsInRange(allowConnectLEOHostsInNeighborPlane, startNumber2, endNumber2);
         }
         /**
          * ͬһƽڵھڵ
@@ -495,35 +601,21 @@ public class SatelliteInterLinkInfo {
         }
         /**
          * ̬ҵMEOĵǰھӹڵûھͨ
+         * The selection is done once per simulation time; the returned list
+         * is reused and must not be modified.
          * @return
          */
         public List<DTNHost> updateAllowConnectLEOHostsInNeighborPlane(){
-        	List<DTNHost> list = new ArrayList<DTNHost>();
-        	
-        	if (!thisNode.getRouter().CommunicationSatellitesLabel)
-        		return list;//ͨŽڵ㣬ֱӷأھӹLEOڵ㽨
-        	
-        	List<Tuple<DTNHost, Double>> listFromDistance = new ArrayList<Tuple<DTNHost, Double>>();
-        	for (DTNHost h : getAllowConnectLEOHostsInNeighborPlane()){
-        		if (thisNode.getRouter().CommunicationNodesList.containsKey(h)){//ȷһͨŽڵ
-        			listFromDistance.add(new Tuple<DTNHost, Double>(h, getDistance(thisNode, h)));
-        		}
-        	}
-        	sort(listFromDistance);
-        	for (Tuple<DTNHost, Double> t : listFromDistance){
-        		if (list.isEmpty())
-        			list.add(t.getKey());
-        		else{
-        			//ͬһƽ
-        			if (!((SatelliteMovement)list.get(0).getMovementModel()).
-        					getSatelliteLinkInfo().getLEOci().getAllowConnectLEOHostsInLEOSamePlane().contains(t.getKey())){
-        					list.add(t.getKey());	
-        					}
-        		}
-        		if (list.size() >= nrofAllowConnectedHostInNeighborPlane)
-        			return list;
+        	double now = SimClock.getTime();
+        	if (now != neighborPlaneUpdateTime) {
+        		if (!thisNode.getRouter().CommunicationSatellitesLabel)
+        			allowConnectInNeighborPlane.clear();//ͨŽڵ㣬ֱӷأھӹLEOڵ㽨
+        		else
+        			selectNeighborPlaneHosts(getAllowConnectLEOHostsInNeighborPlane(), 
+        					true, allowConnectInNeighborPlane);
+        		neighborPlaneUpdateTime = now;
         	}
-        	return list;   	
+        	return allowConnectInNeighborPlane;
         }
         /**
          * ҵLEOڵ
@@ -531,10 +623,7 @@ public class SatelliteInterLinkInfo {
          */
         public List<DTNHost> findAllLEONodes(){
         	LEOList.clear();
-        	for (DTNHost h : getHosts()){
-        		if (h.getSatelliteType().contains("LEO"))
-        			LEOList.add(h);
-        	}
+        	LEOList.addAll(getIndex().LEOs);
         	return LEOList;       		
         }
         /**
@@ -558,11 +647,7 @@ public class SatelliteInterLinkInfo {
                 
                 hostsInNeighborOrbitPlane = new ArrayList<DTNHost>();
                 //ĿĽڵھӹƽϣҳĿĽڵƽеĽڵ
-                for (DTNHost host : getHosts()){
-                    if (host.getAddress() >= startNumber && host.getAddress() <= endNumber){
-                        hostsInNeighborOrbitPlane.add(host);
-                    }
-                }
+                addHostsInRange(hostsInNeighborOrbitPlane, startNumber, endNumber);
             }
             //ͷؿ
             return hostsInNeighborOrbitPlane;
@@ -707,11 +792,7 @@ public class SatelliteInterLinkInfo {
             	endNumberInSameLEOPlane = LEO_NROF_S_EACHPLANE * nrofPlane - 1;//˹ƽڵĽڵ㣬β
             }
 
-            for (DTNHost host : getHosts()){
-                if (host.getAddress() >= startNumberInSameLEOPlane && host.getAddress()<= endNumberInSameLEOPlane){
-                    allHostsInSamePlane.add(host);//ͬһڵڽڵ
-                }
-            }
+            addHostsInRange(allHostsInSamePlane, startNumberInSameLEOPlane, endNumberInSameLEOPlane);//ͬһڵڽڵ
         }
         /**
          * ʼҵͬһнڵ㣬趨ڵͬھӽڵ
@@ -762,6 +843,10 @@ public class SatelliteInterLinkInfo {
         private List<DTNHost> allowConnectMEOHostsInSamePlane = new ArrayList<DTNHost>();
         /** neighbor hosts in two neighbor orbit plane, and they can be forwarded directly*/
         private List<DTNHost> allowConnectMEOHostsInNeighborPlane = new ArrayList<DTNHost>();
+        /** neighbor plane hosts selected for the current simulation time */
+        private List<DTNHost> allowConnectInNeighborPlane = new ArrayList<DTNHost>();
+        /** simulation time of the neighbor plane host selection */
+        private double neighborPlaneUpdateTime = Double.NaN;
         /** all hosts in the same orbit plane*/
         public List<DTNHost> allHostsInSamePlane = new ArrayList<DTNHost>();
         
@@ -803,10 +888,7 @@ public class SatelliteInterLinkInfo {
          */
         public List<DTNHost> findAllMEONodes(){
         	MEOList.clear();
-        	for (DTNHost h : getHosts()){
-        		if (h.getSatelliteType().contains("MEO"))
-        			MEOList.add(h);
-        	} 
+        	MEOList.addAll(getIndex().MEOs); 
         	return MEOList;
         }
         /**
@@ -842,11 +924,7 @@ public class SatelliteInterLinkInfo {
         	int	startNumber = this.startNumberInSameMEOPlane;//˹ƽڵĽڵ㣬ʼ
             int endNumber = this.endNumberInSameMEOPlane;//˹ƽڵĽڵ㣬β
 
-            for (DTNHost host : getHosts()){
-                if (host.getAddress() >= startNumber && host.getAddress()<= endNumber){
-                    allHostsInSamePlane.add(host);//ͬһڵڽڵ
-                }
-            }
+            addHostsInRange(allHostsInSamePlane, startNumber, endNumber);//ͬһڵڽڵ
             return allHostsInSamePlane;
         }
         /**
@@ -870,49 +948,29 @@ public class SatelliteInterLinkInfo {
             int endNumber1 = LEO_TOTAL_SATELLITES + MEO_NROF_S_EACHPLANE * a - 1;//˹ƽڵĽڵ㣬β
             
             //ĿĽڵھӹƽϣҳĿĽڵƽеĽڵ
-            for (DTNHost host : getHosts()){
-                if (host.getAddress() >= startNumber1 && host.getAddress() <= endNumber1){
-                	allowConnectMEOHostsInNeighborPlane.add(host);
-                }
-            }
+            addHostsInRange(allowConnectMEOHostsInNeighborPlane, startNumber1, endNumber1);
             //ھMEOƽ
             int startNumber2 = LEO_TOTAL_SATELLITES + MEO_NROF_S_EACHPLANE * (b - 1);//˹ƽڵĽڵ㣬ʼ
             int endNumber2 = LEO_TOTAL_SATELLITES + MEO_NROF_S_EACHPLANE * b - 1;//˹ƽڵĽڵ㣬β
             
             //ĿĽڵھӹƽϣҳĿĽڵƽеĽڵ
-            for (DTNHost host : getHosts()){
-                if (host.getAddress() >= startNumber2 && host.getAddress() <= endNumber2){
-                	allowConnectMEOHostsInNeighborPlane.add(host);
-                }
-            }
+            addHostsInRange(allowConnectMEOHostsInNeighborPlane, startNumber2, endNumber2);
         }
 
         /**
          * ̬ҵMEOĵǰھӹڵûھͨ
+         * The selection is done once per simulation time; the returned list
+         * is reused and must not be modified.
          * @return
          */
         public List<DTNHost> updateAllowConnectMEOHostsInNeighborPlane(){
-        	List<DTNHost> list = new ArrayList<DTNHost>();
-
-        	List<Tuple<DTNHost, Double>> listFromDistance = new ArrayList<Tuple<DTNHost, Double>>();
-        	for (DTNHost h : getAllowConnectMEOHostsInNeighborPlane()){
-        		listFromDistance.add(new Tuple<DTNHost, Double>(h, getDistance(thisNode, h)));
-        	}
-        	sort(listFromDistance);
-        	for (Tuple<DTNHost, Double> t : listFromDistance){
-        		if (list.isEmpty())
-        			list.add(t.getKey());
-        		else{
-        			//ͬһƽ
-        			if (!((SatelliteMovement)list.get(0).getMovementModel()).
-        					getSatelliteLinkInfo().getMEOci().getAllowConnectMEOHostsInSamePlane().contains(t.getKey())){
-        					list.add(t.getKey());	
-        					}
-        		}
-        		if (list.size() >= nrofAllowConnectedHostInNeighborPlane)
-        			return list;
+        	double now = SimClock.getTime();
+        	if (now != neighborPlaneUpdateTime) {
+        		selectNeighborPlaneHosts(getAllowConnectMEOHostsInNeighborPlane(), 
+        				false, allowConnectInNeighborPlane);
+        		neighborPlaneUpdateTime = now;
         	}
-        	return list;
+        	return allowConnectInNeighborPlane;
         }
         /**
          * ͬһڵнڵ
@@ -1058,6 +1116,10 @@ public class SatelliteInterLinkInfo {
         private List<DTNHost> allowConnectGEOHostsInSamePlane = new ArrayList<DTNHost>();
         /** neighbor hosts in two neighbor orbit plane, and they can be forwarded directly*/
         private List<DTNHost> allowConnectGEOHostsInNeighborPlane = new ArrayList<DTNHost>();
+        /** neighbor plane hosts selected for the current simulation time */
+        private List<DTNHost> allowConnectInNeighborPlane = new ArrayList<DTNHost>();
+        /** simulation time of the neighbor plane host selection */
+        private double neighborPlaneUpdateTime = Double.NaN;
         /** all hosts in the same orbit plane*/
         public List<DTNHost> allHostsInSamePlane = new ArrayList<DTNHost>();
         
@@ -1100,10 +1162,7 @@ public class SatelliteInterLinkInfo {
          */
         public List<DTNHost> findAllGEONodes(){
         	GEOList.clear();
-        	for (DTNHost h : getHosts()){
-        		if (h.getSatelliteType().contains("GEO"))
-        			GEOList.add(h);
-        	} 
+        	GEOList.addAll(getIndex().GEOs); 
         	return GEOList;
         }
         /**
@@ -1139,11 +1198,7 @@ public class SatelliteInterLinkInfo {
             //TODO ﻹMEOciеĺ
             
             
-            for (DTNHost host : getHosts()){
-                if (host.getAddress() >= startNumber && host.getAddress()<= endNumber){
-                    allHostsInSamePlane.add(host);//ͬһڵڽڵ
-                }
-            }
+            addHostsInRange(allHostsInSamePlane, startNumber, endNumber);//ͬһڵڽڵ
             //System.out.println(thisNode+"  allowConnectGEOHostsInSamePlane  "+allowConnectGEOHostsInSamePlane);
         }
         /**
@@ -1167,49 +1222,29 @@ public class SatelliteInterLinkInfo {
             int endNumber1 = LEO_TOTAL_SATELLITES + MEO_TOTAL_SATELLITES + GEO_NROF_S_EACHPLANE * a - 1;//˹ƽڵĽڵ㣬β
             
             //ĿĽڵھӹƽϣҳĿĽڵƽеĽڵ
-            for (DTNHost host : getHosts()){
-                if (host.getAddress() >= startNumber1 && host.getAddress() <= endNumber1){
-                	allowConnectGEOHostsInNeighborPlane.add(host);
-                }
-            }
+            addHostsInRange(allowConnectGEOHostsInNeighborPlane, startNumber1, endNumber1);
             //ھGEOƽ
             int startNumber2 = LEO_TOTAL_SATELLITES + MEO_TOTAL_SATELLITES + GEO_NROF_S_EACHPLANE * (b - 1);//˹ƽڵĽڵ㣬ʼ
             int endNumber2 = LEO_TOTAL_SATELLITES + MEO_TOTAL_SATELLITES + GEO_NROF_S_EACHPLANE * b - 1;//˹ƽڵĽڵ㣬β
             
             //ĿĽڵھӹƽϣҳĿĽڵƽеĽڵ
-            for (DTNHost host : getHosts()){
-                if (host.getAddress() >= startNumber2 && host.getAddress() <= endNumber2){
-                	allowConnectGEOHostsInNeighborPlane.add(host);
-                }
-            }
+            addHostsInRange(allowConnectGEOHostsInNeighborPlane, startNumber2, endNumber2);
         }
 
         /**
          * ̬ҵGEOĵǰھӹڵûھͨ
+         * The selection is done once per simulation time; the returned list
+         * is reused and must not be modified.
          * @return
          */
         public List<DTNHost> updateAllowConnectGEOHostsInNeighborPlane(){
-        	List<DTNHost> list = new ArrayList<DTNHost>();
-        	
-        	List<Tuple<DTNHost, Double>> listFromDistance = new ArrayList<Tuple<DTNHost, Double>>();
-        	for (DTNHost h : getAllowConnectGEOHostsInNeighborPlane()){
-        		listFromDistance.add(new Tuple<DTNHost, Double>(h, getDistance(thisNode, h)));
+        	double now = SimClock.getTime();
+        	if (now != neighborPlaneUpdateTime) {
+        		selectNeighborPlaneHosts(getAllowConnectGEOHostsInNeighborPlane(), 
+        				false, allowConnectInNeighborPlane);
+        		neighborPlaneUpdateTime = now;
         	}
-        	sort(listFromDistance);
-        	for (Tuple<DTNHost, Double> t : listFromDistance){
-        		if (list.isEmpty())
-        			list.add(t.getKey());
-        		else{
-        			//ͬһƽ
-        			if (!((SatelliteMovement)list.get(0).getMovementModel()).
-        					getSatelliteLinkInfo().getGEOci().getAllowConnectGEOHostsInSamePlane().contains(t.getKey())){
-        					list.add(t.getKey());	
-        					}
-        		}
-        		if (list.size() >= nrofAllowConnectedHostInNeighborPlane)
-        			return list;
-        	}
-        	return list;
+        	return allowConnectInNeighborPlane;
         }
         /**
          * ͬһڵнڵ
@@ -1298,5 +1333,72 @@ public class SatelliteInterLinkInfo {
                     "  clusterUpdateTime:  " + clusterUpdateTime;
         }
     }
-
+    
+    /**
+     * Index of the satellites of one simulation: the satellites by address
+     * and the satellites of each layer, in address order. The index is
+     * built once from the orbit info of the satellite movement models and
+     * shared by all the nodes of the simulation through the
+     * {@link SimulationContext}.
+     */
+    static class HostIndex {
+    	/** the orbit info the index was built from */
+    	private Map<DTNHost, double[]> source;
+    	/** number of satellites when the index was built */
+    	private int size;
+    	/** the satellites by address (null for other addresses) */
+    	private DTNHost[] byAddress = new DTNHost[0];
+    	/** all satellites, LEO, MEO and GEO satellites (read only) */
+    	private List<DTNHost> hosts;
+    	private List<DTNHost> LEOs;
+    	private List<DTNHost> MEOs;
+    	private List<DTNHost> GEOs;
+    	
+    	/**
+    	 * Returns true if this index was built from the orbit info and the
+    	 * satellites haven't changed since
+    	 */
+    	boolean isIndexOf(Map<DTNHost, double[]> orbitInfo) {
+    		return source == orbitInfo && size == orbitInfo.size();
+    	}
+    	
+    	/**
+    	 * (Re)builds the index
+    	 * @param orbitInfo orbit info of all the satellites
+    	 */
+    	void build(Map<DTNHost, double[]> orbitInfo) {
+    		int maxAddress = -1;
+    		for (DTNHost h : orbitInfo.keySet()) {
+    			maxAddress = Math.max(maxAddress, h.getAddress());
+    		}
+    		byAddress = new DTNHost[maxAddress + 1];
+    		for (DTNHost h : orbitInfo.keySet()) {
+    			byAddress[h.getAddress()] = h;
+    		}
+    		List<DTNHost> all = new ArrayList<DTNHost>();
+    		List<DTNHost> leo = new ArrayList<DTNHost>();
+    		List<DTNHost> meo = new ArrayList<DTNHost>();
+    		List<DTNHost> geo = new ArrayList<DTNHost>();
+    		for (DTNHost h : byAddress) {
+    			if (h == null) {
+    				continue;
+    			}
+    			all.add(h);
+    			String type = h.getSatelliteType();
+    			if (type.contains("LEO")) {
+    				leo.add(h);
+    			} else if (type.contains("MEO")) {
+    				meo.add(h);
+    			} else if (type.contains("GEO")) {
+    				geo.add(h);
+    			}
+    		}
+    		hosts = Collections.unmodifiableList(all);
+    		LEOs = Collections.unmodifiableList(leo);
+    		MEOs = Collections.unmodifiableList(meo);
+    		GEOs = Collections.unmodifiableList(geo);
+    		source = orbitInfo;
+    		size = orbitInfo.size();
+    	}
+    }
 }
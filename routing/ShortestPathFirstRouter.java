@@ -14,6 +14,8 @@ import java.util.Random;
 
 import core.*;
 import movement.SatelliteMovement;
+import routing.util.RoutingInfo;
+import routing.util.ShortestPathEngine;
 import util.Tuple;
 import static core.SimClock.getTime;
 
@@ -56,27 +58,25 @@ public class ShortestPathFirstRouter extends ActiveRouter {
     private static final double LIGHTSPEED = 299792458;
     /** the interval of each hello process -setting id ({@value} */
     private double helloInterval;
-    /** indicates the TTL of hello message -setting id ({@value} */
-    private static int helloTtl;
-    /** indicates the number of hello message -setting id ({@value} */
-    private static int helloMessageNum;
-    /** hello message size -setting id ({@value} */
-    private static int helloMessageSize;
+    /** routing parameters shared by the routers of the simulation */
+    private Parameters params;
     
     /** store the latest hello check time */
     private double lastHelloCheckTime;
-    /** indicate the transmission radius of each satellite */
-    private static double transmitRange;
-    /** label indicates that routing path can contain in the message or not */
-    private static boolean msgPathLabel;
-    /** label indicates that the static routing parameters are set or not */
-    private static boolean initLabel = false;
-    /** label indicates that routing algorithm has been executed or not at this time */
+    /** label indicates that the router table is valid, it is kept until the topology, the links or the message size class change */
     private boolean routerTableUpdateLabel;
-    /** maintain the earliest arrival time to other nodes */
-    private HashMap<DTNHost, Double> arrivalTime = new HashMap<DTNHost, Double>();
+    /** topology version of the router table */
+    private int routerTableTopologyVersion;
+    /** message size class of the router table */
+    private int routerTableSizeClass;
+    /** number of routing updates that used the cached router table */
+    private int routerTableCacheHits;
+    /** number of routing updates that had to run the routing algorithm */
+    private int routerTableCacheMisses;
     /** the router table comes from routing algorithm */
     private HashMap<DTNHost, List<Tuple<Integer, Boolean>>> routerTable = new HashMap<DTNHost, List<Tuple<Integer, Boolean>>>();
+    /** shortest paths of the last routing update, the router table is filled from them when the paths are needed */
+    private ShortestPathEngine search = new ShortestPathEngine();
     /** to make the random choice */
     private Random random;
     
@@ -97,6 +97,19 @@ public class ShortestPathFirstRouter extends ActiveRouter {
         super(r);
     }
 
+    static {
+        DTNSim.registerForReset(ShortestPathFirstRouter.class.getCanonicalName());
+        reset();
+    }
+
+    /**
+     * Removes the routing parameters of the current simulation context, so
+     * the first router of the next run reads them again
+     */
+    public static void reset() {
+        SimulationContext.current().removeState(Parameters.class);
+    }
+
 
     @Override
     public MessageRouter replicate() {
@@ -106,16 +119,17 @@ public class ShortestPathFirstRouter extends ActiveRouter {
     @Override
     public void init(DTNHost host, List<MessageListener> mListeners) {
         super.init(host, mListeners);
-        if (!initLabel){
+        params = SimulationContext.current().getState(Parameters.class);
+        if (!params.initLabel){
         	random = new Random();
             Settings setting = new Settings(INTERFACENAME_S);
-            transmitRange = setting.getInt(TRANSMIT_RANGE_S);
+            params.transmitRange = setting.getInt(TRANSMIT_RANGE_S);
             setting.setNameSpace(GROUPNAME_S);
-            msgPathLabel = setting.getBoolean(MSG_PATHLABEL);
-            initLabel = true;
+            params.msgPathLabel = setting.getBoolean(MSG_PATHLABEL);
+            params.initLabel = true;
             helloInterval = setting.getDouble("HelloInterval");
-            helloTtl = setting.getInt(HELLOTTL_S);
-            helloMessageSize = setting.getInt(HELLOMESSAGESIZE_S);
+            params.helloTtl = setting.getInt(HELLOTTL_S);
+            params.helloMessageSize = setting.getInt(HELLOMESSAGESIZE_S);
         }
     }
     
@@ -125,6 +139,8 @@ public class ShortestPathFirstRouter extends ActiveRouter {
     @Override
     public void changedConnection(Connection con) {
         super.changedConnection(con);
+        //the one-hop neighbors have changed, the router table must be recalculated
+        routerTableUpdateLabel = false;
 //		System.out.println("message: "+con);
 //		if (!con.isUp()){
 //			if(con.isTransferring()){
@@ -151,9 +167,6 @@ public class ShortestPathFirstRouter extends ActiveRouter {
         if (!canStartTransfer())
             return;
 
-        /**Set router update label to make sure that routing algorithm only execute once at a time**/
-        routerTableUpdateLabel = false;
-
         /** sort the messages to transmit */
         List<Message> messageList = this.CollectionToList(this.getMessageCollection());
         List<Message> messages = sortByQueueMode(messageList);
@@ -189,7 +202,7 @@ public class ShortestPathFirstRouter extends ActiveRouter {
     	if (SimClock.getTime() > getNextHelloTime()){ 
     		for (Connection con : this.getConnections()){
     			DTNHost to = con.getOtherNode(this.getHost());
-        		Message m = createHelloMessage(this.getHost(), to, "Hello, num: " + (helloMessageNum++), helloMessageSize, 0);
+        		Message m = createHelloMessage(this.getHost(), to, "Hello, num: " + (params.helloMessageNum++), params.helloMessageSize, 0);
         		Collection.add(new Tuple<Message, Connection>(m, con));     		
     		}
     		//simulate broadcast process
@@ -250,7 +263,7 @@ public class ShortestPathFirstRouter extends ActiveRouter {
 		m.setResponseSize(responseSize);
 		m.updateProperty("Hello", to);
 		//m.updateProperty("HelloInfo", from);
-		((ShortestPathFirstRouter)from.getRouter()).createNewMessage(m, helloTtl);
+		((ShortestPathFirstRouter)from.getRouter()).createNewMessage(m, params.helloTtl);
 		helloMessages.add(m);
 		
 		return m;
@@ -286,7 +299,7 @@ public class ShortestPathFirstRouter extends ActiveRouter {
      */
     public boolean findPathToSend(Message msg) {
     	// if user allow routing path information written into the message header
-        if (msgPathLabel == true) {
+        if (params.msgPathLabel == true) {
         	// if message header contains routing path information, this node should be intermediate node
             if (msg.getProperty(MSG_ROUTERPATH) == null) {
                 Tuple<Message, Connection> t =
@@ -375,10 +388,10 @@ public class ShortestPathFirstRouter extends ActiveRouter {
             return null;
         }
         //get the routing path from router table
-        List<Tuple<Integer, Boolean>> routerPath = this.routerTable.get(message.getTo());
+        List<Tuple<Integer, Boolean>> routerPath = getRouterPath(message.getTo());
         //System.out.println(this.getHost()+" send path "+routerPath+"  "+SimClock.getTime());
         //write the routing path into the header or not according to the 'msgPathLabel'
-        if (msgPathLabel == true) {
+        if (params.msgPathLabel == true) {
             message.updateProperty(MSG_ROUTERPATH, routerPath);
         }
         
@@ -391,7 +404,7 @@ public class ShortestPathFirstRouter extends ActiveRouter {
             	
                 return null;
             } else {
-            	this.routerTable.remove(message.getTo());
+            	this.routerTable.put(message.getTo(), null);//the path is invalid until the next routing update
             	return null;
 //                throw new SimError("No such connection: " + routerPath.get(0) +
 //                       " at routerTable " + this);  
@@ -436,51 +449,40 @@ public class ShortestPathFirstRouter extends ActiveRouter {
     public boolean updateRouterTable(Message msg) {
         shortestPathSearch(msg);
         //System.out.println(this.getHost()+"  "+routerTable+"  "+SimClock.getTime());
-        if (this.routerTable.containsKey(msg.getTo())) {
+        if (getRouterPath(msg.getTo()) != null) {
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Return the routing path to the destination found by the last routing update.
+     * The path is rebuilt from the search result when it is first needed.
+     *
+     * @param to
+     * @return the path or null if there is no path
+     */
+    public List<Tuple<Integer, Boolean>> getRouterPath(DTNHost to) {
+        if (this.routerTable.containsKey(to))
+            return this.routerTable.get(to);
+        List<Tuple<Integer, Boolean>> path = null;
+        if (to != this.getHost() && search.isReached(to.getAddress()))
+            path = search.getPath(to.getAddress());
+        this.routerTable.put(to, path);
+        return path;
+    }
+
 
     /**
      * Return current network topology in forms of temporal graph
      */
     public HashMap<DTNHost, List<DTNHost>> temporalGraphCaluculation() {
-        HashMap<DTNHost, Coord> locationRecord = new HashMap<DTNHost, Coord>();
-        HashMap<DTNHost, List<DTNHost>> topologyInfo = new HashMap<DTNHost, List<DTNHost>>();
-
-        double radius = transmitRange;//Represent communication Radius
         //Get satellite movement model which store orbit-info of all satellites in the network
         SatelliteMovement movementModel = ((SatelliteMovement) this.getHost().getMovementModel());
-
-        //Calculate the current coordinate of all satellite nodes in the network
-        for (DTNHost h : movementModel.getHosts()) {
-            //locationRecord.put(h, movementModel.getCoordinate(h, SimClock.getTime()));
-            locationRecord.put(h, h.getLocation());          
-        }
-        //System.out.println(this.getHost()+" list: "+locationRecord+"  "+SimClock.getTime());
-        //Calculate links between each two satellite nodes
-        for (DTNHost h : movementModel.getHosts()) {
-            for (DTNHost otherNode : movementModel.getHosts()) {
-                if (otherNode == h)
-                    continue;
-                Coord otherNodeLocation = locationRecord.get(otherNode);
-                if (locationRecord.get(h).distance(otherNodeLocation) <= radius) {
-                    if (topologyInfo.get(h) == null)
-                        topologyInfo.put(h, new ArrayList<DTNHost>());
-                    List<DTNHost> neighborList = topologyInfo.get(h);
-                    if (neighborList == null) {
-                        neighborList = new ArrayList<DTNHost>();
-                        neighborList.add(otherNode);
-                    } else {
-                        neighborList.add(otherNode);
-                    }
-                }
-            }
-        }
-        return topologyInfo;
+        //the links are calculated once per update interval for all routers
+        TopologySnapshot topology = TopologySnapshot.getTopology(movementModel.getHosts(), params.transmitRange);
+        return topology.getAdjacency();
     }
 
     /**
@@ -489,130 +491,51 @@ public class ShortestPathFirstRouter extends ActiveRouter {
      * @param msg
      */
     public void shortestPathSearch(Message msg) {
-        HashMap<DTNHost, List<DTNHost>> topologyInfo = temporalGraphCaluculation();//update the current topology information
+        //Get satellite movement model which store orbit-info of all satellites in the network
+        SatelliteMovement movementModel = ((SatelliteMovement) this.getHost().getMovementModel());
+        final TopologySnapshot topology = TopologySnapshot.getTopology(movementModel.getHosts(), params.transmitRange);
+        int sizeClass = getSizeClass(msg.getSize());
 
-        if (routerTableUpdateLabel == true)		//routerTableUpdateLabel == true˴θ·ɱѾ¹ˣԲҪظ
+        //the router table is still valid if neither the topology, the links nor the per-hop delay have changed
+        if (routerTableUpdateLabel == true && routerTableTopologyVersion == topology.getVersion()
+                && routerTableSizeClass == sizeClass) {
+            routerTableCacheHits++;
             return;
+        }
+        routerTableCacheMisses++;
         this.routerTable.clear();
-        this.arrivalTime.clear();
 
-        /**ȫĴʼٶΪһ**/
-        double transmitSpeed = this.getHost().getInterface(1).getTransmitSpeed();
-        /**ʾ·ɿʼʱ**/
+        /**the transmit speed of the whole network is assumed to be the same**/
+        final double hopTime = msg.getSize() / this.getHost().getInterface(1).getTransmitSpeed();
 
-        /**·̽⵽һھ񣬲·ɱ**/
-        List<DTNHost> searchedSet = new ArrayList<DTNHost>();
-        List<DTNHost> sourceSet = new ArrayList<DTNHost>();
-        sourceSet.add(this.getHost());//ʼʱֻԴڵ
-        searchedSet.add(this.getHost());//ʼʱֻԴڵ
-
-        for (Connection con : this.getHost().getConnections()) {//·̽⵽һھӣ·ɱ        	
+        search.init(topology.getMaxAddress(), this.getHost().getAddress(), getTime());
+        //the one-hop neighbors are the ones with an established link
+        for (Connection con : this.getHost().getConnections()) {
             DTNHost neiHost = con.getOtherNode(this.getHost());
-            sourceSet.add(neiHost);//ʼʱֻбڵ·ھ
-            Double time = getTime() + msg.getSize() / this.getHost().getInterface(1).getTransmitSpeed();
-            List<Tuple<Integer, Boolean>> path = new ArrayList<Tuple<Integer, Boolean>>();
-            Tuple<Integer, Boolean> hop = new Tuple<Integer, Boolean>(neiHost.getAddress(), false);
-            path.add(hop);//ע˳
-            arrivalTime.put(neiHost, time);
-            routerTable.put(neiHost, path);
+            search.relax(neiHost.getAddress(), getTime() + hopTime, false);
         }
-        /**·̽⵽һھ񣬲·ɱ**/
-
-        int iteratorTimes = 0;
-        int size = getHosts().size();
-        boolean updateLabel = true;
-        boolean predictLable = false;
-
-        arrivalTime.put(this.getHost(), SimClock.getTime());//ʼʱ
-
-        /**ȼУ**/
-        List<Tuple<DTNHost, Double>> PriorityQueue = new ArrayList<Tuple<DTNHost, Double>>();
-        /**ȼУ**/
-        
-        while (true) {//Dijsktra㷨˼룬ÿȫ֣ʱСļ·ɱ֤·ɱԶʱС·
-            if (iteratorTimes >= size)//|| updateLabel == false)
-                break;
-            updateLabel = false;
-            
-            for (DTNHost c : sourceSet) {
-                List<DTNHost> neiList = topologyInfo.get(c);//get neighbor nodes from topology info
-
-                /**жǷѾԴ񼯺е**/
-                if (searchedSet.contains(c) || neiList == null)
-                    continue;
-                
-                searchedSet.add(c);
-                for (DTNHost eachNeighborNetgrid : neiList) {//startTime.keySet()еھӽڵ㣬δھӽڵ
-                    if (sourceSet.contains(eachNeighborNetgrid))//ȷͷ
-                        continue;
-                    
-                    double time = arrivalTime.get(c) + msg.getSize() / transmitSpeed;
-                    /**·Ϣ**/
-                    List<Tuple<Integer, Boolean>> path = new ArrayList<Tuple<Integer, Boolean>>();
-                    if (this.routerTable.containsKey(c))
-                        path.addAll(this.routerTable.get(c));
-                    Tuple<Integer, Boolean> thisHop = new Tuple<Integer, Boolean>(eachNeighborNetgrid.getAddress(), predictLable);
-                    path.add(thisHop);//ע˳
-                    /**·Ϣ**/
-                    /**άСʱĶ**/
-                    if (arrivalTime.containsKey(eachNeighborNetgrid)) {
-                        /**Ƿͨ·Уĸʱ**/
-                        if (time <= arrivalTime.get(eachNeighborNetgrid)) {
-//                            if (random.nextBoolean() == true && time - arrivalTime.get(eachNeighborNetgrid) < 0.1) {//ʱȣѡ
-//
-//                                /**ע⣬ڶԶнеʱ򣬲ܹforѭԴ˶н޸Ĳᱨ**/
-//                                int index = -1;
-//                                for (Tuple<DTNHost, Double> t : PriorityQueue) {
-//                                    if (t.getKey() == eachNeighborNetgrid) {
-//                                        index = PriorityQueue.indexOf(t);
-//                                    }
-//                                }
-//                                /**ע⣬PriorityQueueнеʱ򣬲ܹforѭԴ˶н޸Ĳᱨ**/
-//                                if (index > -1) {
-//                                    PriorityQueue.remove(index);
-//                                    PriorityQueue.add(new Tuple<DTNHost, Double>(eachNeighborNetgrid, time));
-//                                    arrivalTime.put(eachNeighborNetgrid, time);
-//                                    routerTable.put(eachNeighborNetgrid, path);
-//                                }
-//                            }
-
-                            /**ע⣬ڶԶнеʱ򣬲ܹforѭԴ˶н޸Ĳᱨ**/
-                            int index = -1;
-                            for (Tuple<DTNHost, Double> t : PriorityQueue) {
-                                if (t.getKey() == eachNeighborNetgrid) {
-                                    index = PriorityQueue.indexOf(t);
-                                }
-                            }
-                            /**ע⣬PriorityQueueнеʱ򣬲ܹforѭԴ˶н޸Ĳᱨ**/
-                            if (index > -1) {
-                                PriorityQueue.remove(index);
-                                PriorityQueue.add(new Tuple<DTNHost, Double>(eachNeighborNetgrid, time));
-                                arrivalTime.put(eachNeighborNetgrid, time);
-                                routerTable.put(eachNeighborNetgrid, path);
-                            }
-                        }
-                        /**Ƿͨ·Уĸʱ**/
-                    } else {
-                        PriorityQueue.add(new Tuple<DTNHost, Double>(eachNeighborNetgrid, time));
-                        arrivalTime.put(eachNeighborNetgrid, time);
-                        routerTable.put(eachNeighborNetgrid, path);
-                    }
-                    /**Զн**/
-                    sort(PriorityQueue);
-                    updateLabel = true;
+        search.run(new ShortestPathEngine.Graph() {
+            public void expand(ShortestPathEngine engine, int node, double time) {
+                if (node > topology.getMaxAddress())
+                    return;
+                for (int i = topology.getNeighborStart(node), end = topology.getNeighborEnd(node); i < end; i++) {
+                    engine.relax(topology.getNeighbor(i), time + hopTime, false);
                 }
             }
-            iteratorTimes++;
-            for (int i = 0; i < PriorityQueue.size(); i++) {
-                if (!sourceSet.contains(PriorityQueue.get(i).getKey())) {
-                    sourceSet.add(PriorityQueue.get(i).getKey());//µ
-                    break;
-                }
-            }
-//			if (routerTable.containsKey(msg.getTo()))//;ҵҪ·ֱ˳
-//				break;
-        }
-        routerTableUpdateLabel = true;       
+        }, ShortestPathEngine.NO_NODE);
+        routerTableTopologyVersion = topology.getVersion();
+        routerTableSizeClass = sizeClass;
+        routerTableUpdateLabel = true;
+    }
+
+    /**
+     * Return the size class of a message, messages of the same class have about the same per-hop delay
+     *
+     * @param size
+     * @return the number of bits of the message size
+     */
+    public static int getSizeClass(int size) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(size);
     }
 
     /**
@@ -801,6 +724,17 @@ public class ShortestPathFirstRouter extends ActiveRouter {
         	removeFromMessages(msgId);
     }
 
+    @Override
+    public RoutingInfo getRoutingInfo() {
+        RoutingInfo top = super.getRoutingInfo();
+        RoutingInfo ri = new RoutingInfo("router table cache: " + routerTableCacheHits +
+                " hit(s), " + routerTableCacheMisses + " miss(es)");
+        ri.addMoreInfo(new RoutingInfo("topology version: " + routerTableTopologyVersion));
+        ri.addMoreInfo(new RoutingInfo("message size class: " + routerTableSizeClass));
+        top.addMoreInfo(ri);
+        return top;
+    }
+
     /**
      * get all satellite nodes info in the movement model
      *
@@ -809,4 +743,23 @@ public class ShortestPathFirstRouter extends ActiveRouter {
     public List<DTNHost> getHosts() {
         return new ArrayList<DTNHost>(((SatelliteMovement) this.getHost().getMovementModel()).getHosts());
     }
+
+    /**
+     * The routing parameters that are read once per simulation, by the
+     * first router of the simulation
+     */
+    static class Parameters {
+        /** indicates the TTL of hello message -setting id ({@value} */
+        private int helloTtl;
+        /** indicates the number of hello message -setting id ({@value} */
+        private int helloMessageNum;
+        /** hello message size -setting id ({@value} */
+        private int helloMessageSize;
+        /** indicate the transmission radius of each satellite */
+        private double transmitRange;
+        /** label indicates that routing path can contain in the message or not */
+        private boolean msgPathLabel;
+        /** label indicates that the routing parameters are set or not */
+        private boolean initLabel = false;
+    }
 }
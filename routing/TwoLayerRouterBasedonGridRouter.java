@@ -10,14 +10,20 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 
+import routing.util.ContactPlan;
+import routing.util.ContactPlanNeighbors;
+import routing.util.RouterGrid;
+import routing.util.RouterGrid.GridCell;
 import movement.MovementModel;
 import movement.SatelliteMovement;
+import util.IntHashMap;
 import util.Tuple;
 import core.Connection;
 import core.Coord;
 import core.DTNHost;
 import core.Message;
 import core.NetworkInterface;
+import core.ScenarioConfig;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -51,7 +57,7 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 	
 	HashMap<DTNHost, Double> arrivalTime = new HashMap<DTNHost, Double>();
 	private HashMap<DTNHost, List<Tuple<Integer, Boolean>>> routerTable = new HashMap<DTNHost, List<Tuple<Integer, Boolean>>>();//ڵ·ɱ
-	private HashMap<String, Double> busyLabel = new HashMap<String, Double>();//ָʾһڵ㴦æ״̬Ҫȴ
+	private IntHashMap<Double> busyLabel = new IntHashMap<Double>();//ָʾһڵ㴦æ״̬Ҫȴ
 	protected HashMap<DTNHost, HashMap<DTNHost, double[]>> neighborsList = new HashMap<DTNHost, HashMap<DTNHost, double[]>>();//ȫڵھ·ʱϢ
 	protected HashMap<DTNHost, HashMap<DTNHost, double[]>> predictList = new HashMap<DTNHost, HashMap<DTNHost, double[]>>();
 	
@@ -114,8 +120,7 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 		List<Connection> connections = this.getConnections();  //ȡھӽڵ
 		List<Message> messages = new ArrayList<Message>(this.getMessageCollection());
 		
-		Settings s = new Settings(GROUPNAME_S);
-		this.msgPathLabel = s.getBoolean(MSG_PATHLABEL);//ļжȡ
+		this.msgPathLabel = ScenarioConfig.getInstance().isMsgPathLabel();//ļжȡ
 		
 		if (isTransferring()) {//ж·Ƿռ
 			return; // can't start a new transfer
@@ -149,11 +154,11 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 	 * @return ǷҪȴ
 	 */
 	public boolean checkBusyLabelForNextHop(Message msg){
-		if (this.busyLabel.containsKey(msg.getId())){
+		if (this.busyLabel.containsKey(msg.getKey())){
 			System.out.println(this.getHost()+"  "+SimClock.getTime()+
-					"  "+msg+"  is busy until  " + this.busyLabel.get(msg.getId()));
-			if (this.busyLabel.get(msg.getId()) < SimClock.getTime()){
-				this.busyLabel.remove(msg.getId());
+					"  "+msg+"  is busy until  " + this.busyLabel.get(msg.getKey()));
+			if (this.busyLabel.get(msg.getKey()) < SimClock.getTime()){
+				this.busyLabel.remove(msg.getKey());
 				return false;
 			}else
 				return true;
@@ -269,7 +274,7 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 				System.out.println("һԤ");
 				return null;
 				//DTNHost nextHop = this.getHostFromAddress(routerPath.get(0).getKey()); 
-				//this.busyLabel.put(message.getId(), startTime);//һȴ
+				//this.busyLabel.put(message.getKey(), startTime);//һȴ
 			}
 			else{
 				System.out.println(message+"  "+message.getProperty(MSG_WAITLABEL));
@@ -361,12 +366,12 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 			GN.setHostsList(hosts);
 		}
 		//GridNeighbors GN = this.getHost().getGridNeighbors();
-		Settings s = new Settings(GROUPNAME_S);
-		String option = s.getSetting("Pre_or_onlineOrbitCalculation");//ļжȡãǲйвϼķʽͨǰ洢ڵĹϢ
+		String option = ScenarioConfig.getInstance().getOrbitCalculation();//ļжȡãǲйвϼķʽͨǰ洢ڵĹϢ
 		
 		HashMap<String, Integer> orbitCalculationWay = new HashMap<String, Integer>();
 		orbitCalculationWay.put("preOrbitCalculation", 1);
 		orbitCalculationWay.put("onlineOrbitCalculation", 2);
+		orbitCalculationWay.put(ScenarioConfig.CONTACT_PLAN_CALCULATION, 3);
 		
 		switch (orbitCalculationWay.get(option)){
 		case 1://ͨǰ洢ڵĹϢӶйвٵù㺯ԤͨԤ
@@ -375,6 +380,9 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 		case 2:
 			GN.updateGrid_with_OrbitCalculation();//
 			break;
+		case 3://read the neighbors from a precomputed contact plan
+			GN.useContactPlan(ScenarioConfig.getInstance().getContactPlanFile());
+			break;
 		}
 		
 		List<DTNHost> sourceSet = new ArrayList<DTNHost>();
@@ -726,10 +734,9 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 		List<Connection> connections = t.getValue().getOtherNode(this.getHost()).getConnections();
 		for (Connection con : connections){
 			if (con.isTransferring()){
-				assert this.busyLabel.get(con) == null : "error! ";
-				this.busyLabel.put(t.getKey().getId(), con.getRemainingByteCount()/con.getSpeed() + SimClock.getTime());
+				this.busyLabel.put(t.getKey().getKey(), con.getRemainingByteCount()/con.getSpeed() + SimClock.getTime());
 				System.out.println(this.getHost()+"  "+t.getKey()+"  "+
-						t.getValue().getOtherNode(this.getHost())+" "+con+"  "+this.busyLabel.get(t.getKey().getId()));			
+						t.getValue().getOtherNode(this.getHost())+" "+con+"  "+this.busyLabel.get(t.getKey().getKey()));			
 				return true;//˵ĿĽڵæ
 			}
 		}
@@ -795,13 +802,15 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 	public class GridNeighbors {
 		
 		private List<DTNHost> hosts = new ArrayList<DTNHost>();//ȫǽڵб
+		/** neighbors read from a contact plan, null if the grid tables are used */
+		private ContactPlanNeighbors planNeighbors;
 		private DTNHost host;
 		private double transmitRange;
 		private double msgTtl;
 		
 		private double updateInterval = 1;
 		
-		private GridCell[][][] cells;//GridCell࣬һʵһworldһά洢ÿִ洢˵ǰеhostnetworkinterface
+		private RouterGrid cells;//all hosts share the grid of the same cell size, cells are created when first used
 		private HashMap<NetworkInterface, GridCell> ginterfaces;
 		private int cellSize;
 		private int rows;
@@ -869,18 +878,9 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 			this.cols = worldSizeX/cellSize + 1;
 			this.zs = worldSizeZ/cellSize + 1;//
 			System.out.println(cellSize+"  "+this.rows+"  "+this.cols+"  "+this.zs);
-			// leave empty cells on both sides to make neighbor search easier 
-			this.cells = new GridCell[rows+2][cols+2][zs+2];
+			// the cells are created when they are first used
+			this.cells = RouterGrid.getGrid(cellSize);
 			this.cellSize = cellSize;
-
-			for (int i=0; i<rows+2; i++) {
-				for (int j=0; j<cols+2; j++) {
-					for (int n=0;n<zs+2; n++){//ά
-						this.cells[i][j][n] = new GridCell();
-						cells[i][j][n].setNumber(i, j, n);
-					}
-				}
-			}
 			ginterfaces = new HashMap<NetworkInterface,GridCell>();
 		}
 		/**
@@ -897,8 +897,9 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 				List<Double> intoTime = new ArrayList<Double>();
 				List<Double> outTime = new ArrayList<Double>();
 				GridCell startCell;//¼ʼ
+				Coord c = new Coord(0,0);
 				for (double time = 0; time < period; time += updateInterval){
-					Coord c = h.getCoordinate(time);
+					h.getCoordinate(time, c);
 					GridCell gc = cellFromCoord(c);//ҵľW
 					if (!gridList.contains(gc)){
 						if (gridList.isEmpty())
@@ -926,6 +927,8 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 		}
 			
 		public List<DTNHost> getNeighbors(DTNHost host, double time){//ȡָʱھӽڵ(ͬʱԤ⵽TTLʱڵھ)
+			if (planNeighbors != null)
+				return planNeighbors.getNeighbors(host, time);
 			int num = (int)((time-SimClock.getTime())/updateInterval);
 			time = SimClock.getTime()+num*updateInterval;
 			
@@ -953,6 +956,8 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 
 		public Tuple<HashMap<DTNHost, List<Double>>, //neiList ΪѾĵǰھӽڵб
 			HashMap<DTNHost, List<Double>>> getFutureNeighbors(List<DTNHost> neiList, DTNHost host, double time){
+			if (planNeighbors != null)
+				return planNeighbors.getFutureNeighbors(neiList, host, time, SimClock.getTime() + msgTtl*60);
 			int num = (int)((time-SimClock.getTime())/updateInterval);
 			time = SimClock.getTime()+num*updateInterval;	
 			
@@ -1054,7 +1059,7 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 				for (int i = -1; i < 2; i += 1){
 					for (int j = -1; j < 2; j += 1){
 						for (int k = -1; k < 2; k += 1){
-							GC.add(cells[row+i][col+j][z+k]);
+							GC.add(cells.getCell(row+i, col+j, z+k));
 						}
 					}
 				}
@@ -1065,7 +1070,7 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 					for (int j = -3; j <= 3; j += 1){
 						for (int k = -3; k <= 3; k += 1){
 							if (boundaryCheck(row+i,col+j,z+k))
-								GC.add(cells[row+i][col+j][z+k]);
+								GC.add(cells.getCell(row+i, col+j, z+k));
 	
 						}
 					}
@@ -1073,7 +1078,7 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 				for (int j = -1; j < 2; j += 1){
 					for (int k = -1; k < 2; k += 1){
 						if (boundaryCheck(row+4,col+j,z+k)){
-							GC.add(cells[row+4][col+j][z+k]);
+							GC.add(cells.getCell(row+4, col+j, z+k));
 	
 						}
 					}
@@ -1081,35 +1086,35 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 				for (int j = -1; j < 2; j += 1){
 					for (int k = -1; k < 2; k += 1){
 						if (boundaryCheck(row-4,col+j,z+k))
-							GC.add(cells[row-4][col+j][z+k]);
+							GC.add(cells.getCell(row-4, col+j, z+k));
 	
 					}
 				}
 				for (int j = -1; j < 2; j += 1){
 					for (int k = -1; k < 2; k += 1){
 						if (boundaryCheck(row+j,col+4,z+k))
-							GC.add(cells[row+j][col+4][z+k]);
+							GC.add(cells.getCell(row+j, col+4, z+k));
 	
 					}
 				}
 				for (int j = -1; j < 2; j += 1){
 					for (int k = -1; k < 2; k += 1){
 						if (boundaryCheck(row+j,col-4,z+k))
-							GC.add(cells[row+j][col-4][z+k]);
+							GC.add(cells.getCell(row+j, col-4, z+k));
 	
 					}
 				}
 				for (int j = -1; j < 2; j += 1){
 					for (int k = -1; k < 2; k += 1){
 						if (boundaryCheck(row+j,col+k,z+4))
-							GC.add(cells[row+j][col+k][z+4]);
+							GC.add(cells.getCell(row+j, col+k, z+4));
 	
 					}
 				}
 				for (int j = -1; j < 2; j += 1){
 					for (int k = -1; k < 2; k += 1){
 						if (boundaryCheck(row+j,col+k,z-4))
-							GC.add(cells[row+j][col+k][z-4]);
+							GC.add(cells.getCell(row+j, col+k, z-4));
 	
 					}
 				}	
@@ -1119,7 +1124,7 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 				for (int i = -1; i < 2; i += 1){
 					for (int j = -1; j < 2; j += 1){
 						for (int k = -1; k < 2; k += 1){
-							GC.add(cells[row+i][col+j][z+k]);
+							GC.add(cells.getCell(row+i, col+j, z+k));
 							
 						}
 					}
@@ -1344,38 +1349,28 @@ public class TwoLayerRouterBasedonGridRouter extends ActiveRouter{
 			assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " + 
 			c + " is out of world's bounds";
 		
-			return this.cells[row][col][z];
+			return this.cells.getCell(row, col, z);
+		}
+		
+		/**
+		 * Reads the neighbors from a contact plan instead of predicting them
+		 * with the grid tables. The plan is loaded the first time.
+		 * @param fileName Name of the contact plan file
+		 * @throws SettingsError if the plan was computed for another transmit
+		 * range or number of hosts
+		 */
+		public void useContactPlan(String fileName){
+			if (planNeighbors == null){
+				ContactPlan plan = ContactPlan.getPlan(fileName);
+				plan.checkScenario(transmitRange, ScenarioConfig.getInstance().getNrofHosts());
+				planNeighbors = new ContactPlanNeighbors(plan, hosts);
+			}
 		}
 		
 		public void setHostsList(List<DTNHost> hosts){
 			this.hosts = hosts;
+			this.planNeighbors = null;
 		}
 		
-		public class GridCell {
-			// how large array is initially chosen
-			private static final int EXPECTED_INTERFACE_COUNT = 18;
-			//private ArrayList<NetworkInterface> interfaces;//GridCellάӿб¼ڴڵĽڵ㣬ȫ˵Ҫ֤ͬһӿڲͬʱGridCell
-			private int[] number;
-			
-			private GridCell() {
-			//	this.interfaces = new ArrayList<NetworkInterface>(
-			//			EXPECTED_INTERFACE_COUNT);
-				number = new int[3];
-			}
-			
-			public void setNumber(int row, int col, int z){
-				number[0] = row;
-				number[1] = col;
-				number[2] = z;
-			}
-			public int[] getNumber(){
-				return number;
-			}
-			
-			public String toString() {
-				return getClass().getSimpleName() + " with " + 
-					" cell number: "+ number[0]+" "+number[1]+" "+number[2];
-			}
-		}
 	}
 }
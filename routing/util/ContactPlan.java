@@ -0,0 +1,382 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import core.DTNSim;
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * Precomputed contact plan: the time windows when pairs of hosts are
+ * within the transmit range of each other. A plan is created with
+ * {@link ContactPlanGenerator} and read from a memory mapped file, so the
+ * contacts stay in the file and are shared by all the routers that use the
+ * plan.
+ * <P>
+ * File format (big endian):
+ * <PRE>
+ * int    magic ({@value #MAGIC})
+ * int    version ({@value #VERSION})
+ * int    number of host addresses
+ * int    number of contacts
+ * double transmit range (km)
+ * double end time of the plan (s)
+ * contacts, sorted by start time:
+ *   int    address of the first host (the smaller address)
+ *   int    address of the second host
+ *   double start time (s)
+ *   double end time (s)
+ * </PRE>
+ * Each contact is stored once; the contacts of one host are indexed when
+ * the plan is loaded.
+ */
+public class ContactPlan {
+	/** First int of a contact plan file */
+	public static final int MAGIC = 0x43504C4E;
+	/** Version of the file format */
+	public static final int VERSION = 1;
+	/** Size of the file header in bytes */
+	public static final int HEADER_SIZE = 32;
+	/** Size of one contact in bytes */
+	public static final int CONTACT_SIZE = 24;
+
+	private static HashMap<String, ContactPlan> plans;
+
+	static {
+		DTNSim.registerForReset(ContactPlan.class.getCanonicalName());
+		reset();
+	}
+
+	public static synchronized void reset() {
+		plans = new HashMap<String, ContactPlan>();
+	}
+
+	private final MappedByteBuffer buffer;
+	private final int nrofHosts;
+	private final int nrofContacts;
+	private final double range;
+	private final double endTime;
+	private double maxDuration;
+	/** hostContacts[hostStart[a]...hostStart[a+1]-1] are host a's contacts */
+	private int[] hostStart;
+	private int[] hostContacts;
+
+	/**
+	 * Returns the plan of a file. The file is loaded the first time it is
+	 * requested and the same plan is returned for later requests.
+	 * @param fileName Name of the plan file
+	 * @return The plan
+	 */
+	public static synchronized ContactPlan getPlan(String fileName) {
+		ContactPlan plan = plans.get(fileName);
+		if (plan == null) {
+			plan = new ContactPlan(new File(fileName));
+			plans.put(fileName, plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * Loads a plan by mapping the file to memory
+	 * @param file The plan file
+	 * @throws SimError if the file can't be read or is not a contact plan
+	 */
+	public ContactPlan(File file) {
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "r");
+			FileChannel channel = raf.getChannel();
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		} catch (IOException e) {
+			throw new SimError("Can't read contact plan " +
+					file.getAbsolutePath(), e);
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (IOException e) {}
+			}
+		}
+
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new SimError(file.getAbsolutePath() +
+					" is not a contact plan file");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new SimError("Unsupported contact plan version " +
+					buffer.getInt(4) + " in " + file.getAbsolutePath());
+		}
+		this.nrofHosts = buffer.getInt(8);
+		this.nrofContacts = buffer.getInt(12);
+		this.range = buffer.getDouble(16);
+		this.endTime = buffer.getDouble(24);
+		if (buffer.capacity() <
+				HEADER_SIZE + (long)nrofContacts * CONTACT_SIZE) {
+			throw new SimError("Contact plan " + file.getAbsolutePath() +
+					" is truncated");
+		}
+		indexHosts();
+	}
+
+	/**
+	 * Builds the per host contact lists. Both lists are filled in the
+	 * order of the file, so the contacts of each host are sorted by start
+	 * time.
+	 */
+	private void indexHosts() {
+		hostStart = new int[nrofHosts + 1];
+		maxDuration = 0;
+		for (int i = 0; i < nrofContacts; i++) {
+			hostStart[getFrom(i) + 1]++;
+			hostStart[getTo(i) + 1]++;
+			maxDuration = Math.max(maxDuration, getEnd(i) - getStart(i));
+		}
+		for (int a = 0; a < nrofHosts; a++) {
+			hostStart[a + 1] += hostStart[a];
+		}
+		hostContacts = new int[2 * nrofContacts];
+		int[] fill = hostStart.clone();
+		for (int i = 0; i < nrofContacts; i++) {
+			hostContacts[fill[getFrom(i)]++] = i;
+			hostContacts[fill[getTo(i)]++] = i;
+		}
+	}
+
+	/**
+	 * @return the number of host addresses of the plan
+	 */
+	public int getNrofHosts() {
+		return this.nrofHosts;
+	}
+
+	/**
+	 * @return the number of contacts in the plan
+	 */
+	public int size() {
+		return this.nrofContacts;
+	}
+
+	/**
+	 * @return the transmit range the plan was computed with (km)
+	 */
+	public double getRange() {
+		return this.range;
+	}
+
+	/**
+	 * Checks that the plan was computed for the scenario that uses it
+	 * @param range Transmit range of the hosts' interface (km)
+	 * @param nrofHosts Number of hosts in the scenario
+	 * @throws SettingsError if the plan was computed with another transmit
+	 * range or for another number of hosts
+	 */
+	public void checkScenario(double range, int nrofHosts) {
+		if (this.range != range) {
+			throw new SettingsError("Contact plan was computed with " +
+					"transmit range " + this.range + " but the interface " +
+					"range is " + range);
+		}
+		if (this.nrofHosts != nrofHosts) {
+			throw new SettingsError("Contact plan was computed for " +
+					this.nrofHosts + " hosts but the scenario has " +
+					nrofHosts);
+		}
+	}
+
+	/**
+	 * @return the end time of the plan; no contacts are known after it
+	 */
+	public double getEndTime() {
+		return this.endTime;
+	}
+
+	/**
+	 * @return the duration of the longest contact
+	 */
+	public double getMaxDuration() {
+		return this.maxDuration;
+	}
+
+	/**
+	 * Returns the address of the first host of a contact
+	 * @param contact Index of the contact
+	 */
+	public int getFrom(int contact) {
+		return buffer.getInt(HEADER_SIZE + contact * CONTACT_SIZE);
+	}
+
+	/**
+	 * Returns the address of the second host of a contact
+	 * @param contact Index of the contact
+	 */
+	public int getTo(int contact) {
+		return buffer.getInt(HEADER_SIZE + contact * CONTACT_SIZE + 4);
+	}
+
+	/**
+	 * Returns the address of the host of a contact that is not the given
+	 * host
+	 * @param contact Index of the contact
+	 * @param address Address of one of the hosts of the contact
+	 */
+	public int getOther(int contact, int address) {
+		int from = getFrom(contact);
+		return from == address ? getTo(contact) : from;
+	}
+
+	/**
+	 * Returns the start time of a contact
+	 * @param contact Index of the contact
+	 */
+	public double getStart(int contact) {
+		return buffer.getDouble(HEADER_SIZE + contact * CONTACT_SIZE + 8);
+	}
+
+	/**
+	 * Returns the end time of a contact
+	 * @param contact Index of the contact
+	 */
+	public double getEnd(int contact) {
+		return buffer.getDouble(HEADER_SIZE + contact * CONTACT_SIZE + 16);
+	}
+
+	/**
+	 * Returns the position of a host's first contact in the host's contact
+	 * list; the contacts of the host are at positions
+	 * {@link #getHostContactStart(int)} ...
+	 * {@link #getHostContactEnd(int)} - 1
+	 * @param address Address of the host
+	 */
+	public int getHostContactStart(int address) {
+		return address < nrofHosts ? hostStart[address] : 0;
+	}
+
+	/**
+	 * Returns the position after a host's last contact in the host's
+	 * contact list
+	 * @param address Address of the host
+	 */
+	public int getHostContactEnd(int address) {
+		return address < nrofHosts ? hostStart[address + 1] : 0;
+	}
+
+	/**
+	 * Returns the contact at a position of the host contact lists
+	 * @param position The position
+	 * @return Index of the contact
+	 */
+	public int getHostContact(int position) {
+		return hostContacts[position];
+	}
+
+	/**
+	 * Returns the position of the first contact of a host that may still
+	 * be up at the given time. Earlier contacts of the host have ended
+	 * before the time; later ones may also have ended, so the end times
+	 * must be checked while going through the list.
+	 * @param address Address of the host
+	 * @param time The time
+	 * @return The position (the end of the host's list if there are no
+	 * such contacts)
+	 */
+	public int findHostContact(int address, double time) {
+		int lo = getHostContactStart(address);
+		int hi = getHostContactEnd(address);
+		double minStart = time - maxDuration;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (getStart(hostContacts[mid]) < minStart) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Writes a contact plan file
+	 * @param file The file to write
+	 * @param nrofHosts Number of host addresses
+	 * @param range Transmit range of the contacts
+	 * @param endTime End time of the plan
+	 * @param contacts The contacts; the list is sorted by start time
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(File file, int nrofHosts, double range,
+			double endTime, List<Contact> contacts) throws IOException {
+		Collections.sort(contacts);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(nrofHosts);
+			out.writeInt(contacts.size());
+			out.writeDouble(range);
+			out.writeDouble(endTime);
+			for (Contact c : contacts) {
+				out.writeInt(c.from);
+				out.writeInt(c.to);
+				out.writeDouble(c.start);
+				out.writeDouble(c.end);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * One contact of a plan that is being written
+	 */
+	public static class Contact implements Comparable<Contact> {
+		private final int from;
+		private final int to;
+		private final double start;
+		private final double end;
+
+		/**
+		 * Creates a contact; the hosts are stored with the smaller address
+		 * first
+		 * @param a Address of one host
+		 * @param b Address of the other host
+		 * @param start Start time of the contact
+		 * @param end End time of the contact
+		 */
+		public Contact(int a, int b, double start, double end) {
+			this.from = Math.min(a, b);
+			this.to = Math.max(a, b);
+			this.start = start;
+			this.end = end;
+		}
+
+		public int compareTo(Contact o) {
+			if (this.start != o.start) {
+				return this.start < o.start ? -1 : 1;
+			}
+			if (this.from != o.from) {
+				return this.from - o.from;
+			}
+			return this.to - o.to;
+		}
+
+		public String toString() {
+			return from + "-" + to + " [" + start + ", " + end + "]";
+		}
+	}
+}
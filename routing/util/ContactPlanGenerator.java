@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import movement.SatelliteMovement;
+import routing.util.ContactPlan.Contact;
+import core.ContactWindowPredictor;
+import core.DTNHost;
+import core.Neighbors;
+import core.Settings;
+import core.SettingsError;
+import core.SimScenario;
+
+/**
+ * Creates the contact plan of a scenario. The hosts are created from the
+ * settings the same way as for a simulation and every pair of satellites
+ * is swept over [0, Scenario.endTime] with a {@link ContactWindowPredictor}
+ * that uses the transmit range and the contact prediction settings of the
+ * Interface namespace. The contacts are written to a {@link ContactPlan}
+ * file that CGR can load with the
+ * <code>router.CGR.contactPlanFile</code> setting of the group, the grid
+ * routers with the <code>contactPlanCalculation</code> orbit calculation
+ * (see {@link ContactPlanNeighbors}) and {@link input.ContactEventQueue}
+ * replays as connection events. Repeated runs of the same constellation
+ * can so skip the orbit computations.
+ * <P>
+ * Usage: <code>java routing.util.ContactPlanGenerator planFile
+ * [settingsFiles]</code>
+ */
+public class ContactPlanGenerator {
+	/** Interface namespace of the transmit range and prediction settings */
+	public static final String INTERFACE_NS = "Interface";
+	/** transmit range -setting id ({@value})*/
+	public static final String TRANSMIT_RANGE_S = "transmitRange";
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: java " +
+					ContactPlanGenerator.class.getName() +
+					" planFile [settingsFiles]");
+			System.exit(1);
+		}
+		try {
+			if (args.length > 1) {
+				Settings.init(args[1]);
+				for (int i = 2; i < args.length; i++) {
+					Settings.addSettings(args[i]);
+				}
+			}
+		} catch (SettingsError er) {
+			System.err.println("Failed to load settings: " + er);
+			System.exit(-1);
+		}
+
+		SimScenario scenario = SimScenario.getInstance();
+		Settings s = new Settings(INTERFACE_NS);
+		double range = s.getDouble(TRANSMIT_RANGE_S);
+		ContactWindowPredictor predictor = new ContactWindowPredictor(range,
+				s.getDouble(Neighbors.PREDICTION_STEP_S, 1),
+				s.getDouble(Neighbors.PREDICTION_TOLERANCE_S, 0.01));
+		double endTime = scenario.getEndTime();
+
+		long t0 = System.currentTimeMillis();
+		List<Contact> contacts = generate(scenario.getHosts(), predictor,
+				endTime);
+		int nrofHosts = 0;
+		for (DTNHost h : scenario.getHosts()) {
+			nrofHosts = Math.max(nrofHosts, h.getAddress() + 1);
+		}
+		File file = new File(args[0]);
+		ContactPlan.write(file, nrofHosts, range, endTime, contacts);
+		System.out.println("Wrote " + contacts.size() + " contacts of " +
+				nrofHosts + " hosts in [0, " + endTime + "] to " +
+				file.getAbsolutePath() + " in " +
+				(System.currentTimeMillis() - t0) + " ms");
+	}
+
+	/**
+	 * Finds all the contacts of the satellites
+	 * @param hosts The hosts; hosts that don't have a satellite movement
+	 * are skipped
+	 * @param predictor The predictor of the contact windows
+	 * @param endTime End of the swept time
+	 * @return The contacts in no particular order; a contact that is up at
+	 * endTime ends at endTime
+	 */
+	public static List<Contact> generate(List<DTNHost> hosts,
+			ContactWindowPredictor predictor, double endTime) {
+		List<DTNHost> satellites = new ArrayList<DTNHost>();
+		for (DTNHost h : hosts) {
+			if (h.getMovementModel() instanceof SatelliteMovement) {
+				satellites.add(h);
+			}
+		}
+
+		List<Contact> contacts = new ArrayList<Contact>();
+		for (int i = 0; i < satellites.size(); i++) {
+			DTNHost a = satellites.get(i);
+			for (int j = i + 1; j < satellites.size(); j++) {
+				DTNHost b = satellites.get(j);
+				double t = 0;
+				while (t < endTime) {
+					double start = predictor.findRise(a, b, t, endTime);
+					if (start == ContactWindowPredictor.NO_EVENT) {
+						break;
+					}
+					double end = predictor.findSet(a, b, start, endTime);
+					if (end == ContactWindowPredictor.NO_EVENT) {
+						end = endTime;
+					}
+					contacts.add(new Contact(a.getAddress(), b.getAddress(),
+							start, end));
+					t = end;
+				}
+			}
+		}
+		return contacts;
+	}
+}
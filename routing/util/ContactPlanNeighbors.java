@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import util.Tuple;
+import core.DTNHost;
+import core.SimError;
+
+/**
+ * Answers the neighbor queries of the grid routers from a
+ * {@link ContactPlan} instead of from predicted grid tables. The plan is
+ * computed once with {@link ContactPlanGenerator} and memory mapped, so the
+ * routers don't need to compute the orbits at start-up or while the
+ * simulation is running. The results have the same form as the ones of the
+ * routers' own GridNeighbors classes.
+ */
+public class ContactPlanNeighbors {
+	private final ContactPlan plan;
+	/** hosts of the plan by address */
+	private final DTNHost[] hosts;
+
+	/**
+	 * Creates the neighbor queries of a plan
+	 * @param plan The contact plan
+	 * @param hosts All the hosts of the simulation
+	 * @throws SimError if the plan doesn't cover all the hosts
+	 */
+	public ContactPlanNeighbors(ContactPlan plan, List<DTNHost> hosts) {
+		this.plan = plan;
+		this.hosts = new DTNHost[plan.getNrofHosts()];
+		for (DTNHost h : hosts) {
+			if (h.getAddress() >= this.hosts.length) {
+				throw new SimError("Contact plan of " + plan.getNrofHosts() +
+						" hosts doesn't include " + h);
+			}
+			this.hosts[h.getAddress()] = h;
+		}
+	}
+
+	/**
+	 * @return the contact plan
+	 */
+	public ContactPlan getPlan() {
+		return this.plan;
+	}
+
+	/**
+	 * Returns the hosts that are in contact with a host at the given time
+	 * @param host The host
+	 * @param time The time
+	 * @return The neighbors
+	 */
+	public List<DTNHost> getNeighbors(DTNHost host, double time) {
+		int address = host.getAddress();
+		List<DTNHost> neighbors = new ArrayList<DTNHost>();
+		for (int p = plan.findHostContact(address, time),
+				end = plan.getHostContactEnd(address); p < end; p++) {
+			int c = plan.getHostContact(p);
+			if (plan.getStart(c) > time) {
+				break;
+			}
+			if (plan.getEnd(c) > time) {
+				neighbors.add(hosts[plan.getOther(c, address)]);
+			}
+		}
+		return neighbors;
+	}
+
+	/**
+	 * Returns the start and leave times of the contacts of a host between
+	 * two times. The current neighbors start at the given time. Every host
+	 * in the start time map also has a leave time list; contacts that last
+	 * until the end of the window leave at the end time.
+	 * @param neiList The neighbors of the host at the start time
+	 * @param host The host
+	 * @param time Start of the window
+	 * @param until End of the window
+	 * @return The start times and leave times of the contacts per neighbor
+	 */
+	public Tuple<HashMap<DTNHost, List<Double>>,
+		HashMap<DTNHost, List<Double>>> getFutureNeighbors(
+				List<DTNHost> neiList, DTNHost host, double time,
+				double until) {
+		HashMap<DTNHost, List<Double>> startTime =
+			new HashMap<DTNHost, List<Double>>();
+		HashMap<DTNHost, List<Double>> leaveTime =
+			new HashMap<DTNHost, List<Double>>();
+
+		int address = host.getAddress();
+		for (int p = plan.findHostContact(address, time),
+				end = plan.getHostContactEnd(address); p < end; p++) {
+			int c = plan.getHostContact(p);
+			double start = plan.getStart(c);
+			if (start >= until) {
+				break;
+			}
+			if (plan.getEnd(c) <= time) {
+				continue;
+			}
+			DTNHost other = hosts[plan.getOther(c, address)];
+			List<Double> starts = startTime.get(other);
+			if (starts == null) {
+				starts = new ArrayList<Double>();
+				startTime.put(other, starts);
+				leaveTime.put(other, new ArrayList<Double>());
+			}
+			starts.add(Math.max(start, time));
+			leaveTime.get(other).add(Math.min(plan.getEnd(c), until));
+		}
+
+		for (DTNHost h : neiList) {
+			if (!startTime.containsKey(h)) { // neighbor that isn't in the plan
+				List<Double> t = new ArrayList<Double>();
+				t.add(time);
+				startTime.put(h, t);
+				t = new ArrayList<Double>();
+				t.add(until);
+				leaveTime.put(h, t);
+			}
+		}
+
+		return new Tuple<HashMap<DTNHost, List<Double>>,
+				HashMap<DTNHost, List<Double>>>(startTime, leaveTime);
+	}
+}
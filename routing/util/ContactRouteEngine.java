@@ -0,0 +1,566 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import util.IntHashMap;
+import util.Tuple;
+
+/**
+ * Contact graph routing over a {@link ContactPlan}. The vertices of the
+ * searched graph are the contacts of the plan, each in both directions, so
+ * a route is a sequence of contacts and a message can wait at a host for
+ * the next contact of the route. Earliest arrival routes are found with
+ * a {@link ShortestPathEngine} whose nodes are the directed contacts.
+ * <P>
+ * The engine of one source host keeps a list of the K best routes to each
+ * destination; the alternate routes are found the way Yen's algorithm
+ * finds the K shortest paths, by suppressing the contacts that the known
+ * routes take after a common root path. A cached route is dropped only
+ * when one of its contacts has ended or when the residual volume of one
+ * of its contacts can't carry the routed message, and the routes of a
+ * destination are computed again when none are left.
+ * <P>
+ * The number of route computations, the time they take and the cache hit
+ * rate are collected and shown in {@link #getRoutingInfo()}.
+ */
+public class ContactRouteEngine {
+	/** Default number of routes cached per destination */
+	public static final int DEF_NROF_ROUTES = 3;
+
+	/** Search spaces of the threads. The arrays of a search grow with the
+	 * number of contacts, so they are shared by the engines of a thread
+	 * instead of owned by every engine. */
+	private static final ThreadLocal<ShortestPathEngine> searches =
+		new ThreadLocal<ShortestPathEngine>() {
+			protected ShortestPathEngine initialValue() {
+				return new ShortestPathEngine();
+			}
+		};
+
+	private final ContactPlan plan;
+	private final int nrofRoutes;
+	private final double transmitSpeed;
+	private final double horizon;
+	/** vertex of the search source; contact c is vertices 2c and 2c+1 */
+	private final int rootVertex;
+	/** vertex that is reached from every contact to the destination */
+	private final int destVertex;
+
+	private IntHashMap<List<Route>> routes;
+	/** used volume of the contacts this host has booked routes over */
+	private IntHashMap<Double> usedVolume;
+
+	/* state of the current search */
+	private ShortestPathEngine search;
+	private int searchSource;
+	private int searchDest;
+	private double searchTransmitTime;
+	private final boolean[] excludedHosts;
+	private IntHashMap<Boolean> suppressedContacts;
+	private final ShortestPathEngine.Graph graph = new ContactGraph();
+
+	/* statistics */
+	private int nrofComputations;
+	private long computationNanos;
+	private int nrofLookups;
+	private int nrofHits;
+
+	/**
+	 * Creates an engine
+	 * @param plan The contact plan
+	 * @param nrofRoutes Number of routes cached per destination
+	 * @param transmitSpeed Transmit speed of the contacts (bytes/s)
+	 * @param horizon Time after which no contacts are used
+	 */
+	public ContactRouteEngine(ContactPlan plan, int nrofRoutes,
+			double transmitSpeed, double horizon) {
+		if (nrofRoutes < 1) {
+			throw new IllegalArgumentException("Invalid number of routes " +
+					nrofRoutes);
+		}
+		this.plan = plan;
+		this.nrofRoutes = nrofRoutes;
+		this.transmitSpeed = transmitSpeed;
+		this.horizon = Math.min(horizon, plan.getEndTime());
+		this.rootVertex = 2 * plan.size();
+		this.destVertex = rootVertex + 1;
+		this.routes = new IntHashMap<List<Route>>();
+		this.usedVolume = new IntHashMap<Double>();
+		this.excludedHosts = new boolean[plan.getNrofHosts()];
+		this.suppressedContacts = new IntHashMap<Boolean>();
+	}
+
+	/**
+	 * Returns the route that delivers a message from the source to the
+	 * destination the earliest. The cached routes of the destination are
+	 * used if any of them can still carry the message; otherwise they are
+	 * computed again for the size of this message.
+	 * @param source Address of the source host
+	 * @param dest Address of the destination host
+	 * @param now Current time
+	 * @param size Size of the message (bytes)
+	 * @param busy Hosts that can't be the first hop, indexed by address,
+	 * or null
+	 * @return The route or null if no route can carry the message
+	 */
+	public Route findRoute(int source, int dest, double now, int size,
+			boolean[] busy) {
+		if (source == dest) {
+			return null;
+		}
+		nrofLookups++;
+		List<Route> cached = routes.get(dest);
+		if (cached != null) {
+			dropInvalidRoutes(cached, now, size);
+		}
+		if (cached == null || !canCarry(cached, now, size)) {
+			cached = computeRoutes(source, dest, now, size / transmitSpeed);
+			if (cached.isEmpty()) {
+				routes.remove(dest);
+				return null;
+			}
+			routes.put(dest, cached);
+		} else {
+			nrofHits++;
+		}
+
+		Route best = null;
+		double bestArrival = Double.MAX_VALUE;
+		for (Route r : cached) {
+			int firstHop = r.getNextHop();
+			if (busy != null && firstHop < busy.length && busy[firstHop]) {
+				continue;
+			}
+			double arrival = projectArrival(r, now, size);
+			if (arrival >= 0 && arrival < bestArrival) {
+				best = r;
+				bestArrival = arrival;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Books the volume of a message on all the contacts of a route
+	 * @param route The route the message is sent on
+	 * @param size Size of the message (bytes)
+	 */
+	public void consume(Route route, int size) {
+		for (int v : route.vertices) {
+			int contact = v >> 1;
+			Double used = usedVolume.get(contact);
+			usedVolume.put(contact, (used == null ? 0 : used) + size);
+		}
+	}
+
+	/**
+	 * Returns the volume of a contact that is not booked yet
+	 * @param contact Index of the contact
+	 * @return The residual volume (bytes)
+	 */
+	public double getResidualVolume(int contact) {
+		double volume = (plan.getEnd(contact) - plan.getStart(contact)) *
+			transmitSpeed;
+		Double used = usedVolume.get(contact);
+		return used == null ? volume : volume - used;
+	}
+
+	/**
+	 * Returns the hops of a route for a message that is sent now: the
+	 * address of each hop and whether the message waits for the contact
+	 * to that hop to start
+	 * @param route The route
+	 * @param now Current time
+	 * @param size Size of the message (bytes)
+	 * @return The hops after the source
+	 */
+	public List<Tuple<Integer, Boolean>> getPath(Route route, double now,
+			int size) {
+		List<Tuple<Integer, Boolean>> path =
+			new ArrayList<Tuple<Integer, Boolean>>(route.vertices.length);
+		double t = now;
+		double transmitTime = size / transmitSpeed;
+		for (int v : route.vertices) {
+			double start = plan.getStart(v >> 1);
+			path.add(new Tuple<Integer, Boolean>(receiver(v), start > t));
+			t = Math.max(t, start) + transmitTime;
+		}
+		return path;
+	}
+
+	/**
+	 * @return the number of shortest path searches run
+	 */
+	public int getNrofComputations() {
+		return this.nrofComputations;
+	}
+
+	/**
+	 * @return the number of route computations per second of computing
+	 * time
+	 */
+	public double getComputationsPerSecond() {
+		if (computationNanos == 0) {
+			return 0;
+		}
+		return nrofComputations / (computationNanos / 1e9);
+	}
+
+	/**
+	 * @return the share of route requests answered from the cache
+	 */
+	public double getHitRate() {
+		return nrofLookups == 0 ? 0 : (double)nrofHits / nrofLookups;
+	}
+
+	/**
+	 * Returns the cached routes and the statistics of the engine
+	 * @return Routing info of the engine
+	 */
+	public RoutingInfo getRoutingInfo() {
+		RoutingInfo ri = new RoutingInfo("Contact graph routes");
+		ri.addMoreInfo(new RoutingInfo(String.format(
+				"%d route computation(s), %.1f/s", nrofComputations,
+				getComputationsPerSecond())));
+		ri.addMoreInfo(new RoutingInfo(String.format(
+				"cache hit rate %.3f (%d/%d)", getHitRate(), nrofHits,
+				nrofLookups)));
+		RoutingInfo cache = new RoutingInfo(routes.size() +
+				" cached destination(s)");
+		for (List<Route> list : routes.values()) {
+			for (Route r : list) {
+				cache.addMoreInfo(new RoutingInfo(r));
+			}
+		}
+		ri.addMoreInfo(cache);
+		return ri;
+	}
+
+	/**
+	 * Removes the routes that have a contact that has ended or whose
+	 * residual volume can't carry the message
+	 */
+	private void dropInvalidRoutes(List<Route> list, double now, int size) {
+		for (int i = list.size() - 1; i >= 0; i--) {
+			Route r = list.get(i);
+			if (r.expiry <= now || !hasVolume(r, size)) {
+				list.remove(i);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if a message of the size sent now gets through on at
+	 * least one of the routes. Routes cached for smaller messages can end
+	 * too soon for a larger one.
+	 */
+	private boolean canCarry(List<Route> list, double now, int size) {
+		for (Route r : list) {
+			if (projectArrival(r, now, size) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if all the contacts of the route have room for a
+	 * message of the size
+	 */
+	private boolean hasVolume(Route r, int size) {
+		for (int v : r.vertices) {
+			if (getResidualVolume(v >> 1) < size) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the arrival time of a message sent now on the route or -1 if
+	 * a contact ends before the message is through
+	 */
+	private double projectArrival(Route r, double now, int size) {
+		double t = now;
+		double transmitTime = size / transmitSpeed;
+		for (int v : r.vertices) {
+			int contact = v >> 1;
+			t = Math.max(t, plan.getStart(contact)) + transmitTime;
+			if (t > plan.getEnd(contact)) {
+				return -1;
+			}
+		}
+		return t;
+	}
+
+	/**
+	 * Computes the best routes to a destination with Yen's algorithm
+	 * @return The routes, best first
+	 */
+	private List<Route> computeRoutes(int source, int dest, double now,
+			double transmitTime) {
+		List<Route> found = new ArrayList<Route>(nrofRoutes);
+		List<Route> candidates = new ArrayList<Route>();
+		if (source >= excludedHosts.length || dest >= excludedHosts.length) {
+			return found;
+		}
+		searchTransmitTime = transmitTime;
+		searchDest = dest;
+
+		Route first = search(source, now, null);
+		if (first == null) {
+			return found;
+		}
+		found.add(first);
+
+		while (found.size() < nrofRoutes) {
+			Route previous = found.get(found.size() - 1);
+			for (int i = 0; i < previous.vertices.length; i++) {
+				/* the spur host is where the route leaves the root path */
+				int spurHost = i == 0 ? source :
+					receiver(previous.vertices[i - 1]);
+				double spurTime = i == 0 ? now : previous.arrivals[i - 1];
+
+				suppressedContacts.clear();
+				for (Route r : found) {
+					if (r.vertices.length > i && r.hasRoot(previous, i)) {
+						suppressedContacts.put(r.vertices[i] >> 1, true);
+					}
+				}
+				Arrays.fill(excludedHosts, false);
+				excludedHosts[source] = true;
+				for (int j = 0; j < i; j++) {
+					excludedHosts[receiver(previous.vertices[j])] = true;
+				}
+				excludedHosts[spurHost] = false;
+
+				Route spur = search(spurHost, spurTime, previous);
+				if (spur == null) {
+					continue;
+				}
+				Route candidate = previous.join(i, spur);
+				if (!contains(found, candidate) &&
+						!contains(candidates, candidate)) {
+					candidates.add(candidate);
+				}
+			}
+			if (candidates.isEmpty()) {
+				break;
+			}
+
+			Route best = candidates.get(0);
+			for (Route c : candidates) {
+				if (c.getArrival() < best.getArrival() ||
+						(c.getArrival() == best.getArrival() &&
+						c.vertices.length < best.vertices.length)) {
+					best = c;
+				}
+			}
+			candidates.remove(best);
+			found.add(best);
+		}
+
+		suppressedContacts.clear();
+		Arrays.fill(excludedHosts, false);
+		return found;
+	}
+
+	/**
+	 * Runs one earliest arrival search from a host to the destination of
+	 * the current computation. Only the first search of a computation has
+	 * no root route; the spur searches skip the excluded hosts and the
+	 * suppressed contacts.
+	 * @param from Address of the host where the search starts
+	 * @param time Time when the message is at the host
+	 * @param root The route whose root path leads to the host, or null
+	 * @return The route from the host or null if there is none
+	 */
+	private Route search(int from, double time, Route root) {
+		long start = System.nanoTime();
+		if (root == null) {
+			Arrays.fill(excludedHosts, false);
+			excludedHosts[from] = true;
+		}
+		search = searches.get();
+		searchSource = from;
+		search.setTieBreaking(null);
+		search.init(destVertex, rootVertex, time);
+		search.expandSource(graph);
+		boolean reached = search.run(graph, destVertex);
+
+		Route route = null;
+		if (reached) {
+			List<Integer> path = search.getAddressPath(destVertex);
+			int hops = path.size() - 1; // the last one is destVertex
+			int[] vertices = new int[hops];
+			double[] arrivals = new double[hops];
+			for (int i = 0; i < hops; i++) {
+				vertices[i] = path.get(i);
+				arrivals[i] = search.getCost(vertices[i]);
+			}
+			route = new Route(vertices, arrivals);
+		}
+		search = null;
+		nrofComputations++;
+		computationNanos += System.nanoTime() - start;
+		return route;
+	}
+
+	/**
+	 * Returns the host that receives the message on a directed contact
+	 */
+	private int receiver(int vertex) {
+		int contact = vertex >> 1;
+		return (vertex & 1) == 0 ? plan.getTo(contact) : plan.getFrom(contact);
+	}
+
+	/**
+	 * Returns true if the host is on the path of the search to the vertex
+	 */
+	private boolean isOnPath(int host, int vertex) {
+		for (int v = vertex; v != rootVertex;
+				v = search.getPredecessor(v)) {
+			if (receiver(v) == host) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean contains(List<Route> list, Route route) {
+		for (Route r : list) {
+			if (Arrays.equals(r.vertices, route.vertices)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The contact graph seen by the search: the links of a directed
+	 * contact are the contacts of its receiving host that are still up
+	 * when the message has arrived and that are long enough to carry it
+	 */
+	private class ContactGraph implements ShortestPathEngine.Graph {
+		public void expand(ShortestPathEngine engine, int vertex,
+				double arrival) {
+			if (vertex == destVertex) {
+				return;
+			}
+			int host = vertex == rootVertex ? searchSource : receiver(vertex);
+			if (host == searchDest) {
+				engine.relax(destVertex, arrival, false);
+				return;
+			}
+
+			int last = plan.getHostContactEnd(host);
+			for (int k = plan.findHostContact(host, arrival); k < last; k++) {
+				int contact = plan.getHostContact(k);
+				double start = plan.getStart(contact);
+				if (start >= horizon) {
+					break; // the contacts are sorted by start time
+				}
+				double done = Math.max(arrival, start) + searchTransmitTime;
+				if (done > plan.getEnd(contact) ||
+						suppressedContacts.containsKey(contact)) {
+					continue;
+				}
+				int other = plan.getOther(contact, host);
+				if (other == searchSource || excludedHosts[other] ||
+						(vertex != rootVertex && isOnPath(other, vertex))) {
+					continue;
+				}
+				int next = 2 * contact + (plan.getFrom(contact) == host ? 0 : 1);
+				engine.relax(next, done, start > arrival);
+			}
+		}
+	}
+
+	/**
+	 * A route: the directed contacts from the source to the destination
+	 */
+	public class Route {
+		private final int[] vertices;
+		private final double[] arrivals;
+		private final double expiry;
+
+		private Route(int[] vertices, double[] arrivals) {
+			this.vertices = vertices;
+			this.arrivals = arrivals;
+			double e = Double.MAX_VALUE;
+			for (int v : vertices) {
+				e = Math.min(e, plan.getEnd(v >> 1));
+			}
+			this.expiry = e;
+		}
+
+		/**
+		 * @return the address of the first hop
+		 */
+		public int getNextHop() {
+			return receiver(vertices[0]);
+		}
+
+		/**
+		 * @return the number of hops of the route
+		 */
+		public int getNrofHops() {
+			return vertices.length;
+		}
+
+		/**
+		 * @return the arrival time at the destination that was computed
+		 * for the route
+		 */
+		public double getArrival() {
+			return arrivals[arrivals.length - 1];
+		}
+
+		/**
+		 * @return the time when the first of the route's contacts ends
+		 */
+		public double getExpiry() {
+			return this.expiry;
+		}
+
+		/**
+		 * Returns true if the first hops of this route are the same as
+		 * those of the other route
+		 */
+		private boolean hasRoot(Route other, int hops) {
+			for (int i = 0; i < hops; i++) {
+				if (vertices[i] != other.vertices[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Returns a route with the first hops of this route followed by
+		 * the spur route
+		 */
+		private Route join(int hops, Route spur) {
+			int n = hops + spur.vertices.length;
+			int[] v = Arrays.copyOf(vertices, n);
+			double[] a = Arrays.copyOf(arrivals, n);
+			System.arraycopy(spur.vertices, 0, v, hops, spur.vertices.length);
+			System.arraycopy(spur.arrivals, 0, a, hops, spur.arrivals.length);
+			return new Route(v, a);
+		}
+
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < vertices.length; i++) {
+				sb.append(i == 0 ? "" : "->").append(receiver(vertices[i]));
+			}
+			return sb.append(String.format(" @%.2f", getArrival())).toString();
+		}
+	}
+}
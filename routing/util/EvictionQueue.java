@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import util.IntHashMap;
+import core.Message;
+
+/**
+ * Index of the messages of a router's buffer in the order they should be
+ * dropped when the buffer is full. The queue also keeps the total size of
+ * the messages, so the occupancy of the buffer is known without going
+ * through the messages. Adding and removing a message take O(log n) time.
+ * <P>
+ * The sort key and the size of a message are read when the message is
+ * added, so changes made to the message while it is in the queue don't
+ * break the order. Messages with equal keys are dropped in the order they
+ * were added.
+ */
+public class EvictionQueue implements Iterable<Message> {
+	/** Policy value for dropping the message that was received first */
+	public static final int OLDEST = 1;
+	/** Policy value for dropping the largest message first */
+	public static final int LARGEST = 2;
+	/** Policy value for dropping the message that expires first */
+	public static final int SHORTEST_TTL = 3;
+
+	private final int policy;
+	private final TreeSet<Entry> order;
+	private final IntHashMap<Entry> entries;
+	private long nextSeq;
+	private int occupancy;
+
+	/**
+	 * Creates an empty queue
+	 * @param policy The eviction policy ({@link #OLDEST},
+	 * {@link #LARGEST} or {@link #SHORTEST_TTL})
+	 */
+	public EvictionQueue(int policy) {
+		if (policy < OLDEST || policy > SHORTEST_TTL) {
+			throw new IllegalArgumentException("Invalid eviction policy " +
+					policy);
+		}
+		this.policy = policy;
+		this.order = new TreeSet<Entry>();
+		this.entries = new IntHashMap<Entry>();
+		this.nextSeq = 0;
+		this.occupancy = 0;
+	}
+
+	/**
+	 * Adds a message to the queue. A message with the same ID is replaced.
+	 * @param m The message
+	 */
+	public void add(Message m) {
+		remove(m.getKey());
+		Entry e = new Entry(m, keyOf(m), nextSeq++);
+		entries.put(m.getKey(), e);
+		order.add(e);
+		occupancy += e.size;
+	}
+
+	/**
+	 * Removes a message from the queue
+	 * @param key Key of the message ID (see {@link Message#getKey()})
+	 * @return True if the message was in the queue
+	 */
+	public boolean remove(int key) {
+		Entry e = entries.remove(key);
+		if (e == null) {
+			return false;
+		}
+		order.remove(e);
+		occupancy -= e.size;
+		return true;
+	}
+
+	/**
+	 * Returns the total size of the messages in the queue
+	 * @return The size in bytes
+	 */
+	public int getOccupancy() {
+		return this.occupancy;
+	}
+
+	/**
+	 * Returns the number of messages in the queue
+	 * @return The number of messages
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the eviction policy of the queue
+	 */
+	public int getPolicy() {
+		return this.policy;
+	}
+
+	/**
+	 * Returns an iterator over the messages, the one to drop first comes
+	 * first. The queue must not be modified during the iteration.
+	 */
+	public Iterator<Message> iterator() {
+		final Iterator<Entry> i = order.iterator();
+		return new Iterator<Message>() {
+			public boolean hasNext() {
+				return i.hasNext();
+			}
+
+			public Message next() {
+				return i.next().message;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Returns the sort key of a message; smaller keys are dropped first
+	 */
+	private double keyOf(Message m) {
+		switch (policy) {
+		case LARGEST:
+			return -m.getSize();
+		case SHORTEST_TTL:
+			return m.getExpiryTime();
+		default:
+			return m.getReceiveTime();
+		}
+	}
+
+	/**
+	 * A message with the values it is sorted by
+	 */
+	private static class Entry implements Comparable<Entry> {
+		private final Message message;
+		private final double key;
+		private final long seq;
+		private final int size;
+
+		private Entry(Message message, double key, long seq) {
+			this.message = message;
+			this.key = key;
+			this.seq = seq;
+			this.size = message.getSize();
+		}
+
+		public int compareTo(Entry other) {
+			if (this.key != other.key) {
+				return this.key < other.key ? -1 : 1;
+			}
+			return this.seq < other.seq ? -1 : (this.seq > other.seq ? 1 : 0);
+		}
+	}
+}
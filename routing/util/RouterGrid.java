@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.HashMap;
+
+import util.SparseGrid;
+import core.DTNSim;
+import core.SimulationContext;
+
+/**
+ * Sparse grid of the grid based routers. The cells only carry their index,
+ * so one grid per cell size is shared by all the hosts of a scenario; the
+ * routers keep their own host to cell mappings. Each
+ * {@link SimulationContext} has its own grids. The cells are created
+ * lazily, so a grid may be used by the update threads of its context at
+ * the same time.
+ */
+public class RouterGrid extends SparseGrid<RouterGrid.GridCell> {
+
+	static {
+		DTNSim.registerForReset(RouterGrid.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Removes the grids of the current simulation context
+	 */
+	public static void reset() {
+		SimulationContext.current().removeState(Grids.class);
+	}
+
+	/**
+	 * Returns the shared grid of the given cell size and creates it if it
+	 * doesn't exist yet
+	 * @param cellSize Edge length of the cells
+	 * @return The grid
+	 */
+	public static RouterGrid getGrid(double cellSize) {
+		Grids grids = SimulationContext.current().getState(Grids.class);
+		synchronized (grids) {
+			RouterGrid grid = grids.get(cellSize);
+			if (grid == null) {
+				grid = new RouterGrid();
+				grids.put(cellSize, grid);
+			}
+			return grid;
+		}
+	}
+
+	private RouterGrid() {
+		super();
+	}
+
+	@Override
+	public synchronized GridCell getCell(int row, int col, int z) {
+		return super.getCell(row, col, z);
+	}
+
+	@Override
+	protected GridCell createCell(int row, int col, int z) {
+		GridCell cell = new GridCell();
+		cell.setNumber(row, col, z);
+		return cell;
+	}
+
+	/**
+	 * A single cell of the grid
+	 */
+	public static class GridCell {
+		private int[] number;
+
+		public GridCell() {
+			number = new int[3];
+		}
+
+		public void setNumber(int row, int col, int z){
+			number[0] = row;
+			number[1] = col;
+			number[2] = z;
+		}
+
+		public int[] getNumber(){
+			return number;
+		}
+
+		public String toString() {
+			return getClass().getSimpleName() + " with " +
+				"cell number: "+ number[0]+" "+number[1]+" "+number[2];
+		}
+	}
+
+	/**
+	 * The grids of one simulation context by cell size
+	 */
+	static class Grids extends HashMap<Double, RouterGrid> {
+		private static final long serialVersionUID = 1L;
+	}
+}
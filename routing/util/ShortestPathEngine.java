@@ -0,0 +1,377 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import util.Tuple;
+
+/**
+ * Label setting (Dijkstra) shortest path search over host addresses. The
+ * labels are kept in arrays indexed by address and the open nodes in an
+ * indexed d-ary heap, so the search needs no per node objects. The links
+ * and their costs are given by a {@link Graph} that is asked to relax the
+ * links of each node when the node is settled; the cost can be anything
+ * that doesn't decrease along a path, e.g. the arrival time of a message.
+ * <P>
+ * Paths are not stored, they are rebuilt from the predecessors when they
+ * are requested. One engine can be reused for any number of searches; the
+ * results of a search are valid until the next
+ * {@link #init(int, int, double)}.
+ */
+public class ShortestPathEngine {
+	/** number of children of each heap node */
+	public static final int HEAP_ARITY = 4;
+	/** predecessor of the source and of the unreached nodes */
+	public static final int NO_NODE = -1;
+
+	/**
+	 * Links of the searched graph
+	 */
+	public interface Graph {
+		/**
+		 * Relaxes the links of a settled node by calling
+		 * {@link ShortestPathEngine#relax(int, double, boolean)} for the
+		 * neighbors that can be used
+		 * @param engine The search
+		 * @param node Address of the settled node
+		 * @param cost Final cost of the node
+		 */
+		void expand(ShortestPathEngine engine, int node, double cost);
+	}
+
+	private double[] cost;
+	private int[] pred;
+	private int[] heap;
+	private int[] heapIndex;
+	private int heapSize;
+	private BitSet reached;
+	private BitSet settled;
+	private BitSet predicted;
+
+	private int source;
+	private int current;
+	private Random random;
+
+	/**
+	 * Creates an engine for addresses up to 63; the arrays grow when
+	 * needed
+	 */
+	public ShortestPathEngine() {
+		this(64);
+	}
+
+	/**
+	 * Creates an engine
+	 * @param capacity Initial number of addresses
+	 */
+	public ShortestPathEngine(int capacity) {
+		this.cost = new double[capacity];
+		this.pred = new int[capacity];
+		this.heap = new int[capacity];
+		this.heapIndex = new int[capacity];
+		Arrays.fill(heapIndex, -1);
+		this.heapSize = 0;
+		this.reached = new BitSet(capacity);
+		this.settled = new BitSet(capacity);
+		this.predicted = new BitSet(capacity);
+		this.source = NO_NODE;
+		this.current = NO_NODE;
+	}
+
+	/**
+	 * Sets the random number generator used to choose between paths of
+	 * equal cost. Without it the first path found is kept.
+	 * @param random The generator or null for no random choice
+	 */
+	public void setTieBreaking(Random random) {
+		this.random = random;
+	}
+
+	/**
+	 * Starts a new search. The source is settled but its links are not
+	 * relaxed; its first hops can be given with
+	 * {@link #relax(int, double, boolean)} before calling
+	 * {@link #run(Graph, int)}, or the source can be expanded by the graph
+	 * with {@link #expandSource(Graph)}.
+	 * @param maxAddress Largest address of the searched nodes
+	 * @param source Address of the source
+	 * @param startCost Cost of the source
+	 */
+	public void init(int maxAddress, int source, double startCost) {
+		ensureCapacity(maxAddress + 1);
+		for (int i = 0; i < heapSize; i++) {
+			heapIndex[heap[i]] = -1;
+		}
+		heapSize = 0;
+		reached.clear();
+		settled.clear();
+		predicted.clear();
+
+		this.source = source;
+		this.current = source;
+		cost[source] = startCost;
+		pred[source] = NO_NODE;
+		reached.set(source);
+		settled.set(source);
+	}
+
+	/**
+	 * Relaxes the links of the source with the graph
+	 * @param graph The graph
+	 */
+	public void expandSource(Graph graph) {
+		current = source;
+		graph.expand(this, source, cost[source]);
+	}
+
+	/**
+	 * Offers a path to a node through the node that is being expanded (or
+	 * through the source, outside of the expansions). The path is taken if
+	 * it is cheaper than the best known path of the node; a path of equal
+	 * cost is taken at random if a tie breaking generator is set.
+	 * @param node Address of the neighbor
+	 * @param pathCost Cost of the node through this path
+	 * @param isPredicted True if the last link is a predicted one
+	 * @return True if the path was taken
+	 */
+	public boolean relax(int node, double pathCost, boolean isPredicted) {
+		ensureCapacity(node + 1);
+		if (settled.get(node)) {
+			return false;
+		}
+		boolean known = reached.get(node);
+		if (known) {
+			if (pathCost > cost[node] || (pathCost == cost[node] &&
+					(random == null || !random.nextBoolean()))) {
+				return false;
+			}
+		}
+
+		cost[node] = pathCost;
+		pred[node] = current;
+		predicted.set(node, isPredicted);
+		if (!known) {
+			reached.set(node);
+			heap[heapSize] = node;
+			heapIndex[node] = heapSize;
+			heapSize++;
+		}
+		siftUp(heapIndex[node]);
+		return true;
+	}
+
+	/**
+	 * Settles the open nodes in cost order and expands them with the graph
+	 * until the target is settled or no open nodes are left
+	 * @param graph The graph
+	 * @param target Address of the node where the search can stop or
+	 * {@link #NO_NODE} to search all the reachable nodes
+	 * @return True if the target was settled
+	 */
+	public boolean run(Graph graph, int target) {
+		if (target != NO_NODE && isSettled(target)) {
+			return true;
+		}
+		while (heapSize > 0) {
+			int node = poll();
+			settled.set(node);
+			if (node == target) {
+				current = source;
+				return true;
+			}
+			current = node;
+			graph.expand(this, node, cost[node]);
+		}
+		current = source;
+		return false;
+	}
+
+	/**
+	 * @return the address of the source of the search
+	 */
+	public int getSource() {
+		return this.source;
+	}
+
+	/**
+	 * Returns true if a path to the node has been found
+	 * @param node Address of the node
+	 */
+	public boolean isReached(int node) {
+		return node >= 0 && reached.get(node);
+	}
+
+	/**
+	 * Returns true if the node's path is final
+	 * @param node Address of the node
+	 */
+	public boolean isSettled(int node) {
+		return node >= 0 && settled.get(node);
+	}
+
+	/**
+	 * Returns the cost of the best path found to the node
+	 * @param node Address of a reached node
+	 * @return The cost
+	 */
+	public double getCost(int node) {
+		return cost[node];
+	}
+
+	/**
+	 * Returns the previous node on the best path found to the node
+	 * @param node Address of a reached node
+	 * @return The address of the predecessor or {@link #NO_NODE} for the
+	 * source
+	 */
+	public int getPredecessor(int node) {
+		return pred[node];
+	}
+
+	/**
+	 * Returns true if the last link of the node's path is predicted
+	 * @param node Address of a reached node
+	 */
+	public boolean isPredicted(int node) {
+		return predicted.get(node);
+	}
+
+	/**
+	 * Returns the number of hops on the best path found to the node
+	 * @param node Address of a reached node
+	 * @return The hop count (0 for the source)
+	 */
+	public int getHopCount(int node) {
+		int hops = 0;
+		for (int n = node; pred[n] != NO_NODE; n = pred[n]) {
+			hops++;
+		}
+		return hops;
+	}
+
+	/**
+	 * Returns the path to a node as the addresses of the hops after the
+	 * source
+	 * @param node Address of the node
+	 * @return The path or null if the node was not reached
+	 */
+	public List<Integer> getAddressPath(int node) {
+		if (!isReached(node)) {
+			return null;
+		}
+		Integer[] hops = new Integer[getHopCount(node)];
+		for (int n = node, i = hops.length - 1; i >= 0; n = pred[n], i--) {
+			hops[i] = n;
+		}
+		return new ArrayList<Integer>(Arrays.asList(hops));
+	}
+
+	/**
+	 * Returns the path to a node as the hops after the source, each with
+	 * the address of the hop and the prediction flag of its link
+	 * @param node Address of the node
+	 * @return The path or null if the node was not reached
+	 */
+	public List<Tuple<Integer, Boolean>> getPath(int node) {
+		if (!isReached(node)) {
+			return null;
+		}
+		int hopCount = getHopCount(node);
+		List<Tuple<Integer, Boolean>> hops =
+			new ArrayList<Tuple<Integer, Boolean>>(hopCount);
+		for (int n = node, i = 0; i < hopCount; n = pred[n], i++) {
+			hops.add(new Tuple<Integer, Boolean>(n, predicted.get(n)));
+		}
+		Collections.reverse(hops);
+		return hops;
+	}
+
+	/**
+	 * Removes and returns the cheapest open node
+	 */
+	private int poll() {
+		int node = heap[0];
+		heapIndex[node] = -1;
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapIndex[heap[0]] = 0;
+			siftDown(0);
+		}
+		return node;
+	}
+
+	/**
+	 * Moves the node at the heap position towards the root until its
+	 * parent is not more expensive
+	 */
+	private void siftUp(int pos) {
+		int node = heap[pos];
+		double c = cost[node];
+		while (pos > 0) {
+			int parent = (pos - 1) / HEAP_ARITY;
+			if (cost[heap[parent]] <= c) {
+				break;
+			}
+			heap[pos] = heap[parent];
+			heapIndex[heap[pos]] = pos;
+			pos = parent;
+		}
+		heap[pos] = node;
+		heapIndex[node] = pos;
+	}
+
+	/**
+	 * Moves the node at the heap position towards the leaves until none
+	 * of its children is cheaper
+	 */
+	private void siftDown(int pos) {
+		int node = heap[pos];
+		double c = cost[node];
+		while (true) {
+			int first = pos * HEAP_ARITY + 1;
+			if (first >= heapSize) {
+				break;
+			}
+			int min = first;
+			int last = Math.min(first + HEAP_ARITY, heapSize);
+			for (int i = first + 1; i < last; i++) {
+				if (cost[heap[i]] < cost[heap[min]]) {
+					min = i;
+				}
+			}
+			if (cost[heap[min]] >= c) {
+				break;
+			}
+			heap[pos] = heap[min];
+			heapIndex[heap[pos]] = pos;
+			pos = min;
+		}
+		heap[pos] = node;
+		heapIndex[node] = pos;
+	}
+
+	/**
+	 * Grows the arrays so that they can hold the given number of addresses
+	 */
+	private void ensureCapacity(int size) {
+		if (size <= cost.length) {
+			return;
+		}
+		int newSize = Math.max(size, 2 * cost.length);
+		cost = Arrays.copyOf(cost, newSize);
+		pred = Arrays.copyOf(pred, newSize);
+		heap = Arrays.copyOf(heap, newSize);
+		int oldSize = heapIndex.length;
+		heapIndex = Arrays.copyOf(heapIndex, newSize);
+		Arrays.fill(heapIndex, oldSize, newSize, -1);
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package satellite_orbit;
+
+import java.util.Arrays;
+
+/**
+ * Closed-form (Kepler) propagator of a whole constellation. The orbits are
+ * stored in parallel primitive arrays, one element per satellite: the
+ * semi-major axis, eccentricity, mean anomaly at t=0, mean motion and
+ * period, and instead of the three angles the P and Q axes of the PQW to
+ * ECI rotation. The positions of all the satellites at one time are
+ * computed in three passes over the arrays (mean anomaly, Kepler's
+ * equation, rotation to ECI); the first and last pass are plain array
+ * arithmetic that the JIT compiler can unroll and vectorize.
+ * <P>
+ * The results are exactly the ones of
+ * {@link SatelliteOrbit#getAnalyticCoordinate(double, double[])}.
+ * Concurrent propagations of disjoint index ranges are safe.
+ */
+public class ConstellationPropagator {
+	private static final int DEF_CAPACITY = 16;
+
+	private int size;
+	private double[] a;
+	private double[] e;
+	private double[] b;
+	private double[] m0;
+	private double[] n;
+	private double[] period;
+	private double[] px, py, pz;
+	private double[] qx, qy, qz;
+	/** mean and eccentric anomalies of the last propagation */
+	private double[] anomaly;
+
+	/**
+	 * Creates an empty propagator
+	 */
+	public ConstellationPropagator() {
+		this(DEF_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty propagator with room for the given number of orbits
+	 * @param capacity Initial capacity
+	 */
+	public ConstellationPropagator(int capacity) {
+		allocate(Math.max(capacity, 1));
+	}
+
+	private void allocate(int capacity) {
+		a = grow(a, capacity);
+		e = grow(e, capacity);
+		b = grow(b, capacity);
+		m0 = grow(m0, capacity);
+		n = grow(n, capacity);
+		period = grow(period, capacity);
+		px = grow(px, capacity);
+		py = grow(py, capacity);
+		pz = grow(pz, capacity);
+		qx = grow(qx, capacity);
+		qy = grow(qy, capacity);
+		qz = grow(qz, capacity);
+		anomaly = grow(anomaly, capacity);
+	}
+
+	private static double[] grow(double[] array, int capacity) {
+		return array == null ? new double[capacity] :
+			Arrays.copyOf(array, capacity);
+	}
+
+	/**
+	 * Adds an orbit to the propagator. Later changes of the orbit's
+	 * elements are not seen by the propagator.
+	 * @param orbit The orbit
+	 * @return Index of the orbit in the results of the propagations
+	 */
+	public int add(SatelliteOrbit orbit) {
+		if (size == a.length) {
+			allocate(2 * size);
+		}
+		orbit.prepareAnalyticElements();
+		int k = size++;
+		a[k] = orbit.a;
+		e[k] = orbit.e;
+		b[k] = orbit.b;
+		m0[k] = orbit.m0;
+		n[k] = orbit.n;
+		period[k] = orbit.period;
+		px[k] = orbit.px;
+		py[k] = orbit.py;
+		pz[k] = orbit.pz;
+		qx[k] = orbit.qx;
+		qy[k] = orbit.qy;
+		qz[k] = orbit.qz;
+		return k;
+	}
+
+	/**
+	 * @return Number of orbits in the propagator
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Computes the ECI positions (km) of all the satellites at time t
+	 * @param t Time in s
+	 * @param x Array where the x coordinates are stored
+	 * @param y Array where the y coordinates are stored
+	 * @param z Array where the z coordinates are stored
+	 */
+	public void propagate(double t, double[] x, double[] y, double[] z) {
+		propagate(t, 0, size, x, y, z);
+	}
+
+	/**
+	 * Computes the ECI positions (km) of the satellites from..to-1 at time
+	 * t. Times beyond one period wrap around and non-positive times give
+	 * the initial positions, as in {@link SatelliteOrbit}.
+	 * @param t Time in s
+	 * @param from Index of the first satellite
+	 * @param to Index after the last satellite
+	 * @param x Array where the x coordinates are stored
+	 * @param y Array where the y coordinates are stored
+	 * @param z Array where the z coordinates are stored
+	 */
+	public void propagate(double t, int from, int to, double[] x,
+			double[] y, double[] z) {
+		for (int k = from; k < to; k++) {
+			double tt = t;
+			if (tt > period[k]) {
+				tt = tt % period[k];
+			}
+			else if (tt < 0) {
+				tt = 0;
+			}
+			anomaly[k] = m0[k] + n[k] * tt;
+		}
+
+		for (int k = from; k < to; k++) {
+			anomaly[k] = TwoBody.solveKepler(anomaly[k], e[k]);
+		}
+
+		for (int k = from; k < to; k++) {
+			double cosE = Math.cos(anomaly[k]);
+			double sinE = Math.sin(anomaly[k]);
+			double xp = a[k] * (cosE - e[k]);
+			double yq = b[k] * sinE;
+			x[k] = px[k] * xp + qx[k] * yq;
+			y[k] = py[k] * xp + qy[k] * yq;
+			z[k] = pz[k] * xp + qz[k] * yq;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package satellite_orbit;
+
+/**
+ * Operations on 3x3 matrices that are stored row by row in double arrays of
+ * nine elements, i.e. element (r, c) is at index 3*r + c. The vectors are
+ * the ones of {@link Vec3}. The results are written to arrays given by the
+ * caller and no objects are allocated, unlike with {@link Matrix}.
+ */
+public final class Mat3 {
+	/** Number of elements in a matrix */
+	public static final int SIZE = 9;
+
+	private Mat3() {}
+
+	/**
+	 * Computes the PQW (perifocal) to ECI rotation of an orbit, the same
+	 * matrix as {@link TwoBody#PQW2ECI()}
+	 * @param raan Right ascension of the ascending node in radians
+	 * @param i Inclination in radians
+	 * @param w Argument of perigee in radians
+	 * @param out Array where the matrix is stored
+	 * @return The out array
+	 */
+	public static double[] PQW2ECI(double raan, double i, double w,
+			double[] out) {
+		double cw = Math.cos(w);
+		double sw = Math.sin(w);
+		double craan = Math.cos(raan);
+		double sraan = Math.sin(raan);
+		double ci = Math.cos(i);
+		double si = Math.sin(i);
+
+		out[0] = craan * cw - sraan * sw * ci;
+		out[1] = -craan * sw - sraan * cw * ci;
+		out[2] = sraan * si;
+		out[3] = sraan * cw + craan * sw * ci;
+		out[4] = -sraan * sw + craan * cw * ci;
+		out[5] = -craan * si;
+		out[6] = sw * si;
+		out[7] = cw * si;
+		out[8] = ci;
+		return out;
+	}
+
+	/**
+	 * Multiplies a vector by a matrix. The result may be stored over the
+	 * vector.
+	 * @param m The matrix
+	 * @param v Array of the vector
+	 * @param vOff Offset of the vector
+	 * @param out Array where m * v is stored
+	 * @param outOff Offset of the result
+	 */
+	public static void times(double[] m, double[] v, int vOff,
+			double[] out, int outOff) {
+		times(m, v[vOff], v[vOff + 1], v[vOff + 2], out, outOff);
+	}
+
+	/**
+	 * Multiplies the vector (x, y, z) by a matrix
+	 * @param m The matrix
+	 * @param x The first element of the vector
+	 * @param y The second element of the vector
+	 * @param z The third element of the vector
+	 * @param out Array where m * (x, y, z) is stored
+	 * @param outOff Offset of the result
+	 */
+	public static void times(double[] m, double x, double y, double z,
+			double[] out, int outOff) {
+		out[outOff] = m[0] * x + m[1] * y + m[2] * z;
+		out[outOff + 1] = m[3] * x + m[4] * y + m[5] * z;
+		out[outOff + 2] = m[6] * x + m[7] * y + m[8] * z;
+	}
+
+	/**
+	 * Copies a matrix to a {@link Matrix}
+	 * @param m The matrix
+	 * @return A new 3x3 Matrix with the elements of m
+	 */
+	public static Matrix toMatrix(double[] m) {
+		Matrix out = new Matrix(3, 3);
+		for (int r = 0; r < 3; r++) {
+			for (int c = 0; c < 3; c++) {
+				out.A[r][c] = m[3 * r + c];
+			}
+		}
+		return out;
+	}
+}
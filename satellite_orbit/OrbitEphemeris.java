@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ */
+package satellite_orbit;
+
+/**
+ * Precomputed position table of one satellite orbit. The orbit is sampled
+ * over one period at equally spaced times and stored as three primitive
+ * arrays (x, y and z in km, ECI frame). Positions at arbitrary times are
+ * interpolated with a 4-point (cubic) Lagrange polynomial, using the
+ * periodicity of the orbit to wrap the sample indices. Lookups take constant
+ * time and do not allocate.
+ */
+public class OrbitEphemeris {
+	/** smallest accepted number of samples per period */
+	public static final int MIN_SAMPLES = 8;
+
+	private final double[] x;
+	private final double[] y;
+	private final double[] z;
+	private final int samples;
+	private final double period;
+	private final double step;
+	/** largest interpolation error (km) found while building the table */
+	private final double maxError;
+
+	/**
+	 * Samples the given orbit over one period.
+	 * @param orbit The orbit to sample
+	 * @param samples Number of samples per period
+	 */
+	public OrbitEphemeris(SatelliteOrbit orbit, int samples) {
+		if (samples < MIN_SAMPLES) {
+			throw new IllegalArgumentException("Too few ephemeris samples (" +
+					samples + "), at least " + MIN_SAMPLES + " needed");
+		}
+		this.samples = samples;
+		this.period = orbit.getPeriod();
+		this.step = period / samples;
+		this.x = new double[samples];
+		this.y = new double[samples];
+		this.z = new double[samples];
+
+		double[] xyz = new double[3];
+		for (int k = 0; k < samples; k++) {
+			orbit.getAnalyticCoordinate(k * step, xyz);
+			x[k] = xyz[0];
+			y[k] = xyz[1];
+			z[k] = xyz[2];
+		}
+
+		/* the error of the cubic fit peaks near the middle of each interval */
+		double[] exact = new double[3];
+		double err = 0;
+		for (int k = 0; k < samples; k++) {
+			double t = (k + 0.5) * step;
+			orbit.getAnalyticCoordinate(t, exact);
+			getCoordinate(t, xyz);
+			double dx = exact[0] - xyz[0];
+			double dy = exact[1] - xyz[1];
+			double dz = exact[2] - xyz[2];
+			err = Math.max(err, Math.sqrt(dx*dx + dy*dy + dz*dz));
+		}
+		this.maxError = err;
+	}
+
+	/**
+	 * Interpolates the position at time t and writes it to the given array.
+	 * Non-positive times give the position at t=0, like
+	 * {@link SatelliteOrbit#getSatelliteCoordinate(double)}.
+	 * @param t Time in s
+	 * @param xyz Array of at least three elements where the result is stored
+	 * @return The xyz array
+	 */
+	public double[] getCoordinate(double t, double[] xyz) {
+		double u = t <= 0 ? 0 : (t % period) / step;
+		int k = (int)u;
+		double f = u - k;
+		if (k >= samples) { // t % period rounded up to the period
+			k -= samples;
+		}
+
+		int k0 = k == 0 ? samples - 1 : k - 1;
+		int k2 = k + 1 == samples ? 0 : k + 1;
+		int k3 = k2 + 1 == samples ? 0 : k2 + 1;
+
+		double fm1 = f - 1;
+		double fm2 = f - 2;
+		double fp1 = f + 1;
+		double w0 = -f * fm1 * fm2 / 6;
+		double w1 = fp1 * fm1 * fm2 / 2;
+		double w2 = -fp1 * f * fm2 / 2;
+		double w3 = fp1 * f * fm1 / 6;
+
+		xyz[0] = w0 * x[k0] + w1 * x[k] + w2 * x[k2] + w3 * x[k3];
+		xyz[1] = w0 * y[k0] + w1 * y[k] + w2 * y[k2] + w3 * y[k3];
+		xyz[2] = w0 * z[k0] + w1 * z[k] + w2 * z[k2] + w3 * z[k3];
+		return xyz;
+	}
+
+	/**
+	 * @return Largest interpolation error (km) measured at the midpoints of
+	 * the sampling intervals when the table was built
+	 */
+	public double getMaxError() {
+		return this.maxError;
+	}
+
+	/**
+	 * @return Number of samples per period
+	 */
+	public int getSamples() {
+		return this.samples;
+	}
+
+	/**
+	 * @return Period of the sampled orbit in s
+	 */
+	public double getPeriod() {
+		return this.period;
+	}
+}
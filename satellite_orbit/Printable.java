@@ -24,6 +24,10 @@ package satellite_orbit;
  * <P>
  * The Printable interface provides the mechanism for passing a method
  * that prints the desired outputs to an integrator.
+ * <P>
+ * The state array passed to {@link #print(double, double[])} is the
+ * propagator's own state, which is updated in place on the next step.
+ * Implementations that keep the values must copy them.
  *
  * @author 
  * @version 1.0
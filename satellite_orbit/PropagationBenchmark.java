@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package satellite_orbit;
+
+import util.AllocationCounter;
+
+/**
+ * Measures the cost of the position queries of {@link SatelliteOrbit} in
+ * the step-wise and analytic propagation modes, and of the same analytic
+ * positions computed for all the orbits at once by a
+ * {@link ConstellationPropagator}. The time and (if the JVM can count
+ * them) the bytes allocated per position are printed; once the orbits are
+ * warmed up no bytes should be allocated in any mode.
+ * <P>
+ * Usage: <code>java satellite_orbit.PropagationBenchmark [satellites]
+ * [queries]</code> where satellites is the number of orbits (default 100)
+ * and queries the number of measured queries per orbit (default 1000).
+ */
+public class PropagationBenchmark {
+	/** semi-major axis of the orbits (km) */
+	public static final double SEMI_MAJOR_AXIS = 6921;
+	/** inclination of the orbits (degrees) */
+	public static final double INCLINATION = 53;
+	/** time between the queries (s) */
+	public static final double STEP = 1;
+	/** number of queries per orbit run before the measurements */
+	public static final int WARMUP_QUERIES = 200;
+
+	private static final int DEF_SATELLITES = 100;
+	private static final int DEF_QUERIES = 1000;
+
+	public static void main(String[] args) {
+		int satellites = DEF_SATELLITES;
+		int queries = DEF_QUERIES;
+		if (args.length > 0) {
+			satellites = Integer.parseInt(args[0]);
+		}
+		if (args.length > 1) {
+			queries = Integer.parseInt(args[1]);
+		}
+
+		System.out.println("mode\tqueries\tns/query\tbytes/query");
+		run(satellites, queries, false);
+		run(satellites, queries, true);
+		runBatch(satellites, queries);
+	}
+
+	/**
+	 * Creates the orbits of the benchmark
+	 * @param satellites Number of orbits
+	 * @param analytic True to use the analytic propagation
+	 * @return The orbits
+	 */
+	private static SatelliteOrbit[] createOrbits(int satellites,
+			boolean analytic) {
+		SatelliteOrbit[] orbits = new SatelliteOrbit[satellites];
+		for (int k = 0; k < satellites; k++) {
+			orbits[k] = new SatelliteOrbit(new double[] {SEMI_MAJOR_AXIS,
+					0.001, INCLINATION, 360.0 * k / satellites, 0,
+					360.0 * k / satellites});
+			orbits[k].setAnalyticPropagation(analytic);
+		}
+		return orbits;
+	}
+
+	/**
+	 * Queries the positions of the orbits and prints the results
+	 * @param satellites Number of orbits
+	 * @param queries Number of measured queries per orbit
+	 * @param analytic True to use the analytic propagation
+	 */
+	private static void run(int satellites, int queries, boolean analytic) {
+		AllocationCounter counter = new AllocationCounter();
+		SatelliteOrbit[] orbits = createOrbits(satellites, analytic);
+
+		double[] xyz = new double[3];
+		double check = 0;
+		long time = 0;
+		long bytes = 0;
+		for (int q = 0; q < WARMUP_QUERIES + queries; q++) {
+			long startBytes = counter.getAllocatedBytes();
+			long start = System.nanoTime();
+			for (SatelliteOrbit orbit : orbits) {
+				orbit.getSatelliteCoordinate(q * STEP, xyz);
+				check += xyz[0];
+			}
+			if (q >= WARMUP_QUERIES) {
+				time += System.nanoTime() - start;
+				bytes += counter.getAllocatedBytes() - startBytes;
+			}
+		}
+		if (Double.isNaN(check)) {
+			throw new IllegalStateException("NaN position");
+		}
+
+		print(analytic ? "Analytic" : "Stepwise", (long)queries * satellites,
+				time, counter.isSupported() ? bytes : -1);
+	}
+
+	/**
+	 * Computes the positions of all the orbits at once and prints the
+	 * results
+	 * @param satellites Number of orbits
+	 * @param queries Number of measured batches
+	 */
+	private static void runBatch(int satellites, int queries) {
+		AllocationCounter counter = new AllocationCounter();
+		ConstellationPropagator propagator =
+			new ConstellationPropagator(satellites);
+		for (SatelliteOrbit orbit : createOrbits(satellites, true)) {
+			propagator.add(orbit);
+		}
+
+		double[] x = new double[satellites];
+		double[] y = new double[satellites];
+		double[] z = new double[satellites];
+		double check = 0;
+		long time = 0;
+		long bytes = 0;
+		for (int q = 0; q < WARMUP_QUERIES + queries; q++) {
+			long startBytes = counter.getAllocatedBytes();
+			long start = System.nanoTime();
+			propagator.propagate(q * STEP, x, y, z);
+			check += x[0];
+			if (q >= WARMUP_QUERIES) {
+				time += System.nanoTime() - start;
+				bytes += counter.getAllocatedBytes() - startBytes;
+			}
+		}
+		if (Double.isNaN(check)) {
+			throw new IllegalStateException("NaN position");
+		}
+
+		print("Batch", (long)queries * satellites, time,
+				counter.isSupported() ? bytes : -1);
+	}
+
+	/**
+	 * Prints the results of one mode
+	 * @param mode Name of the mode
+	 * @param nrofQueries Number of computed positions
+	 * @param time Time it took (ns)
+	 * @param bytes Bytes allocated, or -1 if not known
+	 */
+	private static void print(String mode, long nrofQueries, long time,
+			long bytes) {
+		System.out.println(mode + "\t" + nrofQueries + "\t" +
+				String.format("%.1f", (double)time / nrofQueries) + "\t" +
+				(bytes >= 0 ?
+					String.format("%.1f", (double)bytes / nrofQueries) :
+					"n/a"));
+	}
+}
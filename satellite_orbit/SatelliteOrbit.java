@@ -39,6 +39,22 @@ public class SatelliteOrbit implements Printable {
 	int steps = 200;
     double[][] satellitecoordinate = new double[1][3];
 	double[][] initcoordinate = new double[1][3];
+
+	/** earth GM in km^3/s^2, same default as {@link TwoBody} */
+	private static final double MU = 398600.4415;
+	/** use the closed-form Kepler solution instead of step-wise propagation */
+	private boolean analyticPropagation = false;
+
+	/** true once the cached constants of the closed-form solution are set */
+	private boolean analyticReady = false;
+	/** mean motion (rad/s), period (s) and mean anomaly at t=0 (rad) */
+	double n, period, m0;
+	/** a*sqrt(1-e^2), i.e. the semi-minor axis */
+	double b;
+	/** first two columns (P and Q axes) of the PQW to ECI rotation */
+	double px, py, pz, qx, qy, qz;
+	/** propagator of the step-wise mode, reused between the queries */
+	private TwoBody tb;
 	
 	public SatelliteOrbit() {
 		//default Constructor
@@ -73,10 +89,9 @@ public class SatelliteOrbit implements Printable {
 	}
 	
 	public double[][] getInitLocation() {
-		TwoBody tb = new TwoBody(a,e,i,raan,w,ta);
+		TwoBody tb = resetTwoBody();
 		double period = tb.getPeriod();
 		double tf = period;
-		tb.setSteps(steps);
 		tb.propagate(tf);
 		
 		initcoordinate = new double[1][3];
@@ -87,13 +102,47 @@ public class SatelliteOrbit implements Printable {
 		return this.initcoordinate;
 	}
 	
-	public double[][] getSatelliteCoordinate(double t) {
-		TwoBody tb = new TwoBody(a,e,i,raan,w,ta);
+	/**
+	 * Selects how the satellite positions of this orbit are computed.
+	 * @param analytic true to solve Kepler's equation once per query, false
+	 * to propagate from t=0 in period/steps sized steps
+	 */
+	public void setAnalyticPropagation(boolean analytic) {
+		analyticPropagation = analytic;
+	}
+
+	/**
+	 * @return true if the closed-form Kepler solution is in use
+	 */
+	public boolean isAnalyticPropagation() {
+		return analyticPropagation;
+	}
+
+	/**
+	 * Computes the ECI position at time t and writes it to the given array
+	 * (x, y, z in km). Times beyond one period wrap around and non-positive
+	 * times give the initial position, as with the step-wise propagation.
+	 * No objects are allocated once the propagator of the step-wise mode
+	 * has been created.
+	 * @param t Time in s
+	 * @param xyz Array of at least three elements where the result is stored
+	 * @return The xyz array
+	 */
+	public double[] getSatelliteCoordinate(double t, double[] xyz) {
+		if (!analyticPropagation) {
+			return getStepwiseCoordinate(t, xyz);
+		}
+		return getAnalyticCoordinate(t, xyz);
+	}
+
+	/**
+	 * Computes the ECI position at time t by propagating from t=0 in
+	 * period/steps sized steps
+	 */
+	private double[] getStepwiseCoordinate(double t, double[] xyz) {
+		TwoBody tb = resetTwoBody();
 		// find out the period of the orbit
-		double period = tb.getPeriod();
-		// set the final time = one orbit period
-		double tf = period;
-		tb.setSteps(steps);
+		double tf = tb.getPeriod();
 		// propagate the orbit
 		if(t>tf) {
 			tb.propagate(t%tf);
@@ -101,21 +150,124 @@ public class SatelliteOrbit implements Printable {
 		else if(t<=tf) {
 			tb.propagate(t);
 		}
-		
+
+		xyz[0] = tb.rv.x[0];
+		xyz[1] = tb.rv.x[1];
+		xyz[2] = tb.rv.x[2];
+		return xyz;
+	}
+
+	/**
+	 * Returns the propagator of the step-wise mode set to the elements of
+	 * this orbit, i.e. to the position at t=0
+	 */
+	private TwoBody resetTwoBody() {
+		if (tb == null) {
+			tb = new TwoBody(a,e,i,raan,w,ta);
+		}
+		else {
+			tb.setElements(a,e,i,raan,w,ta);
+		}
+		tb.setSteps(steps);
+		return tb;
+	}
+
+	/**
+	 * Computes the ECI position at time t with the closed-form Kepler
+	 * solution regardless of the selected propagation mode.
+	 * @param t Time in s
+	 * @param xyz Array of at least three elements where the result is stored
+	 * @return The xyz array
+	 */
+	public double[] getAnalyticCoordinate(double t, double[] xyz) {
+		if (!analyticReady) {
+			initAnalyticElements();
+		}
+
+		double tt = t;
+		if (tt > period) {
+			tt = tt % period;
+		}
+		else if (tt < 0) {
+			tt = 0;
+		}
+
+		double ea = TwoBody.solveKepler(m0 + n * tt, e);
+		double cosE = Math.cos(ea);
+		double sinE = Math.sin(ea);
+		double xp = a * (cosE - e);
+		double yq = b * sinE;
+
+		xyz[0] = px * xp + qx * yq;
+		xyz[1] = py * xp + qy * yq;
+		xyz[2] = pz * xp + qz * yq;
+		return xyz;
+	}
+
+	/**
+	 * Returns the largest speed of the satellite on its orbit, i.e. the
+	 * speed at the perigee.
+	 * @return The speed in km/s
+	 */
+	public double getMaxSpeed() {
+		return Math.sqrt(MU * (1.0 + e) / (a * (1.0 - e)));
+	}
+
+	/**
+	 * Makes sure the constants of the closed-form solution are cached, e.g.
+	 * before {@link ConstellationPropagator} copies them
+	 */
+	void prepareAnalyticElements() {
+		if (!analyticReady) {
+			initAnalyticElements();
+		}
+	}
+
+	/**
+	 * Caches the constants of the closed-form solution: mean motion, period,
+	 * initial mean anomaly and the PQW to ECI rotation coefficients.
+	 */
+	private void initAnalyticElements() {
+		double rad = Constants.deg2rad;
+		double[] c = Mat3.PQW2ECI(raan * rad, i * rad, w * rad,
+				new double[Mat3.SIZE]);
+		px = c[0];
+		py = c[3];
+		pz = c[6];
+		qx = c[1];
+		qy = c[4];
+		qz = c[7];
+
+		double sqrome2 = Math.sqrt(1.0 - e * e);
+		double cta = Math.cos(ta * rad);
+		double sta = Math.sin(ta * rad);
+		double e0 = Math.atan2((sqrome2 * sta) / (1.0 + e * cta),
+				(e + cta) / (1.0 + e * cta));
+
+		n = Math.sqrt(MU / (a * a * a));
+		period = 2.0 * Constants.pi / n;
+		m0 = e0 - e * Math.sin(e0);
+		b = a * sqrome2;
+		analyticReady = true;
+	}
+
+	public double[][] getSatelliteCoordinate(double t) {
 		satellitecoordinate = new double[1][3];
-		satellitecoordinate[0][0] = tb.rv.x[0];
-		satellitecoordinate[0][1] = tb.rv.x[1];
-		satellitecoordinate[0][2] = tb.rv.x[2];
-      //  System.out.println("coordinate "+ satellitecoordinate[0][0]);
-        return this.satellitecoordinate;
+		getSatelliteCoordinate(t, satellitecoordinate[0]);
+		return this.satellitecoordinate;
 	}
 	/**
 	 * ع
 	 * @return
 	 */
 	public double getPeriod(){
-		TwoBody tb = new TwoBody(a,e,i,raan,w,ta);
-		double period = tb.getPeriod();
+		if (analyticPropagation) {
+			if (!analyticReady) {
+				initAnalyticElements();
+			}
+			return period;
+		}
+		double period = 2.0 * Constants.pi / Math.sqrt(MU / (a * a * a));
 		return period;
 	}
 
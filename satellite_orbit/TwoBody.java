@@ -52,6 +52,11 @@ public class TwoBody implements Derivatives
 	 */
 	public VectorN rv; // position and velocity vector
 
+	/** PQW to ECI rotation ({@link Mat3}), reused by the propagation */
+	private final double[] cmat = new double[Mat3.SIZE];
+	/** angular momentum ({@link Vec3}), reused by {@link #getHmag()} */
+	private final double[] angularMomentum = new double[Vec3.SIZE];
+
 	/** Default constructor.
 	 */
 	public TwoBody()
@@ -217,7 +222,27 @@ public class TwoBody implements Derivatives
 	public void setTa(double ta)
 	{
 		this.ta = ta* Constants.deg2rad;
-		rv = new VectorN(randv());	//update cartesian elements
+		randv(rv.x);	//update cartesian elements
+	}
+
+	/** Set the 6 orbit elements, as in the constructor, and update the
+	 * position and velocity. Angles are input in degrees.
+	 * @param x1 Semi-major axis in km.
+	 * @param x2 Eccentricity.
+	 * @param x3 Inclination in degrees.
+	 * @param x4 RAAN in degrees.
+	 * @param x5 Argument of perigee in degrees.
+	 * @param x6 True anomaly in degrees.
+	 */
+	public void setElements(double x1, double x2, double x3, double x4, double x5, double x6)
+	{
+		this.a = x1;
+		this.e = x2;
+		this.i = x3 * Constants.deg2rad;
+		this.raan = x4 * Constants.deg2rad;
+		this.w = x5 * Constants.deg2rad;
+		this.ta = x6 * Constants.deg2rad;
+		randv(rv.x);
 	}
 	
 	public void setSteps(double steps)
@@ -465,24 +490,7 @@ public class TwoBody implements Derivatives
 
 	public Matrix PQW2ECI()
 	{
-		double cw = Math.cos(w);
-		double sw = Math.sin(w);
-		double craan = Math.cos(raan);
-		double sraan = Math.sin(raan);
-		double ci = Math.cos(i);
-		double si = Math.sin(i);
-
-		Matrix out = new Matrix(3, 3);
-		out.A[0][0] = craan * cw - sraan * sw * ci;
-		out.A[0][1] = -craan * sw - sraan * cw * ci;
-		out.A[0][2] = sraan * si;
-		out.A[1][0] = sraan * cw + craan * sw * ci;
-		out.A[1][1] = -sraan * sw + craan * cw * ci;
-		out.A[1][2] = -craan * si;
-		out.A[2][0] = sw * si;
-		out.A[2][1] = cw * si;
-		out.A[2][2] = ci;
-		return out;
+		return Mat3.toMatrix(Mat3.PQW2ECI(raan, i, w, new double[Mat3.SIZE]));
 	}
 
 	/** Compute the RSW to ECI transformation matrix.
@@ -510,6 +518,27 @@ public class TwoBody implements Derivatives
 	 */
 
 	public double[] randv()
+	{
+		return randv(new double[6]);
+	}
+
+	/** Compute the ECI position and velocity vectors without allocating.
+	 * @param out double[] of at least 6 elements where the position and
+	 * velocity are stored.
+	 * @return The out array.
+	 */
+
+	public double[] randv(double[] out)
+	{
+		return randv(Mat3.PQW2ECI(raan, i, w, cmat), out);
+	}
+
+	/** Compute the ECI position and velocity vectors with a precomputed
+	 * PQW to ECI rotation. The rotation only depends on i, raan and w, so
+	 * it is computed once per propagation.
+	 */
+
+	private double[] randv(double[] c, double[] out)
 	{
 		double p = a * (1.0 - e * e);
 		double cta = Math.cos(ta);
@@ -517,30 +546,8 @@ public class TwoBody implements Derivatives
 		double opecta = 1.0 + e * cta;
 		double sqmuop = Math.sqrt(this.mu / p);
 
-		VectorN xpqw = new VectorN(6);
-		xpqw.x[0] = p * cta / opecta;
-		xpqw.x[1] = p * sta / opecta;
-		xpqw.x[2] = 0.0;
-		xpqw.x[3] = -sqmuop * sta;
-		xpqw.x[4] = sqmuop * (e + cta);
-		xpqw.x[5] = 0.0;
-
-		Matrix cmat = PQW2ECI();
-
-		VectorN rpqw = new VectorN(xpqw.x[0], xpqw.x[1], xpqw.x[2]);
-		VectorN vpqw = new VectorN(xpqw.x[3], xpqw.x[4], xpqw.x[5]);
-
-		VectorN rijk = cmat.times(rpqw);
-		VectorN vijk = cmat.times(vpqw);
-
-		double[] out = new double[6];
-
-		for (int i = 0; i < 3; i++)
-		{
-			out[i] = rijk.x[i];
-			out[i + 3] = vijk.x[i];
-		}
-
+		Mat3.times(c, p * cta / opecta, p * sta / opecta, 0.0, out, 0);
+		Mat3.times(c, -sqmuop * sta, sqmuop * (e + cta), 0.0, out, 3);
 		return out;
 	}
 
@@ -588,9 +595,8 @@ public class TwoBody implements Derivatives
 
 	public double getHmag()
 	{
-		VectorN h = this.getH();
-		double out = h.mag();
-		return out;
+		Vec3.cross(rv.x, 0, rv.x, 3, angularMomentum, 0);
+		return Vec3.mag(angularMomentum, 0);
 	}
 
 	/** Compute the local acceleration due to gravity.
@@ -681,7 +687,7 @@ public class TwoBody implements Derivatives
 	 */
 	public void propagate(double t0, double tf, Printable pr, boolean print_switch)
 	{
-		double[] temp = new double[6];
+		Mat3.PQW2ECI(raan, i, w, cmat);
 
 
 		// Determine step size
@@ -714,8 +720,7 @@ public class TwoBody implements Derivatives
 		if (print_switch)
 		{
 			//System.out.println(a+"  "+e+"  "+i+"  "+raan+"  "+w+"  "+ta);
-			temp = this.randv();
-			pr.print(t, temp);
+			pr.print(t, randv(cmat, this.rv.x));
 //			for(int i=0;i<temp.length;++i) {
 //				System.out.println("temp "+temp[i]);
 //			}
@@ -743,12 +748,11 @@ public class TwoBody implements Derivatives
 
 			t = t + dt;
 
-			temp = this.randv();
-			this.rv = new VectorN(temp);
+			randv(cmat, this.rv.x);
 
 			if (print_switch)
 			{
-				pr.print(t, temp);
+				pr.print(t, this.rv.x);
 				/*for(int i=0;i<temp.length;++i) {
 					System.out.println("temp "+temp[i]);
 					numbers++;
@@ -769,7 +773,7 @@ public class TwoBody implements Derivatives
 
 	public void propagate(double tf)
 	{
-		double[] temp = new double[6];
+		Mat3.PQW2ECI(raan, i, w, cmat);
 		double t0=0.0;
 
 		// Determine step size
@@ -830,8 +834,7 @@ public class TwoBody implements Derivatives
 
 			t = t + dt;
 
-			temp = this.randv();
-			this.rv = new VectorN(temp);
+			randv(cmat, this.rv.x);
 
 		/*	if (print_switch)
 			{
@@ -855,7 +858,7 @@ public class TwoBody implements Derivatives
 	
 	public void propagate(double t0, double tf, Printable pr, boolean print_switch, double steps)
 	{
-		double[] temp = new double[6];
+		Mat3.PQW2ECI(raan, i, w, cmat);
 
 		this.steps=steps;
 
@@ -888,8 +891,7 @@ public class TwoBody implements Derivatives
 
 		if (print_switch)
 		{
-			temp = this.randv();
-			pr.print(t, temp);
+			pr.print(t, randv(cmat, this.rv.x));
 		}
 
 		while (t < tf)
@@ -912,12 +914,11 @@ public class TwoBody implements Derivatives
 
 			t = t + dt;
 
-			temp = this.randv();
-			this.rv = new VectorN(temp);
+			randv(cmat, this.rv.x);
 
 			if (print_switch)
 			{
-				pr.print(t, temp);
+				pr.print(t, this.rv.x);
 			}
 
 			if ((t + dt) > tf)
@@ -934,7 +935,7 @@ public class TwoBody implements Derivatives
 	 */
 	public void propagate(double t0, double tf)
 	{
-		double[] temp = new double[6];
+		Mat3.PQW2ECI(raan, i, w, cmat);
 
 		// Determine step size
 		double n = this.meanMotion();
@@ -983,8 +984,7 @@ public class TwoBody implements Derivatives
 
 			t = t + dt;
 
-			temp = this.randv();
-			this.rv = new VectorN(temp);
+			randv(cmat, this.rv.x);
 
 			if ((t + dt) > tf)
 			{
@@ -1004,8 +1004,7 @@ public class TwoBody implements Derivatives
 	public double[] derivs(double t, double[] y)
 	{
 		double out[] = new double[6];
-		VectorN r = new VectorN(y[0], y[1], y[2]);
-		double rmag = r.mag();
+		double rmag = Vec3.mag(y, 0);
 		double rcubed = rmag * rmag * rmag;
 		double muorc = -1.0 * this.mu / rcubed;
 
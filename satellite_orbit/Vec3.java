@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package satellite_orbit;
+
+/**
+ * Operations on 3-vectors that are stored in plain double arrays. A vector
+ * is the three elements of an array starting from an offset, so a position
+ * and velocity array (x, y, z, vx, vy, vz) holds two vectors at offsets 0
+ * and 3. The results are written to arrays given by the caller and no
+ * objects are allocated, unlike with {@link VectorN}.
+ */
+public final class Vec3 {
+	/** Number of elements in a vector */
+	public static final int SIZE = 3;
+
+	private Vec3() {}
+
+	/**
+	 * Computes the dot product of two vectors
+	 * @param a Array of the first vector
+	 * @param aOff Offset of the first vector
+	 * @param b Array of the second vector
+	 * @param bOff Offset of the second vector
+	 * @return a . b
+	 */
+	public static double dot(double[] a, int aOff, double[] b, int bOff) {
+		return a[aOff] * b[bOff] + a[aOff + 1] * b[bOff + 1] +
+			a[aOff + 2] * b[bOff + 2];
+	}
+
+	/**
+	 * Computes the magnitude of a vector
+	 * @param a Array of the vector
+	 * @param off Offset of the vector
+	 * @return |a|
+	 */
+	public static double mag(double[] a, int off) {
+		return Math.sqrt(dot(a, off, a, off));
+	}
+
+	/**
+	 * Computes the cross product of two vectors. The result may be stored
+	 * over either of the operands.
+	 * @param a Array of the first vector
+	 * @param aOff Offset of the first vector
+	 * @param b Array of the second vector
+	 * @param bOff Offset of the second vector
+	 * @param out Array where a x b is stored
+	 * @param outOff Offset of the result
+	 */
+	public static void cross(double[] a, int aOff, double[] b, int bOff,
+			double[] out, int outOff) {
+		double ax = a[aOff], ay = a[aOff + 1], az = a[aOff + 2];
+		double bx = b[bOff], by = b[bOff + 1], bz = b[bOff + 2];
+		out[outOff] = ay * bz - az * by;
+		out[outOff + 1] = az * bx - ax * bz;
+		out[outOff + 2] = ax * by - ay * bx;
+	}
+}
@@ -42,6 +42,13 @@ public abstract class DTNSimUI {
 	 */
 	public static final String MM_WARMUP_S = 
 		movement.MovementModel.MOVEMENT_MODEL_NS + ".warmup";
+	/**
+	 * Print settings lookups -setting id ({@value}). Boolean. If true, the
+	 * number of settings lookups done after the initialization is printed
+	 * when the simulation is done (they should not be done while the
+	 * simulation is running). Default is false.
+	 */
+	public static final String PRINT_LOOKUPS_S = "Report.printSettingsLookups";
 	
 	/** report class' package name */
 	private static final String REPORT_PAC = "report.";
@@ -56,6 +63,10 @@ public abstract class DTNSimUI {
 	protected boolean simCancelled;
 	/** Scenario of the current simulation */
 	protected SimScenario scen;
+	/** Number of setting lookups done when the model was initialized */
+	protected long initLookupCount;
+	/** should the lookups after the initialization be printed */
+	protected boolean printLookups;
 	/** simtime of last UI update */
 	protected double lastUpdate;
 	
@@ -110,8 +121,10 @@ public abstract class DTNSimUI {
 				}
 			}
 
+			this.printLookups = settings.getBoolean(PRINT_LOOKUPS_S, false);
 			this.world = this.scen.getWorld();
 			world.warmupMovementModel(warmupTime);
+			this.initLookupCount = Settings.getLookupCount();
 		}
 		catch (SettingsError se) {
 			System.err.println("Can't start: error in configuration file(s)");
@@ -129,6 +142,10 @@ public abstract class DTNSimUI {
 	 * Runs maintenance jobs that are needed before exiting.
 	 */
 	public void done() {
+		if (this.printLookups) {
+			System.out.println("Settings lookups after initialization: " +
+					(Settings.getLookupCount() - this.initLookupCount));
+		}
 		for (Report r : this.reports) {
 			r.done();
 		}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Counts the bytes allocated by the thread that created the counter, if the
+ * JVM supports it. Used by the benchmarks to measure the garbage of the
+ * measured code:
+ * <PRE>
+ * long start = counter.getAllocatedBytes();
+ * ...
+ * bytes += counter.getAllocatedBytes() - start;
+ * </PRE>
+ */
+public class AllocationCounter {
+	/** the allocation counter of the JVM, null if it doesn't have one */
+	private final com.sun.management.ThreadMXBean bean;
+	private final long thread;
+
+	/**
+	 * Creates a counter of the current thread
+	 */
+	public AllocationCounter() {
+		ThreadMXBean b = ManagementFactory.getThreadMXBean();
+		this.bean = b instanceof com.sun.management.ThreadMXBean ?
+				(com.sun.management.ThreadMXBean)b : null;
+		this.thread = Thread.currentThread().getId();
+	}
+
+	/**
+	 * @return True if the JVM counts the allocated bytes
+	 */
+	public boolean isSupported() {
+		return this.bean != null;
+	}
+
+	/**
+	 * Returns the number of bytes the thread has allocated so far
+	 * @return The bytes, or 0 if the JVM doesn't count them
+	 */
+	public long getAllocatedBytes() {
+		return this.bean != null ? bean.getThreadAllocatedBytes(thread) : 0;
+	}
+}
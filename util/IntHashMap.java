@@ -0,0 +1,253 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash map with primitive int keys. The entries are stored in an open
+ * addressing table with linear probing, so looking up a key doesn't box
+ * the key or call hashCode/equals of any object. Removing an entry shifts
+ * the following entries of its probe sequence back, so the table never
+ * fills with deleted markers.
+ * <P>
+ * Null values are not allowed: a slot with a null value is empty.
+ * @param <V> Type of the values
+ */
+public class IntHashMap<V> {
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int[] keys;
+	private Object[] values;
+	private int count;
+	private int modCount;
+	private Collection<V> valuesView;
+
+	/**
+	 * Creates an empty map
+	 */
+	public IntHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty map that has room for the given number of entries
+	 * before it is resized
+	 * @param expectedSize The expected number of entries
+	 */
+	public IntHashMap(int expectedSize) {
+		int capacity = 4;
+		while (capacity < 2 * expectedSize) {
+			capacity *= 2;
+		}
+		this.keys = new int[capacity];
+		this.values = new Object[capacity];
+		this.count = 0;
+	}
+
+	/**
+	 * Returns the value of a key
+	 * @param key The key
+	 * @return The value or null if the map doesn't contain the key
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		return (V)values[slotOf(key)];
+	}
+
+	/**
+	 * Returns true if the map contains the key
+	 * @param key The key
+	 * @return True if there is a value for the key
+	 */
+	public boolean containsKey(int key) {
+		return values[slotOf(key)] != null;
+	}
+
+	/**
+	 * Sets the value of a key
+	 * @param key The key
+	 * @param value The value (not null)
+	 * @return The previous value of the key or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		assert value != null : "null value for key " + key;
+		int slot = slotOf(key);
+		V old = (V)values[slot];
+		keys[slot] = key;
+		values[slot] = value;
+		if (old == null) {
+			count++;
+			modCount++;
+			if (2 * count > values.length) {
+				grow();
+			}
+		}
+		return old;
+	}
+
+	/**
+	 * Removes a key from the map
+	 * @param key The key
+	 * @return The value of the removed key or null if the map didn't
+	 * contain the key
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int slot = slotOf(key);
+		V old = (V)values[slot];
+		if (old == null) {
+			return null;
+		}
+		count--;
+		modCount++;
+
+		/* move back the entries whose probe sequence passes the slot */
+		int mask = values.length - 1;
+		int free = slot;
+		int next = (free + 1) & mask;
+		while (values[next] != null) {
+			int home = hash(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - free) & mask)) {
+				keys[free] = keys[next];
+				values[free] = values[next];
+				free = next;
+			}
+			next = (next + 1) & mask;
+		}
+		values[free] = null;
+		return old;
+	}
+
+	/**
+	 * Returns the number of entries in the map
+	 * @return the number of entries
+	 */
+	public int size() {
+		return this.count;
+	}
+
+	/**
+	 * Returns true if the map has no entries
+	 * @return true if the map is empty
+	 */
+	public boolean isEmpty() {
+		return this.count == 0;
+	}
+
+	/**
+	 * Removes all entries from the map
+	 */
+	public void clear() {
+		if (count == 0) {
+			return;
+		}
+		for (int i = 0; i < values.length; i++) {
+			values[i] = null;
+		}
+		count = 0;
+		modCount++;
+	}
+
+	/**
+	 * Returns a view of the values of the map. The view is read only and
+	 * the map must not be modified while iterating through it.
+	 * @return The values of the map
+	 */
+	public Collection<V> values() {
+		if (valuesView == null) {
+			valuesView = new AbstractCollection<V>() {
+				public Iterator<V> iterator() {
+					return new ValueIterator();
+				}
+
+				public int size() {
+					return count;
+				}
+			};
+		}
+		return valuesView;
+	}
+
+	/**
+	 * Spreads the bits of a key over the whole int
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Returns the slot of the key in the table: either the slot where the
+	 * key is stored or the empty slot where it would be stored
+	 */
+	private int slotOf(int key) {
+		int mask = values.length - 1;
+		int slot = hash(key) & mask;
+		while (values[slot] != null && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Doubles the size of the table
+	 */
+	private void grow() {
+		int[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		this.keys = new int[oldKeys.length * 2];
+		this.values = new Object[oldValues.length * 2];
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = slotOf(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Iterator over the values of the table in slot order
+	 */
+	private class ValueIterator implements Iterator<V> {
+		private final int expectedModCount = modCount;
+		private final Object[] table = values;
+		private int next = advance(0);
+
+		private int advance(int from) {
+			while (from < table.length && table[from] == null) {
+				from++;
+			}
+			return from;
+		}
+
+		public boolean hasNext() {
+			return next < table.length;
+		}
+
+		@SuppressWarnings("unchecked")
+		public V next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (next >= table.length) {
+				throw new NoSuchElementException();
+			}
+			V value = (V)table[next];
+			next = advance(next + 1);
+			return value;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
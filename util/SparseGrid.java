@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 University of Science and Technology of China , Infonet Lab
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+/**
+ * Sparse three dimensional grid of cells. The cells are stored in an open
+ * addressing hash table keyed by the (row, col, z) index packed into one
+ * long and they are created only when they are first requested, so the
+ * memory use grows with the number of used cells instead of the volume of
+ * the world.
+ * <P>
+ * Each index component must be in the range [-2^20, 2^20). Cells may be
+ * looked up concurrently only when no new cells are created at the same
+ * time (see {@link #getExistingCell(int, int, int)}).
+ * @param <T> Type of the cells
+ */
+public abstract class SparseGrid<T> {
+	/** number of bits for each index component in the packed key */
+	public static final int KEY_BITS = 21;
+	private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private long[] keys;
+	private Object[] cells;
+	private int count;
+
+	/**
+	 * Creates an empty grid
+	 */
+	protected SparseGrid() {
+		this.keys = new long[INITIAL_CAPACITY];
+		this.cells = new Object[INITIAL_CAPACITY];
+		this.count = 0;
+	}
+
+	/**
+	 * Creates a new cell for the given index. Called once per index when
+	 * the cell is first requested.
+	 * @param row Row of the cell
+	 * @param col Column of the cell
+	 * @param z Z index of the cell
+	 * @return The new cell
+	 */
+	protected abstract T createCell(int row, int col, int z);
+
+	/**
+	 * Packs a cell index into a single key
+	 * @param row Row of the cell
+	 * @param col Column of the cell
+	 * @param z Z index of the cell
+	 * @return The key of the cell
+	 */
+	public static long key(int row, int col, int z) {
+		return ((row & KEY_MASK) << (2 * KEY_BITS)) |
+			((col & KEY_MASK) << KEY_BITS) | (z & KEY_MASK);
+	}
+
+	/**
+	 * Returns the cell with the given index and creates it if it doesn't
+	 * exist yet
+	 * @param row Row of the cell
+	 * @param col Column of the cell
+	 * @param z Z index of the cell
+	 * @return The cell
+	 */
+	@SuppressWarnings("unchecked")
+	public T getCell(int row, int col, int z) {
+		long key = key(row, col, z);
+		int slot = slotOf(key);
+		if (cells[slot] != null) {
+			return (T)cells[slot];
+		}
+
+		T cell = createCell(row, col, z);
+		keys[slot] = key;
+		cells[slot] = cell;
+		count++;
+		if (2 * count > cells.length) {
+			grow();
+		}
+		return cell;
+	}
+
+	/**
+	 * Returns the cell with the given index without creating it
+	 * @param row Row of the cell
+	 * @param col Column of the cell
+	 * @param z Z index of the cell
+	 * @return The cell or null if no cell has been created for the index
+	 */
+	@SuppressWarnings("unchecked")
+	public T getExistingCell(int row, int col, int z) {
+		return (T)cells[slotOf(key(row, col, z))];
+	}
+
+	/**
+	 * Returns the number of cells created so far
+	 * @return the number of cells
+	 */
+	public int getCellCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the slot of the key in the table: either the slot where the
+	 * key is stored or the empty slot where it would be stored
+	 */
+	private int slotOf(long key) {
+		int mask = cells.length - 1;
+		long h = key * 0x9E3779B97F4A7C15L;
+		int slot = (int)(h ^ (h >>> 32)) & mask;
+		while (cells[slot] != null && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Doubles the size of the table
+	 */
+	private void grow() {
+		long[] oldKeys = this.keys;
+		Object[] oldCells = this.cells;
+		this.keys = new long[oldKeys.length * 2];
+		this.cells = new Object[oldCells.length * 2];
+		for (int i = 0; i < oldCells.length; i++) {
+			if (oldCells[i] != null) {
+				int slot = slotOf(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				cells[slot] = oldCells[i];
+			}
+		}
+	}
+}